@@ -0,0 +1,144 @@
+package brave;
+
+import brave.Tracer.SpanInScope;
+import brave.propagation.Propagation;
+import brave.propagation.TraceContext;
+import brave.propagation.TraceContextOrSamplingFlags;
+import brave.sampler.Sampler;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import zipkin.reporter.Reporter;
+
+/**
+ * Measures the path taken by requests that aren't sampled: extracting, scoping, creating a child
+ * and injecting. When {@link Tracing.Builder#unsampledTraceIds(boolean)} is false, this should
+ * allocate nothing, which {@link #main(String[])} verifies.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class NotSampledBenchmarks {
+  static final Propagation.Getter<Map<String, String>, String> GETTER = Map::get;
+  static final Propagation.Setter<Map<String, String>, String> SETTER = Map::put;
+
+  @Param({"true", "false"})
+  boolean unsampledTraceIds;
+
+  Tracing tracing;
+  Tracer tracer;
+  TraceContext.Extractor<Map<String, String>> extractor;
+  TraceContext.Injector<Map<String, String>> injector;
+
+  final Map<String, String> incoming = new LinkedHashMap<>();
+  final Map<String, String> incomingWithIds = new LinkedHashMap<>();
+  final Map<String, String> outgoing = new LinkedHashMap<>();
+
+  @Setup public void setup() {
+    tracing = Tracing.newBuilder()
+        .reporter(Reporter.NOOP)
+        .sampler(Sampler.NEVER_SAMPLE)
+        .unsampledTraceIds(unsampledTraceIds)
+        .build();
+    tracer = tracing.tracer();
+    extractor = tracing.propagation().extractor(GETTER);
+    injector = tracing.propagation().injector(SETTER);
+
+    incoming.put("X-B3-Sampled", "0");
+    incomingWithIds.put("X-B3-TraceId", "463ac35c9f6413ad");
+    incomingWithIds.put("X-B3-ParentSpanId", "463ac35c9f6413ad");
+    incomingWithIds.put("X-B3-SpanId", "72485a3953bb6124");
+    incomingWithIds.put("X-B3-Sampled", "0");
+  }
+
+  @TearDown public void close() {
+    tracing.close();
+  }
+
+  /** Extracts {@code X-B3-Sampled: 0}, then scopes and propagates a client span downstream. */
+  @Benchmark public Map<String, String> serverToClient() {
+    return serverToClient(incoming);
+  }
+
+  /** Like {@link #serverToClient()}, except the caller also sent trace identifiers */
+  @Benchmark public Map<String, String> serverToClient_withIds() {
+    return serverToClient(incomingWithIds);
+  }
+
+  /** The sampler rejects a new trace, which is then scoped and propagated downstream. */
+  @Benchmark public Map<String, String> newTrace() {
+    Span span = tracer.newTrace().name("encode").start();
+    try (SpanInScope ws = tracer.withSpanInScope(span)) {
+      injector.inject(tracer.currentSpan().context(), outgoing);
+    } finally {
+      span.finish();
+    }
+    return outgoing;
+  }
+
+  Map<String, String> serverToClient(Map<String, String> request) {
+    TraceContextOrSamplingFlags extracted = extractor.extract(request);
+    Span server = extracted.context() != null
+        ? tracer.joinSpan(extracted.context())
+        : tracer.newTrace(extracted.samplingFlags());
+    server.kind(Span.Kind.SERVER).name("get").start();
+    try (SpanInScope ws = tracer.withSpanInScope(server)) {
+      Span client = tracer.nextSpan().kind(Span.Kind.CLIENT).name("get").start();
+      try (SpanInScope ws2 = tracer.withSpanInScope(client)) {
+        injector.inject(client.context(), outgoing);
+      } finally {
+        client.finish();
+      }
+    } finally {
+      server.finish();
+    }
+    return outgoing;
+  }
+
+  /**
+   * Runs the benchmarks, failing if any benchmark without unsampled trace IDs allocates, except
+   * when the caller sent trace IDs, as extracting them allocates a context.
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + NotSampledBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler("gc")
+        .build();
+
+    for (RunResult result : new Runner(opt).run()) {
+      BenchmarkParams params = result.getParams();
+      if (params.getBenchmark().endsWith("_withIds")) continue;
+      if (Boolean.parseBoolean(params.getParam("unsampledTraceIds"))) continue;
+
+      Result allocated = result.getSecondaryResults().get("\u00b7gc.alloc.rate.norm");
+      if (allocated == null) throw new AssertionError("gc profiler didn't run");
+      // Less than a byte per op is noise, such as the occasional allocation by the JMH harness
+      if (allocated.getScore() >= 1.0) {
+        throw new AssertionError(
+            params.getBenchmark() + " allocated " + allocated.getScore() + " B/op, expected 0");
+      }
+    }
+  }
+}
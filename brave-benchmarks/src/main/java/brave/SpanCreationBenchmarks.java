@@ -36,6 +36,7 @@ public class SpanCreationBenchmarks {
   Recorder recorder;
   Clock clock;
   Brave brave;
+  TraceContext parent;
 
   @Setup
   public void setup() {
@@ -44,6 +45,7 @@ public class SpanCreationBenchmarks {
         .reporter(Reporter.NOOP)
         .build().tracer();
     recorder = tracer.recorder;
+    parent = tracer.newTrace().context();
     clock = tracer.clock;
     brave = new Brave.Builder()
         .reporter(Reporter.NOOP)
@@ -139,5 +141,10 @@ public class SpanCreationBenchmarks {
   public Span newTrace_brave4() {
     return tracer.newTrace();
   }
+
+  @Benchmark
+  public Span newChild_brave4() {
+    return tracer.newChild(parent);
+  }
   // TODO: add comparisons for joinSpan (ex server collaborates with client-originated span
 }
@@ -0,0 +1,73 @@
+package brave.internal;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares parsing a trace ID that throws on malformed input with the lenient parsers, which
+ * return zero instead. "invalid" inputs have a bad character at the end, so all are scanned.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class HexCodecBenchmarks {
+  static final Charset US_ASCII = Charset.forName("US-ASCII");
+  static final String VALID = "48485a3953bb6124";
+  static final String INVALID = "48485a3953bb612G";
+  static final byte[] VALID_ASCII = VALID.getBytes(US_ASCII);
+  static final byte[] INVALID_ASCII = INVALID.getBytes(US_ASCII);
+
+  @Benchmark public long lowerHexToUnsignedLong() {
+    return HexCodec.lowerHexToUnsignedLong(VALID);
+  }
+
+  @Benchmark public long lowerHexToUnsignedLong_invalid() {
+    try {
+      return HexCodec.lowerHexToUnsignedLong(INVALID);
+    } catch (NumberFormatException e) {
+      return 0L;
+    }
+  }
+
+  @Benchmark public long lenientLowerHexToUnsignedLong() {
+    return HexCodec.lenientLowerHexToUnsignedLong(VALID, 0, VALID.length());
+  }
+
+  @Benchmark public long lenientLowerHexToUnsignedLong_invalid() {
+    return HexCodec.lenientLowerHexToUnsignedLong(INVALID, 0, INVALID.length());
+  }
+
+  @Benchmark public long lenientLowerHexToUnsignedLong_ascii() {
+    return HexCodec.lenientLowerHexToUnsignedLong(VALID_ASCII, 0, VALID_ASCII.length);
+  }
+
+  @Benchmark public long lenientLowerHexToUnsignedLong_ascii_invalid() {
+    return HexCodec.lenientLowerHexToUnsignedLong(INVALID_ASCII, 0, INVALID_ASCII.length);
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + HexCodecBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler("gc")
+        .build();
+
+    new Runner(opt).run();
+  }
+}
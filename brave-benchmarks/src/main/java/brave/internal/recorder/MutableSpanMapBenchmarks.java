@@ -0,0 +1,133 @@
+package brave.internal.recorder;
+
+import brave.RecorderMetrics;
+import brave.internal.Platform;
+import brave.propagation.TraceContext;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import zipkin.Endpoint;
+import zipkin.reporter.Reporter;
+
+/**
+ * Measures the lookups made when recording a span: create, two mutations and a remove on finish.
+ * Each thread works on its own contexts, so contention is only on the map itself. Spans are
+ * recycled, so that allocation reported by {@code -prof gc} is due to the map.
+ *
+ * <p>{@code chm_*} methods are a baseline of a {@link ConcurrentHashMap} keyed by the context.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class MutableSpanMapBenchmarks {
+  static final Endpoint LOCAL_ENDPOINT = Platform.get().localEndpoint();
+
+  @Param({"true", "false"})
+  boolean trackOrphans;
+
+  final MutableSpanPool pool = new MutableSpanPool(LOCAL_ENDPOINT, 64);
+  MutableSpanMap map;
+  final ConcurrentMap<TraceContext, MutableSpan> chm = new ConcurrentHashMap<>(64);
+
+  @Setup
+  public void setup() {
+    map = new MutableSpanMap(LOCAL_ENDPOINT, Platform.get(), Reporter.NOOP, pool, trackOrphans,
+        true, RecorderMetrics.NOOP_METRICS);
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadContexts {
+    /** Simulates a thread having some spans in flight when it starts another */
+    final TraceContext[] contexts = new TraceContext[16];
+    int i;
+
+    @Setup
+    public void setup(MutableSpanMapBenchmarks benchmark) {
+      for (int j = 0; j < contexts.length; j++) {
+        long id = Platform.get().randomLong();
+        contexts[j] = TraceContext.newBuilder().traceId(id).spanId(id).sampled(true).build();
+        benchmark.map.getOrCreate(contexts[j]);
+        benchmark.chm.put(contexts[j], new MutableSpan(contexts[j], LOCAL_ENDPOINT));
+      }
+    }
+
+    TraceContext next() {
+      return contexts[i++ & (contexts.length - 1)];
+    }
+  }
+
+  @Benchmark @Threads(1)
+  public MutableSpan lifecycle_1(ThreadContexts contexts) {
+    return lifecycle(contexts.next());
+  }
+
+  @Benchmark @Threads(4)
+  public MutableSpan lifecycle_4(ThreadContexts contexts) {
+    return lifecycle(contexts.next());
+  }
+
+  @Benchmark @Threads(16)
+  public MutableSpan lifecycle_16(ThreadContexts contexts) {
+    return lifecycle(contexts.next());
+  }
+
+  @Benchmark @Threads(1)
+  public MutableSpan chm_lifecycle_1(ThreadContexts contexts) {
+    return chmLifecycle(contexts.next());
+  }
+
+  @Benchmark @Threads(4)
+  public MutableSpan chm_lifecycle_4(ThreadContexts contexts) {
+    return chmLifecycle(contexts.next());
+  }
+
+  @Benchmark @Threads(16)
+  public MutableSpan chm_lifecycle_16(ThreadContexts contexts) {
+    return chmLifecycle(contexts.next());
+  }
+
+  /** Removes and recreates the span, so the count of spans in flight is stable. */
+  MutableSpan lifecycle(TraceContext context) {
+    pool.release(map.remove(context));
+    map.getOrCreate(context);
+    map.getOrCreate(context);
+    return map.getOrCreate(context);
+  }
+
+  MutableSpan chmLifecycle(TraceContext context) {
+    pool.release(chm.remove(context));
+    chm.putIfAbsent(context, pool.acquire(context));
+    chm.get(context);
+    return chm.get(context);
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + MutableSpanMapBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler(GCProfiler.class)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,99 @@
+package brave.internal.recorder;
+
+import brave.Clock;
+import brave.Span;
+import brave.internal.Platform;
+import brave.propagation.TraceContext;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import zipkin.Constants;
+import zipkin.Endpoint;
+import zipkin.TraceKeys;
+import zipkin.reporter.Reporter;
+
+/**
+ * Compares allocation of recording a span with and without recycling. Run {@link #main} or add
+ * {@code -prof gc} to see bytes per operation ({@code gc.alloc.rate.norm}).
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Threads(1)
+public class RecorderBenchmarks {
+  static final Endpoint REMOTE_ENDPOINT = Endpoint.builder()
+      .serviceName("backend")
+      .ipv4(127 << 24 | 1)
+      .port(8080).build();
+
+  @Param({"false", "true"})
+  boolean recycleSpans;
+
+  Recorder recorder;
+  Clock clock;
+
+  @Setup
+  public void setup() {
+    clock = Platform.get();
+    recorder = Recorder.newBuilder(Platform.get().localEndpoint(), clock, Reporter.NOOP)
+        .recycleSpans(recycleSpans)
+        .build();
+  }
+
+  @Benchmark
+  public Recorder simpleSpan() {
+    TraceContext context = nextContext();
+    recorder.name(context, "encode");
+    recorder.start(context, clock.currentTimeMicroseconds());
+    recorder.finish(context, clock.currentTimeMicroseconds());
+    return recorder;
+  }
+
+  @Benchmark
+  public Recorder elaborateSpan() {
+    TraceContext context = nextContext();
+    recorder.kind(context, Span.Kind.CLIENT);
+    recorder.name(context, "getOrCreate");
+    recorder.tag(context, "clnt/finagle.version", "6.36.0");
+    recorder.tag(context, TraceKeys.HTTP_PATH, "/api");
+    recorder.remoteEndpoint(context, REMOTE_ENDPOINT);
+    recorder.start(context, clock.currentTimeMicroseconds());
+    recorder.annotate(context, clock.currentTimeMicroseconds(), Constants.WIRE_SEND);
+    recorder.annotate(context, clock.currentTimeMicroseconds(), Constants.WIRE_RECV);
+    recorder.finish(context, clock.currentTimeMicroseconds());
+    return recorder;
+  }
+
+  static TraceContext nextContext() {
+    long id = Platform.get().randomLong();
+    return TraceContext.newBuilder().traceId(id).spanId(id).sampled(true).build();
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + RecorderBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler(GCProfiler.class)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,92 @@
+package brave.internal.recorder;
+
+import brave.Span;
+import brave.internal.Platform;
+import brave.propagation.TraceContext;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import zipkin.Constants;
+import zipkin.Endpoint;
+import zipkin.TraceKeys;
+import zipkin.reporter.Encoder;
+import zipkin.reporter.Encoding;
+
+/**
+ * Compares encoding a finished span via {@link MutableSpan#toSpan()} and {@link Encoder}, with
+ * encoding it directly via {@link SpanEncoder}.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Threads(1)
+public class SpanEncoderBenchmarks {
+  static final Endpoint LOCAL_ENDPOINT = Platform.get().localEndpoint();
+  static final Endpoint REMOTE_ENDPOINT = Endpoint.builder()
+      .serviceName("backend")
+      .ipv4(127 << 24 | 1)
+      .port(8080).build();
+  static final SpanEncoder JSON = SpanEncoder.create(Encoding.JSON, LOCAL_ENDPOINT);
+  static final SpanEncoder THRIFT = SpanEncoder.create(Encoding.THRIFT, LOCAL_ENDPOINT);
+
+  // a finished span can be encoded repeatedly
+  final MutableSpan clientSpan = newClientSpan();
+
+  @Benchmark public byte[] toSpan_json() {
+    return Encoder.JSON.encode(clientSpan.toSpan());
+  }
+
+  @Benchmark public byte[] direct_json() {
+    return JSON.encode(clientSpan);
+  }
+
+  @Benchmark public byte[] toSpan_thrift() {
+    return Encoder.THRIFT.encode(clientSpan.toSpan());
+  }
+
+  @Benchmark public byte[] direct_thrift() {
+    return THRIFT.encode(clientSpan);
+  }
+
+  static MutableSpan newClientSpan() {
+    TraceContext context = TraceContext.newBuilder()
+        .traceId(1L).parentId(2L).spanId(3L).sampled(true).build();
+    MutableSpan span = new MutableSpan(context, LOCAL_ENDPOINT);
+    span.kind(Span.Kind.CLIENT);
+    span.name("get");
+    span.tag("clnt/finagle.version", "6.36.0");
+    span.tag(TraceKeys.HTTP_PATH, "/api");
+    span.remoteEndpoint(REMOTE_ENDPOINT);
+    span.start(1472470996199000L);
+    span.annotate(1472470996238000L, Constants.WIRE_SEND);
+    span.annotate(1472470996403000L, Constants.WIRE_RECV);
+    span.finish(1472470996406000L);
+    return span;
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + SpanEncoderBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler(GCProfiler.class)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,78 @@
+package brave.propagation;
+
+import brave.internal.StrictCurrentTraceContext;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares implementations of {@link CurrentTraceContext}. JMH threads aren't created by {@link
+ * ThreadLocalCurrentTraceContext#threadFactory()}, so "threadLocal" measures its thread-local path.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class CurrentTraceContextBenchmarks {
+  @Param({"default", "strict", "threadLocal"})
+  String type;
+
+  CurrentTraceContext currentTraceContext;
+  final TraceContext context = TraceContext.newBuilder().traceId(1L).spanId(1L).build();
+  final TraceContext child =
+      TraceContext.newBuilder().traceId(1L).parentId(1L).spanId(2L).build();
+
+  @Setup public void setup() {
+    if (type.equals("default")) {
+      currentTraceContext = new CurrentTraceContext.Default();
+    } else if (type.equals("strict")) {
+      currentTraceContext = new StrictCurrentTraceContext();
+    } else {
+      currentTraceContext = new ThreadLocalCurrentTraceContext();
+    }
+  }
+
+  @Benchmark public TraceContext newScope() {
+    try (CurrentTraceContext.Scope scope = currentTraceContext.newScope(context)) {
+      return currentTraceContext.get();
+    }
+  }
+
+  /** Like a server span in scope while a client span is scoped */
+  @Benchmark public TraceContext newScope_nested() {
+    try (CurrentTraceContext.Scope scope = currentTraceContext.newScope(context)) {
+      try (CurrentTraceContext.Scope scope2 = currentTraceContext.newScope(child)) {
+        return currentTraceContext.get();
+      }
+    }
+  }
+
+  @Benchmark public TraceContext get() {
+    return currentTraceContext.get();
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + CurrentTraceContextBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler("gc")
+        .build();
+
+    new Runner(opt).run();
+  }
+}
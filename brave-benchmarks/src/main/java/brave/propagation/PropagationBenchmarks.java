@@ -0,0 +1,160 @@
+package brave.propagation;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Compares the multi and single header forms of B3, using a map as the carrier. */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class PropagationBenchmarks {
+  static final Propagation.Getter<Map<String, String>, String> GETTER = Map::get;
+  static final Propagation.Setter<Map<String, String>, String> SETTER = Map::put;
+
+  static final TraceContext.Injector<Map<String, String>> b3Injector =
+      Propagation.B3_STRING.injector(SETTER);
+  static final TraceContext.Extractor<Map<String, String>> b3Extractor =
+      Propagation.B3_STRING.extractor(GETTER);
+  static final TraceContext.Extractor<Map<String, String>> b3CharSequenceExtractor =
+      ((B3Propagation<String>) Propagation.B3_STRING).charSequenceExtractor(Map::get);
+  static final TraceContext.Extractor<Map<String, byte[]>> b3AsciiExtractor =
+      ((B3Propagation<String>) Propagation.B3_STRING).asciiExtractor(Map::get);
+  static final Propagation<String> B3_SINGLE =
+      Propagation.Factory.B3_SINGLE.create(Propagation.KeyFactory.STRING);
+  static final TraceContext.Injector<Map<String, String>> b3SingleInjector =
+      B3_SINGLE.injector(SETTER);
+  static final TraceContext.Extractor<Map<String, String>> b3SingleExtractor =
+      B3_SINGLE.extractor(GETTER);
+
+  static final TraceContext context = TraceContext.newBuilder()
+      .traceIdHigh(333L)
+      .traceId(444L)
+      .parentId(1L)
+      .spanId(2L)
+      .sampled(true)
+      .build();
+
+  final Map<String, String> incoming = new LinkedHashMap<>();
+  final Map<String, String> incomingSingle = new LinkedHashMap<>();
+  final Map<String, byte[]> incomingAscii = new LinkedHashMap<>();
+  final Map<String, String> outgoing = new LinkedHashMap<>();
+
+  public PropagationBenchmarks() {
+    b3Injector.inject(context, incoming);
+    b3SingleInjector.inject(context, incomingSingle);
+    for (Map.Entry<String, String> entry : incoming.entrySet()) {
+      incomingAscii.put(entry.getKey(), entry.getValue().getBytes(Charset.forName("US-ASCII")));
+    }
+  }
+
+  @Benchmark public void inject_b3() {
+    b3Injector.inject(context, outgoing);
+  }
+
+  @Benchmark public void inject_b3Single() {
+    b3SingleInjector.inject(context, outgoing);
+  }
+
+  @Benchmark public TraceContextOrSamplingFlags extract_b3() {
+    return b3Extractor.extract(incoming);
+  }
+
+  @Benchmark public TraceContextOrSamplingFlags extract_b3_charSequence() {
+    return b3CharSequenceExtractor.extract(incoming);
+  }
+
+  @Benchmark public TraceContextOrSamplingFlags extract_b3_ascii() {
+    return b3AsciiExtractor.extract(incomingAscii);
+  }
+
+  @Benchmark public TraceContextOrSamplingFlags extract_b3Single() {
+    return b3SingleExtractor.extract(incomingSingle);
+  }
+
+  /** The single header extractor reads multiple headers when "b3" is absent. */
+  @Benchmark public TraceContextOrSamplingFlags extract_b3Single_fallback() {
+    return b3SingleExtractor.extract(incoming);
+  }
+
+  static final int FAN_OUT = 20;
+  static final byte[] COLON = {':', ' '}, CRLF = {'\r', '\n'};
+
+  static final TraceContext.Injector<StringBuilder> b3WriterInjector =
+      Propagation.B3_STRING.injector((StringBuilder carrier, String key, String value)
+          -> carrier.append(key).append(": ").append(value).append("\r\n"));
+  static final TraceContext.Injector<StringBuilder> b3CharBufferInjector =
+      ((B3Propagation<String>) Propagation.B3_STRING).charBufferInjector(
+          (StringBuilder carrier, String key, char[] buffer, int length)
+              -> carrier.append(key).append(": ").append(buffer, 0, length).append("\r\n"));
+  static final TraceContext.Injector<ByteBuffer> b3AsciiInjector =
+      B3Propagation.create((String name) -> name.getBytes(Charset.forName("US-ASCII")))
+          .asciiInjector((ByteBuffer carrier, byte[] key, byte[] buffer, int length)
+              -> carrier.put(key).put(COLON).put(buffer, 0, length).put(CRLF));
+
+  final StringBuilder[] writers = new StringBuilder[FAN_OUT];
+  final ByteBuffer[] asciiWriters = new ByteBuffer[FAN_OUT];
+
+  {
+    for (int i = 0; i < FAN_OUT; i++) {
+      writers[i] = new StringBuilder(512);
+      asciiWriters[i] = ByteBuffer.allocate(512);
+    }
+  }
+
+  /**
+   * Like a request fanning out to many backends: one new context is injected into the request
+   * headers of each. The context is copied, so IDs encoded by a previous invocation aren't reused.
+   */
+  @Benchmark public void inject_b3_fanOut20() {
+    TraceContext context = PropagationBenchmarks.context.toBuilder().build();
+    for (StringBuilder writer : writers) {
+      writer.setLength(0);
+      b3WriterInjector.inject(context, writer);
+    }
+  }
+
+  @Benchmark public void inject_b3CharBuffer_fanOut20() {
+    TraceContext context = PropagationBenchmarks.context.toBuilder().build();
+    for (StringBuilder writer : writers) {
+      writer.setLength(0);
+      b3CharBufferInjector.inject(context, writer);
+    }
+  }
+
+  @Benchmark public void inject_b3Ascii_fanOut20() {
+    TraceContext context = PropagationBenchmarks.context.toBuilder().build();
+    for (ByteBuffer writer : asciiWriters) {
+      writer.clear();
+      b3AsciiInjector.inject(context, writer);
+    }
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + PropagationBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler("gc")
+        .build();
+
+    new Runner(opt).run();
+  }
+}
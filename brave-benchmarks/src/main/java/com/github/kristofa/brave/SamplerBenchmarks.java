@@ -5,6 +5,8 @@ import java.util.concurrent.TimeUnit;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
@@ -77,6 +79,27 @@ public class SamplerBenchmarks {
 
   static final Sampler TRACE_ID_SAMPLER_BOUNDARY = BoundarySampler.create(SAMPLE_RATE);
 
+  /**
+   * This measures the threshold trace id sampler provided with brave, which compares against a
+   * precomputed unsigned 64-bit threshold instead of using modulo arithmetic.
+   */
+  @Benchmark
+  public boolean sampler_threshold(Args args) {
+    return TRACE_ID_SAMPLER_THRESHOLD.isSampled(args.traceId);
+  }
+
+  static final brave.sampler.Sampler TRACE_ID_SAMPLER_THRESHOLD =
+      brave.sampler.ThresholdSampler.create(SAMPLE_RATE);
+
+  /** Like {@link #sampler_threshold(Args)}, except at the lowest rate it supports */
+  @Benchmark
+  public boolean sampler_threshold_oneInTenMillion(Args args) {
+    return TRACE_ID_SAMPLER_THRESHOLD_MIN.isSampled(args.traceId);
+  }
+
+  static final brave.sampler.Sampler TRACE_ID_SAMPLER_THRESHOLD_MIN =
+      brave.sampler.ThresholdSampler.create(0.0000001f);
+
   /**
    * This measures the counting trace id sampler provided with brave-core
    */
@@ -87,6 +110,27 @@ public class SamplerBenchmarks {
 
   static final Sampler TRACE_ID_SAMPLER_COUNTING = CountingSampler.create(SAMPLE_RATE);
 
+  /**
+   * This measures the counting sampler provided with brave-core when many threads make decisions
+   * at the same time, as they would on a busy server. Decisions are serialized on its monitor.
+   */
+  @Benchmark @Group("counting_contended") @GroupThreads(8)
+  public boolean sampler_counting_contended(Args args) {
+    return TRACE_ID_SAMPLER_COUNTING.isSampled(args.traceId);
+  }
+
+  /**
+   * Like {@link #sampler_counting_contended(Args)}, except the counting sampler provided with brave,
+   * whose threads each have their own counter.
+   */
+  @Benchmark @Group("counting4_contended") @GroupThreads(8)
+  public boolean sampler_counting4_contended(Args args) {
+    return TRACE_ID_SAMPLER_COUNTING4.isSampled(args.traceId);
+  }
+
+  static final brave.sampler.Sampler TRACE_ID_SAMPLER_COUNTING4 =
+      brave.sampler.CountingSampler.create(SAMPLE_RATE);
+
   /**
    * Finagle's scala sampler samples using modulo 10000 arithmetic, which allows a minimum sample
    * rate of 0.01%.
@@ -0,0 +1,102 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.Annotation;
+import com.twitter.zipkin.gen.BinaryAnnotation;
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+import com.twitter.zipkin.gen.SpanEncoder;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import zipkin.Constants;
+import zipkin.TraceKeys;
+
+/**
+ * Compares the span encodings used by span collectors. Run {@link #main} to also print the encoded
+ * size of the span.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class SpanCodecBenchmarks {
+  static final Endpoint frontend = Endpoint.builder()
+      .serviceName("frontend").ipv4(172 << 24 | 17 << 16 | 2).port(8080).build();
+  static final Endpoint backend = Endpoint.builder()
+      .serviceName("backend").ipv4(172 << 24 | 17 << 16 | 3).port(9000).build();
+
+  /** A client span, like one recorded by brave-http instrumentation. */
+  static final Span clientSpan = new Span()
+      .setTrace_id(0x86154a4ba6e91385L)
+      .setParent_id(0x86154a4ba6e91385L)
+      .setId(0x4d1e00c0db9010dbL)
+      .setName("get")
+      .setTimestamp(1472470996199000L)
+      .setDuration(207000L)
+      .addToAnnotations(Annotation.create(1472470996199000L, Constants.CLIENT_SEND, frontend))
+      .addToAnnotations(Annotation.create(1472470996238000L, Constants.WIRE_SEND, frontend))
+      .addToAnnotations(Annotation.create(1472470996403000L, Constants.WIRE_RECV, frontend))
+      .addToAnnotations(Annotation.create(1472470996406000L, Constants.CLIENT_RECV, frontend))
+      .addToBinary_annotations(BinaryAnnotation.create(TraceKeys.HTTP_PATH, "/api", frontend))
+      .addToBinary_annotations(BinaryAnnotation.create(TraceKeys.HTTP_URL,
+          "http://backend:9000/api?from=frontend", frontend))
+      .addToBinary_annotations(BinaryAnnotation.create(TraceKeys.HTTP_STATUS_CODE, "200", frontend))
+      .addToBinary_annotations(BinaryAnnotation.address(Constants.SERVER_ADDR, backend));
+
+  static final List<Span> clientSpans = Collections.nCopies(10, clientSpan);
+
+  @Param({"JSON", "THRIFT", "JSON_V2"})
+  String codecName;
+
+  SpanEncoder encoder;
+
+  @Setup public void setup() throws Exception {
+    encoder = (SpanEncoder) SpanEncoder.class.getField(codecName).get(null);
+  }
+
+  @Benchmark public byte[] writeClientSpan() {
+    return encoder.writeSpan(clientSpan);
+  }
+
+  @Benchmark public byte[] writeClientSpans() {
+    return encoder.writeSpans(clientSpans);
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    for (String codecName : new String[] {"JSON", "THRIFT", "JSON_V2"}) {
+      SpanCodecBenchmarks benchmark = new SpanCodecBenchmarks();
+      benchmark.codecName = codecName;
+      try {
+        benchmark.setup();
+      } catch (Exception e) {
+        throw new AssertionError(e);
+      }
+      System.out.println(codecName + ": " + benchmark.writeClientSpan().length + " bytes/span");
+    }
+
+    Options opt = new OptionsBuilder()
+        .include(".*" + SpanCodecBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler("gc")
+        .build();
+
+    new Runner(opt).run();
+  }
+}
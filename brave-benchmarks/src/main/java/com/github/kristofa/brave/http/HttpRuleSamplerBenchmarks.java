@@ -0,0 +1,69 @@
+package com.github.kristofa.brave.http;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Measures the cost of evaluating sampling rules against a request path. */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Threads(1)
+public class HttpRuleSamplerBenchmarks {
+    final HttpRuleSampler sampler = HttpRuleSampler.builder()
+        .addRule("GET", "/health", 0.0f)
+        .addRule("GET", "/metrics", 0.0f)
+        .addRule(null, "/static/**", 0.0f)
+        .addRule(null, "/checkout/**", 1.0f)
+        .addRule("GET", "/api/v1/users/{userId}", 0.5f)
+        .addRule("POST", "/api/v1/users/{userId}/orders", 1.0f)
+        .addRule("GET", "/api/v1/users/{userId}/orders/{orderId}", 0.1f)
+        .addRule(null, "/api/v1/products/**", 0.1f)
+        .addRule(null, "/api/v2/**", 0.5f)
+        .build();
+
+    @Benchmark
+    public Boolean trySample_literal() {
+        return sampler.trySample("GET", "/health");
+    }
+
+    @Benchmark
+    public Boolean trySample_prefix() {
+        return sampler.trySample("GET", "/static/images/logo.png");
+    }
+
+    @Benchmark
+    public Boolean trySample_template() {
+        return sampler.trySample("POST", "/api/v1/users/8f3a2c/orders");
+    }
+
+    @Benchmark
+    public Boolean trySample_noMatch() {
+        return sampler.trySample("GET", "/api/v1/carts/8f3a2c/items");
+    }
+
+    // Convenience main entry-point
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(".*" + HttpRuleSamplerBenchmarks.class.getSimpleName() + ".*")
+            .addProfiler("gc")
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -2,6 +2,7 @@ package com.github.kristofa.brave;
 
 import com.twitter.zipkin.gen.Span;
 import com.twitter.zipkin.gen.SpanCodec;
+import com.twitter.zipkin.gen.SpanEncoder;
 import java.io.IOException;
 import java.util.List;
 
@@ -13,20 +14,29 @@ import java.util.List;
 @Deprecated
 public abstract class AbstractSpanCollector extends FlushingSpanCollector {
 
-  private final SpanCodec codec;
+  private final SpanEncoder encoder;
 
   /**
    * @param flushInterval in seconds. 0 implies spans are {@link #flush() flushed externally.
    */
   public AbstractSpanCollector(SpanCodec codec, SpanCollectorMetricsHandler metrics,
       int flushInterval) {
+    this((SpanEncoder) codec, metrics, flushInterval);
+  }
+
+  /**
+   * @param encoder writes the list of spans passed to {@link #sendSpans}
+   * @param flushInterval in seconds. 0 implies spans are {@link #flush() flushed externally.
+   */
+  public AbstractSpanCollector(SpanEncoder encoder, SpanCollectorMetricsHandler metrics,
+      int flushInterval) {
     super(metrics, flushInterval);
-    this.codec = codec;
+    this.encoder = encoder;
   }
 
   @Override
   protected void reportSpans(List<Span> drained) throws IOException {
-    byte[] encoded = codec.writeSpans(drained);
+    byte[] encoded = encoder.writeSpans(drained);
     sendSpans(encoded);
   }
 
@@ -48,6 +48,10 @@ public class ServerRequestInterceptor {
         } else {
             LOGGER.fine("Received no span state.");
             span = serverTracer.spanFactory().nextSpan(null);
+            if (Boolean.TRUE.equals(sample) && !Brave.context(span).sampled()) {
+                // The adapter decided to sample regardless of the trace sampler
+                span = Brave.toSpan(Brave.context(span).toBuilder().sampled(true).build());
+            }
         }
         SpanId context = Brave.context(span);
 
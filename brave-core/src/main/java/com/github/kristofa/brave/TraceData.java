@@ -12,6 +12,11 @@ public abstract class TraceData {
     public static final TraceData EMPTY = new AutoValue_TraceData(null, null);
     /** An caller didn't report this trace, and neither should this hop. */
     public static final TraceData NOT_SAMPLED = new AutoValue_TraceData(null, false);
+    /**
+     * Indicates an uninstrumented caller, but a new trace should be sampled regardless of the trace
+     * sampler. For example, when a request-aware sampling rule always traces a route.
+     */
+    public static final TraceData SAMPLED = new AutoValue_TraceData(null, true);
 
     /**
      * @deprecated use {@link #create(SpanId)} or one of the constants.
@@ -0,0 +1,361 @@
+package com.github.kristofa.brave.internal;
+
+import com.twitter.zipkin.gen.Annotation;
+import com.twitter.zipkin.gen.AnnotationType;
+import com.twitter.zipkin.gen.BinaryAnnotation;
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+import com.twitter.zipkin.gen.SpanEncoder;
+import java.nio.ByteBuffer;
+import java.util.List;
+import zipkin.Constants;
+
+import static com.github.kristofa.brave.internal.Util.UTF_8;
+
+/**
+ * Writes spans in the <a href="https://zipkin.io/zipkin-api/#/default/post_spans">Zipkin v2 JSON
+ * format</a>, accepted by Zipkin's {@code POST /api/v2/spans} endpoint.
+ *
+ * <p>The v1 format repeats the endpoint on each annotation and binary annotation. Here, it is
+ * written once per span as {@code localEndpoint}. Core annotations ("cs", "sr", etc.) become the
+ * span's {@code kind}, {@code timestamp} and {@code duration}, and the address binary annotations
+ * ("ca", "sa") become its {@code remoteEndpoint}. Remaining binary annotations are written as
+ * string {@code tags}, except {@link AnnotationType#BYTES}, which v2 has no type for.
+ */
+public final class V2JsonSpanEncoder implements SpanEncoder {
+  public static final SpanEncoder INSTANCE = new V2JsonSpanEncoder();
+  /** Chars in an RPC span with a few tags. Growing the buffer allocates more than over-sizing it. */
+  static final int SIZE_ESTIMATE = 1024;
+  static final char[] HEX_DIGITS =
+      {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+  enum Kind {
+    CLIENT, SERVER
+  }
+
+  @Override
+  public byte[] writeSpan(Span span) {
+    StringBuilder b = new StringBuilder(SIZE_ESTIMATE);
+    writeSpan(span, b);
+    return encodeUtf8(b);
+  }
+
+  @Override
+  public byte[] writeSpans(List<Span> spans) {
+    StringBuilder b = new StringBuilder(SIZE_ESTIMATE * spans.size() + 2);
+    b.append('[');
+    for (int i = 0, length = spans.size(); i < length; i++) {
+      if (i > 0) b.append(',');
+      writeSpan(spans.get(i), b);
+    }
+    return encodeUtf8(b.append(']'));
+  }
+
+  static void writeSpan(Span span, StringBuilder b) {
+    List<Annotation> annotations = span.getAnnotations();
+    List<BinaryAnnotation> binaryAnnotations = span.getBinary_annotations();
+
+    // Core annotations collapse into the kind, timestamp and duration
+    Annotation cs = null, cr = null, sr = null, ss = null;
+    for (int i = 0, length = annotations.size(); i < length; i++) {
+      Annotation a = annotations.get(i);
+      if (a.value.length() != 2) continue;
+      if (a.value.equals(Constants.CLIENT_SEND)) {
+        cs = a;
+      } else if (a.value.equals(Constants.CLIENT_RECV)) {
+        cr = a;
+      } else if (a.value.equals(Constants.SERVER_RECV)) {
+        sr = a;
+      } else if (a.value.equals(Constants.SERVER_SEND)) {
+        ss = a;
+      }
+    }
+    BinaryAnnotation ca = null, sa = null, lc = null;
+    for (int i = 0, length = binaryAnnotations.size(); i < length; i++) {
+      BinaryAnnotation a = binaryAnnotations.get(i);
+      if (isAddress(a)) {
+        if (a.key.equals(Constants.CLIENT_ADDR)) {
+          ca = a;
+        } else {
+          sa = a;
+        }
+      } else if (a.key.equals(Constants.LOCAL_COMPONENT)) {
+        lc = a;
+      }
+    }
+
+    // When a span has both client and server annotations, the server ones are kept as annotations
+    Kind kind = null;
+    Annotation begin = null, end = null;
+    String beginValue = null, endValue = null;
+    Endpoint remoteEndpoint = null;
+    if (cs != null || cr != null || (sr == null && ss == null && sa != null)) {
+      kind = Kind.CLIENT;
+      begin = cs;
+      end = cr;
+      beginValue = Constants.CLIENT_SEND;
+      endValue = Constants.CLIENT_RECV;
+      remoteEndpoint = sa != null ? sa.host : null;
+    } else if (sr != null || ss != null || ca != null) {
+      kind = Kind.SERVER;
+      begin = sr;
+      end = ss;
+      beginValue = Constants.SERVER_RECV;
+      endValue = Constants.SERVER_SEND;
+      remoteEndpoint = ca != null ? ca.host : null;
+    }
+
+    Endpoint localEndpoint = begin != null ? begin.host : end != null ? end.host : null;
+    if (localEndpoint == null && lc != null) localEndpoint = lc.host;
+    for (int i = 0, length = annotations.size(); localEndpoint == null && i < length; i++) {
+      localEndpoint = annotations.get(i).host;
+    }
+
+    Long timestamp = span.getTimestamp();
+    Long duration = span.getDuration();
+    // A server span without a timestamp shares its ID with the client that started it
+    boolean shared = kind == Kind.SERVER && timestamp == null;
+    if (timestamp == null && begin != null) timestamp = begin.timestamp;
+    if (duration == null && begin != null && end != null) {
+      duration = Math.max(end.timestamp - begin.timestamp, 1L);
+    }
+
+    b.append("{\"traceId\":\"");
+    if (span.getTrace_id_high() != 0) writeHex(b, span.getTrace_id_high());
+    writeHex(b, span.getTrace_id());
+    b.append('"');
+    Long parentId = span.getParent_id();
+    if (parentId != null && parentId != 0L) {
+      b.append(",\"parentId\":\"");
+      writeHex(b, parentId);
+      b.append('"');
+    }
+    b.append(",\"id\":\"");
+    writeHex(b, span.getId());
+    b.append('"');
+    if (kind != null) b.append(",\"kind\":\"").append(kind.name()).append('"');
+    String name = span.getName();
+    if (name != null && name.length() != 0) {
+      b.append(",\"name\":");
+      writeString(b, name);
+    }
+    if (timestamp != null && timestamp != 0L) b.append(",\"timestamp\":").append(timestamp);
+    if (duration != null && duration != 0L) b.append(",\"duration\":").append(duration);
+    if (Boolean.TRUE.equals(span.isDebug())) b.append(",\"debug\":true");
+    if (shared) b.append(",\"shared\":true");
+    if (localEndpoint != null) {
+      b.append(",\"localEndpoint\":");
+      writeEndpoint(b, localEndpoint);
+    }
+    if (remoteEndpoint != null) {
+      b.append(",\"remoteEndpoint\":");
+      writeEndpoint(b, remoteEndpoint);
+    }
+
+    boolean wroteField = false;
+    for (int i = 0, length = annotations.size(); i < length; i++) {
+      Annotation a = annotations.get(i);
+      if (a.value.equals(beginValue) || a.value.equals(endValue)) continue;
+      b.append(wroteField ? "," : ",\"annotations\":[");
+      wroteField = true;
+      b.append("{\"timestamp\":").append(a.timestamp).append(",\"value\":");
+      writeString(b, a.value);
+      b.append('}');
+    }
+    if (wroteField) b.append(']');
+
+    wroteField = false;
+    for (int i = 0, length = binaryAnnotations.size(); i < length; i++) {
+      BinaryAnnotation a = binaryAnnotations.get(i);
+      if (a.type == AnnotationType.BYTES || isAddress(a)) continue;
+      b.append(wroteField ? "," : ",\"tags\":{");
+      wroteField = true;
+      writeString(b, a.key);
+      b.append(':');
+      writeString(b, tagValue(a));
+    }
+    if (wroteField) b.append('}');
+    b.append('}');
+  }
+
+  static boolean isAddress(BinaryAnnotation a) {
+    return a.type == AnnotationType.BOOL
+        && (a.key.equals(Constants.CLIENT_ADDR) || a.key.equals(Constants.SERVER_ADDR));
+  }
+
+  /** v2 tags are strings, so numeric and boolean values are written in their text form. */
+  static String tagValue(BinaryAnnotation a) {
+    switch (a.type) {
+      case BOOL:
+        return a.value.length == 1 && a.value[0] == 1 ? "true" : "false";
+      case I16:
+        return String.valueOf(ByteBuffer.wrap(a.value).getShort());
+      case I32:
+        return String.valueOf(ByteBuffer.wrap(a.value).getInt());
+      case I64:
+        return String.valueOf(ByteBuffer.wrap(a.value).getLong());
+      case DOUBLE:
+        return String.valueOf(ByteBuffer.wrap(a.value).getDouble());
+      default:
+        return new String(a.value, UTF_8);
+    }
+  }
+
+  static void writeEndpoint(StringBuilder b, Endpoint endpoint) {
+    b.append('{');
+    boolean wroteField = false;
+    String serviceName = endpoint.service_name;
+    if (serviceName != null && serviceName.length() != 0) {
+      b.append("\"serviceName\":");
+      writeString(b, serviceName);
+      wroteField = true;
+    }
+    if (endpoint.ipv4 != 0) {
+      if (wroteField) b.append(',');
+      b.append("\"ipv4\":\"");
+      writeIpv4(b, endpoint.ipv4);
+      b.append('"');
+      wroteField = true;
+    }
+    if (endpoint.ipv6 != null && endpoint.ipv6.length == 16) {
+      if (wroteField) b.append(',');
+      b.append("\"ipv6\":\"");
+      writeIpv6(b, endpoint.ipv6);
+      b.append('"');
+      wroteField = true;
+    }
+    int port = endpoint.port != null ? endpoint.port & 0xffff : 0;
+    if (port != 0) {
+      if (wroteField) b.append(',');
+      b.append("\"port\":").append(port);
+    }
+    b.append('}');
+  }
+
+  static void writeHex(StringBuilder b, long v) {
+    for (int shift = 60; shift >= 0; shift -= 4) {
+      b.append(HEX_DIGITS[(int) (v >>> shift) & 0xf]);
+    }
+  }
+
+  static void writeIpv4(StringBuilder b, int ipv4) {
+    b.append(ipv4 >> 24 & 0xff).append('.')
+        .append(ipv4 >> 16 & 0xff).append('.')
+        .append(ipv4 >> 8 & 0xff).append('.')
+        .append(ipv4 & 0xff);
+  }
+
+  /** Writes the address per RFC 5952, compressing the longest run of zero groups. */
+  static void writeIpv6(StringBuilder b, byte[] ipv6) {
+    int zeroStart = -1, zeroLength = 0;
+    for (int i = 0; i < 8; ) {
+      int start = i;
+      while (i < 8 && ipv6[i * 2] == 0 && ipv6[i * 2 + 1] == 0) i++;
+      if (i - start > zeroLength) {
+        zeroStart = start;
+        zeroLength = i - start;
+      }
+      if (i == start) i++;
+    }
+    if (zeroLength < 2) zeroStart = -1; // a single zero group isn't compressed
+
+    for (int i = 0; i < 8; i++) {
+      if (i == zeroStart) {
+        b.append("::");
+        i += zeroLength - 1;
+        continue;
+      }
+      if (i != 0 && i != zeroStart + zeroLength) b.append(':');
+      b.append(Integer.toHexString((ipv6[i * 2] & 0xff) << 8 | (ipv6[i * 2 + 1] & 0xff)));
+    }
+  }
+
+  /**
+   * Encodes into an exactly sized array, which avoids copying into a {@linkplain String} and the
+   * over-allocation of {@link String#getBytes(java.nio.charset.Charset)}.
+   */
+  static byte[] encodeUtf8(CharSequence chars) {
+    int length = chars.length(), size = 0;
+    for (int i = 0; i < length; i++) {
+      char c = chars.charAt(i);
+      if (c < 0x80) {
+        size++;
+      } else if (c < 0x800) {
+        size += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < length
+          && Character.isLowSurrogate(chars.charAt(i + 1))) {
+        size += 4;
+        i++;
+      } else if (isSurrogate(c)) {
+        size++; // unpaired, so written as '?', like String.getBytes
+      } else {
+        size += 3;
+      }
+    }
+
+    byte[] result = new byte[size];
+    int pos = 0;
+    for (int i = 0; i < length; i++) {
+      char c = chars.charAt(i);
+      if (c < 0x80) {
+        result[pos++] = (byte) c;
+      } else if (c < 0x800) {
+        result[pos++] = (byte) (0xc0 | (c >> 6));
+        result[pos++] = (byte) (0x80 | (c & 0x3f));
+      } else if (Character.isHighSurrogate(c) && i + 1 < length
+          && Character.isLowSurrogate(chars.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+        result[pos++] = (byte) (0xf0 | (codePoint >> 18));
+        result[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+        result[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+        result[pos++] = (byte) (0x80 | (codePoint & 0x3f));
+      } else if (isSurrogate(c)) {
+        result[pos++] = '?';
+      } else {
+        result[pos++] = (byte) (0xe0 | (c >> 12));
+        result[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+        result[pos++] = (byte) (0x80 | (c & 0x3f));
+      }
+    }
+    return result;
+  }
+
+  static boolean isSurrogate(char c) { // Character.isSurrogate is Java 7+
+    return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+  }
+
+  static void writeString(StringBuilder b, String value) {
+    b.append('"');
+    for (int i = 0, length = value.length(); i < length; i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          b.append("\\\"");
+          break;
+        case '\\':
+          b.append("\\\\");
+          break;
+        case '\n':
+          b.append("\\n");
+          break;
+        case '\r':
+          b.append("\\r");
+          break;
+        case '\t':
+          b.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            b.append("\\u00");
+            b.append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xf, 16));
+          } else {
+            b.append(c);
+          }
+      }
+    }
+    b.append('"');
+  }
+
+  V2JsonSpanEncoder() {
+  }
+}
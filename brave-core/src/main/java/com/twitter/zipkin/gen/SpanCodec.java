@@ -3,7 +3,7 @@ package com.twitter.zipkin.gen;
 import com.github.kristofa.brave.internal.DefaultSpanCodec;
 import java.util.List;
 
-public interface SpanCodec {
+public interface SpanCodec extends SpanEncoder {
   SpanCodec THRIFT = DefaultSpanCodec.THRIFT;
   SpanCodec JSON = DefaultSpanCodec.JSON;
 
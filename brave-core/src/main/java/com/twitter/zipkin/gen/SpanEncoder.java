@@ -0,0 +1,20 @@
+package com.twitter.zipkin.gen;
+
+import com.github.kristofa.brave.internal.DefaultSpanCodec;
+import com.github.kristofa.brave.internal.V2JsonSpanEncoder;
+import java.util.List;
+
+/** Writes spans for a transport. Unlike {@link SpanCodec}, formats here needn't be readable. */
+public interface SpanEncoder {
+  SpanEncoder THRIFT = DefaultSpanCodec.THRIFT;
+  SpanEncoder JSON = DefaultSpanCodec.JSON;
+  /**
+   * Zipkin v2 JSON, which writes the endpoint once per span instead of once per annotation. This
+   * requires a collector that accepts the v2 format.
+   */
+  SpanEncoder JSON_V2 = V2JsonSpanEncoder.INSTANCE;
+
+  byte[] writeSpan(Span span);
+
+  byte[] writeSpans(List<Span> spans);
+}
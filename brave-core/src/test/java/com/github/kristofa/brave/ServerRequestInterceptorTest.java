@@ -64,6 +64,23 @@ public class ServerRequestInterceptorTest {
             .isEqualTo(SPAN_NAME.toLowerCase());
     }
 
+    @Test
+    public void handleNoState_whenSampledRegardlessOfTraceSampler() {
+        brave = new Brave.Builder(ENDPOINT).reporter(spans::add)
+            .traceSampler(Sampler.NEVER_SAMPLE).build();
+        interceptor = new ServerRequestInterceptor(brave.serverTracer());
+        when(adapter.getTraceData()).thenReturn(TraceData.SAMPLED);
+        when(adapter.getSpanName()).thenReturn(SPAN_NAME);
+        when(adapter.requestAnnotations()).thenReturn(Collections.EMPTY_LIST);
+
+        interceptor.handle(adapter);
+
+        SpanId context = Brave.context(brave.serverTracer().currentSpan().get());
+        assertThat(context.sampled()).isTrue();
+        assertThat(context.nullableParentId()).isNull();
+        assertThat(context.shared).isFalse();
+    }
+
     @Test
     public void handleSampleRequestWithParentSpanId() {
         SpanId spanId = SpanId.builder()
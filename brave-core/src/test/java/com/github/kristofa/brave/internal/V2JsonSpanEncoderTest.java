@@ -0,0 +1,162 @@
+package com.github.kristofa.brave.internal;
+
+import com.github.kristofa.brave.SpanId;
+import com.twitter.zipkin.gen.Annotation;
+import com.twitter.zipkin.gen.AnnotationType;
+import com.twitter.zipkin.gen.BinaryAnnotation;
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+import com.twitter.zipkin.gen.SpanCodec;
+import com.twitter.zipkin.gen.SpanEncoder;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.Test;
+import zipkin.Constants;
+
+import static com.github.kristofa.brave.internal.DefaultSpanCodec.newSpan;
+import static com.github.kristofa.brave.internal.Util.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class V2JsonSpanEncoderTest {
+
+  static {
+    InternalSpan.initializeInstanceForTests();
+  }
+
+  Endpoint browser = Endpoint.create("browser-client", 1 << 24 | 2 << 16 | 3);
+  Endpoint web = Endpoint.builder()
+      .serviceName("web")
+      .ipv4(124 << 24 | 13 << 16 | 90 << 8 | 3)
+      // Cheat so we don't have to catch an exception here
+      .ipv6(sun.net.util.IPAddressUtil.textToNumericFormatV6("2001:db8::c001"))
+      .port(80).build();
+
+  Span span = newSpan(SpanId.builder().spanId(-692101025335252320L).build()) // browser calls web
+      .setName("get")
+      .setTimestamp(1444438900939000L)
+      .setDuration(376000L)
+      .addToAnnotations(Annotation.create(1444438900939000L, Constants.SERVER_RECV, web))
+      .addToAnnotations(Annotation.create(1444438901315000L, Constants.SERVER_SEND, web))
+      .addToBinary_annotations(BinaryAnnotation.address(Constants.CLIENT_ADDR, browser));
+
+  @Test
+  public void writeSpan_server() {
+    assertThat(new String(SpanEncoder.JSON_V2.writeSpan(span), UTF_8)).isEqualTo("{"
+        + "\"traceId\":\"f66529c8cc356aa0\","
+        + "\"id\":\"f66529c8cc356aa0\","
+        + "\"kind\":\"SERVER\","
+        + "\"name\":\"get\","
+        + "\"timestamp\":1444438900939000,"
+        + "\"duration\":376000,"
+        + "\"localEndpoint\":"
+        + "{\"serviceName\":\"web\",\"ipv4\":\"124.13.90.3\",\"ipv6\":\"2001:db8::c001\",\"port\":80},"
+        + "\"remoteEndpoint\":{\"serviceName\":\"browser-client\",\"ipv4\":\"1.2.0.3\"}"
+        + "}");
+  }
+
+  /** A server span without a timestamp was started by its client, so the ID is shared. */
+  @Test
+  public void writeSpan_sharedServer() {
+    span.setTimestamp(null).setDuration(null);
+
+    assertThat(new String(SpanEncoder.JSON_V2.writeSpan(span), UTF_8))
+        .contains("\"timestamp\":1444438900939000,\"duration\":376000,\"shared\":true");
+  }
+
+  @Test
+  public void writeSpan_client() {
+    span = newSpan(SpanId.builder().traceIdHigh(1L).traceId(2L).parentId(2L).spanId(3L).build())
+        .setName("get")
+        .addToAnnotations(Annotation.create(1L, Constants.CLIENT_SEND, browser))
+        .addToAnnotations(Annotation.create(2L, "ws", browser))
+        .addToAnnotations(Annotation.create(5L, Constants.CLIENT_RECV, browser))
+        .addToBinary_annotations(BinaryAnnotation.create("http.path", "/api", browser))
+        .addToBinary_annotations(BinaryAnnotation.address(Constants.SERVER_ADDR, web));
+
+    assertThat(new String(SpanEncoder.JSON_V2.writeSpan(span), UTF_8)).isEqualTo("{"
+        + "\"traceId\":\"00000000000000010000000000000002\","
+        + "\"parentId\":\"0000000000000002\","
+        + "\"id\":\"0000000000000003\","
+        + "\"kind\":\"CLIENT\","
+        + "\"name\":\"get\","
+        + "\"timestamp\":1,"
+        + "\"duration\":4,"
+        + "\"localEndpoint\":{\"serviceName\":\"browser-client\",\"ipv4\":\"1.2.0.3\"},"
+        + "\"remoteEndpoint\":"
+        + "{\"serviceName\":\"web\",\"ipv4\":\"124.13.90.3\",\"ipv6\":\"2001:db8::c001\",\"port\":80},"
+        + "\"annotations\":[{\"timestamp\":2,\"value\":\"ws\"}],"
+        + "\"tags\":{\"http.path\":\"/api\"}"
+        + "}");
+  }
+
+  @Test
+  public void writeSpan_local() {
+    span = newSpan(SpanId.builder().traceId(1L).spanId(1L).debug(true).build())
+        .setName("encode")
+        .setTimestamp(1L)
+        .setDuration(2L)
+        .addToBinary_annotations(BinaryAnnotation.create(Constants.LOCAL_COMPONENT, "codec", web));
+
+    assertThat(new String(SpanEncoder.JSON_V2.writeSpan(span), UTF_8)).isEqualTo("{"
+        + "\"traceId\":\"0000000000000001\","
+        + "\"id\":\"0000000000000001\","
+        + "\"name\":\"encode\","
+        + "\"timestamp\":1,"
+        + "\"duration\":2,"
+        + "\"debug\":true,"
+        + "\"localEndpoint\":"
+        + "{\"serviceName\":\"web\",\"ipv4\":\"124.13.90.3\",\"ipv6\":\"2001:db8::c001\",\"port\":80},"
+        + "\"tags\":{\"lc\":\"codec\"}"
+        + "}");
+  }
+
+  @Test
+  public void writeSpan_tagTypes() {
+    span.addToBinary_annotations(BinaryAnnotation.create("bool", new byte[] {1},
+        AnnotationType.BOOL, web))
+        .addToBinary_annotations(BinaryAnnotation.create("i32",
+            ByteBuffer.allocate(4).putInt(-1).array(), AnnotationType.I32, web))
+        .addToBinary_annotations(BinaryAnnotation.create("double",
+            ByteBuffer.allocate(8).putDouble(1.5).array(), AnnotationType.DOUBLE, web))
+        .addToBinary_annotations(BinaryAnnotation.create("bytes", new byte[] {1, 2},
+            AnnotationType.BYTES, web))
+        .addToBinary_annotations(BinaryAnnotation.create("error", "\"quoted\"\n", web));
+
+    assertThat(new String(SpanEncoder.JSON_V2.writeSpan(span), UTF_8)).endsWith(
+        "\"tags\":{\"bool\":\"true\",\"i32\":\"-1\",\"double\":\"1.5\","
+            + "\"error\":\"\\\"quoted\\\"\\n\"}}");
+  }
+
+  @Test
+  public void writeSpans() {
+    String one = new String(SpanEncoder.JSON_V2.writeSpan(span), UTF_8);
+
+    assertThat(new String(SpanEncoder.JSON_V2.writeSpans(Arrays.asList(span, span)), UTF_8))
+        .isEqualTo("[" + one + "," + one + "]");
+  }
+
+  @Test
+  public void writeIpv6() {
+    for (String ipv6 : new String[] {"::1", "1::", "2001:db8::c001", "2001:db8:0:1:1:1:1:1",
+        "2001:0:0:1::1", "fe80::1ff:fe23:4567:890a"}) {
+      StringBuilder b = new StringBuilder();
+      V2JsonSpanEncoder.writeIpv6(b, sun.net.util.IPAddressUtil.textToNumericFormatV6(ipv6));
+      assertThat(b.toString()).isEqualTo(ipv6);
+    }
+  }
+
+  @Test
+  public void encodeUtf8() {
+    for (String value : new String[] {"", "ascii", "\u00e9", "\u2603", "\ud83d\ude00", "\ud83d",
+        "a\ude00b"}) {
+      assertThat(V2JsonSpanEncoder.encodeUtf8(value)).isEqualTo(value.getBytes(UTF_8));
+    }
+  }
+
+  /** The endpoint is written once per span, instead of once per annotation. */
+  @Test
+  public void smallerThanV1Json() {
+    assertThat(SpanEncoder.JSON_V2.writeSpan(span).length)
+        .isLessThan(SpanCodec.JSON.writeSpan(span).length);
+  }
+}
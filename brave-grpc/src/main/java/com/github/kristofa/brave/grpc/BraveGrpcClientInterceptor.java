@@ -43,11 +43,22 @@ public final class BraveGrpcClientInterceptor implements ClientInterceptor {
 
     public static final class Builder {
         final Brave brave;
+        boolean binaryPropagation;
 
         Builder(Brave brave) { // intentionally hidden
             this.brave = Util.checkNotNull(brave, "brave");
         }
 
+        /**
+         * When true, a sampled span ID is sent as a single binary "b3-bin" metadata value instead
+         * of hex-encoded "x-b3-*" values. Only enable this once servers use a version of {@link
+         * BraveGrpcServerInterceptor} that reads it. Defaults to false.
+         */
+        public Builder binaryPropagation(boolean binaryPropagation) {
+            this.binaryPropagation = binaryPropagation;
+            return this;
+        }
+
         public BraveGrpcClientInterceptor build() {
             return new BraveGrpcClientInterceptor(this);
         }
@@ -56,11 +67,13 @@ public final class BraveGrpcClientInterceptor implements ClientInterceptor {
     private final ClientRequestInterceptor clientRequestInterceptor;
     private final ClientResponseInterceptor clientResponseInterceptor;
     private final ClientSpanThreadBinder clientSpanThreadBinder;
+    private final boolean binaryPropagation;
 
     BraveGrpcClientInterceptor(Builder b) { // intentionally hidden
         this.clientRequestInterceptor = b.brave.clientRequestInterceptor();
         this.clientResponseInterceptor = b.brave.clientResponseInterceptor();
         this.clientSpanThreadBinder = b.brave.clientSpanThreadBinder();
+        this.binaryPropagation = b.binaryPropagation;
     }
 
     /**
@@ -71,6 +84,7 @@ public final class BraveGrpcClientInterceptor implements ClientInterceptor {
         this.clientRequestInterceptor = checkNotNull(brave.clientRequestInterceptor());
         this.clientResponseInterceptor = checkNotNull(brave.clientResponseInterceptor());
         this.clientSpanThreadBinder = checkNotNull(brave.clientSpanThreadBinder());
+        this.binaryPropagation = false;
     }
 
     @Override
@@ -80,7 +94,7 @@ public final class BraveGrpcClientInterceptor implements ClientInterceptor {
 
             @Override
             public void start(Listener<RespT> responseListener, Metadata headers) {
-                clientRequestInterceptor.handle(new GrpcClientRequestAdapter<>(method, headers));
+                clientRequestInterceptor.handle(new GrpcClientRequestAdapter<>(method, headers, binaryPropagation));
                 final Span currentClientSpan = clientSpanThreadBinder.getCurrentClientSpan();
                 super.start(new SimpleForwardingClientCallListener<RespT>(responseListener) {
                     @Override
@@ -103,10 +117,17 @@ public final class BraveGrpcClientInterceptor implements ClientInterceptor {
 
         private final MethodDescriptor<ReqT, RespT> method;
         private final Metadata headers;
+        private final boolean binaryPropagation;
 
         public GrpcClientRequestAdapter(MethodDescriptor<ReqT, RespT> method, Metadata headers) {
+            this(method, headers, false);
+        }
+
+        GrpcClientRequestAdapter(MethodDescriptor<ReqT, RespT> method, Metadata headers,
+            boolean binaryPropagation) {
             this.method = checkNotNull(method);
             this.headers = checkNotNull(headers);
+            this.binaryPropagation = binaryPropagation;
         }
 
         @Override
@@ -118,6 +139,10 @@ public final class BraveGrpcClientInterceptor implements ClientInterceptor {
         public void addSpanIdToRequest(@Nullable SpanId spanId) {
             if (spanId == null) {
                 headers.put(BravePropagationKeys.Sampled, "0");
+            } else if (binaryPropagation) {
+                // spans are only propagated when sampled, so make that explicit in the flags
+                headers.put(BravePropagationKeys.SpanIdBin, Boolean.TRUE.equals(spanId.sampled())
+                    ? spanId : spanId.toBuilder().sampled(true).build());
             } else {
                 headers.put(BravePropagationKeys.Sampled, "1");
                 headers.put(BravePropagationKeys.TraceId, spanId.traceIdString());
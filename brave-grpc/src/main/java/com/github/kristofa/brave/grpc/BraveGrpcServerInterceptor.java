@@ -98,6 +98,9 @@ public final class BraveGrpcServerInterceptor implements ServerInterceptor {
 
         @Override
         public TraceData getTraceData() {
+            SpanId spanIdBin = requestHeaders.get(BravePropagationKeys.SpanIdBin);
+            if (spanIdBin != null) return TraceData.create(spanIdBin);
+
             String sampled = requestHeaders.get(BravePropagationKeys.Sampled);
             String parentSpanId = requestHeaders.get(BravePropagationKeys.ParentSpanId);
             String traceId = requestHeaders.get(BravePropagationKeys.TraceId);
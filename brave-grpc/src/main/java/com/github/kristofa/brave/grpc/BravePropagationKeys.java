@@ -15,5 +15,11 @@ class BravePropagationKeys {
         Metadata.Key.of(BraveHttpHeaders.TraceId.getName(), Metadata.ASCII_STRING_MARSHALLER);
     public static Metadata.Key<String> Sampled =
         Metadata.Key.of(BraveHttpHeaders.Sampled.getName(), Metadata.ASCII_STRING_MARSHALLER);
+    /**
+     * Binary alternative to the above keys, which is read first. A sampled span ID is sent when
+     * {@link BraveGrpcClientInterceptor.Builder#binaryPropagation(boolean)} is enabled.
+     */
+    public static Metadata.Key<com.github.kristofa.brave.SpanId> SpanIdBin =
+        Metadata.Key.of("b3-bin", SpanIdMarshaller.INSTANCE);
 
 }
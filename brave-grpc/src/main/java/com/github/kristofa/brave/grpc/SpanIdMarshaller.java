@@ -0,0 +1,35 @@
+package com.github.kristofa.brave.grpc;
+
+import com.github.kristofa.brave.SpanId;
+import io.grpc.Metadata;
+import java.util.Arrays;
+
+/**
+ * Encodes a {@link SpanId} as a version byte followed by {@link SpanId#bytes()}.
+ *
+ * <p>This is 33 or 41 bytes, and avoids formatting and parsing hex on each call.
+ */
+final class SpanIdMarshaller implements Metadata.BinaryMarshaller<SpanId> {
+    static final SpanIdMarshaller INSTANCE = new SpanIdMarshaller();
+    static final byte VERSION = 0;
+
+    @Override
+    public byte[] toBytes(SpanId spanId) {
+        byte[] bytes = spanId.bytes();
+        byte[] result = new byte[bytes.length + 1];
+        result[0] = VERSION;
+        System.arraycopy(bytes, 0, result, 1, bytes.length);
+        return result;
+    }
+
+    /** Returns null when the version is unknown or the data is malformed. */
+    @Override
+    public SpanId parseBytes(byte[] bytes) {
+        if (bytes.length == 0 || bytes[0] != VERSION) return null;
+        if (bytes.length != 33 && bytes.length != 41) return null;
+        return SpanId.fromBytes(Arrays.copyOfRange(bytes, 1, bytes.length));
+    }
+
+    SpanIdMarshaller() {
+    }
+}
@@ -71,4 +71,28 @@ public class GrpcClientRequestAdapterTest {
     assertThat(metadata.get(BravePropagationKeys.SpanId))
         .isEqualTo("2");
   }
+
+  @Test
+  public void binaryPropagation() throws Exception {
+    adapter = new GrpcClientRequestAdapter(GreeterGrpc.METHOD_SAY_HELLO, metadata, true);
+    SpanId spanId = SpanId.builder().traceId(1234L).parentId(1234L).spanId(5678L).build();
+    adapter.addSpanIdToRequest(spanId);
+
+    assertThat(metadata.keys())
+        .containsExactly("b3-bin");
+
+    SpanId sent = metadata.get(BravePropagationKeys.SpanIdBin);
+    assertThat(sent).isEqualTo(spanId);
+    assertThat(sent.parentId).isEqualTo(1234L);
+    assertThat(sent.sampled()).isTrue();
+  }
+
+  @Test
+  public void binaryPropagation_nullSpanIdMeansUnsampled() throws Exception {
+    adapter = new GrpcClientRequestAdapter(GreeterGrpc.METHOD_SAY_HELLO, metadata, true);
+    adapter.addSpanIdToRequest(null);
+
+    assertThat(metadata.keys())
+        .containsExactly("x-b3-sampled");
+  }
 }
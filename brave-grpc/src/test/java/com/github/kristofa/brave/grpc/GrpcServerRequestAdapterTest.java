@@ -171,4 +171,25 @@ public class GrpcServerRequestAdapterTest {
     assertEquals(IdConversion.convertToLong(SPAN_ID), spanId.spanId);
     assertNull(spanId.nullableParentId());
   }
+
+  @Test
+  public void getTraceDataBinary() {
+    SpanId expected = SpanId.builder().traceId(1L).parentId(1L).spanId(2L).sampled(true).build();
+    metadata.put(BravePropagationKeys.SpanIdBin, expected);
+
+    TraceData traceData = adapter.getTraceData();
+    assertTrue(traceData.getSample());
+    assertEquals(expected, traceData.getSpanId());
+    assertEquals(1L, traceData.getSpanId().parentId);
+  }
+
+  @Test
+  public void getTraceDataBinary_unknownVersionUsesAsciiKeys() {
+    metadata.put(Metadata.Key.of("b3-bin", Metadata.BINARY_BYTE_MARSHALLER), new byte[] {1, 2});
+    metadata.put(BravePropagationKeys.Sampled, "0");
+
+    TraceData traceData = adapter.getTraceData();
+    assertFalse(traceData.getSample());
+    assertNull(traceData.getSpanId());
+  }
 }
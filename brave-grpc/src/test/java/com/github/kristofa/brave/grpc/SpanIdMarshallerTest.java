@@ -0,0 +1,63 @@
+package com.github.kristofa.brave.grpc;
+
+import com.github.kristofa.brave.SpanId;
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SpanIdMarshallerTest {
+  SpanIdMarshaller marshaller = SpanIdMarshaller.INSTANCE;
+
+  @Test
+  public void roundTrip() {
+    SpanId spanId = SpanId.builder().traceId(1234L).parentId(1234L).spanId(5678L).build();
+
+    SpanId result = marshaller.parseBytes(marshaller.toBytes(spanId));
+    assertThat(result).isEqualTo(spanId); // equals only considers the trace and span IDs
+    assertThat(result.parentId).isEqualTo(1234L);
+    assertThat(result.flags).isEqualTo(spanId.flags);
+  }
+
+  @Test
+  public void roundTrip_rootSpan() {
+    SpanId spanId = SpanId.builder().traceId(1234L).spanId(1234L).parentId(null).build();
+
+    SpanId result = marshaller.parseBytes(marshaller.toBytes(spanId));
+    assertThat(result).isEqualTo(spanId);
+    assertThat(result.nullableParentId()).isNull();
+  }
+
+  @Test
+  public void roundTrip_flags() {
+    SpanId spanId = SpanId.builder().traceId(1L).spanId(2L).sampled(true).debug(true).build();
+
+    assertThat(marshaller.parseBytes(marshaller.toBytes(spanId)).flags)
+        .isEqualTo(spanId.flags);
+  }
+
+  @Test
+  public void layoutMatchesSpanIdBytes() {
+    SpanId spanId = SpanId.builder().traceIdHigh(-1L).traceId(-2L).spanId(2L).sampled(true).build();
+
+    byte[] bytes = marshaller.toBytes(spanId);
+    assertThat(bytes).hasSize(41);
+    assertThat(bytes[0]).isEqualTo(SpanIdMarshaller.VERSION);
+    assertThat(Arrays.copyOfRange(bytes, 1, bytes.length))
+        .isEqualTo(spanId.bytes());
+  }
+
+  @Test
+  public void unknownVersionIsIgnored() {
+    byte[] bytes = marshaller.toBytes(SpanId.builder().traceId(1L).spanId(1L).build());
+    bytes[0] = 1;
+
+    assertThat(marshaller.parseBytes(bytes)).isNull();
+  }
+
+  @Test
+  public void malformedIsIgnored() {
+    assertThat(marshaller.parseBytes(new byte[0])).isNull();
+    assertThat(marshaller.parseBytes(new byte[32])).isNull();
+  }
+}
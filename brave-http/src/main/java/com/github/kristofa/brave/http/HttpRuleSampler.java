@@ -0,0 +1,230 @@
+package com.github.kristofa.brave.http;
+
+import com.github.kristofa.brave.Sampler;
+import com.github.kristofa.brave.internal.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
+
+/**
+ * Samples requests according to rules that match on the http method and path. Requests that match
+ * no rule defer to the trace ID {@link Sampler} configured in Brave.
+ *
+ * <p>For example, to never trace health checks, always trace checkout, and leave the rest to a
+ * 1% trace ID sampler:
+ * <pre>{@code
+ * httpSampler = HttpRuleSampler.builder()
+ *     .addRule("GET", "/health", 0.0f)
+ *     .addRule(null, "/checkout/**", 1.0f)
+ *     .build();
+ * brave = new Brave.Builder("my-service").traceSampler(Sampler.create(0.01f)).build();
+ * filter = BraveServletFilter.builder(brave).httpSampler(httpSampler).build();
+ * }</pre>
+ *
+ * <h3>Paths</h3>
+ *
+ * <p>Paths are matched by segment. A segment of "*" or "{name}" matches any single segment, so
+ * "/users/{userId}" matches "/users/42". A path ending in "/**" is a prefix: "/checkout/**" matches
+ * "/checkout" and any path under it, but not "/checkouts".
+ *
+ * <p>When more than one rule matches, literal segments win over wildcard ones, a whole path wins
+ * over a prefix, and a longer prefix wins over a shorter one. Rules with a method win over those
+ * without.
+ *
+ * <h3>Implementation</h3>
+ *
+ * <p>Rules are compiled into a trie of path segments when built. Matching walks the path once,
+ * comparing segments in place, so it allocates nothing and costs little more than the number of
+ * segments in the path.
+ */
+public final class HttpRuleSampler extends HttpSampler {
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        final List<Rule> rules = new ArrayList<Rule>();
+
+        Builder() { // intentionally hidden
+        }
+
+        /**
+         * @param method the http method to match, such as "GET", or null to match any method
+         * @param path the path to match, such as "/users/{userId}", or "/checkout/**"
+         * @param rate 0 means never sample, 1 means always sample. Otherwise, a rate accepted by
+         * {@link Sampler#create(float)}.
+         */
+        public Builder addRule(@Nullable String method, String path, float rate) {
+            checkNotNull(path, "path");
+            if (!path.startsWith("/")) {
+                throw new IllegalArgumentException("path should start with /: was " + path);
+            }
+            Sampler sampler = rate == 0.0f ? Sampler.NEVER_SAMPLE
+                : rate == 1.0f ? Sampler.ALWAYS_SAMPLE
+                : Sampler.create(rate);
+            rules.add(new Rule(method, path, sampler));
+            return this;
+        }
+
+        public HttpRuleSampler build() {
+            Node root = new Node();
+            for (Rule rule : rules) {
+                rule.addTo(root);
+            }
+            return new HttpRuleSampler(root, rules.toString());
+        }
+    }
+
+    final Node root;
+    final String rules;
+
+    HttpRuleSampler(Node root, String rules) {
+        this.root = root;
+        this.rules = rules;
+    }
+
+    @Override public Boolean trySample(String method, String path) {
+        Sampler sampler = match(root, method, path, 0);
+        if (sampler == null) return null;
+        // the trace ID isn't known yet, so samplers here can't use it
+        return sampler.isSampled(0L);
+    }
+
+    /** Returns the most specific sampler that matches the path from the position, if any. */
+    @Nullable
+    static Sampler match(Node node, String method, String path, int pos) {
+        int length = path.length();
+        while (pos < length && path.charAt(pos) == '/') pos++;
+        if (pos == length) {
+            Sampler exact = node.exact.find(method);
+            return exact != null ? exact : node.prefix.find(method);
+        }
+
+        int end = path.indexOf('/', pos);
+        if (end == -1) end = length;
+
+        Node literal = node.literal(path, pos, end);
+        if (literal != null) {
+            Sampler sampler = match(literal, method, path, end);
+            if (sampler != null) return sampler;
+        }
+        if (node.wildcard != null) {
+            Sampler sampler = match(node.wildcard, method, path, end);
+            if (sampler != null) return sampler;
+        }
+        return node.prefix.find(method);
+    }
+
+    @Override public String toString() {
+        return "HttpRuleSampler(" + rules + ")";
+    }
+
+    static final class Rule {
+        final String method, path;
+        final Sampler sampler;
+
+        Rule(String method, String path, Sampler sampler) {
+            this.method = method;
+            this.path = path;
+            this.sampler = sampler;
+        }
+
+        void addTo(Node root) {
+            Node node = root;
+            boolean prefix = false;
+            String[] segments = path.split("/");
+            for (int i = 0; i < segments.length; i++) {
+                String segment = segments[i];
+                if (segment.isEmpty()) continue;
+                if (segment.equals("**")) {
+                    if (i != segments.length - 1) {
+                        throw new IllegalArgumentException("** is only allowed at the end: " + path);
+                    }
+                    prefix = true;
+                } else if (segment.equals("*")
+                    || (segment.startsWith("{") && segment.endsWith("}"))) {
+                    if (node.wildcard == null) node.wildcard = new Node();
+                    node = node.wildcard;
+                } else {
+                    node = node.addLiteral(segment);
+                }
+            }
+            Rules rules = prefix ? node.prefix : node.exact;
+            if (!rules.add(method, sampler)) {
+                throw new IllegalArgumentException("duplicate rule: " + this);
+            }
+        }
+
+        @Override public String toString() {
+            return (method != null ? method + " " : "") + path + "=" + sampler;
+        }
+    }
+
+    /** A path segment in the trie. */
+    static final class Node {
+        String[] literals = new String[0];
+        Node[] children = new Node[0];
+        Node wildcard;
+        final Rules exact = new Rules(), prefix = new Rules();
+
+        Node addLiteral(String segment) {
+            for (int i = 0; i < literals.length; i++) {
+                if (literals[i].equals(segment)) return children[i];
+            }
+            int i = literals.length;
+            literals = Arrays.copyOf(literals, i + 1);
+            children = Arrays.copyOf(children, i + 1);
+            literals[i] = segment;
+            return children[i] = new Node();
+        }
+
+        /** Returns the child whose segment equals {@code path.substring(pos, end)}, if any */
+        @Nullable
+        Node literal(String path, int pos, int end) {
+            int length = end - pos;
+            for (int i = 0; i < literals.length; i++) {
+                String literal = literals[i];
+                if (literal.length() == length && path.regionMatches(pos, literal, 0, length)) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+    }
+
+    /** Samplers that end at a node, by http method. */
+    static final class Rules {
+        String[] methods = new String[0];
+        Sampler[] samplers = new Sampler[0];
+        Sampler anyMethod;
+
+        /** Returns false if there's already a rule for this method. */
+        boolean add(@Nullable String method, Sampler sampler) {
+            if (method == null) {
+                if (anyMethod != null) return false;
+                anyMethod = sampler;
+                return true;
+            }
+            for (String existing : methods) {
+                if (existing.equals(method)) return false;
+            }
+            int i = methods.length;
+            methods = Arrays.copyOf(methods, i + 1);
+            samplers = Arrays.copyOf(samplers, i + 1);
+            methods[i] = method;
+            samplers[i] = sampler;
+            return true;
+        }
+
+        @Nullable
+        Sampler find(String method) {
+            for (int i = 0; i < methods.length; i++) {
+                if (methods[i].equals(method)) return samplers[i];
+            }
+            return anyMethod;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.kristofa.brave.http;
+
+import com.github.kristofa.brave.Sampler;
+import com.github.kristofa.brave.internal.Nullable;
+
+/**
+ * Decides whether to trace an incoming http request, when the caller didn't send a sampling
+ * decision. Unlike {@link Sampler}, this can see the request, so routes can be sampled differently.
+ *
+ * <p>This runs before the trace is created, so requests it decides not to sample allocate no span.
+ *
+ * @see HttpRuleSampler
+ */
+// abstract for factory-method support on Java language level 7
+public abstract class HttpSampler {
+
+    /** Defers all decisions to the trace ID {@link Sampler} configured in Brave. */
+    public static final HttpSampler TRACE_ID = new HttpSampler() {
+        @Override public Boolean trySample(String method, String path) {
+            return null;
+        }
+
+        @Override public String toString() {
+            return "TraceIdSampler";
+        }
+    };
+
+    /**
+     * Returns whether to trace a request, or null to defer to the trace ID {@link Sampler}.
+     *
+     * @param method the http method, such as "GET"
+     * @param path the path of the request, excluding the query string
+     */
+    @Nullable
+    public abstract Boolean trySample(String method, String path);
+}
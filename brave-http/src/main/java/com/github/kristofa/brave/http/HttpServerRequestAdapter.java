@@ -4,19 +4,32 @@ import com.github.kristofa.brave.KeyValueAnnotation;
 import com.github.kristofa.brave.ServerRequestAdapter;
 import com.github.kristofa.brave.SpanId;
 import com.github.kristofa.brave.TraceData;
+import com.github.kristofa.brave.internal.Nullable;
 import java.util.Collection;
 import java.util.Collections;
 import zipkin.TraceKeys;
 
 import static com.github.kristofa.brave.IdConversion.convertToLong;
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
 
 public class HttpServerRequestAdapter implements ServerRequestAdapter {
     private final HttpServerRequest request;
     private final SpanNameProvider spanNameProvider;
+    private final HttpSampler httpSampler;
 
     public HttpServerRequestAdapter(HttpServerRequest request, SpanNameProvider spanNameProvider) {
+        this(request, spanNameProvider, HttpSampler.TRACE_ID);
+    }
+
+    /**
+     * @param httpSampler decides whether to trace requests whose caller didn't send a sampling
+     * decision.
+     */
+    public HttpServerRequestAdapter(HttpServerRequest request, SpanNameProvider spanNameProvider,
+        HttpSampler httpSampler) {
         this.request = request;
         this.spanNameProvider = spanNameProvider;
+        this.httpSampler = checkNotNull(httpSampler, "httpSampler");
     }
 
     @Override
@@ -32,9 +45,12 @@ public class HttpServerRequestAdapter implements ServerRequestAdapter {
             : null;
 
         if (traceId != null && spanId != null) {
+            if (parsedSampled == null) parsedSampled = trySample();
             return TraceData.create(getSpanId(traceId, spanId, parentSpanId, parsedSampled));
         } else if (parsedSampled == null) {
-            return TraceData.EMPTY;
+            Boolean decision = trySample();
+            if (decision == null) return TraceData.EMPTY;
+            return decision ? TraceData.SAMPLED : TraceData.NOT_SAMPLED;
         } else if (parsedSampled.booleanValue()) {
             // Invalid: The caller requests the trace to be sampled, but didn't pass IDs
             return TraceData.EMPTY;
@@ -43,6 +59,19 @@ public class HttpServerRequestAdapter implements ServerRequestAdapter {
         }
     }
 
+    /**
+     * Returns the path of the request, used for sampling. Override when the path is available
+     * without parsing {@link HttpServerRequest#getUri()}.
+     */
+    protected String getPath() {
+        return request.getUri().getPath();
+    }
+
+    @Nullable Boolean trySample() {
+        if (httpSampler == HttpSampler.TRACE_ID) return null; // don't look up the path
+        return httpSampler.trySample(request.getHttpMethod(), getPath());
+    }
+
     @Override
     public String getSpanName() {
         return spanNameProvider.spanName(request);
@@ -0,0 +1,146 @@
+package com.github.kristofa.brave.http;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HttpRuleSamplerTest {
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    HttpRuleSampler sampler = HttpRuleSampler.builder()
+        .addRule("GET", "/health", 0.0f)
+        .addRule(null, "/checkout/**", 1.0f)
+        .build();
+
+    @Test
+    public void noMatch_defers() {
+        assertThat(sampler.trySample("GET", "/")).isNull();
+        assertThat(sampler.trySample("GET", "/products")).isNull();
+        assertThat(sampler.trySample("GET", "/health/deep")).isNull();
+        assertThat(sampler.trySample("GET", "/checkouts")).isNull();
+    }
+
+    @Test
+    public void matchesMethodAndPath() {
+        assertThat(sampler.trySample("GET", "/health")).isFalse();
+        assertThat(sampler.trySample("POST", "/health")).isNull();
+    }
+
+    @Test
+    public void ignoresRepeatedAndTrailingSlashes() {
+        assertThat(sampler.trySample("GET", "/health/")).isFalse();
+        assertThat(sampler.trySample("GET", "//health")).isFalse();
+    }
+
+    @Test
+    public void prefixMatchesPathAndChildren() {
+        assertThat(sampler.trySample("POST", "/checkout")).isTrue();
+        assertThat(sampler.trySample("POST", "/checkout/cart/1")).isTrue();
+    }
+
+    @Test
+    public void wildcardsMatchOneSegment() {
+        sampler = HttpRuleSampler.builder()
+            .addRule(null, "/users/{userId}/orders", 1.0f)
+            .addRule(null, "/items/*", 0.0f)
+            .build();
+
+        assertThat(sampler.trySample("GET", "/users/42/orders")).isTrue();
+        assertThat(sampler.trySample("GET", "/users/42")).isNull();
+        assertThat(sampler.trySample("GET", "/users/42/orders/1")).isNull();
+        assertThat(sampler.trySample("GET", "/items/1")).isFalse();
+    }
+
+    @Test
+    public void literalWinsOverWildcard() {
+        sampler = HttpRuleSampler.builder()
+            .addRule(null, "/users/{userId}", 0.0f)
+            .addRule(null, "/users/me", 1.0f)
+            .build();
+
+        assertThat(sampler.trySample("GET", "/users/me")).isTrue();
+        assertThat(sampler.trySample("GET", "/users/you")).isFalse();
+    }
+
+    @Test
+    public void backtracksToWildcardWhenLiteralDoesntMatch() {
+        sampler = HttpRuleSampler.builder()
+            .addRule(null, "/users/me", 0.0f)
+            .addRule(null, "/users/{userId}/orders", 1.0f)
+            .build();
+
+        assertThat(sampler.trySample("GET", "/users/me/orders")).isTrue();
+    }
+
+    @Test
+    public void pathWinsOverPrefix_longerPrefixWinsOverShorter() {
+        sampler = HttpRuleSampler.builder()
+            .addRule(null, "/**", 0.0f)
+            .addRule(null, "/api/**", 1.0f)
+            .addRule(null, "/api/ping", 0.0f)
+            .build();
+
+        assertThat(sampler.trySample("GET", "/")).isFalse();
+        assertThat(sampler.trySample("GET", "/static/logo.png")).isFalse();
+        assertThat(sampler.trySample("GET", "/api/users")).isTrue();
+        assertThat(sampler.trySample("GET", "/api/ping")).isFalse();
+    }
+
+    @Test
+    public void methodWinsOverAnyMethod() {
+        sampler = HttpRuleSampler.builder()
+            .addRule(null, "/orders", 0.0f)
+            .addRule("POST", "/orders", 1.0f)
+            .build();
+
+        assertThat(sampler.trySample("GET", "/orders")).isFalse();
+        assertThat(sampler.trySample("POST", "/orders")).isTrue();
+    }
+
+    @Test
+    public void partialRate() {
+        sampler = HttpRuleSampler.builder()
+            .addRule(null, "/search", 0.5f)
+            .build();
+
+        int sampled = 0;
+        for (int i = 0; i < 100; i++) {
+            if (sampler.trySample("GET", "/search")) sampled++;
+        }
+        assertThat(sampled).isEqualTo(50);
+    }
+
+    @Test
+    public void duplicateRule() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("duplicate rule: GET /users/{id}=AlwaysSample");
+
+        HttpRuleSampler.builder()
+            .addRule("GET", "/users/*", 0.0f)
+            .addRule("GET", "/users/{id}", 1.0f)
+            .build();
+    }
+
+    @Test
+    public void pathMustBeAbsolute() {
+        thrown.expect(IllegalArgumentException.class);
+
+        HttpRuleSampler.builder().addRule("GET", "health", 0.0f);
+    }
+
+    @Test
+    public void prefixOnlyAtEnd() {
+        thrown.expect(IllegalArgumentException.class);
+
+        HttpRuleSampler.builder().addRule("GET", "/**/health", 0.0f).build();
+    }
+
+    @Test
+    public void toStringListsRules() {
+        assertThat(sampler).hasToString(
+            "HttpRuleSampler([GET /health=NeverSample, /checkout/**=AlwaysSample])");
+    }
+}
@@ -15,6 +15,8 @@ import zipkin.TraceKeys;
 import static junit.framework.Assert.assertNull;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class HttpServerRequestAdapterTest {
@@ -179,4 +181,58 @@ public class HttpServerRequestAdapterTest {
         assertEquals(IdConversion.convertToLong(SPAN_ID), spanId.spanId);
         assertNull(spanId.nullableParentId());
     }
+
+    @Test
+    public void getTraceData_httpSamplerDecidesWhenNoSampledHeader() {
+        adapter = new HttpServerRequestAdapter(serverRequest, spanNameProvider,
+            HttpRuleSampler.builder().addRule("GET", "/health", 0.0f).build());
+        when(serverRequest.getHttpMethod()).thenReturn("GET");
+        when(serverRequest.getUri()).thenReturn(URI.create("http://localhost/health?deep=true"));
+
+        assertSame(TraceData.NOT_SAMPLED, adapter.getTraceData());
+    }
+
+    @Test
+    public void getTraceData_httpSamplerCanSampleWithoutIds() {
+        adapter = new HttpServerRequestAdapter(serverRequest, spanNameProvider,
+            HttpRuleSampler.builder().addRule(null, "/checkout", 1.0f).build());
+        when(serverRequest.getHttpMethod()).thenReturn("POST");
+        when(serverRequest.getUri()).thenReturn(URI.create("http://localhost/checkout"));
+
+        assertSame(TraceData.SAMPLED, adapter.getTraceData());
+    }
+
+    @Test
+    public void getTraceData_httpSamplerDecidesWhenOnlyIdsSent() {
+        adapter = new HttpServerRequestAdapter(serverRequest, spanNameProvider,
+            HttpRuleSampler.builder().addRule("GET", "/health", 0.0f).build());
+        when(serverRequest.getHttpMethod()).thenReturn("GET");
+        when(serverRequest.getUri()).thenReturn(URI.create("http://localhost/health"));
+        when(serverRequest.getHttpHeaderValue(BraveHttpHeaders.TraceId.getName())).thenReturn(TRACE_ID);
+        when(serverRequest.getHttpHeaderValue(BraveHttpHeaders.SpanId.getName())).thenReturn(SPAN_ID);
+
+        TraceData traceData = adapter.getTraceData();
+        assertFalse(traceData.getSample());
+        assertEquals(IdConversion.convertToLong(SPAN_ID), traceData.getSpanId().spanId);
+    }
+
+    @Test
+    public void getTraceData_sampledHeaderWinsOverHttpSampler() {
+        adapter = new HttpServerRequestAdapter(serverRequest, spanNameProvider,
+            HttpRuleSampler.builder().addRule("GET", "/health", 0.0f).build());
+        when(serverRequest.getHttpMethod()).thenReturn("GET");
+        when(serverRequest.getUri()).thenReturn(URI.create("http://localhost/health"));
+        when(serverRequest.getHttpHeaderValue(BraveHttpHeaders.Sampled.getName())).thenReturn("1");
+        when(serverRequest.getHttpHeaderValue(BraveHttpHeaders.TraceId.getName())).thenReturn(TRACE_ID);
+        when(serverRequest.getHttpHeaderValue(BraveHttpHeaders.SpanId.getName())).thenReturn(SPAN_ID);
+
+        assertTrue(adapter.getTraceData().getSample());
+    }
+
+    @Test
+    public void getTraceData_traceIdSamplerDoesntParseUri() {
+        adapter.getTraceData();
+
+        verify(serverRequest, never()).getUri();
+    }
 }
@@ -0,0 +1,35 @@
+package brave.sampler.file;
+
+import com.github.kristofa.brave.Sampler;
+
+/**
+ * Adapts a {@link FileSampler} to Brave 3, for example to pass to {@code
+ * Brave.Builder.traceSampler}. This class needs brave-core on the classpath, while {@link
+ * FileSampler} doesn't.
+ */
+public final class Brave3FileSampler extends Sampler {
+
+  public static Brave3FileSampler create(FileSampler delegate) {
+    if (delegate == null) throw new NullPointerException("delegate == null");
+    return new Brave3FileSampler(delegate);
+  }
+
+  final FileSampler delegate;
+
+  Brave3FileSampler(FileSampler delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override public boolean isSampled(long traceId) {
+    return delegate.isSampled(traceId);
+  }
+
+  /** @see FileSampler#isSampled(String, long) */
+  public boolean isSampled(String spanName, long traceId) {
+    return delegate.isSampled(spanName, traceId);
+  }
+
+  @Override public String toString() {
+    return "Brave3FileSampler(" + delegate + ")";
+  }
+}
@@ -0,0 +1,208 @@
+package brave.sampler.file;
+
+import brave.sampler.Sampler;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * This sampler reads its rates from a local properties file, and re-reads it when it changes. Use
+ * this to change sample rates at runtime without ZooKeeper.
+ *
+ * <p>The file has a required default rate, and optionally rates by span name. Spaces in span
+ * names are escaped with a backslash:
+ * <pre>{@code
+ * rate=0.01
+ * span.get\ /health=0.0
+ * span.post\ /checkout=1.0
+ * }</pre>
+ *
+ * <p>Span rates are only used by {@link #isSampled(String, long)}. If the file is absent, nothing
+ * is sampled. If it changes to something invalid, the last valid rates are kept. This includes an
+ * empty file or one missing the default rate, which is what a reader sees while the file is
+ * rewritten in place. Replacing the file with an atomic move avoids that window altogether.
+ *
+ * <p>Brave 3 users can wrap this with {@link Brave3FileSampler}.
+ *
+ * <h3>Implementation</h3>
+ *
+ * <p>The file's directory is watched by a daemon thread using a {@link WatchService}, which
+ * stops when this sampler is {@link #close() closed}. Each change is compiled into an immutable
+ * snapshot of samplers, replaced at once. Decisions read the snapshot once, so they never see a
+ * partial update. Note that some platforms poll for changes, so they may be seen seconds later.
+ */
+public final class FileSampler extends Sampler implements Closeable {
+  static final Logger logger = Logger.getLogger(FileSampler.class.getName());
+  static final String SPAN_PREFIX = "span.";
+
+  /** Reads rates from the file, and starts watching it for changes. */
+  public static FileSampler create(Path file) throws IOException {
+    if (file == null) throw new NullPointerException("file == null");
+    Path directory = file.toAbsolutePath().getParent();
+    WatchService watchService = directory.getFileSystem().newWatchService();
+    try {
+      directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+    } catch (IOException | RuntimeException e) {
+      watchService.close();
+      throw e;
+    }
+    FileSampler result = new FileSampler(file, watchService);
+    result.reload();
+    result.watcher.start();
+    return result;
+  }
+
+  final Path file;
+  final WatchService watchService;
+  final Thread watcher;
+  volatile Rates rates = Rates.EMPTY;
+
+  FileSampler(Path file, WatchService watchService) {
+    this.file = file;
+    this.watchService = watchService;
+    this.watcher = new Thread(new Runnable() {
+      @Override public void run() {
+        watch();
+      }
+    }, "FileSampler");
+    this.watcher.setDaemon(true);
+  }
+
+  @Override public boolean isSampled(long traceId) {
+    return rates.sampler.isSampled(traceId);
+  }
+
+  /**
+   * Like {@link #isSampled(long)}, except a rate configured for the span name takes precedence.
+   *
+   * @param spanName the name of the first span in the trace.
+   */
+  public boolean isSampled(String spanName, long traceId) {
+    return rates.sampler(spanName).isSampled(traceId);
+  }
+
+  /** Stops watching the file. Decisions continue at the last rates read. */
+  @Override public void close() throws IOException {
+    watchService.close();
+  }
+
+  void watch() {
+    Path fileName = file.getFileName();
+    try {
+      while (true) {
+        WatchKey key = watchService.take();
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+          changed |= event.kind() == OVERFLOW || fileName.equals(event.context());
+        }
+        if (changed) reload();
+        if (!key.reset()) {
+          logger.warning("Stopped watching " + file + " as its directory is no longer accessible");
+          return;
+        }
+      }
+    } catch (ClosedWatchServiceException | InterruptedException e) {
+      // closed
+    }
+  }
+
+  /** Compiles the file into rates, and publishes them if valid. */
+  synchronized void reload() {
+    Properties properties = new Properties();
+    try (InputStream in = Files.newInputStream(file)) {
+      properties.load(in);
+    } catch (NoSuchFileException e) {
+      rates = Rates.EMPTY;
+      return;
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Couldn't read " + file + ". Keeping " + rates, e);
+      return;
+    }
+    try {
+      rates = Rates.parse(properties);
+    } catch (IllegalArgumentException e) {
+      logger.log(Level.WARNING, "Invalid rates in " + file + ". Keeping " + rates, e);
+    }
+  }
+
+  @Override public String toString() {
+    return "FileSampler(" + rates + ")";
+  }
+
+  /** An immutable snapshot of the file. */
+  static final class Rates {
+    static final Rates EMPTY = new Rates(0.0f, Collections.<String, Float>emptyMap());
+
+    /**
+     * @throws IllegalArgumentException if the default rate is missing, a key is unknown or a rate
+     * is invalid
+     */
+    static Rates parse(Properties properties) {
+      Float rate = null;
+      Map<String, Float> spanRates = new LinkedHashMap<>();
+      for (String key : properties.stringPropertyNames()) {
+        String value = properties.getProperty(key).trim();
+        if (key.equals("rate")) {
+          rate = parseRate(key, value);
+        } else if (key.startsWith(SPAN_PREFIX) && key.length() > SPAN_PREFIX.length()) {
+          spanRates.put(key.substring(SPAN_PREFIX.length()), parseRate(key, value));
+        } else {
+          throw new IllegalArgumentException("unexpected key: " + key);
+        }
+      }
+      // An empty or truncated file has no rate. Rejecting it avoids dropping all traces mid-write.
+      if (rate == null) throw new IllegalArgumentException("missing rate");
+      return new Rates(rate, spanRates);
+    }
+
+    static float parseRate(String key, String value) {
+      try {
+        return Float.parseFloat(value);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("invalid " + key + ": " + value);
+      }
+    }
+
+    final Sampler sampler;
+    final Map<String, Sampler> spanSamplers;
+    final String toString;
+
+    /** @throws IllegalArgumentException if a rate is invalid */
+    Rates(float rate, Map<String, Float> spanRates) {
+      this.sampler = Sampler.create(rate);
+      Map<String, Sampler> spanSamplers = new LinkedHashMap<>();
+      for (Map.Entry<String, Float> entry : spanRates.entrySet()) {
+        spanSamplers.put(entry.getKey(), Sampler.create(entry.getValue()));
+      }
+      this.spanSamplers = spanSamplers;
+      this.toString = "Rates(rate=" + rate + ", spans=" + spanRates + ")";
+    }
+
+    Sampler sampler(String spanName) {
+      Sampler sampler = spanSamplers.get(spanName);
+      return sampler != null ? sampler : this.sampler;
+    }
+
+    @Override public String toString() {
+      return toString;
+    }
+  }
+}
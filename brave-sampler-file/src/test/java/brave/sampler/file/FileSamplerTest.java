@@ -0,0 +1,194 @@
+package brave.sampler.file;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.Random;
+import java.util.stream.LongStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.data.Percentage.withPercentage;
+
+public class FileSamplerTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  /**
+   * Zipkin trace ids are random 64bit numbers. This creates a relatively large input to avoid
+   * flaking out due to PRNG nuance.
+   */
+  long[] traceIds = new Random().longs(100000).toArray();
+
+  Path file;
+  FileSampler sampler;
+
+  @Before public void setup() throws IOException {
+    file = folder.getRoot().toPath().resolve("sampler.properties");
+  }
+
+  @After public void close() throws IOException {
+    if (sampler != null) sampler.close();
+  }
+
+  @Test public void dropsWhenFileIsAbsent() throws IOException {
+    sampler = FileSampler.create(file);
+
+    assertThat(LongStream.of(traceIds).filter(sampler::isSampled).findAny())
+        .isEmpty();
+  }
+
+  @Test public void retain10Percent() throws IOException {
+    write("rate=0.1");
+    sampler = FileSampler.create(file);
+
+    assertThat(LongStream.of(traceIds).filter(sampler::isSampled).count())
+        .isCloseTo(10000L, withPercentage(3));
+  }
+
+  @Test public void spanRates() throws IOException {
+    write("rate=1.0\nspan.get\\ /health=0.0");
+    sampler = FileSampler.create(file);
+
+    assertThat(LongStream.of(traceIds).filter(id -> sampler.isSampled("get /health", id)).findAny())
+        .isEmpty();
+    assertThat(LongStream.of(traceIds).filter(id -> sampler.isSampled("get /users", id)).toArray())
+        .containsExactly(traceIds);
+  }
+
+  @Test public void reloadsWhenFileChanges() throws Exception {
+    write("rate=0.0");
+    sampler = FileSampler.create(file);
+
+    write("rate=1.0");
+    awaitSampled(true);
+
+    assertThat(sampler).hasToString("FileSampler(Rates(rate=1.0, spans={}))");
+  }
+
+  @Test public void reloadsWhenFileIsReplaced() throws Exception {
+    write("rate=0.0");
+    sampler = FileSampler.create(file);
+
+    // editors and config management often write a new file and rename it over the old one
+    Files.delete(file);
+    write("rate=1.0");
+    awaitSampled(true);
+  }
+
+  @Test public void dropsWhenFileIsDeleted() throws Exception {
+    write("rate=1.0");
+    sampler = FileSampler.create(file);
+
+    Files.delete(file);
+    awaitSampled(false);
+  }
+
+  @Test public void keepsRatesWhenFileBecomesInvalid() throws Exception {
+    write("rate=1.0");
+    sampler = FileSampler.create(file);
+
+    write("rate=one");
+    sampler.reload(); // don't wait on the watcher, as there's no change to observe
+
+    assertThat(sampler.isSampled(traceIds[0])).isTrue();
+  }
+
+  /** Like what the watcher reads while another process rewrites the file in place. */
+  @Test public void keepsRatesWhenFileBecomesEmpty() throws Exception {
+    write("rate=1.0");
+    sampler = FileSampler.create(file);
+
+    write("");
+    sampler.reload();
+
+    assertThat(sampler.isSampled(traceIds[0])).isTrue();
+  }
+
+  @Test public void keepsRatesWhenRateIsMissing() throws Exception {
+    write("rate=1.0");
+    sampler = FileSampler.create(file);
+
+    write("span.get=0.0");
+    sampler.reload();
+
+    assertThat(sampler.isSampled(traceIds[0])).isTrue();
+    assertThat(sampler.isSampled("get", traceIds[0])).isTrue();
+  }
+
+  @Test public void stopsWatchingWhenClosed() throws Exception {
+    write("rate=0.0");
+    sampler = FileSampler.create(file);
+
+    sampler.close();
+    sampler.watcher.join(1000);
+
+    assertThat(sampler.watcher.isAlive()).isFalse();
+  }
+
+  @Test public void brave3() throws IOException {
+    write("rate=1.0\nspan.get=0.0");
+    sampler = FileSampler.create(file);
+    Brave3FileSampler brave3 = Brave3FileSampler.create(sampler);
+
+    assertThat(brave3.isSampled(traceIds[0])).isTrue();
+    assertThat(brave3.isSampled("get", traceIds[0])).isFalse();
+  }
+
+  @Test public void rates_unexpectedKey() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("unexpected key: rates");
+
+    FileSampler.Rates.parse(properties("rates", "1.0"));
+  }
+
+  @Test public void rates_missingRate() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("missing rate");
+
+    FileSampler.Rates.parse(new Properties());
+  }
+
+  @Test public void rates_invalidRate() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("invalid span.get: one");
+
+    FileSampler.Rates.parse(properties("span.get", "one"));
+  }
+
+  @Test public void rates_outOfRange() {
+    thrown.expect(IllegalArgumentException.class);
+
+    FileSampler.Rates.parse(properties("rate", "1.5"));
+  }
+
+  /**
+   * Writes through a temporary file and an atomic move, so the watcher never reloads a truncated
+   * file concurrently with a test's own {@link FileSampler#reload()}.
+   */
+  void write(String content) throws IOException {
+    Path temp = folder.newFile().toPath();
+    Files.write(temp, content.getBytes(UTF_8));
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /** Waits for the watcher thread, which can take seconds on platforms that poll. */
+  void awaitSampled(boolean sampled) throws InterruptedException {
+    for (int i = 0; i < 150 && sampler.isSampled(traceIds[0]) != sampled; i++) Thread.sleep(100);
+    assertThat(sampler.isSampled(traceIds[0])).isEqualTo(sampled);
+  }
+
+  static Properties properties(String key, String value) {
+    Properties result = new Properties();
+    result.setProperty(key, value);
+    return result;
+  }
+}
@@ -0,0 +1,178 @@
+package com.github.kristofa.brave.sampler;
+
+import com.github.kristofa.brave.Sampler;
+import com.github.kristofa.brave.internal.Nullable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable sampling rules for one service, compiled from the contents of the sample rate znode.
+ *
+ * <p>The znode holds either a single rate, like "0.2", or a JSON object like below. Rates not
+ * present fall back to "rate", which defaults to zero.
+ * <pre>{@code
+ * {
+ *   "rate": 0.01,
+ *   "services": { "frontend": 0.1 },
+ *   "spans": { "get /health": 0.0, "post /checkout": 1.0 }
+ * }
+ * }</pre>
+ *
+ * <p>Here, the service "frontend" samples 10% of traces, and other services 1%. Regardless of the
+ * service, traces starting with "get /health" are never sampled and those starting with
+ * "post /checkout" always are.
+ */
+final class SamplingRules {
+  static final SamplingRules EMPTY =
+      new SamplingRules(0.0f, Collections.<String, Float>emptyMap());
+
+  /**
+   * Parses the znode data into rules for the given service.
+   *
+   * @param serviceName the local service name, or null to ignore service rules.
+   * @throws IllegalArgumentException if the data is malformed or contains invalid rates.
+   */
+  static SamplingRules parse(String data, @Nullable String serviceName) {
+    String trimmed = data.trim();
+    if (!trimmed.startsWith("{")) { // the original format: a single rate
+      return new SamplingRules(parseRate(trimmed), Collections.<String, Float>emptyMap());
+    }
+
+    JsonParser parser = new JsonParser(trimmed);
+    float rate = 0.0f;
+    Float serviceRate = null;
+    Map<String, Float> spanRates = Collections.emptyMap();
+    parser.expect('{');
+    if (!parser.consume('}')) {
+      do {
+        String key = parser.readString();
+        parser.expect(':');
+        if (key.equals("rate")) {
+          rate = parser.readRate();
+        } else if (key.equals("services")) {
+          Map<String, Float> serviceRates = parser.readRates();
+          if (serviceName != null) serviceRate = serviceRates.get(serviceName);
+        } else if (key.equals("spans")) {
+          spanRates = parser.readRates();
+        } else {
+          throw new IllegalArgumentException("unexpected key: " + key);
+        }
+      } while (parser.consume(','));
+      parser.expect('}');
+    }
+    parser.expectEnd();
+    return new SamplingRules(serviceRate != null ? serviceRate : rate, spanRates);
+  }
+
+  final Sampler sampler;
+  final Map<String, Sampler> spanSamplers;
+  final String toString;
+
+  SamplingRules(float rate, Map<String, Float> spanRates) {
+    this.sampler = Sampler.create(rate);
+    Map<String, Sampler> spanSamplers = new LinkedHashMap<String, Sampler>();
+    for (Map.Entry<String, Float> entry : spanRates.entrySet()) {
+      spanSamplers.put(entry.getKey(), Sampler.create(entry.getValue()));
+    }
+    this.spanSamplers = spanSamplers;
+    this.toString = "SamplingRules(rate=" + rate + ", spans=" + spanRates + ")";
+  }
+
+  /** Returns the sampler for traces starting with the given span name. */
+  Sampler sampler(String spanName) {
+    Sampler sampler = spanSamplers.get(spanName);
+    return sampler != null ? sampler : this.sampler;
+  }
+
+  @Override
+  public String toString() {
+    return toString;
+  }
+
+  static float parseRate(String rate) {
+    final float result;
+    try {
+      result = Float.parseFloat(rate);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("invalid rate: " + rate);
+    }
+    if (result != 0.0f && result != 1.0f && (result < 0.01f || result > 1.0f)) {
+      throw new IllegalArgumentException("rate should be 0, 1 or between 0.01 and 1: was " + rate);
+    }
+    return result;
+  }
+
+  /** Reads the subset of JSON used by the rules: objects of strings and numbers. */
+  static final class JsonParser {
+    final String json;
+    int pos;
+
+    JsonParser(String json) {
+      this.json = json;
+    }
+
+    /** Reads an object whose values are rates, preserving the order of keys. */
+    Map<String, Float> readRates() {
+      Map<String, Float> result = new LinkedHashMap<String, Float>();
+      expect('{');
+      if (consume('}')) return result;
+      do {
+        String key = readString();
+        expect(':');
+        if (result.put(key, readRate()) != null) {
+          throw new IllegalArgumentException("duplicate key: " + key);
+        }
+      } while (consume(','));
+      expect('}');
+      return result;
+    }
+
+    float readRate() {
+      skipWhitespace();
+      int start = pos;
+      while (pos < json.length() && "+-.0123456789eE".indexOf(json.charAt(pos)) != -1) pos++;
+      if (start == pos) throw unexpected("a number");
+      return parseRate(json.substring(start, pos));
+    }
+
+    /** Reads a string, which can't contain escapes. */
+    String readString() {
+      expect('"');
+      int end = json.indexOf('"', pos);
+      if (end == -1) throw unexpected("\"");
+      String result = json.substring(pos, end);
+      if (result.indexOf('\\') != -1) {
+        throw new IllegalArgumentException("escapes aren't supported: " + result);
+      }
+      pos = end + 1;
+      return result;
+    }
+
+    void expect(char c) {
+      if (!consume(c)) throw unexpected("'" + c + "'");
+    }
+
+    boolean consume(char c) {
+      skipWhitespace();
+      if (pos < json.length() && json.charAt(pos) == c) {
+        pos++;
+        return true;
+      }
+      return false;
+    }
+
+    void expectEnd() {
+      skipWhitespace();
+      if (pos != json.length()) throw unexpected("end of input");
+    }
+
+    void skipWhitespace() {
+      while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) pos++;
+    }
+
+    IllegalArgumentException unexpected(String expected) {
+      return new IllegalArgumentException("expected " + expected + " at position " + pos);
+    }
+  }
+}
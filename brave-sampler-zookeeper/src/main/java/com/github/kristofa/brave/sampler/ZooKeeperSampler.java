@@ -1,8 +1,15 @@
 package com.github.kristofa.brave.sampler;
 
 import com.github.kristofa.brave.Sampler;
+import com.github.kristofa.brave.internal.Nullable;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -24,37 +31,141 @@ import static java.lang.String.format;
 public final class ZooKeeperSampler extends Sampler implements Watcher, Closeable {
 
   private final static Logger LOGGER = Logger.getLogger(ZooKeeperSampler.class.getName());
-  private final static float DEFAULT_SAMPLE_RATE = 0.0f;
+
+  /**
+   * @param connectionString ZooKeeper connection string. Should not be <code>null</code> or empty.
+   * @param sampleRateZNode The znode that contains sample rate. Should not be <code>null</code> or
+   * empty.
+   */
+  public static Builder builder(final String connectionString, final String sampleRateZNode) {
+    return new Builder(connectionString, sampleRateZNode);
+  }
+
+  public static final class Builder {
+    private final String connectionString;
+    private final String sampleRateZNode;
+    private String serviceName;
+    private File lastKnownRulesFile;
+
+    Builder(final String connectionString, final String sampleRateZNode) {
+      this.connectionString = checkNotBlank(connectionString, "Null or blank connectionString");
+      this.sampleRateZNode = checkNotBlank(sampleRateZNode, "Null or blank sampleRateZNode");
+    }
+
+    /**
+     * The local service name, used to look up its rate in the znode. When <code>null</code>,
+     * service rates are ignored. Defaults to <code>null</code>.
+     */
+    public Builder serviceName(@Nullable final String serviceName) {
+      this.serviceName = serviceName;
+      return this;
+    }
+
+    /**
+     * When set, {@link #build()} returns immediately, without waiting for ZooKeeper. Until the
+     * znode is read, the sampler uses the rules last written to this file, or never samples if
+     * there's no such file. The file is rewritten whenever the znode changes. Defaults to
+     * <code>null</code>, which means {@link #build()} waits for ZooKeeper.
+     */
+    public Builder lastKnownRulesFile(@Nullable final File lastKnownRulesFile) {
+      this.lastKnownRulesFile = lastKnownRulesFile;
+      return this;
+    }
+
+    /**
+     * Creates a new instance. Unless there's a {@link #lastKnownRulesFile(File) last known rules
+     * file}, this waits for the initial connection with ZooKeeper. If that can't be established
+     * within 2 seconds an unchecked exception will be thrown as this will probably indicate wrong
+     * configuration.
+     *
+     * @throws InterruptedException In case we can't connect with ZooKeeper.
+     */
+    public ZooKeeperSampler build() throws InterruptedException {
+      return new ZooKeeperSampler(this);
+    }
+  }
 
   private final CuratorFramework zkCurator;
   private final CountDownLatch connectionEstablished = new CountDownLatch(1);
   private final String sampleRateZNode;
+  @Nullable private final String serviceName;
+  @Nullable private final File lastKnownRulesFile;
 
-  private volatile Sampler delegate;
+  /** Replaced as a whole when the znode changes, so decisions never see a partial update. */
+  private volatile SamplingRules rules = SamplingRules.EMPTY;
 
   @Override
   public boolean isSampled(long traceId) {
-    return delegate.isSampled(traceId);
+    return rules.sampler.isSampled(traceId);
+  }
+
+  /**
+   * Like {@link #isSampled(long)}, except a rate configured for the span name takes precedence.
+   *
+   * @param spanName the name of the first span in the trace.
+   */
+  public boolean isSampled(String spanName, long traceId) {
+    return rules.sampler(spanName).isSampled(traceId);
+  }
+
+  /**
+   * Creates a new instance which ignores service rates in the znode.
+   *
+   * @see #ZooKeeperSampler(String, String, String)
+   */
+  public ZooKeeperSampler(final String connectionString, final String sampleRateZNode)
+      throws InterruptedException {
+    this(connectionString, sampleRateZNode, null);
   }
 
   /**
    * Creates a new instance. If the initial connection with ZooKeeper can't be established within 2
    * seconds an unchecked exception will be thrown as this will probably indicate wrong
-   * configuration.
+   * configuration. Use {@link #builder(String, String)} to start without waiting.
+   *
+   * <p>The znode holds either a single sample rate, like "0.2", or a JSON object with a default
+   * rate and rates per service and span name:
+   * <pre>{@code
+   * {
+   *   "rate": 0.01,
+   *   "services": { "frontend": 0.1 },
+   *   "spans": { "get /health": 0.0, "post /checkout": 1.0 }
+   * }
+   * }</pre>
+   *
+   * <p>Span rates are only used by {@link #isSampled(String, long)}. If the znode changes to
+   * something invalid, the last valid rules are kept.
    *
    * @param connectionString ZooKeeper connection string. Should not be <code>null</code> or empty.
    * @param sampleRateZNode The znode that contains sample rate. Should not be <code>null</code> or
    * empty.
+   * @param serviceName The local service name, used to look up its rate in the znode. When
+   * <code>null</code>, service rates are ignored.
    * @throws IOException In case we can't connect with ZooKeeper.
    * @throws InterruptedException In case we can't connect with ZooKeeper.
    */
-  public ZooKeeperSampler(final String connectionString, final String sampleRateZNode)
-      throws InterruptedException {
-    checkNotBlank(connectionString, "Null or blank connectionString");
-    this.sampleRateZNode = checkNotBlank(sampleRateZNode, "Null or blank sampleRateZNode");
+  public ZooKeeperSampler(final String connectionString, final String sampleRateZNode,
+      @Nullable final String serviceName) throws InterruptedException {
+    this(builder(connectionString, sampleRateZNode).serviceName(serviceName));
+  }
+
+  private ZooKeeperSampler(final Builder builder) throws InterruptedException {
+    this.sampleRateZNode = builder.sampleRateZNode;
+    this.serviceName = builder.serviceName;
+    this.lastKnownRulesFile = builder.lastKnownRulesFile;
 
     final RetryPolicy retryPolicy = new ExponentialBackoffRetry(1000, 3);
-    zkCurator = CuratorFrameworkFactory.newClient(connectionString, retryPolicy);
+    zkCurator = CuratorFrameworkFactory.newClient(builder.connectionString, retryPolicy);
+
+    if (lastKnownRulesFile != null) {
+      readLastKnownRules();
+      // Curator connects in the background. Rules are read whenever a connection is established,
+      // as watches don't survive an expired session.
+      zkCurator.getConnectionStateListenable().addListener(new UpdatingConnectionStateListener());
+      zkCurator.start();
+      return;
+    }
+
     final ConnectionStateListener initialConnectionState = new InitialConnectionStateListener();
     zkCurator.getConnectionStateListenable().addListener(initialConnectionState);
     zkCurator.start();
@@ -64,7 +175,7 @@ public final class ZooKeeperSampler extends Sampler implements Watcher, Closeabl
       throw new IllegalStateException("Connection with ZooKeeper failed.");
     }
     zkCurator.getConnectionStateListenable().removeListener(initialConnectionState);
-    delegate = Sampler.create(getSampleRate());
+    updateRules();
   }
 
   @Override
@@ -76,9 +187,8 @@ public final class ZooKeeperSampler extends Sampler implements Watcher, Closeabl
       final String path = event.getPath();
 
       if (sampleRateZNode.equals(path)) {
-        float newRate = getSampleRate();
-        delegate = Sampler.create(newRate);
-        LOGGER.info(format("SampleRate znode [%s] changed. New value: %s", sampleRateZNode, newRate));
+        updateRules();
+        LOGGER.info(format("SampleRate znode [%s] changed. New value: %s", sampleRateZNode, rules));
       }
     }
   }
@@ -100,24 +210,95 @@ public final class ZooKeeperSampler extends Sampler implements Watcher, Closeabl
     return zkCurator;
   }
 
-  private float getSampleRate() {
-    final byte[] data = getData(sampleRateZNode);
+  /** Compiles the znode into rules, and publishes them if valid. */
+  private synchronized void updateRules() {
+    final byte[] data;
+    try {
+      data = getData(sampleRateZNode);
+    } catch (final Exception e) {
+      LOGGER.log(Level.WARNING, format("Zookeeper exception. Keeping %s", rules), e);
+      return;
+    }
     if (data == null) {
-      return DEFAULT_SAMPLE_RATE;
+      rules = SamplingRules.EMPTY;
+      writeLastKnownRules(null);
+      return;
+    }
+    try {
+      rules = SamplingRules.parse(new String(data, UTF_8), serviceName);
+    } catch (final IllegalArgumentException e) {
+      LOGGER.log(Level.WARNING,
+          format("Invalid SampleRate znode [%s]. Keeping %s", sampleRateZNode, rules), e);
+      return;
+    }
+    writeLastKnownRules(data);
+  }
+
+  @Override
+  public String toString() {
+    return "ZooKeeperSampler(" + rules + ")";
+  }
+
+  /** Returns null if the znode doesn't exist. */
+  @Nullable
+  private byte[] getData(final String znode) throws Exception {
+    final Stat stat = zkCurator.checkExists().usingWatcher(this).forPath(znode);
+    if (stat != null) {
+      return zkCurator.getData().usingWatcher(this).forPath(znode);
     }
-    return Float.valueOf(new String(data, UTF_8));
+    return null;
   }
 
-  private byte[] getData(final String znode) {
+  private void readLastKnownRules() {
+    if (!lastKnownRulesFile.exists()) return;
     try {
-      final Stat stat = zkCurator.checkExists().usingWatcher(this).forPath(znode);
-      if (stat != null) {
-        return zkCurator.getData().usingWatcher(this).forPath(znode);
+      final InputStream in = new FileInputStream(lastKnownRulesFile);
+      try {
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1024];
+        for (int read; (read = in.read(buffer)) != -1; ) {
+          data.write(buffer, 0, read);
+        }
+        rules = SamplingRules.parse(new String(data.toByteArray(), UTF_8), serviceName);
+      } finally {
+        in.close();
       }
-    } catch (final Exception e) {
-      LOGGER.log(Level.WARNING, "Zookeeper exception.", e);
+    } catch (final IOException e) {
+      LOGGER.log(Level.WARNING, format("Couldn't read [%s].", lastKnownRulesFile), e);
+    } catch (final IllegalArgumentException e) {
+      LOGGER.log(Level.WARNING, format("Invalid rules in [%s].", lastKnownRulesFile), e);
+    }
+  }
+
+  /**
+   * Replaces the last known rules file, if there is one, with the znode data. The data is written
+   * to a temporary file which is renamed, so a crash never leaves a partial file. Null data means
+   * the znode was deleted.
+   */
+  private void writeLastKnownRules(@Nullable final byte[] data) {
+    if (lastKnownRulesFile == null) return;
+    if (data == null) {
+      if (lastKnownRulesFile.exists() && !lastKnownRulesFile.delete()) {
+        LOGGER.warning(format("Couldn't delete [%s].", lastKnownRulesFile));
+      }
+      return;
+    }
+    final File temp = new File(lastKnownRulesFile.getPath() + ".tmp");
+    try {
+      final OutputStream out = new FileOutputStream(temp);
+      try {
+        out.write(data);
+      } finally {
+        out.close();
+      }
+      // rename doesn't replace an existing file on all platforms
+      if (!temp.renameTo(lastKnownRulesFile)
+          && !(lastKnownRulesFile.delete() && temp.renameTo(lastKnownRulesFile))) {
+        throw new IOException("Couldn't rename " + temp);
+      }
+    } catch (final IOException e) {
+      LOGGER.log(Level.WARNING, format("Couldn't write [%s].", lastKnownRulesFile), e);
     }
-    return null;
   }
 
   private class InitialConnectionStateListener implements ConnectionStateListener {
@@ -131,4 +312,15 @@ public final class ZooKeeperSampler extends Sampler implements Watcher, Closeabl
     }
   }
 
+  private class UpdatingConnectionStateListener implements ConnectionStateListener {
+
+    @Override
+    public void stateChanged(final CuratorFramework client, final ConnectionState newState) {
+      if (ConnectionState.CONNECTED.equals(newState) || ConnectionState.RECONNECTED.equals(newState)) {
+        LOGGER.info("Connected with ZooKeeper.");
+        updateRules();
+      }
+    }
+  }
+
 }
@@ -0,0 +1,114 @@
+package com.github.kristofa.brave.sampler;
+
+import com.github.kristofa.brave.Sampler;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SamplingRulesTest {
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void singleRate() {
+    SamplingRules rules = SamplingRules.parse(" 1.0\n", null);
+
+    assertThat(rules.sampler).isSameAs(Sampler.ALWAYS_SAMPLE);
+    assertThat(rules.sampler("get /users")).isSameAs(Sampler.ALWAYS_SAMPLE);
+  }
+
+  @Test
+  public void emptyObject_neverSamples() {
+    SamplingRules rules = SamplingRules.parse("{}", "frontend");
+
+    assertThat(rules.sampler).isSameAs(Sampler.NEVER_SAMPLE);
+  }
+
+  @Test
+  public void json() {
+    SamplingRules rules = SamplingRules.parse("{\n"
+        + "  \"rate\": 0.5,\n"
+        + "  \"services\": { \"frontend\": 1.0, \"backend\": 0.1 },\n"
+        + "  \"spans\": { \"get /health\": 0.0, \"post /checkout\": 1.0 }\n"
+        + "}", "frontend");
+
+    assertThat(rules.sampler).isSameAs(Sampler.ALWAYS_SAMPLE);
+    assertThat(rules.sampler("get /health")).isSameAs(Sampler.NEVER_SAMPLE);
+    assertThat(rules.sampler("post /checkout")).isSameAs(Sampler.ALWAYS_SAMPLE);
+    assertThat(rules.sampler("get /users")).isSameAs(rules.sampler);
+  }
+
+  @Test
+  public void json_otherService_usesDefaultRate() {
+    SamplingRules rules = SamplingRules.parse(
+        "{\"rate\": 0.0, \"services\": {\"frontend\": 1.0}}", "backend");
+
+    assertThat(rules.sampler).isSameAs(Sampler.NEVER_SAMPLE);
+  }
+
+  @Test
+  public void json_noServiceName_ignoresServices() {
+    SamplingRules rules = SamplingRules.parse(
+        "{\"rate\": 0.0, \"services\": {\"frontend\": 1.0}}", null);
+
+    assertThat(rules.sampler).isSameAs(Sampler.NEVER_SAMPLE);
+  }
+
+  @Test
+  public void toStringShowsRates() {
+    SamplingRules rules = SamplingRules.parse(
+        "{\"spans\": {\"get /health\": 0.0}, \"rate\": 0.25}", null);
+
+    assertThat(rules).hasToString("SamplingRules(rate=0.25, spans={get /health=0.0})");
+  }
+
+  @Test
+  public void invalidRate() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("rate should be 0, 1 or between 0.01 and 1: was 1.5");
+
+    SamplingRules.parse("{\"rate\": 1.5}", null);
+  }
+
+  @Test
+  public void invalidRate_singleRate() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("invalid rate: abc");
+
+    SamplingRules.parse("abc", null);
+  }
+
+  @Test
+  public void unexpectedKey() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("unexpected key: rates");
+
+    SamplingRules.parse("{\"rates\": 1.0}", null);
+  }
+
+  @Test
+  public void duplicateSpan() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("duplicate key: get");
+
+    SamplingRules.parse("{\"spans\": {\"get\": 1.0, \"get\": 0.0}}", null);
+  }
+
+  @Test
+  public void truncated() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("expected '}' at position 12");
+
+    SamplingRules.parse("{\"rate\": 1.0", null);
+  }
+
+  @Test
+  public void trailingData() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("expected end of input");
+
+    SamplingRules.parse("{\"rate\": 1.0}}", null);
+  }
+}
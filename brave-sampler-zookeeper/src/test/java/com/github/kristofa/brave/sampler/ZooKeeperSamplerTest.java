@@ -1,12 +1,17 @@
 package com.github.kristofa.brave.sampler;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
 import java.util.Random;
 import java.util.stream.LongStream;
 import org.apache.curator.test.TestingServer;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.data.Percentage.withPercentage;
@@ -20,6 +25,9 @@ public class ZooKeeperSamplerTest {
 
   private final static String SAMPLE_RATE_NODE = "/zipkin/sampleRate";
 
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   private TestingServer zooKeeperTestServer;
   private ZooKeeperSampler sampler;
 
@@ -68,9 +76,123 @@ public class ZooKeeperSamplerTest {
         .containsExactly(traceIds);
   }
 
+  @Test
+  public void jsonRate() throws Exception {
+    setData("{\"rate\": 1.0}");
+
+    assertThat(LongStream.of(traceIds).filter(sampler::isSampled).toArray())
+        .containsExactly(traceIds);
+  }
+
+  @Test
+  public void jsonServiceRate() throws Exception {
+    setData("{\"rate\": 0.0, \"services\": {\"frontend\": 1.0, \"backend\": 0.5}}");
+
+    try (ZooKeeperSampler frontend = new ZooKeeperSampler(
+        zooKeeperTestServer.getConnectString(), SAMPLE_RATE_NODE, "frontend")) {
+      assertThat(LongStream.of(traceIds).filter(frontend::isSampled).toArray())
+          .containsExactly(traceIds);
+    }
+    // the default sampler has no service name
+    assertThat(LongStream.of(traceIds).filter(sampler::isSampled).findAny())
+        .isEmpty();
+  }
+
+  @Test
+  public void jsonSpanRates() throws Exception {
+    setData("{\"rate\": 1.0, \"spans\": {\"get /health\": 0.0}}");
+
+    assertThat(LongStream.of(traceIds).filter(id -> sampler.isSampled("get /health", id)).findAny())
+        .isEmpty();
+    assertThat(LongStream.of(traceIds).filter(id -> sampler.isSampled("get /users", id)).toArray())
+        .containsExactly(traceIds);
+  }
+
+  @Test
+  public void updateReplacesRules() throws Exception {
+    setData("{\"rate\": 1.0, \"spans\": {\"get /health\": 0.0}}");
+    setData("0.0");
+
+    assertThat(LongStream.of(traceIds).filter(id -> sampler.isSampled("get /users", id)).findAny())
+        .isEmpty();
+    assertThat(sampler.toString())
+        .isEqualTo("ZooKeeperSampler(SamplingRules(rate=0.0, spans={}))");
+  }
+
+  @Test
+  public void invalidUpdateKeepsRules() throws Exception {
+    setRate(1.0f);
+    setData("{\"rate\": 1.0");
+
+    assertThat(LongStream.of(traceIds).filter(sampler::isSampled).toArray())
+        .containsExactly(traceIds);
+  }
+
+  @Test
+  public void lastKnownRulesFile_startsWithoutZooKeeper() throws Exception {
+    File file = folder.newFile();
+    Files.write(file.toPath(), "1.0".getBytes("UTF-8"));
+    String unreachable;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      unreachable = "127.0.0.1:" + socket.getLocalPort();
+    }
+
+    long start = System.nanoTime();
+    try (ZooKeeperSampler offline = ZooKeeperSampler.builder(unreachable, SAMPLE_RATE_NODE)
+        .lastKnownRulesFile(file).build()) {
+      assertThat(System.nanoTime() - start).isLessThan(500_000_000L);
+
+      assertThat(LongStream.of(traceIds).filter(offline::isSampled).toArray())
+          .containsExactly(traceIds);
+    }
+  }
+
+  @Test
+  public void lastKnownRulesFile_replacedByZNode() throws Exception {
+    File file = folder.newFile();
+    Files.write(file.toPath(), "1.0".getBytes("UTF-8"));
+    setRate(0.0f);
+
+    String connectString = zooKeeperTestServer.getConnectString();
+    try (ZooKeeperSampler cached = ZooKeeperSampler.builder(connectString, SAMPLE_RATE_NODE)
+        .lastKnownRulesFile(file).build()) {
+      for (int i = 0; i < 50 && cached.isSampled(traceIds[0]); i++) Thread.sleep(100);
+
+      assertThat(LongStream.of(traceIds).filter(cached::isSampled).findAny())
+          .isEmpty();
+      assertThat(new String(Files.readAllBytes(file.toPath()), "UTF-8")).isEqualTo("0.0");
+    }
+  }
+
+  @Test
+  public void lastKnownRulesFile_writtenWhenZNodeChanges() throws Exception {
+    File file = new File(folder.getRoot(), "samplerate");
+
+    String connectString = zooKeeperTestServer.getConnectString();
+    try (ZooKeeperSampler cached = ZooKeeperSampler.builder(connectString, SAMPLE_RATE_NODE)
+        .lastKnownRulesFile(file).build()) {
+      for (int i = 0; i < 50 && !cached.getZkCurator().getZookeeperClient().isConnected(); i++) {
+        Thread.sleep(100);
+      }
+      setData("{\"rate\": 0.5}");
+      for (int i = 0; i < 50 && !file.exists(); i++) Thread.sleep(100);
+
+      assertThat(new String(Files.readAllBytes(file.toPath()), "UTF-8"))
+          .isEqualTo("{\"rate\": 0.5}");
+    }
+  }
+
   private void setRate(float rate) throws Exception {
-    sampler.getZkCurator().create().creatingParentsIfNeeded()
-        .forPath(SAMPLE_RATE_NODE, String.valueOf(rate).getBytes());
+    setData(String.valueOf(rate));
+  }
+
+  private void setData(String data) throws Exception {
+    if (sampler.getZkCurator().checkExists().forPath(SAMPLE_RATE_NODE) == null) {
+      sampler.getZkCurator().create().creatingParentsIfNeeded()
+          .forPath(SAMPLE_RATE_NODE, data.getBytes("UTF-8"));
+    } else {
+      sampler.getZkCurator().setData().forPath(SAMPLE_RATE_NODE, data.getBytes("UTF-8"));
+    }
     Thread.sleep(100);
   }
 }
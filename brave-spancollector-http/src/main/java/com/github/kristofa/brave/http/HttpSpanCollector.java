@@ -4,7 +4,7 @@ import com.github.kristofa.brave.AbstractSpanCollector;
 import com.github.kristofa.brave.EmptySpanCollectorMetricsHandler;
 import com.github.kristofa.brave.SpanCollectorMetricsHandler;
 import com.google.auto.value.AutoValue;
-import com.twitter.zipkin.gen.SpanCodec;
+import com.twitter.zipkin.gen.SpanEncoder;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -13,7 +13,8 @@ import java.net.URL;
 import java.util.zip.GZIPOutputStream;
 
 /**
- * SpanCollector which submits spans to Zipkin, using its {@code POST /spans} endpoint.
+ * SpanCollector which submits spans to Zipkin, using its {@code POST /spans} endpoint. Spans are
+ * encoded as v1 JSON, unless {@link Config.Builder#encoder(SpanEncoder) configured otherwise}.
  *
  * @deprecated replaced by {@link zipkin.reporter.AsyncReporter} and {@code URLConnectionSender}
  *             located in the "io.zipkin.reporter:zipkin-sender-urlconnection" dependency.
@@ -28,7 +29,8 @@ public final class HttpSpanCollector extends AbstractSpanCollector {
           .connectTimeout(10 * 1000)
           .readTimeout(60 * 1000)
           .compressionEnabled(false)
-          .flushInterval(1);
+          .flushInterval(1)
+          .encoder(SpanEncoder.JSON);
     }
 
     abstract int connectTimeout();
@@ -39,6 +41,8 @@ public final class HttpSpanCollector extends AbstractSpanCollector {
 
     abstract boolean compressionEnabled();
 
+    abstract SpanEncoder encoder();
+
     @AutoValue.Builder
     public interface Builder {
       /** Default 10 * 1000 milliseconds. 0 implies no timeout. */
@@ -57,11 +61,21 @@ public final class HttpSpanCollector extends AbstractSpanCollector {
        */
       Builder compressionEnabled(boolean compressSpans);
 
+      /**
+       * Default {@link SpanEncoder#JSON}. {@link SpanEncoder#THRIFT} is also posted to {@code
+       * /api/v1/spans}, while {@link SpanEncoder#JSON_V2} is posted to {@code /api/v2/spans}.
+       *
+       * <p>Note: {@link SpanEncoder#JSON_V2} writes the endpoint once per span instead of once per
+       * annotation, so is smaller. It requires a Zipkin server that accepts the v2 format.
+       */
+      Builder encoder(SpanEncoder encoder);
+
       Config build();
     }
   }
 
   private final String url;
+  private final String contentType;
   private final Config config;
 
   /**
@@ -88,30 +102,33 @@ public final class HttpSpanCollector extends AbstractSpanCollector {
 
   // Visible for testing. Ex when tests need to explicitly control flushing, set interval to 0.
   HttpSpanCollector(String baseUrl, Config config, SpanCollectorMetricsHandler metrics) {
-    super(SpanCodec.JSON, metrics,  config.flushInterval());
-    this.url = baseUrl + (baseUrl.endsWith("/") ? "" : "/") + "api/v1/spans";
+    super(config.encoder(), metrics,  config.flushInterval());
+    this.url = baseUrl + (baseUrl.endsWith("/") ? "" : "/")
+        + (config.encoder() == SpanEncoder.JSON_V2 ? "api/v2/spans" : "api/v1/spans");
+    this.contentType =
+        config.encoder() == SpanEncoder.THRIFT ? "application/x-thrift" : "application/json";
     this.config = config;
   }
 
   @Override
-  protected void sendSpans(byte[] json) throws IOException {
+  protected void sendSpans(byte[] encoded) throws IOException {
     // intentionally not closing the connection, so as to use keep-alives
     HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
     connection.setConnectTimeout(config.connectTimeout());
     connection.setReadTimeout(config.readTimeout());
     connection.setRequestMethod("POST");
-    connection.addRequestProperty("Content-Type", "application/json");
+    connection.addRequestProperty("Content-Type", contentType);
     if (config.compressionEnabled()) {
       connection.addRequestProperty("Content-Encoding", "gzip");
       ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
       try (GZIPOutputStream compressor = new GZIPOutputStream(gzipped)) {
-        compressor.write(json);
+        compressor.write(encoded);
       }
-      json = gzipped.toByteArray();
+      encoded = gzipped.toByteArray();
     }
     connection.setDoOutput(true);
-    connection.setFixedLengthStreamingMode(json.length);
-    connection.getOutputStream().write(json);
+    connection.setFixedLengthStreamingMode(encoded.length);
+    connection.getOutputStream().write(encoded);
 
     try (InputStream in = connection.getInputStream()) {
       while (in.read() != -1) ; // skip
@@ -5,10 +5,12 @@ import com.github.kristofa.brave.SpanId;
 import com.github.kristofa.brave.internal.InternalSpan;
 import com.twitter.zipkin.gen.Annotation;
 import com.twitter.zipkin.gen.Span;
+import com.twitter.zipkin.gen.SpanEncoder;
 import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
@@ -107,6 +109,44 @@ public class HttpSpanCollectorTest {
     }
   }
 
+  @Test
+  public void postsV2Spans() throws Exception {
+    MockWebServer zipkin = new MockWebServer();
+    try {
+      zipkin.start(0);
+      zipkin.enqueue(new MockResponse());
+
+      HttpSpanCollector.Config config = HttpSpanCollector.Config.builder()
+          .flushInterval(0).encoder(SpanEncoder.JSON_V2).build();
+
+      HttpSpanCollector collector = new HttpSpanCollector(zipkin.url("/").toString(), config, metrics);
+
+      collector.collect(span(1L));
+
+      collector.flush(); // manually flush the span
+
+      RecordedRequest request = zipkin.takeRequest();
+      assertThat(request.getPath()).isEqualTo("/api/v2/spans");
+      assertThat(request.getHeader("Content-Type")).isEqualTo("application/json");
+      assertThat(request.getBody().readUtf8())
+          .isEqualTo(new String(SpanEncoder.JSON_V2.writeSpans(asList(span(1L))), "UTF-8"));
+    } finally {
+      zipkin.shutdown();
+    }
+  }
+
+  @Test
+  public void postsThriftSpans() throws Exception {
+    config = HttpSpanCollector.Config.builder().flushInterval(0).encoder(SpanEncoder.THRIFT).build();
+    collector = new HttpSpanCollector(zipkinRule.httpUrl(), config, metrics);
+
+    collector.collect(span(1L));
+
+    collector.flush(); // manually flush the span
+
+    assertThat(zipkinRule.getTraces()).containsExactly(asList(zipkinSpan(1L)));
+  }
+
   @Test
   public void incrementsDroppedSpansWhenServerErrors() throws Exception {
     zipkinRule.enqueueFailure(HttpFailure.sendErrorResponse(500, "Server Error!"));
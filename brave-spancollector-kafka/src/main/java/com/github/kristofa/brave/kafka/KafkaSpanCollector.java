@@ -4,7 +4,7 @@ import com.github.kristofa.brave.AbstractSpanCollector;
 import com.github.kristofa.brave.EmptySpanCollectorMetricsHandler;
 import com.github.kristofa.brave.SpanCollectorMetricsHandler;
 import com.google.auto.value.AutoValue;
-import com.twitter.zipkin.gen.SpanCodec;
+import com.twitter.zipkin.gen.SpanEncoder;
 import java.io.IOException;
 import java.util.Properties;
 import org.apache.kafka.clients.producer.KafkaProducer;
@@ -12,7 +12,8 @@ import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 
 /**
- * SpanCollector which sends a thrift-encoded list of spans to a Kafka topic (default: "zipkin")
+ * SpanCollector which sends a thrift-encoded list of spans to a Kafka topic (default: "zipkin").
+ * The encoding can be changed with {@link Config.Builder#encoder(SpanEncoder)}.
  *
  * <p><b>Important</b> If using zipkin-collector-service (or zipkin-receiver-kafka), you must run v1.35+
  *
@@ -27,7 +28,8 @@ public final class KafkaSpanCollector extends AbstractSpanCollector {
     public static Builder builder() {
       return new AutoValue_KafkaSpanCollector_Config.Builder()
           .topic("zipkin")
-          .flushInterval(1);
+          .flushInterval(1)
+          .encoder(SpanEncoder.THRIFT);
     }
 
     public static Builder builder(String bootstrapServers) {
@@ -44,6 +46,8 @@ public final class KafkaSpanCollector extends AbstractSpanCollector {
 
     abstract String topic();
 
+    abstract SpanEncoder encoder();
+
     @AutoValue.Builder
     public interface Builder {
       /**
@@ -61,6 +65,14 @@ public final class KafkaSpanCollector extends AbstractSpanCollector {
       /** Sets kafka-topic for zipkin to report to. Default topic zipkin. **/
       Builder topic(String topic);
 
+      /**
+       * Default {@link SpanEncoder#THRIFT}. Each message is a list of spans in this encoding.
+       *
+       * <p>Note: {@link SpanEncoder#JSON_V2} writes the endpoint once per span instead of once per
+       * annotation, so is smaller. It requires a Zipkin collector that accepts the v2 format.
+       */
+      Builder encoder(SpanEncoder encoder);
+
       Config build();
     }
   }
@@ -92,14 +104,14 @@ public final class KafkaSpanCollector extends AbstractSpanCollector {
 
   // Visible for testing. Ex when tests need to explicitly control flushing, set interval to 0.
   KafkaSpanCollector(Config config, SpanCollectorMetricsHandler metrics) {
-    super(SpanCodec.THRIFT, metrics, config.flushInterval());
+    super(config.encoder(), metrics, config.flushInterval());
     this.producer = new KafkaProducer<>(config.kafkaProperties());
     this.topic = config.topic();
   }
 
   @Override
-  protected void sendSpans(byte[] thrift) throws IOException {
-    producer.send(new ProducerRecord<byte[], byte[]>(this.topic, thrift));
+  protected void sendSpans(byte[] encoded) throws IOException {
+    producer.send(new ProducerRecord<byte[], byte[]>(this.topic, encoded));
   }
 
   @Override
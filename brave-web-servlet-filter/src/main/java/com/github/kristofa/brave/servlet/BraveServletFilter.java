@@ -7,6 +7,7 @@ import com.github.kristofa.brave.ServerResponseAdapter;
 import com.github.kristofa.brave.ServerResponseInterceptor;
 import com.github.kristofa.brave.ServerTracer;
 import com.github.kristofa.brave.http.DefaultSpanNameProvider;
+import com.github.kristofa.brave.http.HttpSampler;
 import com.github.kristofa.brave.http.HttpServerRequestAdapter;
 import com.github.kristofa.brave.http.HttpServerResponseAdapter;
 import com.github.kristofa.brave.http.SpanNameProvider;
@@ -48,6 +49,7 @@ public class BraveServletFilter implements Filter {
     public static final class Builder {
         final Brave brave;
         SpanNameProvider spanNameProvider = new DefaultSpanNameProvider();
+        HttpSampler httpSampler = HttpSampler.TRACE_ID;
 
         Builder(Brave brave) { // intentionally hidden
             this.brave = checkNotNull(brave, "brave");
@@ -58,6 +60,16 @@ public class BraveServletFilter implements Filter {
             return this;
         }
 
+        /**
+         * Decides whether to trace requests whose caller didn't send a sampling decision. Paths
+         * passed to it are the {@link HttpServletRequest#getRequestURI() request URI}. Defaults to
+         * {@link HttpSampler#TRACE_ID}.
+         */
+        public Builder httpSampler(HttpSampler httpSampler) {
+            this.httpSampler = checkNotNull(httpSampler, "httpSampler");
+            return this;
+        }
+
         public BraveServletFilter build() {
             return new BraveServletFilter(this);
         }
@@ -66,6 +78,7 @@ public class BraveServletFilter implements Filter {
     private final ServerRequestInterceptor requestInterceptor;
     private final ServerResponseInterceptor responseInterceptor;
     private final SpanNameProvider spanNameProvider;
+    private final HttpSampler httpSampler;
     @Nullable // while deprecated constructor is in use
     private final ServerTracer serverTracer;
     private final MaybeAddClientAddressFromRequest maybeAddClientAddressFromRequest;
@@ -76,6 +89,7 @@ public class BraveServletFilter implements Filter {
         this.requestInterceptor = b.brave.serverRequestInterceptor();
         this.responseInterceptor = b.brave.serverResponseInterceptor();
         this.spanNameProvider = b.spanNameProvider;
+        this.httpSampler = b.httpSampler;
         this.serverTracer = b.brave.serverTracer();
         this.maybeAddClientAddressFromRequest = MaybeAddClientAddressFromRequest.create(b.brave);
     }
@@ -88,6 +102,7 @@ public class BraveServletFilter implements Filter {
         this.requestInterceptor = requestInterceptor;
         this.responseInterceptor = responseInterceptor;
         this.spanNameProvider = spanNameProvider;
+        this.httpSampler = HttpSampler.TRACE_ID;
         this.serverTracer = null;
         this.maybeAddClientAddressFromRequest = null;
     }
@@ -112,7 +127,7 @@ public class BraveServletFilter implements Filter {
             HttpServletRequest httpRequest = (HttpServletRequest) request;
             final Servlet25ServerResponseAdapter
                 servlet25ServerResponseAdapter = new Servlet25ServerResponseAdapter((HttpServletResponse) response);
-            requestInterceptor.handle(new HttpServerRequestAdapter(new ServletHttpServerRequest(httpRequest), spanNameProvider));
+            requestInterceptor.handle(new ServletHttpServerRequestAdapter(httpRequest, spanNameProvider, httpSampler));
 
             if (maybeAddClientAddressFromRequest != null) {
                 maybeAddClientAddressFromRequest.accept(httpRequest);
@@ -151,6 +166,21 @@ public class BraveServletFilter implements Filter {
         return (this.filterConfig != null ? this.filterConfig.getFilterName() : null);
     }
 
+    /** Samples on the request URI, as parsing the request URL is more expensive. */
+    static final class ServletHttpServerRequestAdapter extends HttpServerRequestAdapter {
+        final HttpServletRequest request;
+
+        ServletHttpServerRequestAdapter(HttpServletRequest request,
+            SpanNameProvider spanNameProvider, HttpSampler httpSampler) {
+            super(new ServletHttpServerRequest(request), spanNameProvider, httpSampler);
+            this.request = request;
+        }
+
+        @Override protected String getPath() {
+            return request.getRequestURI();
+        }
+    }
+
     /** When deployed in Servlet 2.5 environment {@link #getStatus} is not available. */
     static final class Servlet25ServerResponseAdapter extends HttpServletResponseWrapper implements
         ServerResponseAdapter {
@@ -0,0 +1,51 @@
+package brave;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Holds metrics in memory, so that they can be polled by a monitoring system. */
+public final class InMemoryRecorderMetrics implements RecorderMetrics {
+  final AtomicLong orphanedSpans = new AtomicLong();
+  final AtomicLong expiredSpans = new AtomicLong();
+  final AtomicInteger inFlightSpans = new AtomicInteger();
+
+  @Override public void incrementOrphanedSpans() {
+    orphanedSpans.incrementAndGet();
+  }
+
+  @Override public void incrementExpiredSpans() {
+    expiredSpans.incrementAndGet();
+  }
+
+  @Override public void updateInFlightSpans(int inFlightSpans) {
+    this.inFlightSpans.set(inFlightSpans);
+  }
+
+  /** @see #incrementOrphanedSpans() */
+  public long orphanedSpans() {
+    return orphanedSpans.get();
+  }
+
+  /** @see #incrementExpiredSpans() */
+  public long expiredSpans() {
+    return expiredSpans.get();
+  }
+
+  /** @see #updateInFlightSpans(int) */
+  public int inFlightSpans() {
+    return inFlightSpans.get();
+  }
+
+  public void clear() {
+    orphanedSpans.set(0);
+    expiredSpans.set(0);
+    inFlightSpans.set(0);
+  }
+
+  @Override public String toString() {
+    return "InMemoryRecorderMetrics{orphanedSpans=" + orphanedSpans
+        + ", expiredSpans=" + expiredSpans
+        + ", inFlightSpans=" + inFlightSpans
+        + "}";
+  }
+}
@@ -0,0 +1,45 @@
+package brave;
+
+/**
+ * Instrumented applications can use this to track the bookkeeping of spans that are recorded in
+ * process, but not yet reported. For example, counting spans that were abandoned without being
+ * finished.
+ *
+ * @see InMemoryRecorderMetrics
+ */
+public interface RecorderMetrics {
+
+  /**
+   * Increments the count of spans reported without being finished, usually because the
+   * instrumentation that started them dropped their context. These spans have a "brave.flush"
+   * annotation.
+   */
+  void incrementOrphanedSpans();
+
+  /**
+   * Increments the count of spans reported because they were in progress longer than the max span
+   * lifetime. These spans have a "brave.expired" annotation.
+   */
+  void incrementExpiredSpans();
+
+  /**
+   * Updates the count of spans started, but not yet reported. This is a gauge, updated periodically
+   * by the background thread that reports orphaned or expired spans.
+   */
+  void updateInFlightSpans(int inFlightSpans);
+
+  RecorderMetrics NOOP_METRICS = new RecorderMetrics() {
+    @Override public void incrementOrphanedSpans() {
+    }
+
+    @Override public void incrementExpiredSpans() {
+    }
+
+    @Override public void updateInFlightSpans(int inFlightSpans) {
+    }
+
+    @Override public String toString() {
+      return "NoOpRecorderMetrics";
+    }
+  };
+}
@@ -2,6 +2,7 @@ package brave;
 
 import brave.internal.Nullable;
 import brave.internal.Platform;
+import brave.internal.ReusableScope;
 import brave.internal.recorder.Recorder;
 import brave.propagation.CurrentTraceContext;
 import brave.propagation.Propagation;
@@ -99,20 +100,38 @@ public final class Tracer {
     }
   }
 
+  /**
+   * Shared by spans that aren't sampled when {@link Tracing.Builder#unsampledTraceIds(boolean)} is
+   * false. Having no identifiers, only the sampling decision is propagated downstream.
+   */
+  static final TraceContext NOT_SAMPLED_CONTEXT =
+      TraceContext.newBuilder().traceId(0L).spanId(0L).sampled(false).build();
+  static final Span NOT_SAMPLED_SPAN = NoopSpan.create(NOT_SAMPLED_CONTEXT);
+
   final Clock clock;
   final Endpoint localEndpoint;
   final Recorder recorder;
   final Sampler sampler;
   final CurrentTraceContext currentTraceContext;
   final boolean traceId128Bit;
+  final boolean unsampledTraceIds;
 
   Tracer(Tracing.Builder builder) {
     this.clock = builder.clock;
     this.localEndpoint = builder.localEndpoint;
-    this.recorder = new Recorder(localEndpoint, clock, builder.reporter);
+    Recorder.Builder recorderBuilder = Recorder.newBuilder(localEndpoint, clock, builder.reporter)
+        .recycleSpans(builder.recycleSpans)
+        .orphanFlushInterval(builder.orphanFlushInterval, builder.orphanFlushIntervalUnit)
+        .maxSpanLifetime(builder.maxSpanLifetime, builder.maxSpanLifetimeUnit)
+        .metrics(builder.recorderMetrics);
+    if (builder.bytesReporter != null) {
+      recorderBuilder.reporter(builder.encoding, builder.bytesReporter);
+    }
+    this.recorder = recorderBuilder.build();
     this.sampler = builder.sampler;
     this.currentTraceContext = builder.currentTraceContext;
     this.traceId128Bit = builder.traceId128Bit;
+    this.unsampledTraceIds = builder.unsampledTraceIds;
   }
 
   /** @deprecated use {@link Tracing#clock()} */
@@ -125,7 +144,7 @@ public final class Tracer {
    * instead.
    */
   public Span newTrace() {
-    return ensureSampled(nextContext(null, SamplingFlags.EMPTY));
+    return newTrace(SamplingFlags.EMPTY);
   }
 
   /**
@@ -150,6 +169,7 @@ public final class Tracer {
    */
   public final Span joinSpan(TraceContext context) {
     if (context == null) throw new NullPointerException("context == null");
+    if (!unsampledTraceIds && Boolean.FALSE.equals(context.sampled())) return NOT_SAMPLED_SPAN;
     // If we are joining a trace, we are sharing IDs with the caller
     return ensureSampled(context.toBuilder().shared(true).build());
   }
@@ -172,7 +192,12 @@ public final class Tracer {
    * }</pre>
    */
   public Span newTrace(SamplingFlags samplingFlags) {
-    return ensureSampled(nextContext(null, samplingFlags));
+    long nextId = Platform.get().randomLong();
+    // Make the sampling decision before building the context, so we only build it once
+    Boolean sampled = samplingFlags.sampled();
+    if (sampled == null) sampled = sampler.isSampled(nextId);
+    if (!sampled && !unsampledTraceIds) return NOT_SAMPLED_SPAN;
+    return toSpan(newRootContext(nextId, sampled, samplingFlags.debug()));
   }
 
   /** Converts the context as-is to a Span object */
@@ -181,6 +206,11 @@ public final class Tracer {
     if (context.sampled() == null || context.sampled()) {
       return RealSpan.create(context, clock, recorder);
     }
+    return noopSpan(context);
+  }
+
+  Span noopSpan(TraceContext context) {
+    if (!unsampledTraceIds || NOT_SAMPLED_CONTEXT.equals(context)) return NOT_SAMPLED_SPAN;
     return NoopSpan.create(context);
   }
 
@@ -191,7 +221,7 @@ public final class Tracer {
   public Span newChild(TraceContext parent) {
     if (parent == null) throw new NullPointerException("parent == null");
     if (Boolean.FALSE.equals(parent.sampled())) {
-      return NoopSpan.create(parent);
+      return noopSpan(parent);
     }
     return ensureSampled(nextContext(parent, parent));
   }
@@ -212,9 +242,13 @@ public final class Tracer {
     if (parent != null) {
       return parent.toBuilder().spanId(nextId).parentId(parent.spanId()).build();
     }
+    return newRootContext(nextId, samplingFlags.sampled(), samplingFlags.debug());
+  }
+
+  TraceContext newRootContext(long nextId, @Nullable Boolean sampled, boolean debug) {
     return TraceContext.newBuilder()
-        .sampled(samplingFlags.sampled())
-        .debug(samplingFlags.debug())
+        .sampled(sampled)
+        .debug(debug)
         .traceIdHigh(traceId128Bit ? Platform.get().randomLong() : 0L)
         .traceId(nextId)
         .spanId(nextId).build();
@@ -252,7 +286,16 @@ public final class Tracer {
    * risk leaking resources associated with the scope.
    */
   public SpanInScope withSpanInScope(Span span) {
-    return new SpanInScope(currentTraceContext.newScope(span.context()));
+    CurrentTraceContext.Scope scope = currentTraceContext.newScope(span.context());
+    // Scopes that are reused are wrapped once, as they are common in request processing
+    if (scope == CurrentTraceContext.Scope.NOOP) return SpanInScope.NOOP;
+    if (scope instanceof ReusableScope) {
+      ReusableScope reusable = (ReusableScope) scope;
+      SpanInScope result = reusable.spanInScope;
+      if (result == null) reusable.spanInScope = result = new SpanInScope(scope);
+      return result;
+    }
+    return new SpanInScope(scope);
   }
 
   /** Returns the current span in scope or null if there isn't one. */
@@ -269,6 +312,8 @@ public final class Tracer {
 
   /** A span remains in the scope it was bound to until close is called. */
   public static final class SpanInScope implements Closeable {
+    static final SpanInScope NOOP = new SpanInScope(CurrentTraceContext.Scope.NOOP);
+
     final CurrentTraceContext.Scope scope;
 
     // This type hides the SPI type and allows us to double-check the SPI didn't return null.
@@ -8,8 +8,10 @@ import brave.propagation.Propagation;
 import brave.propagation.TraceContext;
 import brave.sampler.Sampler;
 import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
 import zipkin.Endpoint;
 import zipkin.reporter.AsyncReporter;
+import zipkin.reporter.Encoding;
 import zipkin.reporter.Reporter;
 import zipkin.reporter.Sender;
 
@@ -84,10 +86,19 @@ public abstract class Tracing implements Closeable {
     String localServiceName;
     Endpoint localEndpoint;
     Reporter<zipkin.Span> reporter;
+    Encoding encoding;
+    Reporter<byte[]> bytesReporter;
     Clock clock;
     Sampler sampler = Sampler.ALWAYS_SAMPLE;
     CurrentTraceContext currentTraceContext = new CurrentTraceContext.Default();
     boolean traceId128Bit = false;
+    boolean recycleSpans = false;
+    boolean unsampledTraceIds = true;
+    long orphanFlushInterval = 0;
+    TimeUnit orphanFlushIntervalUnit = TimeUnit.MILLISECONDS;
+    long maxSpanLifetime = 0;
+    TimeUnit maxSpanLifetimeUnit = TimeUnit.MILLISECONDS;
+    RecorderMetrics recorderMetrics = RecorderMetrics.NOOP_METRICS;
     Propagation.Factory propagationFactory = Propagation.Factory.B3;
 
     /**
@@ -135,6 +146,30 @@ public abstract class Tracing implements Closeable {
       return this;
     }
 
+    /**
+     * Like {@link #reporter(Reporter)}, except spans are encoded directly into bytes of the given
+     * encoding. This is more efficient, as no {@link zipkin.Span} is built only to be encoded.
+     *
+     * <p>For example, here's how to batch send encoded spans via http:
+     *
+     * <pre>{@code
+     * sender = URLConnectionSender.create("http://localhost:9411/api/v1/spans");
+     * reporter = AsyncReporter.builder(sender).build(new Encoder<byte[]>() {
+     *   public Encoding encoding() { return sender.encoding(); }
+     *   public byte[] encode(byte[] span) { return span; }
+     * });
+     *
+     * tracerBuilder.reporter(sender.encoding(), reporter);
+     * }</pre>
+     */
+    public Builder reporter(Encoding encoding, Reporter<byte[]> reporter) {
+      if (encoding == null) throw new NullPointerException("encoding == null");
+      if (reporter == null) throw new NullPointerException("reporter == null");
+      this.encoding = encoding;
+      this.bytesReporter = reporter;
+      return this;
+    }
+
     /** See {@link Tracing#clock()} */
     public Builder clock(Clock clock) {
       if (clock == null) throw new NullPointerException("clock == null");
@@ -167,6 +202,74 @@ public abstract class Tracing implements Closeable {
       return this;
     }
 
+    /**
+     * When false, spans that are not sampled share a constant context without trace identifiers,
+     * instead of each having their own. This makes the unsampled path allocate nothing: creating,
+     * scoping and injecting such a span only writes {@code X-B3-Sampled: 0} downstream. Defaults to
+     * true.
+     *
+     * <p>Don't disable this if you correlate logs or other data by trace ID regardless of sampling.
+     */
+    public Builder unsampledTraceIds(boolean unsampledTraceIds) {
+      this.unsampledTraceIds = unsampledTraceIds;
+      return this;
+    }
+
+    /**
+     * When true, the objects used to record sampled spans are returned to a bounded pool after they
+     * are reported, and reused for subsequent spans. This reduces GC churn at high sampled request
+     * rates. Defaults to false.
+     *
+     * <p>A mutation that races with finishing a span is dropped, as opposed to affecting a span
+     * that reused the same object. Mutating a span after it finished, such as tagging it, isn't
+     * ignored though: like without recycling, it starts a new span with the same IDs, which is
+     * reported when finished or orphaned.
+     */
+    public Builder recycleSpans(boolean recycleSpans) {
+      this.recycleSpans = recycleSpans;
+      return this;
+    }
+
+    /**
+     * Spans abandoned without being finished are reported once their context is garbage collected.
+     * By default, this happens on whichever thread next records a span. When positive, this work is
+     * instead done by a low-priority daemon thread at the given interval, which keeps it off request
+     * threads. The thread is stopped when {@link Tracing#close()} is called.
+     */
+    public Builder orphanFlushInterval(long interval, TimeUnit unit) {
+      if (interval < 0) throw new IllegalArgumentException("interval < 0");
+      if (unit == null) throw new NullPointerException("unit == null");
+      this.orphanFlushInterval = interval;
+      this.orphanFlushIntervalUnit = unit;
+      return this;
+    }
+
+    /**
+     * When positive, spans in progress longer than this are reported with a "brave.expired"
+     * annotation. This bounds memory held by spans leaked by instrumentation, which otherwise wait
+     * for their context to be garbage collected. Defaults to zero (disabled).
+     *
+     * <p>Finishing an expired span does nothing. However, other changes to it, such as tags, start
+     * a new span with the same IDs, which is reported when finished or expired in turn.
+     *
+     * <p>Deadlines are checked by a low-priority daemon thread, which is stopped when {@link
+     * Tracing#close()} is called.
+     */
+    public Builder maxSpanLifetime(long maxSpanLifetime, TimeUnit unit) {
+      if (maxSpanLifetime < 0) throw new IllegalArgumentException("maxSpanLifetime < 0");
+      if (unit == null) throw new NullPointerException("unit == null");
+      this.maxSpanLifetime = maxSpanLifetime;
+      this.maxSpanLifetimeUnit = unit;
+      return this;
+    }
+
+    /** Defaults to {@link RecorderMetrics#NOOP_METRICS} */
+    public Builder recorderMetrics(RecorderMetrics recorderMetrics) {
+      if (recorderMetrics == null) throw new NullPointerException("recorderMetrics == null");
+      this.recorderMetrics = recorderMetrics;
+      return this;
+    }
+
     public Tracing build() {
       if (clock == null) clock = Platform.get();
       if (localEndpoint == null) {
@@ -236,6 +339,7 @@ public abstract class Tracing implements Closeable {
     }
 
     @Override public void close() {
+      tracer.recorder.close();
       if (current != this) return;
       // don't blindly set most recent to null as there could be a race
       synchronized (Tracing.class) {
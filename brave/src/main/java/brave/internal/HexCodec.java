@@ -1,5 +1,7 @@
 package brave.internal;
 
+import java.util.Arrays;
+
 // code originally imported from zipkin.Util
 public final class HexCodec {
 
@@ -37,6 +39,75 @@ public final class HexCodec {
     return result;
   }
 
+  /**
+   * Like {@link #lowerHexToUnsignedLong(String)}, except this reads the 1 to 32 characters between
+   * the indexes, and returns zero instead of throwing when they aren't lower-hex. Zero isn't a
+   * valid ID, so callers can treat it as absent without a try/catch on the hot path.
+   */
+  public static long lenientLowerHexToUnsignedLong(CharSequence lowerHex, int beginIndex,
+      int endIndex) {
+    int length = endIndex - beginIndex;
+    if (length < 1 || length > 32) return 0;
+    if (length > 16) beginIndex = endIndex - 16; // trim off any high bits
+
+    long result = 0;
+    for (int i = beginIndex; i < endIndex; i++) {
+      int c = lowerHex.charAt(i);
+      int digit = c < HEX_VALUES.length ? HEX_VALUES[c] : -1;
+      if (digit < 0) return 0;
+      result = (result << 4) | digit;
+    }
+    return result;
+  }
+
+  /** Like {@link #lenientLowerHexToUnsignedLong(CharSequence, int, int)}, for US-ASCII bytes. */
+  public static long lenientLowerHexToUnsignedLong(byte[] lowerHex, int beginIndex,
+      int endIndex) {
+    int length = endIndex - beginIndex;
+    if (length < 1 || length > 32) return 0;
+    if (length > 16) beginIndex = endIndex - 16; // trim off any high bits
+
+    long result = 0;
+    for (int i = beginIndex; i < endIndex; i++) {
+      int c = lowerHex[i]; // negative when not ASCII
+      int digit = c >= 0 && c < HEX_VALUES.length ? HEX_VALUES[c] : -1;
+      if (digit < 0) return 0;
+      result = (result << 4) | digit;
+    }
+    return result;
+  }
+
+  /**
+   * Returns true if the characters between the indexes are all lower-hex. This tells a zero result
+   * of {@link #lenientLowerHexToUnsignedLong(CharSequence, int, int)} apart from a malformed one,
+   * for example in the high bits of a trace ID, which are zero when a 64-bit ID is padded.
+   */
+  public static boolean isLowerHex(CharSequence lowerHex, int beginIndex, int endIndex) {
+    for (int i = beginIndex; i < endIndex; i++) {
+      int c = lowerHex.charAt(i);
+      if (c >= HEX_VALUES.length || HEX_VALUES[c] < 0) return false;
+    }
+    return true;
+  }
+
+  /** Like {@link #isLowerHex(CharSequence, int, int)}, for US-ASCII bytes. */
+  public static boolean isLowerHex(byte[] lowerHex, int beginIndex, int endIndex) {
+    for (int i = beginIndex; i < endIndex; i++) {
+      int c = lowerHex[i]; // negative when not ASCII
+      if (c < 0 || c >= HEX_VALUES.length || HEX_VALUES[c] < 0) return false;
+    }
+    return true;
+  }
+
+  /** Maps an ASCII character to its lower-hex value, or -1 if it isn't one. */
+  static final byte[] HEX_VALUES = new byte['f' + 1];
+
+  static {
+    Arrays.fill(HEX_VALUES, (byte) -1);
+    for (int i = 0; i < 10; i++) HEX_VALUES['0' + i] = (byte) i;
+    for (int i = 0; i < 6; i++) HEX_VALUES['a' + i] = (byte) (10 + i);
+  }
+
   static NumberFormatException isntLowerHexLong(String lowerHex) {
     throw new NumberFormatException(
         lowerHex + " should be a 1 to 32 character lower-hex string with no prefix");
@@ -73,6 +144,13 @@ public final class HexCodec {
     writeHexByte(data, pos + 14, (byte) (v & 0xff));
   }
 
+  /** Like {@link #writeHexLong(char[], int, long)}, except writes US-ASCII bytes. */
+  public static void writeHexLong(byte[] data, int pos, long v) {
+    for (int shift = 60; shift >= 0; shift -= 4) {
+      data[pos++] = (byte) HEX_DIGITS[(int) (v >>> shift) & 0xf];
+    }
+  }
+
   static final char[] HEX_DIGITS =
       {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
 
@@ -0,0 +1,17 @@
+package brave.internal;
+
+import brave.Tracer;
+import brave.propagation.CurrentTraceContext;
+
+/**
+ * A scope that a {@link CurrentTraceContext} returns more than once, such as one that reverts a
+ * thread to nothing in scope. It holds the {@link Tracer.SpanInScope} wrapping it, so that {@link
+ * Tracer#withSpanInScope} doesn't allocate a wrapper each time either.
+ */
+public abstract class ReusableScope implements CurrentTraceContext.Scope {
+  /**
+   * Assigned by {@link Tracer} on first use. This is racy for scopes shared across threads, which
+   * is fine as any wrapper of this scope works.
+   */
+  public Tracer.SpanInScope spanInScope;
+}
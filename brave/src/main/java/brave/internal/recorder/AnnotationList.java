@@ -0,0 +1,45 @@
+package brave.internal.recorder;
+
+/**
+ * Stores annotations as parallel arrays of timestamps and values, so that no {@link
+ * zipkin.Annotation} is allocated until a span is converted for reporting. Values are typically
+ * constants, so each annotation costs little more than its timestamp.
+ */
+final class AnnotationList extends AppendOnlyArrays {
+  static final int TIMESTAMPS = 0, VALUES = 1;
+
+  AnnotationList() {
+    super(2);
+  }
+
+  @Override Object newArray(int array, int length) {
+    return array == TIMESTAMPS ? new long[length] : new String[length];
+  }
+
+  /** Returns false if the annotation was dropped because the list is at capacity. */
+  boolean add(long timestamp, String value) {
+    int index = claim(1);
+    if (index == -1) return false;
+    int chunk = chunkFor(index), offset = offsetFor(index, chunk);
+    ((long[]) arrayForWrite(chunk, TIMESTAMPS))[offset] = timestamp;
+    ((String[]) arrayForWrite(chunk, VALUES))[offset] = value;
+    return true;
+  }
+
+  /** Only call after appends stopped. */
+  int size() {
+    return slots();
+  }
+
+  /** Only call after appends stopped. */
+  long timestamp(int index) {
+    int chunk = chunkFor(index);
+    return ((long[]) arrayForRead(chunk, TIMESTAMPS))[offsetFor(index, chunk)];
+  }
+
+  /** Only call after appends stopped. */
+  String value(int index) {
+    int chunk = chunkFor(index);
+    return ((String[]) arrayForRead(chunk, VALUES))[offsetFor(index, chunk)];
+  }
+}
@@ -0,0 +1,100 @@
+package brave.internal.recorder;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Base for lists that support concurrent appends without locking. Each append claims slots by
+ * incrementing the size, then writes into chunks of one or more parallel arrays. Chunks double in
+ * size and are never moved, so appenders never wait for each other, and storage grows in place.
+ *
+ * <p>Nothing is allocated until the first append, as many spans have no annotations or tags.
+ * Chunks are retained on {@link #clear()}, so that a recycled list doesn't allocate.
+ *
+ * <p>Elements may only be read after appends have stopped and their writes are visible, for
+ * example after a {@link MutableSpan} is sealed.
+ */
+abstract class AppendOnlyArrays {
+  /** A multiple of two, so that slots claimed in pairs never straddle chunks. */
+  static final int FIRST_CHUNK_SIZE = 4;
+  /** Caps the list at 4 * (2^16 - 1) slots. Appends past this are dropped. */
+  static final int MAX_CHUNKS = 16;
+  static final int CAPACITY = FIRST_CHUNK_SIZE * ((1 << MAX_CHUNKS) - 1);
+
+  static final AtomicIntegerFieldUpdater<AppendOnlyArrays> SIZE =
+      AtomicIntegerFieldUpdater.newUpdater(AppendOnlyArrays.class, "size");
+  static final AtomicReferenceFieldUpdater<AppendOnlyArrays, AtomicReferenceArray> CHUNKS =
+      AtomicReferenceFieldUpdater.newUpdater(
+          AppendOnlyArrays.class, AtomicReferenceArray.class, "chunks");
+
+  volatile int size;
+  /** Holds {@link #arrayCount} arrays per chunk, in chunk order. Lazily allocated. */
+  volatile AtomicReferenceArray<Object> chunks;
+  final int arrayCount;
+
+  AppendOnlyArrays(int arrayCount) {
+    this.arrayCount = arrayCount;
+  }
+
+  /** Allocates the array at the given position within a chunk */
+  abstract Object newArray(int array, int length);
+
+  /** Returns the index of the first of {@code count} claimed slots, or -1 if at capacity. */
+  int claim(int count) {
+    int index = SIZE.getAndAdd(this, count);
+    return index + count <= CAPACITY ? index : -1;
+  }
+
+  /** Returns an array of the chunk, allocating it if needed. Either ours or a racing append's. */
+  Object arrayForWrite(int chunk, int array) {
+    AtomicReferenceArray<Object> chunks = this.chunks;
+    if (chunks == null) {
+      CHUNKS.compareAndSet(this, null, new AtomicReferenceArray<Object>(MAX_CHUNKS * arrayCount));
+      chunks = this.chunks;
+    }
+    int i = chunk * arrayCount + array;
+    Object result = chunks.get(i);
+    if (result == null) {
+      chunks.compareAndSet(i, null, newArray(array, FIRST_CHUNK_SIZE << chunk));
+      result = chunks.get(i);
+    }
+    return result;
+  }
+
+  /** Only call after appends stopped. */
+  Object arrayForRead(int chunk, int array) {
+    return chunks.get(chunk * arrayCount + array);
+  }
+
+  /** Returns the count of slots written, excluding any dropped. Only call after appends stopped. */
+  int slots() {
+    int size = this.size;
+    return size < CAPACITY ? size : CAPACITY;
+  }
+
+  /** Releases references to elements, retaining chunks. Only call after appends stopped. */
+  void clear() {
+    int slots = slots();
+    for (int chunk = 0; slots > 0 && chunk < MAX_CHUNKS; chunk++) {
+      int length = Math.min(slots, FIRST_CHUNK_SIZE << chunk);
+      for (int array = 0; array < arrayCount; array++) {
+        Object elements = arrayForRead(chunk, array);
+        if (elements instanceof Object[]) Arrays.fill((Object[]) elements, 0, length, null);
+      }
+      slots -= length;
+    }
+    size = 0;
+  }
+
+  /** Chunk n starts at index {@code FIRST_CHUNK_SIZE * (2^n - 1)} */
+  static int chunkFor(int index) {
+    int n = index / FIRST_CHUNK_SIZE + 1;
+    return 31 - Integer.numberOfLeadingZeros(n);
+  }
+
+  static int offsetFor(int index, int chunk) {
+    return index - FIRST_CHUNK_SIZE * ((1 << chunk) - 1);
+  }
+}
@@ -0,0 +1,215 @@
+package brave.internal.recorder;
+
+import java.util.Arrays;
+
+/**
+ * A growable byte array that is reused per thread when encoding spans, so that encoding only
+ * allocates the array returned by {@link #toByteArray()}.
+ *
+ * <p>Writes are inspired by {@code zipkin.internal.Buffer}, which isn't accessible to us.
+ */
+final class Buffer {
+  static final int INITIAL_CAPACITY = 512;
+  /** Buffers that grow larger than this aren't retained, to avoid pinning memory to a thread. */
+  static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+  static final ThreadLocal<Buffer> BUFFER = new ThreadLocal<Buffer>() {
+    @Override protected Buffer initialValue() {
+      return new Buffer(INITIAL_CAPACITY);
+    }
+  };
+
+  /** Returns an empty buffer for use by the current thread. */
+  static Buffer get() {
+    Buffer result = BUFFER.get();
+    if (result.buf.length > MAX_RETAINED_CAPACITY) {
+      BUFFER.set(result = new Buffer(INITIAL_CAPACITY));
+    }
+    result.pos = 0;
+    return result;
+  }
+
+  byte[] buf;
+  int pos;
+
+  Buffer(int initialCapacity) {
+    buf = new byte[initialCapacity];
+  }
+
+  void require(int count) {
+    if (pos + count <= buf.length) return;
+    buf = Arrays.copyOf(buf, Math.max(buf.length << 1, pos + count));
+  }
+
+  Buffer writeByte(int v) {
+    require(1);
+    buf[pos++] = (byte) v;
+    return this;
+  }
+
+  Buffer write(byte[] v) {
+    require(v.length);
+    System.arraycopy(v, 0, buf, pos, v.length);
+    pos += v.length;
+    return this;
+  }
+
+  Buffer writeShort(int v) {
+    require(2);
+    buf[pos++] = (byte) ((v >>> 8L) & 0xff);
+    buf[pos++] = (byte) (v & 0xff);
+    return this;
+  }
+
+  Buffer writeInt(int v) {
+    require(4);
+    setInt(pos, v);
+    pos += 4;
+    return this;
+  }
+
+  /** Overwrites 4 bytes at the given position, such as a length prefix. */
+  void setInt(int index, int v) {
+    buf[index++] = (byte) ((v >>> 24L) & 0xff);
+    buf[index++] = (byte) ((v >>> 16L) & 0xff);
+    buf[index++] = (byte) ((v >>> 8L) & 0xff);
+    buf[index] = (byte) (v & 0xff);
+  }
+
+  Buffer writeLong(long v) {
+    require(8);
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      buf[pos++] = (byte) ((v >>> shift) & 0xff);
+    }
+    return this;
+  }
+
+  /** Only call with strings known to be US-ASCII, such as JSON field names. */
+  Buffer writeAscii(String v) {
+    int length = v.length();
+    require(length);
+    for (int i = 0; i < length; i++) {
+      buf[pos++] = (byte) v.charAt(i);
+    }
+    return this;
+  }
+
+  /** Writes a decimal number, for example a JSON timestamp. */
+  Buffer writeDecimal(long v) {
+    if (v < 0) return writeAscii(Long.toString(v));
+    require(19); // digits in Long.MAX_VALUE
+    int start = pos;
+    do {
+      buf[pos++] = (byte) ('0' + (v % 10));
+      v /= 10;
+    } while (v != 0);
+    for (int i = start, j = pos - 1; i < j; i++, j--) { // reverse the digits
+      byte b = buf[i];
+      buf[i] = buf[j];
+      buf[j] = b;
+    }
+    return this;
+  }
+
+  static final byte[] HEX_DIGITS =
+      {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+  Buffer writeLowerHex(long v) {
+    require(16);
+    for (int shift = 60; shift >= 0; shift -= 4) {
+      buf[pos++] = HEX_DIGITS[(int) ((v >>> shift) & 0xf)];
+    }
+    return this;
+  }
+
+  Buffer writeUtf8(String v) {
+    for (int i = 0, length = v.length(); i < length; i++) {
+      char c = v.charAt(i);
+      if (c < 0x80) {
+        writeByte(c);
+      } else {
+        i = writeUtf8(v, i, c);
+      }
+    }
+    return this;
+  }
+
+  /** Writes a non-ascii character, returning the index of the last char consumed. */
+  int writeUtf8(String v, int i, char c) {
+    require(4);
+    if (c < 0x800) {
+      buf[pos++] = (byte) (0xc0 | (c >> 6));
+      buf[pos++] = (byte) (0x80 | (c & 0x3f));
+    } else if (c < 0xd800 || c > 0xdfff) {
+      buf[pos++] = (byte) (0xe0 | (c >> 12));
+      buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+      buf[pos++] = (byte) (0x80 | (c & 0x3f));
+    } else {
+      char low = i + 1 < v.length() ? v.charAt(i + 1) : 0;
+      if (c > 0xdbff || low < 0xdc00 || low > 0xdfff) {
+        buf[pos++] = '?'; // malformed surrogate, which is also what String.getBytes does
+        return i;
+      }
+      int codePoint = 0x010000 + (((c & 0x3ff) << 10) | (low & 0x3ff));
+      buf[pos++] = (byte) (0xf0 | (codePoint >> 18));
+      buf[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+      buf[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+      buf[pos++] = (byte) (0x80 | (codePoint & 0x3f));
+      return i + 1;
+    }
+    return i;
+  }
+
+  /** Writes the contents of a JSON string, excluding the quotes. */
+  Buffer writeJsonEscaped(String v) {
+    for (int i = 0, length = v.length(); i < length; i++) {
+      char c = v.charAt(i);
+      if (c < 0x80) {
+        writeJsonEscaped(c);
+      } else if (c == '\u2028' || c == '\u2029') { // valid JSON, but not valid javascript
+        writeAscii(c == '\u2028' ? "\\u2028" : "\\u2029");
+      } else {
+        i = writeUtf8(v, i, c);
+      }
+    }
+    return this;
+  }
+
+  void writeJsonEscaped(char c) {
+    switch (c) {
+      case '"':
+        writeAscii("\\\"");
+        return;
+      case '\\':
+        writeAscii("\\\\");
+        return;
+      case '\t':
+        writeAscii("\\t");
+        return;
+      case '\b':
+        writeAscii("\\b");
+        return;
+      case '\n':
+        writeAscii("\\n");
+        return;
+      case '\r':
+        writeAscii("\\r");
+        return;
+      case '\f':
+        writeAscii("\\f");
+        return;
+      default:
+        if (c < 0x20) {
+          writeAscii("\\u00");
+          writeByte(HEX_DIGITS[c >> 4]);
+          writeByte(HEX_DIGITS[c & 0xf]);
+        } else {
+          writeByte(c);
+        }
+    }
+  }
+
+  byte[] toByteArray() {
+    return Arrays.copyOf(buf, pos);
+  }
+}
@@ -0,0 +1,77 @@
+package brave.internal.recorder;
+
+import zipkin.Endpoint;
+import zipkin.internal.JsonCodec;
+
+import static zipkin.Constants.LOCAL_COMPONENT;
+
+/** Writes the same bytes as {@link zipkin.Codec#JSON}, including omitting empty lists. */
+final class JsonSpanEncoder extends SpanEncoder {
+  final byte[] localEndpoint;
+
+  JsonSpanEncoder(Endpoint localEndpoint) {
+    this.localEndpoint = JsonCodec.writeEndpoint(localEndpoint);
+  }
+
+  @Override void write(MutableSpan span, Buffer b) {
+    b.writeAscii("{\"traceId\":\"");
+    if (span.traceIdHigh != 0) b.writeLowerHex(span.traceIdHigh);
+    b.writeLowerHex(span.traceId);
+    b.writeAscii("\",\"id\":\"").writeLowerHex(span.spanId);
+    b.writeAscii("\",\"name\":\"").writeJsonEscaped(name(span)).writeByte('"');
+    if (span.parentId != 0) {
+      b.writeAscii(",\"parentId\":\"").writeLowerHex(span.parentId).writeByte('"');
+    }
+    if (span.timestamp != null) b.writeAscii(",\"timestamp\":").writeDecimal(span.timestamp);
+    if (span.duration != null) b.writeAscii(",\"duration\":").writeDecimal(span.duration);
+
+    int[] order = annotationOrder(span);
+    int count = order != null ? order.length : span.annotationCount();
+    if (count > 0) {
+      b.writeAscii(",\"annotations\":[");
+      for (int i = 0; i < count; i++) {
+        int index = order != null ? order[i] : i;
+        if (i > 0) b.writeByte(',');
+        b.writeAscii("{\"timestamp\":").writeDecimal(span.annotationTimestamp(index));
+        b.writeAscii(",\"value\":\"").writeJsonEscaped(span.annotationValue(index));
+        b.writeAscii("\",\"endpoint\":").write(localEndpoint).writeByte('}');
+      }
+      b.writeByte(']');
+    }
+
+    order = binaryAnnotationOrder(span);
+    count = order != null ? order.length : binaryAnnotationCount(span);
+    if (count > 0) {
+      b.writeAscii(",\"binaryAnnotations\":[");
+      for (int i = 0; i < count; i++) {
+        if (i > 0) b.writeByte(',');
+        writeBinaryAnnotation(span, order != null ? order[i] : i, b);
+      }
+      b.writeByte(']');
+    }
+
+    if (span.debug) b.writeAscii(",\"debug\":true");
+    b.writeByte('}');
+  }
+
+  /** @see #binaryAnnotationCount(MutableSpan) */
+  void writeBinaryAnnotation(MutableSpan span, int index, Buffer b) {
+    int tagCount = span.tags.size();
+    if (index < tagCount) {
+      b.writeAscii("{\"key\":\"").writeJsonEscaped(span.tags.key(index));
+      b.writeAscii("\",\"value\":\"").writeJsonEscaped(span.tags.value(index));
+      b.writeAscii("\",\"endpoint\":").write(localEndpoint).writeByte('}');
+    } else if (index == tagCount && span.remoteAddress != null) {
+      b.writeAscii("{\"key\":\"").writeAscii(span.remoteAddress.key);
+      b.writeAscii("\",\"value\":true,\"endpoint\":");
+      b.write(JsonCodec.writeEndpoint(span.remoteAddress.endpoint)).writeByte('}');
+    } else {
+      b.writeAscii("{\"key\":\"" + LOCAL_COMPONENT + "\",\"value\":\"\",\"endpoint\":");
+      b.write(localEndpoint).writeByte('}');
+    }
+  }
+
+  @Override public String toString() {
+    return "JsonSpanEncoder";
+  }
+}
@@ -3,6 +3,7 @@ package brave.internal.recorder;
 import brave.Span;
 import brave.internal.Nullable;
 import brave.propagation.TraceContext;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import zipkin.Annotation;
 import zipkin.BinaryAnnotation;
 import zipkin.Constants;
@@ -10,99 +11,212 @@ import zipkin.Endpoint;
 
 import static zipkin.Constants.LOCAL_COMPONENT;
 
+/**
+ * Records data about a span without locking, as one span is often touched by several threads, such
+ * as a request thread, an IO callback and a timeout.
+ *
+ * <p>Callers wrap mutations with {@link #beginWrite(TraceContext)} and {@link #endWrite()}. Scalar
+ * fields are last writer wins, while annotations and tags are appended to lists that never block.
+ * A single compare-and-set of {@link #state} seals the span when it is finished, after which writes
+ * are rejected. The sealing thread waits for writes in progress, then owns the span exclusively
+ * while it is converted to a {@link zipkin.Span}.
+ *
+ * <p>Annotations and tags are held as timestamps and strings, as opposed to zipkin objects that
+ * each repeat the local endpoint. Core annotations implied by the kind are only flags. This keeps
+ * long-lived spans small, and objects are only created if the span is converted by {@link
+ * #toSpan()}.
+ */
 final class MutableSpan {
+  /** High bit of {@link #state}. The remaining bits count writes in progress. */
+  static final int SEALED = 1 << 31;
+  static final AtomicIntegerFieldUpdater<MutableSpan> STATE =
+      AtomicIntegerFieldUpdater.newUpdater(MutableSpan.class, "state");
+  static final AtomicIntegerFieldUpdater<MutableSpan> FLAGS =
+      AtomicIntegerFieldUpdater.newUpdater(MutableSpan.class, "flags");
+
   final Endpoint localEndpoint;
-  final zipkin.Span.Builder span;
-  boolean shared;
+  final zipkin.Span.Builder span; // only accessed by the thread that sealed this span
+  final AnnotationList annotations = new AnnotationList();
+  final TagList tags = new TagList();
+  volatile int state;
+
+  // identifiers of the context this span is currently recording, reassigned when recycled
+  long traceIdHigh, traceId, spanId;
+  long parentId; // zero means absent
+  boolean debug, shared;
+
   // fields which are added late
-  long startTimestamp;
-  Endpoint remoteEndpoint;
+  volatile String name;
+  volatile long startTimestamp;
+  volatile Endpoint remoteEndpoint;
 
   // flags which help us know how to reassemble the span
-  Span.Kind kind;
+  volatile Span.Kind kind;
 
-  int flags;
+  volatile int flags;
   static final int FLAG_CS = 1 << 0;
   static final int FLAG_SR = 1 << 1;
   static final int FLAG_SS = 1 << 2;
   static final int FLAG_CR = 1 << 3;
   static final int FLAG_LOCAL_ENDPOINT = 1 << 4;
+  // core annotations implied by the kind, which are added when converting the span
+  static final int FLAG_IMPLIED_START = 1 << 5;
+  static final int FLAG_IMPLIED_FINISH = 1 << 6;
 
-  boolean finished;
+  // assigned by finish
+  long finishTimestamp; // only read when FLAG_IMPLIED_FINISH is set
+  @Nullable Long timestamp, duration;
+  @Nullable BinaryAnnotation remoteAddress;
 
-  // Since this is not exposed, this class could be refactored later as needed to act in a pool
-  // to reduce GC churn. This would involve calling span.clear and resetting the fields below.
   MutableSpan(TraceContext context, Endpoint localEndpoint) {
     this.localEndpoint = localEndpoint;
-    this.span = zipkin.Span.builder()
-        .traceIdHigh(context.traceIdHigh())
-        .traceId(context.traceId())
-        .parentId(context.parentId())
-        .id(context.spanId())
-        .debug(context.debug())
-        .name(""); // avoid a NPE
+    this.span = zipkin.Span.builder();
+    reset(context);
+  }
+
+  /**
+   * Clears any state from a previous use, so that this instance can record the given context. This
+   * allows instances to be recycled by {@link MutableSpanPool} to reduce GC churn.
+   *
+   * <p>This must only be called on a span that is sealed or was never shared with other threads.
+   */
+  MutableSpan reset(TraceContext context) {
+    state = SEALED; // in case this wasn't sealed, reject writes until we are done
+    annotations.clear();
+    tags.clear();
+    traceIdHigh = context.traceIdHigh();
+    traceId = context.traceId();
+    spanId = context.spanId();
+    parentId = context.parentIdAsLong();
+    debug = context.debug();
     shared = context.shared();
+    name = "";
     startTimestamp = 0;
     remoteEndpoint = null;
     kind = null;
-    finished = false;
+    flags = 0;
+    finishTimestamp = 0;
+    timestamp = duration = null;
+    remoteAddress = null;
+    state = 0; // publishes the above fields to writers
+    return this;
+  }
+
+  /**
+   * Returns true if a write to this span may proceed. This is false if this span was sealed or
+   * recycled for a different context, which allows callers who looked up this span before it was
+   * finished to ignore late mutations. When true, the caller must call {@link #endWrite()}.
+   */
+  boolean beginWrite(TraceContext context) {
+    for (; ; ) {
+      int s = state;
+      if ((s & SEALED) != 0) return false;
+      if (STATE.compareAndSet(this, s, s + 1)) break;
+    }
+    if (isFor(context)) return true;
+    endWrite();
+    return false;
+  }
+
+  void endWrite() {
+    STATE.decrementAndGet(this);
+  }
+
+  /** Returns false if this span was finished or recycled for a different context. */
+  boolean isRecording(TraceContext context) {
+    return (state & SEALED) == 0 && isFor(context);
+  }
+
+  boolean isFor(TraceContext context) {
+    return spanId == context.spanId()
+        && traceId == context.traceId()
+        && traceIdHigh == context.traceIdHigh()
+        && shared == context.shared();
   }
 
-  synchronized MutableSpan start(long timestamp) {
+  /**
+   * Rejects further writes and waits for any in progress. Returns false if this span was already
+   * sealed, which means another thread owns it.
+   */
+  boolean seal() {
+    for (; ; ) {
+      int s = state;
+      if ((s & SEALED) != 0) return false;
+      if (STATE.compareAndSet(this, s, s | SEALED)) break;
+    }
+    while (state != SEALED) Thread.yield(); // writes in progress are short
+    return true;
+  }
+
+  MutableSpan start(long timestamp) {
     startTimestamp = timestamp;
     return this;
   }
 
-  synchronized MutableSpan name(String name) {
-    span.name(name);
+  MutableSpan name(String name) {
+    this.name = name;
     return this;
   }
 
-  synchronized MutableSpan kind(Span.Kind kind) {
+  MutableSpan kind(Span.Kind kind) {
     this.kind = kind;
     return this;
   }
 
-  synchronized MutableSpan annotate(long timestamp, String value) {
-    span.addAnnotation(Annotation.create(timestamp, value, localEndpoint));
-    flags |= FLAG_LOCAL_ENDPOINT;
-    if (value.length() != 2) return this;
-    if (value.equals(Constants.CLIENT_SEND)) {
-      flags |= FLAG_CS;
-      kind = Span.Kind.CLIENT;
-    } else if (value.equals(Constants.SERVER_RECV)) {
-      flags |= FLAG_SR;
-      kind = Span.Kind.SERVER;
-    } else if (value.equals(Constants.SERVER_SEND)) {
-      flags |= FLAG_SS;
-      kind = Span.Kind.SERVER;
-    } else if (value.equals(Constants.CLIENT_RECV)) {
-      flags |= FLAG_CR;
-      kind = Span.Kind.CLIENT;
+  MutableSpan annotate(long timestamp, String value) {
+    annotations.add(timestamp, value);
+    int flag = FLAG_LOCAL_ENDPOINT;
+    if (value.length() == 2) {
+      if (value.equals(Constants.CLIENT_SEND)) {
+        flag |= FLAG_CS;
+        kind = Span.Kind.CLIENT;
+      } else if (value.equals(Constants.SERVER_RECV)) {
+        flag |= FLAG_SR;
+        kind = Span.Kind.SERVER;
+      } else if (value.equals(Constants.SERVER_SEND)) {
+        flag |= FLAG_SS;
+        kind = Span.Kind.SERVER;
+      } else if (value.equals(Constants.CLIENT_RECV)) {
+        flag |= FLAG_CR;
+        kind = Span.Kind.CLIENT;
+      }
     }
+    addFlags(flag);
     return this;
   }
 
-  synchronized MutableSpan tag(String key, String value) {
-    span.addBinaryAnnotation(BinaryAnnotation.create(key, value, localEndpoint));
-    flags |= FLAG_LOCAL_ENDPOINT;
+  MutableSpan tag(String key, String value) {
+    tags.add(key, value);
+    addFlags(FLAG_LOCAL_ENDPOINT);
     return this;
   }
 
-  synchronized MutableSpan remoteEndpoint(Endpoint remoteEndpoint) {
+  MutableSpan remoteEndpoint(Endpoint remoteEndpoint) {
     this.remoteEndpoint = remoteEndpoint;
     return this;
   }
 
-  /** Completes and reports the span */
-  synchronized MutableSpan finish(@Nullable Long finishTimestamp) {
-    if (finished) return this;
-    finished = true;
+  void addFlags(int flag) {
+    for (; ; ) {
+      int f = flags;
+      if ((f & flag) == flag || FLAGS.compareAndSet(this, f, f | flag)) return;
+    }
+  }
 
+  /** Seals and completes the span, unless it was already sealed. */
+  MutableSpan finish(@Nullable Long finishTimestamp) {
+    if (seal()) complete(finishTimestamp);
+    return this;
+  }
+
+  /** Completes the span. Only call from the thread that sealed this span. */
+  void complete(@Nullable Long finishTimestamp) {
+    long startTimestamp = this.startTimestamp;
+    int flags = this.flags;
     if (startTimestamp != 0) {
-      span.timestamp(startTimestamp);
+      timestamp = startTimestamp;
       if (finishTimestamp != null) {
-        span.duration(Math.max(finishTimestamp - startTimestamp, 1));
+        duration = Math.max(finishTimestamp - startTimestamp, 1);
       }
     }
     if (kind != null) {
@@ -124,34 +238,84 @@ final class MutableSpan {
           throw new AssertionError("update kind mapping");
       }
       if (remoteEndpoint != null) {
-        span.addBinaryAnnotation(BinaryAnnotation.address(remoteEndpointType, remoteEndpoint));
+        remoteAddress = BinaryAnnotation.address(remoteEndpointType, remoteEndpoint);
       }
       if (startAnnotation != null && startTimestamp != 0) {
         if (startAnnotation.equals(Constants.SERVER_RECV)) flags |= FLAG_SR;
         if (startAnnotation.equals(Constants.CLIENT_SEND)) flags |= FLAG_CS;
-        span.addAnnotation(Annotation.create(startTimestamp, startAnnotation, localEndpoint));
+        flags |= FLAG_IMPLIED_START;
       }
       if (finishAnnotation != null && finishTimestamp != null) {
-        span.addAnnotation(Annotation.create(finishTimestamp, finishAnnotation, localEndpoint));
+        this.finishTimestamp = finishTimestamp;
+        flags |= FLAG_IMPLIED_FINISH;
       }
       flags |= FLAG_LOCAL_ENDPOINT;
     }
     // don't report server-side timestamp on shared or incomplete spans
     if (shared && (flags & FLAG_SR) != 0) {
-      span.timestamp(null).duration(null);
+      timestamp = duration = null;
     }
     // don't report client span.timestamp if unfinished.
     // This allows one-way to be modeled as span.kind(serverOrClient).start().flush()
     if ((flags & (FLAG_CS | FLAG_SR)) != 0 && finishTimestamp == null) {
-      span.timestamp(null);
+      timestamp = null;
     }
+    this.flags = flags;
+  }
+
+  /**
+   * Returns the count of annotations, including core annotations implied by the kind, which follow
+   * those recorded. Only call from the thread that completed this span.
+   */
+  int annotationCount() {
+    int result = annotations.size();
+    if ((flags & FLAG_IMPLIED_START) != 0) result++;
+    if ((flags & FLAG_IMPLIED_FINISH) != 0) result++;
+    return result;
+  }
+
+  /** @see #annotationCount() */
+  long annotationTimestamp(int index) {
+    int size = annotations.size();
+    if (index < size) return annotations.timestamp(index);
+    return isImpliedStart(index, size) ? startTimestamp : finishTimestamp;
+  }
+
+  /** @see #annotationCount() */
+  String annotationValue(int index) {
+    int size = annotations.size();
+    if (index < size) return annotations.value(index);
+    boolean client = kind == Span.Kind.CLIENT;
+    if (isImpliedStart(index, size)) return client ? Constants.CLIENT_SEND : Constants.SERVER_RECV;
+    return client ? Constants.CLIENT_RECV : Constants.SERVER_SEND;
+  }
+
+  boolean isImpliedStart(int index, int size) {
+    return index == size && (flags & FLAG_IMPLIED_START) != 0;
+  }
+
+  /** Only call from the thread that sealed this span. */
+  zipkin.Span toSpan() {
+    span.clear()
+        .timestamp(timestamp)
+        .duration(duration) // Span.Builder.clear() doesn't reset duration
+        .traceIdHigh(traceIdHigh)
+        .traceId(traceId)
+        .parentId(parentId != 0 ? Long.valueOf(parentId) : null)
+        .id(spanId)
+        .debug(debug)
+        .name(name);
+    for (int i = 0, length = annotationCount(); i < length; i++) {
+      span.addAnnotation(
+          Annotation.create(annotationTimestamp(i), annotationValue(i), localEndpoint));
+    }
+    for (int i = 0, length = tags.size(); i < length; i++) {
+      span.addBinaryAnnotation(BinaryAnnotation.create(tags.key(i), tags.value(i), localEndpoint));
+    }
+    if (remoteAddress != null) span.addBinaryAnnotation(remoteAddress);
     if ((flags & FLAG_LOCAL_ENDPOINT) == 0) { // create a small dummy annotation
       span.addBinaryAnnotation(BinaryAnnotation.create(LOCAL_COMPONENT, "", localEndpoint));
     }
-    return this;
-  }
-
-  synchronized zipkin.Span toSpan() {
     return span.build();
   }
 }
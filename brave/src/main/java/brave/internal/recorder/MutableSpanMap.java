@@ -1,144 +1,392 @@
 package brave.internal.recorder;
 
 import brave.Clock;
+import brave.RecorderMetrics;
 import brave.internal.Nullable;
 import brave.propagation.TraceContext;
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import zipkin.Endpoint;
 import zipkin.reporter.Reporter;
 
+import static brave.internal.HexCodec.toLowerHex;
+
 /**
  * Similar to Finagle's deadline span map, except this is GC pressure as opposed to timeout driven.
  * This means there's no bookkeeping thread required in order to flush orphaned spans.
  *
- * <p>Spans are weakly referenced by their owning context. When the keys are collected, they are
- * transferred to a queue, waiting to be reported. A call to modify any span will implicitly flush
- * orphans to Zipkin. Spans in this state will have a "brave.flush" annotation added to them.
+ * <p>Unless orphan tracking is disabled, spans are weakly referenced by their owning context. When
+ * the keys are collected, they are transferred to a queue, waiting to be reported. A call to modify
+ * any span will implicitly flush orphans to Zipkin, unless a background {@link OrphanFlusher} does
+ * this instead. Spans in this state will have a "brave.flush" annotation added to them.
+ *
+ * <p>As garbage collection of long-lived contexts can be rare, spans can optionally also be given a
+ * deadline via a {@link TimingWheel}. Spans still in the map after their deadline are reported by
+ * the background thread with a "brave.expired" annotation.
+ *
+ * <p>The table is keyed on the primitive identifiers of a context, so lookups neither allocate nor
+ * call {@link TraceContext#hashCode()}. It is split into segments, each an open-addressing table
+ * with linear probing. Reads are lock-free, while writes lock the segment they affect.
  *
- * <p>The internal implementation is derived from WeakConcurrentMap by Rafael Winterhalter. See
+ * <p>The orphan tracking approach is derived from WeakConcurrentMap by Rafael Winterhalter. See
  * https://github.com/raphw/weak-lock-free/blob/master/src/main/java/com/blogspot/mydailyjava/weaklockfree/WeakConcurrentMap.java
  */
 final class MutableSpanMap extends ReferenceQueue<TraceContext> {
   static final Logger logger = Logger.getLogger(MutableSpanMap.class.getName());
 
-  // Eventhough we only put by RealKey, we allow get and remove by LookupKey
-  final ConcurrentMap<Object, MutableSpan> delegate = new ConcurrentHashMap<>(64);
+  /** The top bits of the hash code choose the segment */
+  static final int SEGMENT_BITS = 4;
+  static final int INITIAL_SEGMENT_CAPACITY = 8;
+
+  final Segment[] segments;
   final Endpoint localEndpoint;
   final Clock clock;
-  final Reporter<zipkin.Span> reporter;
+  final MutableSpanReporter reporter;
+  @Nullable final MutableSpanPool pool;
+  final boolean trackOrphans;
+  /** When false, orphans are reported by a background thread instead of on get or remove. */
+  final boolean reportOrphansInline;
+  final RecorderMetrics metrics;
+  @Nullable final TimingWheel deadlines;
 
   MutableSpanMap(Endpoint localEndpoint, Clock clock, Reporter<zipkin.Span> reporter) {
+    this(localEndpoint, clock, reporter, null, true, true, RecorderMetrics.NOOP_METRICS);
+  }
+
+  MutableSpanMap(Endpoint localEndpoint, Clock clock, Reporter<zipkin.Span> reporter,
+      @Nullable MutableSpanPool pool, boolean trackOrphans, boolean reportOrphansInline,
+      RecorderMetrics metrics) {
+    this(localEndpoint, clock, MutableSpanReporter.create(reporter), pool, trackOrphans,
+        reportOrphansInline, metrics, null);
+  }
+
+  MutableSpanMap(Endpoint localEndpoint, Clock clock, MutableSpanReporter reporter,
+      @Nullable MutableSpanPool pool, boolean trackOrphans, boolean reportOrphansInline,
+      RecorderMetrics metrics, @Nullable TimingWheel deadlines) {
     this.localEndpoint = localEndpoint;
     this.clock = clock;
     this.reporter = reporter;
+    this.pool = pool;
+    this.trackOrphans = trackOrphans;
+    this.reportOrphansInline = reportOrphansInline;
+    this.metrics = metrics;
+    this.deadlines = deadlines;
+    this.segments = new Segment[1 << SEGMENT_BITS];
+    for (int i = 0; i < segments.length; i++) segments[i] = new Segment();
   }
 
   @Nullable MutableSpan get(TraceContext context) {
     if (context == null) throw new NullPointerException("context == null");
-    reportOrphanedSpans();
-    return delegate.get(new LookupKey(context));
+    if (reportOrphansInline) reportOrphanedSpans();
+    int hash = hash(context);
+    return segmentFor(hash).get(context, hash);
   }
 
   MutableSpan getOrCreate(TraceContext context) {
     MutableSpan result = get(context);
     if (result != null) return result;
 
-    MutableSpan newSpan = new MutableSpan(context, localEndpoint);
-    MutableSpan previousSpan = delegate.putIfAbsent(new RealKey(context, this), newSpan);
-    if (previousSpan != null) return previousSpan; // lost race
+    MutableSpan newSpan = pool != null
+        ? pool.acquire(context)
+        : new MutableSpan(context, localEndpoint);
+    int hash = hash(context);
+    Entry entry = new Entry(context, hash, newSpan, trackOrphans ? this : null);
+    MutableSpan previousSpan = segmentFor(hash).putIfAbsent(entry);
+    if (previousSpan != null) { // lost race
+      if (pool != null) pool.release(newSpan);
+      return previousSpan;
+    }
+    if (deadlines != null) deadlines.add(entry, System.nanoTime());
     return newSpan;
   }
 
   @Nullable MutableSpan remove(TraceContext context) {
     if (context == null) throw new NullPointerException("context == null");
-    MutableSpan result = delegate.remove(new LookupKey(context));
-    reportOrphanedSpans(); // also clears the reference relating to the recent remove
-    return result;
+    int hash = hash(context);
+    Entry removed = segmentFor(hash).remove(context, hash);
+    if (removed != null && deadlines != null) deadlines.cancel(removed);
+    // also clears the reference relating to the recent remove
+    if (reportOrphansInline) reportOrphanedSpans();
+    return removed != null ? removed.span : null;
   }
 
   /** Reports spans orphaned by garbage collection. */
   void reportOrphanedSpans() {
+    reportOrphanedSpans(Integer.MAX_VALUE);
+  }
+
+  /**
+   * Reports up to {@code max} spans orphaned by garbage collection, returning the count reported.
+   */
+  int reportOrphanedSpans(int max) {
+    int count = 0;
     Reference<? extends TraceContext> reference;
-    while ((reference = poll()) != null) {
-      TraceContext context = reference.get();
-      MutableSpan value = delegate.remove(reference);
-      if (value == null) continue;
-      try {
-        value.annotate(clock.currentTimeMicroseconds(), "brave.flush");
-        reporter.report(value.toSpan());
-      } catch (RuntimeException e) {
-        // don't crash the caller if there was a problem reporting an unrelated span.
-        if (context != null && logger.isLoggable(Level.FINE)) {
-          logger.log(Level.FINE, "error flushing " + context, e);
-        }
+    while (count < max && (reference = poll()) != null) {
+      Entry entry = (Entry) reference;
+      if (!segmentFor(entry.hash).remove(entry)) continue;
+      if (deadlines != null) deadlines.cancel(entry);
+      if (!entry.span.seal()) continue;
+      count++;
+      metrics.incrementOrphanedSpans();
+      report(entry, "brave.flush");
+    }
+    return count;
+  }
+
+  /**
+   * Reports up to {@code max} spans whose deadline passed, returning the count reported. Only call
+   * from one thread.
+   */
+  int reportExpiredSpans(long nowNanos, int max) {
+    if (deadlines == null) return 0;
+    int count = 0;
+    Entry entry;
+    while (count < max && (entry = deadlines.pollExpired(nowNanos)) != null) {
+      if (!segmentFor(entry.hash).remove(entry)) continue;
+      if (!entry.span.seal()) continue;
+      count++;
+      metrics.incrementExpiredSpans();
+      report(entry, "brave.expired");
+    }
+    return count;
+  }
+
+  /** Reports a span that was sealed on behalf of the instrumentation that abandoned it. */
+  void report(Entry entry, String annotation) {
+    MutableSpan value = entry.span;
+    try {
+      value.annotate(clock.currentTimeMicroseconds(), annotation);
+      reporter.report(value);
+      if (pool != null) pool.release(value);
+    } catch (RuntimeException e) {
+      // don't crash the caller if there was a problem reporting an unrelated span.
+      if (logger.isLoggable(Level.FINE)) {
+        logger.log(Level.FINE, "error flushing " + entry, e);
+      }
+    }
+  }
+
+  /** Returns the count of spans in this map, including any orphans not yet reported. */
+  int size() {
+    int result = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        result += segment.size;
       }
     }
+    return result;
+  }
+
+  Segment segmentFor(int hash) {
+    return segments[hash >>> (32 - SEGMENT_BITS)];
+  }
+
+  static int hash(TraceContext context) {
+    return hash(context.traceIdHigh(), context.traceId(), context.spanId(), context.shared());
+  }
+
+  /**
+   * Mixes the identifiers with a multiplicative hash, leaving the best mixed bits at the top. A span
+   * ID alone isn't enough, as root spans share their ID with the trace.
+   */
+  static int hash(long traceIdHigh, long traceId, long spanId, boolean shared) {
+    long h = (traceId * 0x9E3779B97F4A7C15L + spanId) ^ traceIdHigh;
+    h *= 0x9E3779B97F4A7C15L;
+    int result = (int) (h >>> 32);
+    return shared ? ~result : result;
   }
 
   /**
-   * Real keys contain a reference to the real context associated with a span. This is a weak
-   * reference, so that we get notified on GC pressure.
+   * Entries hold the identifiers of the context associated with a span. When tracking orphans, the
+   * entry is a weak reference to the context, so that we get notified on GC pressure.
    *
-   * <p>Since {@linkplain TraceContext}'s hash code is final, it is used directly both here and in
-   * lookup keys.
+   * <p>The only mutable fields are links used by {@link TimingWheel}, so that scheduling a deadline
+   * doesn't allocate.
+   *
+   * <p>The {@linkplain TraceContext#shared() shared} flag is part of the key, as a client span and
+   * the server span it shares IDs with are recorded separately when both are in this process.
    */
-  static final class RealKey extends WeakReference<TraceContext> {
-    final int hashCode;
+  static final class Entry extends WeakReference<TraceContext> {
+    final long traceIdHigh, traceId, spanId;
+    final boolean shared;
+    final int hash;
+    final MutableSpan span;
+    final boolean weak;
+
+    static final int SCHEDULED = 0, CANCELLED = 1, EXPIRED = 2;
+    static final AtomicIntegerFieldUpdater<Entry> WHEEL_STATE =
+        AtomicIntegerFieldUpdater.newUpdater(Entry.class, "wheelState");
 
-    RealKey(TraceContext context, ReferenceQueue<TraceContext> queue) {
-      super(context, queue);
-      hashCode = context.hashCode();
+    volatile int wheelState; // SCHEDULED until the first of cancel or expiry
+    long deadlineNanos; // written before the entry is published to the wheel
+    Entry wheelNext, nextCancelled; // pending and cancelled stacks
+    Entry wheelPrev; // with wheelNext, links within a bucket. Only used by the polling thread.
+    int wheelBucket = -1;
+
+    Entry(TraceContext context, int hash, MutableSpan span,
+        @Nullable ReferenceQueue<TraceContext> queue) {
+      super(queue != null ? context : null, queue);
+      this.traceIdHigh = context.traceIdHigh();
+      this.traceId = context.traceId();
+      this.spanId = context.spanId();
+      this.shared = context.shared();
+      this.hash = hash;
+      this.span = span;
+      this.weak = queue != null;
+    }
+
+    /** Cleared entries never match, as their span is waiting to be reported as an orphan. */
+    boolean matches(TraceContext context, int hash) {
+      return this.hash == hash
+          && spanId == context.spanId()
+          && traceId == context.traceId()
+          && traceIdHigh == context.traceIdHigh()
+          && shared == context.shared()
+          && (!weak || get() != null);
     }
 
     @Override public String toString() {
+      if (!weak) {
+        return "Entry(" + toLowerHex(traceIdHigh, traceId) + "/" + toLowerHex(spanId) + ")";
+      }
       TraceContext context = get();
       return context != null ? "WeakReference(" + context + ")" : "ClearedReference()";
     }
+  }
+
+  /** Placeholder for a removed entry, which keeps probe sequences intact. */
+  static final Entry TOMBSTONE = new Entry(
+      TraceContext.newBuilder().traceId(1L).spanId(1L).build(), 0, null, null);
+
+  /**
+   * An open-addressing table. The array is replaced on resize, so readers see either the old or new
+   * table, both of which are consistent. Writes are guarded by this.
+   */
+  static final class Segment {
+    volatile AtomicReferenceArray<Entry> table =
+        new AtomicReferenceArray<>(INITIAL_SEGMENT_CAPACITY);
+    int size, tombstones; // guarded by this
 
-    @Override public int hashCode() {
-      return this.hashCode;
+    @Nullable MutableSpan get(TraceContext context, int hash) {
+      AtomicReferenceArray<Entry> table = this.table;
+      int mask = table.length() - 1;
+      for (int i = hash & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+        Entry entry = table.get(i);
+        if (entry == null) return null;
+        if (entry != TOMBSTONE && entry.matches(context, hash)) return entry.span;
+      }
+      return null;
     }
 
-    /** Resolves hash code collisions */
-    @Override public boolean equals(Object other) {
-      TraceContext thisContext = get(), thatContext = ((RealKey) other).get();
-      if (thisContext == null) {
-        return thatContext == null;
-      } else {
-        return thisContext.equals(thatContext);
+    synchronized MutableSpan putIfAbsent(Entry newEntry) {
+      AtomicReferenceArray<Entry> table = this.table;
+      int mask = table.length() - 1, insertAt = -1;
+      for (int i = newEntry.hash & mask, probes = 0; probes <= mask;
+          i = (i + 1) & mask, probes++) {
+        Entry entry = table.get(i);
+        if (entry == null) {
+          if (insertAt == -1) insertAt = i;
+          break;
+        } else if (entry == TOMBSTONE) {
+          if (insertAt == -1) insertAt = i;
+        } else if (sameKey(entry, newEntry)) {
+          return entry.span;
+        }
       }
+      if (table.get(insertAt) == TOMBSTONE) tombstones--;
+      table.set(insertAt, newEntry);
+      size++;
+      if ((size + tombstones) * 4 >= table.length() * 3) rehash();
+      return null;
     }
-  }
 
-  /**
-   * Lookup keys are cheaper than real keys as reference tracking is not involved. We cannot use
-   * {@linkplain TraceContext} directly as a lookup key, as eventhough it has the same hash code as
-   * the real key, it would fail in equals comparison.
-   */
-  static final class LookupKey {
-    final TraceContext context;
+    @Nullable synchronized Entry remove(TraceContext context, int hash) {
+      AtomicReferenceArray<Entry> table = this.table;
+      int mask = table.length() - 1;
+      for (int i = hash & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+        Entry entry = table.get(i);
+        if (entry == null) return null;
+        if (entry != TOMBSTONE && entry.matches(context, hash)) {
+          removeAt(table, i);
+          return entry;
+        }
+      }
+      return null;
+    }
+
+    /** Removes the entry by identity, returning false if it was already removed. */
+    synchronized boolean remove(Entry toRemove) {
+      AtomicReferenceArray<Entry> table = this.table;
+      int mask = table.length() - 1;
+      for (int i = toRemove.hash & mask, probes = 0; probes <= mask;
+          i = (i + 1) & mask, probes++) {
+        Entry entry = table.get(i);
+        if (entry == null) return false;
+        if (entry == toRemove) {
+          removeAt(table, i);
+          return true;
+        }
+      }
+      return false;
+    }
 
-    LookupKey(TraceContext context) {
-      this.context = context;
+    void removeAt(AtomicReferenceArray<Entry> table, int i) {
+      table.set(i, TOMBSTONE);
+      size--;
+      tombstones++;
     }
 
-    @Override public int hashCode() {
-      return context.hashCode();
+    /** Purges tombstones, growing the table if it is at least half full. */
+    void rehash() {
+      AtomicReferenceArray<Entry> oldTable = this.table;
+      int length = oldTable.length();
+      if (size * 2 >= length) length <<= 1;
+      AtomicReferenceArray<Entry> newTable = new AtomicReferenceArray<>(length);
+      int mask = length - 1;
+      for (int j = 0; j < oldTable.length(); j++) {
+        Entry entry = oldTable.get(j);
+        if (entry == null || entry == TOMBSTONE) continue;
+        int i = entry.hash & mask;
+        while (newTable.get(i) != null) i = (i + 1) & mask;
+        newTable.set(i, entry);
+      }
+      tombstones = 0;
+      this.table = newTable;
     }
 
-    /** Resolves hash code collisions */
-    @Override public boolean equals(Object other) {
-      return context.equals(((RealKey) other).get());
+    synchronized void addEntriesTo(List<Entry> result) {
+      AtomicReferenceArray<Entry> table = this.table;
+      for (int i = 0; i < table.length(); i++) {
+        Entry entry = table.get(i);
+        if (entry != null && entry != TOMBSTONE) result.add(entry);
+      }
     }
   }
 
+  static boolean sameKey(Entry a, Entry b) {
+    return a.hash == b.hash
+        && a.spanId == b.spanId
+        && a.traceId == b.traceId
+        && a.traceIdHigh == b.traceIdHigh
+        && a.shared == b.shared
+        && (!a.weak || a.get() != null);
+  }
+
+  /** Returns a snapshot of the entries in this map, for debugging and tests. */
+  List<Entry> entries() {
+    List<Entry> result = new ArrayList<>();
+    for (Segment segment : segments) segment.addEntriesTo(result);
+    return result;
+  }
+
   @Override public String toString() {
-    return "MutableSpanMap" + delegate.keySet();
+    return "MutableSpanMap" + entries();
   }
 }
@@ -0,0 +1,61 @@
+package brave.internal.recorder;
+
+import brave.propagation.TraceContext;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import zipkin.Endpoint;
+
+/**
+ * A bounded pool of spans which have already been reported, used to reduce GC churn when many
+ * spans are sampled.
+ *
+ * <p>Slots are claimed with compare-and-set, starting at an index derived from the current thread.
+ * This means threads tend to recycle their own spans without contending on a shared lock. When the
+ * pool is empty, a new span is allocated. When it is full, released spans are left to the garbage
+ * collector.
+ */
+final class MutableSpanPool {
+  /** How many slots are probed before giving up on acquire or release */
+  static final int MAX_PROBES = 4;
+
+  final Endpoint localEndpoint;
+  final AtomicReferenceArray<MutableSpan> slots;
+  final int mask;
+
+  MutableSpanPool(Endpoint localEndpoint, int capacity) {
+    if (capacity < 1) throw new IllegalArgumentException("capacity < 1");
+    this.localEndpoint = localEndpoint;
+    int powerOfTwo = Integer.highestOneBit(capacity);
+    if (powerOfTwo < capacity) powerOfTwo <<= 1;
+    this.slots = new AtomicReferenceArray<>(powerOfTwo);
+    this.mask = powerOfTwo - 1;
+  }
+
+  /** Returns a recycled span, reset to the given context, or a new one if the pool is empty. */
+  MutableSpan acquire(TraceContext context) {
+    int index = startIndex();
+    for (int i = 0; i < MAX_PROBES; i++, index = (index + 1) & mask) {
+      if (slots.get(index) == null) continue; // avoid the write barrier on empty slots
+      MutableSpan span = slots.getAndSet(index, null);
+      if (span != null) return span.reset(context);
+    }
+    return new MutableSpan(context, localEndpoint);
+  }
+
+  /** Returns the span to the pool. This must only be called after the span was reported. */
+  void release(MutableSpan span) {
+    int index = startIndex();
+    for (int i = 0; i < MAX_PROBES; i++, index = (index + 1) & mask) {
+      if (slots.get(index) != null) continue;
+      if (slots.compareAndSet(index, null, span)) return;
+    }
+  }
+
+  int startIndex() {
+    long threadId = Thread.currentThread().getId();
+    return (int) (threadId * MAX_PROBES) & mask; // spread threads so their probes don't overlap
+  }
+
+  @Override public String toString() {
+    return "MutableSpanPool(" + slots.length() + ")";
+  }
+}
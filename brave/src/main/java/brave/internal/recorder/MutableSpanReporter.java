@@ -0,0 +1,55 @@
+package brave.internal.recorder;
+
+import zipkin.reporter.Reporter;
+
+/** Reports a span once it is sealed and completed. */
+abstract class MutableSpanReporter {
+
+  static MutableSpanReporter create(Reporter<zipkin.Span> reporter) {
+    if (reporter == null) throw new NullPointerException("reporter == null");
+    return new ToZipkinSpan(reporter);
+  }
+
+  static MutableSpanReporter create(SpanEncoder encoder, Reporter<byte[]> reporter) {
+    if (encoder == null) throw new NullPointerException("encoder == null");
+    if (reporter == null) throw new NullPointerException("reporter == null");
+    return new ToBytes(encoder, reporter);
+  }
+
+  /** Only call from the thread that sealed and completed the span. */
+  abstract void report(MutableSpan span);
+
+  static final class ToZipkinSpan extends MutableSpanReporter {
+    final Reporter<zipkin.Span> delegate;
+
+    ToZipkinSpan(Reporter<zipkin.Span> delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override void report(MutableSpan span) {
+      delegate.report(span.toSpan());
+    }
+
+    @Override public String toString() {
+      return delegate.toString();
+    }
+  }
+
+  static final class ToBytes extends MutableSpanReporter {
+    final SpanEncoder encoder;
+    final Reporter<byte[]> delegate;
+
+    ToBytes(SpanEncoder encoder, Reporter<byte[]> delegate) {
+      this.encoder = encoder;
+      this.delegate = delegate;
+    }
+
+    @Override void report(MutableSpan span) {
+      delegate.report(encoder.encode(span));
+    }
+
+    @Override public String toString() {
+      return encoder + "(" + delegate + ")";
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package brave.internal.recorder;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reports spans orphaned by garbage collection or expired by their deadline from a low-priority
+ * daemon thread, so that request threads never pay for it. At most {@code maxPerInterval} spans are
+ * reported per interval, which bounds the work done after a collection that cleared many contexts.
+ *
+ * <p>This also updates the in-flight spans gauge each interval.
+ */
+final class OrphanFlusher implements Runnable, Closeable {
+  static final Logger logger = Logger.getLogger(OrphanFlusher.class.getName());
+
+  final MutableSpanMap spanMap;
+  final long intervalNanos;
+  final int maxPerInterval;
+  final Thread thread;
+  volatile boolean closed;
+
+  OrphanFlusher(MutableSpanMap spanMap, long interval, TimeUnit unit, int maxPerInterval) {
+    if (interval <= 0) throw new IllegalArgumentException("interval <= 0");
+    if (maxPerInterval <= 0) throw new IllegalArgumentException("maxPerInterval <= 0");
+    this.spanMap = spanMap;
+    this.intervalNanos = unit.toNanos(interval);
+    this.maxPerInterval = maxPerInterval;
+    this.thread = new Thread(this, "brave-orphan-flusher");
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MIN_PRIORITY);
+  }
+
+  OrphanFlusher start() {
+    thread.start();
+    return this;
+  }
+
+  @Override public void run() {
+    while (!closed) {
+      LockSupport.parkNanos(this, intervalNanos);
+      if (closed) return;
+      try {
+        int reported = spanMap.reportOrphanedSpans(maxPerInterval);
+        spanMap.reportExpiredSpans(System.nanoTime(), maxPerInterval - reported);
+        spanMap.metrics.updateInFlightSpans(spanMap.size());
+      } catch (RuntimeException e) {
+        // don't kill the thread, as orphans would then accumulate forever
+        if (logger.isLoggable(Level.FINE)) logger.log(Level.FINE, "error flushing orphans", e);
+      }
+    }
+  }
+
+  /** Stops the thread. Any orphans not yet reported are left for the garbage collector. */
+  @Override public void close() {
+    closed = true;
+    LockSupport.unpark(thread);
+  }
+
+  @Override public String toString() {
+    return "OrphanFlusher(" + TimeUnit.NANOSECONDS.toMillis(intervalNanos) + "ms)";
+  }
+}
@@ -1,21 +1,176 @@
 package brave.internal.recorder;
 
 import brave.Clock;
+import brave.RecorderMetrics;
 import brave.Span;
 import brave.internal.Nullable;
 import brave.propagation.TraceContext;
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
 import zipkin.Endpoint;
+import zipkin.reporter.Encoding;
 import zipkin.reporter.Reporter;
 
 /** Dispatches mutations on a span to a shared object per trace/span id. */
-public final class Recorder {
+public final class Recorder implements Closeable {
+
+  public static Builder newBuilder(Endpoint localEndpoint, Clock clock,
+      Reporter<zipkin.Span> reporter) {
+    return new Builder(localEndpoint, clock, reporter);
+  }
+
+  public static final class Builder {
+    final Endpoint localEndpoint;
+    final Clock clock;
+    final Reporter<zipkin.Span> reporter;
+    Encoding encoding;
+    Reporter<byte[]> bytesReporter;
+    boolean recycleSpans = false;
+    boolean trackOrphans = true;
+    long orphanFlushIntervalNanos = 0;
+    long maxSpanLifetimeNanos = 0;
+    int maxOrphansPerFlush = 1000;
+    RecorderMetrics metrics = RecorderMetrics.NOOP_METRICS;
+
+    Builder(Endpoint localEndpoint, Clock clock, Reporter<zipkin.Span> reporter) {
+      if (localEndpoint == null) throw new NullPointerException("localEndpoint == null");
+      if (clock == null) throw new NullPointerException("clock == null");
+      if (reporter == null) throw new NullPointerException("reporter == null");
+      this.localEndpoint = localEndpoint;
+      this.clock = clock;
+      this.reporter = reporter;
+    }
+
+    /**
+     * When set, finished spans are encoded directly into bytes and passed to this reporter instead
+     * of the one passed to {@link Recorder#newBuilder}. This skips building an intermediate {@link
+     * zipkin.Span}, which would otherwise be walked again when encoding.
+     */
+    public Builder reporter(Encoding encoding, Reporter<byte[]> reporter) {
+      if (encoding == null) throw new NullPointerException("encoding == null");
+      if (reporter == null) throw new NullPointerException("reporter == null");
+      this.encoding = encoding;
+      this.bytesReporter = reporter;
+      return this;
+    }
+
+    /**
+     * When true, spans are returned to a bounded pool after they are reported, and reused for
+     * subsequent spans. Defaults to false.
+     */
+    public Builder recycleSpans(boolean recycleSpans) {
+      this.recycleSpans = recycleSpans;
+      return this;
+    }
+
+    /**
+     * When true, spans are weakly referenced by their context, so that spans abandoned without
+     * being finished are reported after their context is garbage collected. Defaults to true.
+     *
+     * <p>Only disable this when all spans are finished or flushed, as otherwise abandoned spans are
+     * never reported and remain in memory.
+     */
+    public Builder trackOrphans(boolean trackOrphans) {
+      this.trackOrphans = trackOrphans;
+      return this;
+    }
+
+    /**
+     * When positive, spans orphaned by garbage collection are reported by a low-priority daemon
+     * thread at this interval, instead of by whichever thread next mutates a span. Defaults to zero.
+     *
+     * <p>Call {@link Recorder#close()} to stop the thread.
+     */
+    public Builder orphanFlushInterval(long interval, TimeUnit unit) {
+      if (interval < 0) throw new IllegalArgumentException("interval < 0");
+      if (unit == null) throw new NullPointerException("unit == null");
+      this.orphanFlushIntervalNanos = unit.toNanos(interval);
+      return this;
+    }
+
+    /**
+     * When positive, spans in progress longer than this are reported with a "brave.expired"
+     * annotation. Defaults to zero, which means spans are only reported when finished, flushed, or
+     * orphaned by garbage collection.
+     *
+     * <p>An expired span is no longer in the map: finishing it does nothing, while other mutations
+     * start a new span with the same IDs.
+     *
+     * <p>This bounds the memory held by leaked spans when old-generation collections are rare. It
+     * implies a background thread, which checks deadlines at the {@link #orphanFlushInterval(long,
+     * TimeUnit) orphan flush interval}, or a 32nd of the lifetime if that isn't set.
+     */
+    public Builder maxSpanLifetime(long maxSpanLifetime, TimeUnit unit) {
+      if (maxSpanLifetime < 0) throw new IllegalArgumentException("maxSpanLifetime < 0");
+      if (unit == null) throw new NullPointerException("unit == null");
+      this.maxSpanLifetimeNanos = unit.toNanos(maxSpanLifetime);
+      return this;
+    }
+
+    /**
+     * Caps the orphans reported per {@link #orphanFlushInterval(long, TimeUnit) interval}, so that
+     * the background thread doesn't burst after a large collection. Defaults to 1000.
+     */
+    public Builder maxOrphansPerFlush(int maxOrphansPerFlush) {
+      if (maxOrphansPerFlush <= 0) throw new IllegalArgumentException("maxOrphansPerFlush <= 0");
+      this.maxOrphansPerFlush = maxOrphansPerFlush;
+      return this;
+    }
+
+    /** Defaults to {@link RecorderMetrics#NOOP_METRICS} */
+    public Builder metrics(RecorderMetrics metrics) {
+      if (metrics == null) throw new NullPointerException("metrics == null");
+      this.metrics = metrics;
+      return this;
+    }
+
+    public Recorder build() {
+      return new Recorder(this);
+    }
+  }
+
+  /** Spans are pooled in units of cores, as typically that's how many threads are finishing spans */
+  static final int POOL_SIZE_PER_CPU = 8;
 
   final MutableSpanMap spanMap;
-  final Reporter<zipkin.Span> reporter;
+  final MutableSpanReporter reporter;
+  @Nullable final MutableSpanPool pool;
+  @Nullable final OrphanFlusher orphanFlusher;
 
   public Recorder(Endpoint localEndpoint, Clock clock, Reporter<zipkin.Span> reporter) {
-    this.spanMap = new MutableSpanMap(localEndpoint, clock, reporter);
-    this.reporter = reporter;
+    this(newBuilder(localEndpoint, clock, reporter));
+  }
+
+  Recorder(Builder builder) {
+    this.pool = builder.recycleSpans
+        ? new MutableSpanPool(builder.localEndpoint,
+        Runtime.getRuntime().availableProcessors() * POOL_SIZE_PER_CPU)
+        : null;
+    TimingWheel deadlines = builder.maxSpanLifetimeNanos > 0
+        ? new TimingWheel(builder.maxSpanLifetimeNanos, System.nanoTime())
+        : null;
+    boolean flushInBackground = deadlines != null
+        || (builder.trackOrphans && builder.orphanFlushIntervalNanos > 0);
+    this.reporter = builder.bytesReporter != null
+        ? MutableSpanReporter.create(SpanEncoder.create(builder.encoding, builder.localEndpoint),
+        builder.bytesReporter)
+        : MutableSpanReporter.create(builder.reporter);
+    this.spanMap = new MutableSpanMap(builder.localEndpoint, builder.clock, reporter, pool,
+        builder.trackOrphans, !flushInBackground, builder.metrics, deadlines);
+    if (flushInBackground) {
+      long intervalNanos = builder.orphanFlushIntervalNanos > 0
+          ? builder.orphanFlushIntervalNanos
+          : deadlines.tickNanos;
+      this.orphanFlusher = new OrphanFlusher(spanMap, intervalNanos, TimeUnit.NANOSECONDS,
+          builder.maxOrphansPerFlush).start();
+    } else {
+      this.orphanFlusher = null;
+    }
+  }
+
+  /** Stops any background thread. This doesn't affect spans in progress. */
+  @Override public void close() {
+    if (orphanFlusher != null) orphanFlusher.close();
   }
 
   /**
@@ -31,25 +186,49 @@ public final class Recorder {
 
   /** @see brave.Span#start(long) */
   public void start(TraceContext context, long timestamp) {
-    spanMap.getOrCreate(context).start(timestamp);
+    MutableSpan span = spanMap.getOrCreate(context);
+    if (!span.beginWrite(context)) return;
+    try {
+      span.start(timestamp);
+    } finally {
+      span.endWrite();
+    }
   }
 
   /** @see brave.Span#name(String) */
   public void name(TraceContext context, String name) {
     if (name == null) throw new NullPointerException("name == null");
-    spanMap.getOrCreate(context).name(name);
+    MutableSpan span = spanMap.getOrCreate(context);
+    if (!span.beginWrite(context)) return;
+    try {
+      span.name(name);
+    } finally {
+      span.endWrite();
+    }
   }
 
   /** @see brave.Span#kind(Span.Kind) */
   public void kind(TraceContext context, Span.Kind kind) {
     if (kind == null) throw new NullPointerException("kind == null");
-    spanMap.getOrCreate(context).kind(kind);
+    MutableSpan span = spanMap.getOrCreate(context);
+    if (!span.beginWrite(context)) return;
+    try {
+      span.kind(kind);
+    } finally {
+      span.endWrite();
+    }
   }
 
   /** @see brave.Span#annotate(long, String) */
   public void annotate(TraceContext context, long timestamp, String value) {
     if (value == null) throw new NullPointerException("value == null");
-    spanMap.getOrCreate(context).annotate(timestamp, value);
+    MutableSpan span = spanMap.getOrCreate(context);
+    if (!span.beginWrite(context)) return;
+    try {
+      span.annotate(timestamp, value);
+    } finally {
+      span.endWrite();
+    }
   }
 
   /** @see brave.Span#tag(String, String) */
@@ -57,32 +236,42 @@ public final class Recorder {
     if (key == null) throw new NullPointerException("key == null");
     if (key.isEmpty()) throw new IllegalArgumentException("key is empty");
     if (value == null) throw new NullPointerException("value == null");
-    spanMap.getOrCreate(context).tag(key, value);
+    MutableSpan span = spanMap.getOrCreate(context);
+    if (!span.beginWrite(context)) return;
+    try {
+      span.tag(key, value);
+    } finally {
+      span.endWrite();
+    }
   }
 
   /** @see brave.Span#remoteEndpoint(Endpoint) */
   public void remoteEndpoint(TraceContext context, Endpoint remoteEndpoint) {
     if (remoteEndpoint == null) throw new NullPointerException("remoteEndpoint == null");
-    spanMap.getOrCreate(context).remoteEndpoint(remoteEndpoint);
+    MutableSpan span = spanMap.getOrCreate(context);
+    if (!span.beginWrite(context)) return;
+    try {
+      span.remoteEndpoint(remoteEndpoint);
+    } finally {
+      span.endWrite();
+    }
   }
 
   /** @see Span#finish() */
   public void finish(TraceContext context, long finishTimestamp) {
     MutableSpan span = spanMap.remove(context);
-    if (span == null) return;
-    synchronized (span) {
-      span.finish(finishTimestamp);
-      reporter.report(span.toSpan());
-    }
+    if (span == null || !span.seal()) return;
+    span.complete(finishTimestamp);
+    reporter.report(span);
+    if (pool != null) pool.release(span);
   }
 
   /** @see Span#flush() */
   public void flush(TraceContext context) {
     MutableSpan span = spanMap.remove(context);
-    if (span == null) return;
-    synchronized (span) {
-      span.finish(null);
-      reporter.report(span.toSpan());
-    }
+    if (span == null || !span.seal()) return;
+    span.complete(null);
+    reporter.report(span);
+    if (pool != null) pool.release(span);
   }
 }
@@ -0,0 +1,130 @@
+package brave.internal.recorder;
+
+import brave.internal.Nullable;
+import java.util.Arrays;
+import java.util.Locale;
+import zipkin.Endpoint;
+import zipkin.reporter.Encoding;
+
+import static zipkin.Constants.LOCAL_COMPONENT;
+
+/**
+ * Encodes a finished {@link MutableSpan} directly into Zipkin's wire format, which avoids building
+ * an intermediate {@link zipkin.Span} only to walk it again when encoding.
+ *
+ * <p>As every annotation and tag recorded in process shares the local endpoint, it is encoded once
+ * when this is constructed, then copied as bytes into each span.
+ *
+ * <p>Encoders normalize the span as {@link zipkin.Span.Builder#build()} would: the name is
+ * lowercase, annotations are sorted by timestamp then value, and binary annotations by key, each
+ * without duplicates. Spans usually record annotations in order, so sorting is skipped unless
+ * needed. Service names need no work, as {@link Endpoint} lowercases them already.
+ */
+abstract class SpanEncoder {
+
+  static SpanEncoder create(Encoding encoding, Endpoint localEndpoint) {
+    if (encoding == null) throw new NullPointerException("encoding == null");
+    if (localEndpoint == null) throw new NullPointerException("localEndpoint == null");
+    switch (encoding) {
+      case JSON:
+        return new JsonSpanEncoder(localEndpoint);
+      case THRIFT:
+        return new ThriftSpanEncoder(localEndpoint);
+      default:
+        throw new UnsupportedOperationException("encoding not supported: " + encoding);
+    }
+  }
+
+  /** Only call from the thread that sealed and completed the span. */
+  byte[] encode(MutableSpan span) {
+    Buffer buffer = Buffer.get();
+    write(span, buffer);
+    return buffer.toByteArray();
+  }
+
+  abstract void write(MutableSpan span, Buffer buffer);
+
+  static String name(MutableSpan span) {
+    String name = span.name;
+    return name.isEmpty() ? "" : name.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Returns the indexes of {@link MutableSpan#annotationValue(int) annotations} in the order
+   * {@link zipkin.Span} lists them, or null if they are already in that order.
+   */
+  @Nullable static int[] annotationOrder(MutableSpan span) {
+    int count = span.annotationCount();
+    boolean sorted = true;
+    for (int i = 1; i < count && sorted; i++) sorted = compareAnnotations(span, i - 1, i) < 0;
+    if (sorted) return null;
+
+    int[] order = new int[count];
+    int size = 0;
+    for (int i = 0; i < count; i++) { // insertion sort, as there are usually few annotations
+      int j = size;
+      while (j > 0 && compareAnnotations(span, order[j - 1], i) > 0) j--;
+      if (j > 0 && compareAnnotations(span, order[j - 1], i) == 0) continue; // duplicate
+      System.arraycopy(order, j, order, j + 1, size - j);
+      order[j] = i;
+      size++;
+    }
+    return size == count ? order : Arrays.copyOf(order, size);
+  }
+
+  static int compareAnnotations(MutableSpan span, int a, int b) {
+    long x = span.annotationTimestamp(a), y = span.annotationTimestamp(b);
+    if (x != y) return x < y ? -1 : 1;
+    return span.annotationValue(a).compareTo(span.annotationValue(b));
+  }
+
+  /**
+   * Returns the count of binary annotations: tags, followed by the remote address if present,
+   * followed by a local component if nothing else identifies the local endpoint.
+   */
+  static int binaryAnnotationCount(MutableSpan span) {
+    return span.tags.size()
+        + (span.remoteAddress != null ? 1 : 0)
+        + ((span.flags & MutableSpan.FLAG_LOCAL_ENDPOINT) == 0 ? 1 : 0);
+  }
+
+  /** @see #binaryAnnotationCount(MutableSpan) */
+  static String binaryAnnotationKey(MutableSpan span, int index) {
+    int tagCount = span.tags.size();
+    if (index < tagCount) return span.tags.key(index);
+    if (index == tagCount && span.remoteAddress != null) return span.remoteAddress.key;
+    return LOCAL_COMPONENT;
+  }
+
+  /**
+   * Returns the indexes of binary annotations in the order {@link zipkin.Span} lists them, or null
+   * if they are already in that order. Only tags can be duplicates, as the others differ in type.
+   */
+  @Nullable static int[] binaryAnnotationOrder(MutableSpan span) {
+    int count = binaryAnnotationCount(span);
+    boolean sorted = true;
+    for (int i = 1; i < count && sorted; i++) {
+      sorted = binaryAnnotationKey(span, i - 1).compareTo(binaryAnnotationKey(span, i)) < 0;
+    }
+    if (sorted) return null;
+
+    int tagCount = span.tags.size();
+    int[] order = new int[count];
+    int size = 0;
+    next:
+    for (int i = 0; i < count; i++) { // a stable insertion sort by key
+      String key = binaryAnnotationKey(span, i);
+      int j = size;
+      while (j > 0 && binaryAnnotationKey(span, order[j - 1]).compareTo(key) > 0) j--;
+      // tags are inserted before the others, so any entry matching this tag's key is a tag
+      for (int k = j - 1; i < tagCount && k >= 0; k--) {
+        if (!binaryAnnotationKey(span, order[k]).equals(key)) break;
+        if (span.tags.value(order[k]).equals(span.tags.value(i))) continue next; // duplicate
+      }
+      System.arraycopy(order, j, order, j + 1, size - j);
+      order[j] = i;
+      size++;
+    }
+    return size == count ? order : Arrays.copyOf(order, size);
+  }
+}
@@ -0,0 +1,47 @@
+package brave.internal.recorder;
+
+/**
+ * Stores tags as adjacent key and value strings, so that no {@link zipkin.BinaryAnnotation} (nor
+ * UTF-8 copy of the value) is allocated until a span is converted for reporting.
+ */
+final class TagList extends AppendOnlyArrays {
+
+  TagList() {
+    super(1);
+  }
+
+  @Override Object newArray(int array, int length) {
+    return new String[length];
+  }
+
+  /** Returns false if the tag was dropped because the list is at capacity. */
+  boolean add(String key, String value) {
+    int index = claim(2);
+    if (index == -1) return false;
+    int chunk = chunkFor(index), offset = offsetFor(index, chunk);
+    String[] elements = (String[]) arrayForWrite(chunk, 0);
+    elements[offset] = key;
+    elements[offset + 1] = value;
+    return true;
+  }
+
+  /** Returns the count of tags. Only call after appends stopped. */
+  int size() {
+    return slots() / 2;
+  }
+
+  /** Only call after appends stopped. */
+  String key(int index) {
+    return get(index * 2);
+  }
+
+  /** Only call after appends stopped. */
+  String value(int index) {
+    return get(index * 2 + 1);
+  }
+
+  String get(int slot) {
+    int chunk = chunkFor(slot);
+    return ((String[]) arrayForRead(chunk, 0))[offsetFor(slot, chunk)];
+  }
+}
@@ -0,0 +1,110 @@
+package brave.internal.recorder;
+
+import zipkin.BinaryAnnotation;
+import zipkin.Endpoint;
+
+import static zipkin.Constants.LOCAL_COMPONENT;
+
+/** Writes the same TBinaryProtocol bytes as {@link zipkin.Codec#THRIFT}. */
+final class ThriftSpanEncoder extends SpanEncoder {
+  static final byte TYPE_STOP = 0;
+  static final byte TYPE_BOOL = 2;
+  static final byte TYPE_I16 = 6;
+  static final byte TYPE_I32 = 8;
+  static final byte TYPE_I64 = 10;
+  static final byte TYPE_STRING = 11;
+  static final byte TYPE_STRUCT = 12;
+  static final byte TYPE_LIST = 15;
+
+  static final byte[] TRUE = {1};
+
+  final byte[] localEndpoint;
+
+  ThriftSpanEncoder(Endpoint localEndpoint) {
+    Buffer buffer = new Buffer(64);
+    writeEndpoint(localEndpoint, buffer);
+    this.localEndpoint = buffer.toByteArray();
+  }
+
+  @Override void write(MutableSpan span, Buffer b) {
+    writeField(b, TYPE_I64, 1).writeLong(span.traceId);
+    writeLengthPrefixed(writeField(b, TYPE_STRING, 3), name(span));
+    writeField(b, TYPE_I64, 4).writeLong(span.spanId);
+    if (span.parentId != 0) writeField(b, TYPE_I64, 5).writeLong(span.parentId);
+
+    int[] order = annotationOrder(span);
+    int count = order != null ? order.length : span.annotationCount();
+    writeField(b, TYPE_LIST, 6).writeByte(TYPE_STRUCT).writeInt(count);
+    for (int i = 0; i < count; i++) {
+      int index = order != null ? order[i] : i;
+      writeField(b, TYPE_I64, 1).writeLong(span.annotationTimestamp(index));
+      writeLengthPrefixed(writeField(b, TYPE_STRING, 2), span.annotationValue(index));
+      writeField(b, TYPE_STRUCT, 3).write(localEndpoint);
+      b.writeByte(TYPE_STOP);
+    }
+
+    order = binaryAnnotationOrder(span);
+    count = order != null ? order.length : binaryAnnotationCount(span);
+    writeField(b, TYPE_LIST, 8).writeByte(TYPE_STRUCT).writeInt(count);
+    for (int i = 0; i < count; i++) {
+      writeBinaryAnnotation(span, order != null ? order[i] : i, b);
+    }
+
+    if (span.debug) writeField(b, TYPE_BOOL, 9).writeByte(1);
+    if (span.timestamp != null) writeField(b, TYPE_I64, 10).writeLong(span.timestamp);
+    if (span.duration != null) writeField(b, TYPE_I64, 11).writeLong(span.duration);
+    if (span.traceIdHigh != 0) writeField(b, TYPE_I64, 12).writeLong(span.traceIdHigh);
+    b.writeByte(TYPE_STOP);
+  }
+
+  /** @see #binaryAnnotationCount(MutableSpan) */
+  void writeBinaryAnnotation(MutableSpan span, int index, Buffer b) {
+    int tagCount = span.tags.size();
+    if (index < tagCount) {
+      writeTag(b, span.tags.key(index), span.tags.value(index), localEndpoint);
+    } else if (index == tagCount && span.remoteAddress != null) {
+      writeLengthPrefixed(writeField(b, TYPE_STRING, 1), span.remoteAddress.key);
+      writeField(b, TYPE_STRING, 2).writeInt(TRUE.length).write(TRUE);
+      writeField(b, TYPE_I32, 3).writeInt(BinaryAnnotation.Type.BOOL.value);
+      writeEndpoint(span.remoteAddress.endpoint, writeField(b, TYPE_STRUCT, 4));
+      b.writeByte(TYPE_STOP);
+    } else {
+      writeTag(b, LOCAL_COMPONENT, "", localEndpoint);
+    }
+  }
+
+  /** Writes a string binary annotation */
+  static void writeTag(Buffer b, String key, String value, byte[] endpoint) {
+    writeLengthPrefixed(writeField(b, TYPE_STRING, 1), key);
+    writeLengthPrefixed(writeField(b, TYPE_STRING, 2), value);
+    writeField(b, TYPE_I32, 3).writeInt(BinaryAnnotation.Type.STRING.value);
+    writeField(b, TYPE_STRUCT, 4).write(endpoint);
+    b.writeByte(TYPE_STOP);
+  }
+
+  static void writeEndpoint(Endpoint endpoint, Buffer b) {
+    writeField(b, TYPE_I32, 1).writeInt(endpoint.ipv4);
+    writeField(b, TYPE_I16, 2).writeShort(endpoint.port == null ? 0 : endpoint.port);
+    writeLengthPrefixed(writeField(b, TYPE_STRING, 3), endpoint.serviceName);
+    if (endpoint.ipv6 != null) {
+      writeField(b, TYPE_STRING, 4).writeInt(endpoint.ipv6.length).write(endpoint.ipv6);
+    }
+    b.writeByte(TYPE_STOP);
+  }
+
+  static Buffer writeField(Buffer b, byte type, int id) {
+    return b.writeByte(type).writeShort(id);
+  }
+
+  /** Writes the UTF-8 string, then goes back to fill in its length. */
+  static void writeLengthPrefixed(Buffer b, String value) {
+    int lengthPos = b.pos;
+    b.writeInt(0);
+    b.writeUtf8(value);
+    b.setInt(lengthPos, b.pos - lengthPos - 4);
+  }
+
+  @Override public String toString() {
+    return "ThriftSpanEncoder";
+  }
+}
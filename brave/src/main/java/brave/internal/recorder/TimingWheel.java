@@ -0,0 +1,143 @@
+package brave.internal.recorder;
+
+import brave.internal.Nullable;
+import brave.internal.recorder.MutableSpanMap.Entry;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tracks the deadline of each span in a {@link MutableSpanMap}, so that spans leaked by
+ * instrumentation are reported after a max lifetime, as opposed to when their context is garbage
+ * collected. This is similar to the deadline span map in Finagle.
+ *
+ * <p>Deadlines are hashed into a ring of buckets, each covering one tick. As every span has the
+ * same lifetime, no deadline is more than a half turn of the wheel ahead, so a single level is
+ * enough: adding, cancelling and expiring a span are each constant time.
+ *
+ * <p>Any thread can {@link #add} or {@link #cancel} an entry, without locking or allocating: the
+ * entry is pushed onto a stack linked through its own fields. The buckets are only touched by the
+ * single thread calling {@link #pollExpired(long)}, which drains those stacks first.
+ */
+final class TimingWheel {
+  /** Deadlines are rounded up to a 32nd of the lifetime */
+  static final int TICKS_PER_LIFETIME = 32;
+  /** Twice the ticks per lifetime, so that a lagging poller can't wrap around the wheel. */
+  static final int WHEEL_SIZE = TICKS_PER_LIFETIME * 2;
+
+  final long lifetimeNanos, tickNanos, startNanos;
+  final AtomicReference<Entry> pending = new AtomicReference<>();
+  final AtomicReference<Entry> cancelled = new AtomicReference<>();
+
+  // only accessed by the thread calling pollExpired
+  final Entry[] buckets = new Entry[WHEEL_SIZE];
+  long expiredTick; // the next tick to expire
+
+  TimingWheel(long lifetimeNanos, long startNanos) {
+    if (lifetimeNanos < TICKS_PER_LIFETIME) {
+      throw new IllegalArgumentException("lifetimeNanos < " + TICKS_PER_LIFETIME);
+    }
+    this.lifetimeNanos = lifetimeNanos;
+    this.tickNanos = lifetimeNanos / TICKS_PER_LIFETIME;
+    this.startNanos = startNanos;
+  }
+
+  /** Schedules the entry to expire after the lifetime. Only call once per entry. */
+  void add(Entry entry, long nowNanos) {
+    entry.deadlineNanos = nowNanos + lifetimeNanos;
+    push(entry);
+  }
+
+  void push(Entry entry) {
+    for (; ; ) {
+      Entry head = pending.get();
+      entry.wheelNext = head;
+      if (pending.compareAndSet(head, entry)) return;
+    }
+  }
+
+  /** Unschedules the entry, for example when its span finished. Subsequent calls are ignored. */
+  void cancel(Entry entry) {
+    if (!Entry.WHEEL_STATE.compareAndSet(entry, Entry.SCHEDULED, Entry.CANCELLED)) return;
+    for (; ; ) {
+      Entry head = cancelled.get();
+      entry.nextCancelled = head;
+      if (cancelled.compareAndSet(head, entry)) return;
+    }
+  }
+
+  /**
+   * Returns the next entry whose deadline passed, or null if there are none. The result is removed
+   * from the wheel. Only call from one thread.
+   */
+  @Nullable Entry pollExpired(long nowNanos) {
+    unlinkCancelled();
+    long currentTick = tick(nowNanos);
+    while (expiredTick <= currentTick) {
+      Entry head = buckets[(int) (expiredTick & (WHEEL_SIZE - 1))];
+      if (head == null) {
+        expiredTick++;
+        continue;
+      }
+      unlink(head);
+      // when this fails, cancel won the race, as the span finished just in time
+      if (Entry.WHEEL_STATE.compareAndSet(head, Entry.SCHEDULED, Entry.EXPIRED)) return head;
+    }
+    // Only schedule new entries once caught up, so that their deadlines are within one turn.
+    transferPending();
+    return null;
+  }
+
+  long tick(long nowNanos) {
+    return (nowNanos - startNanos) / tickNanos;
+  }
+
+  void transferPending() {
+    Entry entry = pending.getAndSet(null);
+    while (entry != null) {
+      Entry next = entry.wheelNext;
+      long deadlineTick = tick(entry.deadlineNanos + tickNanos - 1); // round up
+      if (entry.wheelState != Entry.SCHEDULED) {
+        entry.wheelNext = null;
+      } else if (deadlineTick - expiredTick >= WHEEL_SIZE) {
+        push(entry); // added after the caller read the time. Schedule it on a later poll.
+      } else {
+        link(entry, (int) (Math.max(deadlineTick, expiredTick) & (WHEEL_SIZE - 1)));
+      }
+      entry = next;
+    }
+  }
+
+  void unlinkCancelled() {
+    Entry entry = cancelled.getAndSet(null);
+    while (entry != null) {
+      Entry next = entry.nextCancelled;
+      entry.nextCancelled = null;
+      if (entry.wheelBucket != -1) unlink(entry); // otherwise it is still pending
+      entry = next;
+    }
+  }
+
+  void link(Entry entry, int bucket) {
+    Entry head = buckets[bucket];
+    entry.wheelPrev = null;
+    entry.wheelNext = head;
+    if (head != null) head.wheelPrev = entry;
+    buckets[bucket] = entry;
+    entry.wheelBucket = bucket;
+  }
+
+  void unlink(Entry entry) {
+    Entry prev = entry.wheelPrev, next = entry.wheelNext;
+    if (prev != null) {
+      prev.wheelNext = next;
+    } else {
+      buckets[entry.wheelBucket] = next;
+    }
+    if (next != null) next.wheelPrev = prev;
+    entry.wheelPrev = entry.wheelNext = null;
+    entry.wheelBucket = -1;
+  }
+
+  @Override public String toString() {
+    return "TimingWheel(" + lifetimeNanos / 1000000 + "ms)";
+  }
+}
@@ -1,11 +1,17 @@
 package brave.propagation;
 
-import brave.internal.HexCodec;
+import brave.internal.Nullable;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import static brave.internal.HexCodec.isLowerHex;
+import static brave.internal.HexCodec.lenientLowerHexToUnsignedLong;
 import static brave.internal.HexCodec.lowerHexToUnsignedLong;
+import static brave.internal.HexCodec.writeHexLong;
+import static brave.propagation.TraceContext.FLAG_DEBUG;
+import static brave.propagation.TraceContext.FLAG_SAMPLED;
+import static brave.propagation.TraceContext.FLAG_SAMPLED_SET;
 
 /**
  * Implements <a href="https://github.com/openzipkin/b3-propagation">B3 Propagation</a>
@@ -74,11 +80,13 @@ public final class B3Propagation<K> implements Propagation<K> {
     }
 
     @Override public void inject(TraceContext traceContext, C carrier) {
-      setter.put(carrier, propagation.traceIdKey, traceContext.traceIdString());
-      setter.put(carrier, propagation.spanIdKey, HexCodec.toLowerHex(traceContext.spanId()));
-      if (traceContext.parentId() != null) {
-        setter.put(carrier, propagation.parentSpanIdKey,
-            HexCodec.toLowerHex(traceContext.parentId()));
+      // Zero is not a valid ID. It is used by contexts that only carry a sampling decision.
+      if (traceContext.traceIdHigh() != 0 || traceContext.traceId() != 0) {
+        // IDs are encoded once per context, as it may be injected into many requests.
+        setter.put(carrier, propagation.traceIdKey, traceContext.traceIdString());
+        setter.put(carrier, propagation.spanIdKey, traceContext.spanIdString());
+        String parentId = traceContext.parentIdString();
+        if (parentId != null) setter.put(carrier, propagation.parentSpanIdKey, parentId);
       }
       if (traceContext.sampled() != null) {
         setter.put(carrier, propagation.sampledKey, traceContext.sampled() ? "1" : "0");
@@ -89,6 +97,125 @@ public final class B3Propagation<K> implements Propagation<K> {
     }
   }
 
+  /**
+   * Like {@link Setter}, except the value is the first {@code length} characters of a buffer. The
+   * buffer is only valid during the call, so the setter should copy it. This allows header writers
+   * to encode IDs without allocating strings.
+   */
+  public interface CharBufferSetter<C, K> {
+    void put(C carrier, K key, char[] buffer, int length);
+  }
+
+  /** Like {@link CharBufferSetter}, except the buffer contains US-ASCII bytes. */
+  public interface AsciiSetter<C, K> {
+    void put(C carrier, K key, byte[] buffer, int length);
+  }
+
+  /**
+   * Like {@link #injector(Setter)}, except values are written into a buffer that's reused by the
+   * calling thread.
+   */
+  public <C> TraceContext.Injector<C> charBufferInjector(CharBufferSetter<C, K> setter) {
+    if (setter == null) throw new NullPointerException("setter == null");
+    return new CharBufferInjector<>(this, setter);
+  }
+
+  /** Like {@link #charBufferInjector(CharBufferSetter)}, except for US-ASCII values. */
+  public <C> TraceContext.Injector<C> asciiInjector(AsciiSetter<C, K> setter) {
+    if (setter == null) throw new NullPointerException("setter == null");
+    return new AsciiInjector<>(this, setter);
+  }
+
+  // Large enough for a 128-bit trace ID. These aren't shared with setters beyond their call.
+  static final ThreadLocal<char[]> CHAR_BUFFER = new ThreadLocal<char[]>() {
+    @Override protected char[] initialValue() {
+      return new char[32];
+    }
+  };
+  static final ThreadLocal<byte[]> ASCII_BUFFER = new ThreadLocal<byte[]>() {
+    @Override protected byte[] initialValue() {
+      return new byte[32];
+    }
+  };
+
+  static final class CharBufferInjector<C, K> implements TraceContext.Injector<C> {
+    final B3Propagation<K> propagation;
+    final CharBufferSetter<C, K> setter;
+
+    CharBufferInjector(B3Propagation<K> propagation, CharBufferSetter<C, K> setter) {
+      this.propagation = propagation;
+      this.setter = setter;
+    }
+
+    @Override public void inject(TraceContext traceContext, C carrier) {
+      char[] buffer = CHAR_BUFFER.get();
+      if (traceContext.traceIdHigh() != 0 || traceContext.traceId() != 0) {
+        int length = 16;
+        if (traceContext.traceIdHigh() != 0) {
+          writeHexLong(buffer, 0, traceContext.traceIdHigh());
+          writeHexLong(buffer, 16, traceContext.traceId());
+          length = 32;
+        } else {
+          writeHexLong(buffer, 0, traceContext.traceId());
+        }
+        setter.put(carrier, propagation.traceIdKey, buffer, length);
+        writeHexLong(buffer, 0, traceContext.spanId());
+        setter.put(carrier, propagation.spanIdKey, buffer, 16);
+        if (traceContext.parentIdAsLong() != 0) {
+          writeHexLong(buffer, 0, traceContext.parentIdAsLong());
+          setter.put(carrier, propagation.parentSpanIdKey, buffer, 16);
+        }
+      }
+      if (traceContext.sampled() != null) {
+        buffer[0] = traceContext.sampled() ? '1' : '0';
+        setter.put(carrier, propagation.sampledKey, buffer, 1);
+      }
+      if (traceContext.debug()) {
+        buffer[0] = '1';
+        setter.put(carrier, propagation.debugKey, buffer, 1);
+      }
+    }
+  }
+
+  static final class AsciiInjector<C, K> implements TraceContext.Injector<C> {
+    final B3Propagation<K> propagation;
+    final AsciiSetter<C, K> setter;
+
+    AsciiInjector(B3Propagation<K> propagation, AsciiSetter<C, K> setter) {
+      this.propagation = propagation;
+      this.setter = setter;
+    }
+
+    @Override public void inject(TraceContext traceContext, C carrier) {
+      byte[] buffer = ASCII_BUFFER.get();
+      if (traceContext.traceIdHigh() != 0 || traceContext.traceId() != 0) {
+        int length = 16;
+        if (traceContext.traceIdHigh() != 0) {
+          writeHexLong(buffer, 0, traceContext.traceIdHigh());
+          writeHexLong(buffer, 16, traceContext.traceId());
+          length = 32;
+        } else {
+          writeHexLong(buffer, 0, traceContext.traceId());
+        }
+        setter.put(carrier, propagation.traceIdKey, buffer, length);
+        writeHexLong(buffer, 0, traceContext.spanId());
+        setter.put(carrier, propagation.spanIdKey, buffer, 16);
+        if (traceContext.parentIdAsLong() != 0) {
+          writeHexLong(buffer, 0, traceContext.parentIdAsLong());
+          setter.put(carrier, propagation.parentSpanIdKey, buffer, 16);
+        }
+      }
+      if (traceContext.sampled() != null) {
+        buffer[0] = (byte) (traceContext.sampled() ? '1' : '0');
+        setter.put(carrier, propagation.sampledKey, buffer, 1);
+      }
+      if (traceContext.debug()) {
+        buffer[0] = '1';
+        setter.put(carrier, propagation.debugKey, buffer, 1);
+      }
+    }
+  }
+
   @Override public <C> TraceContext.Extractor<C> extractor(Getter<C, K> getter) {
     if (getter == null) throw new NullPointerException("getter == null");
     return new B3Extractor(this, getter);
@@ -113,16 +240,17 @@ public final class B3Propagation<K> implements Propagation<K> {
           : null;
       boolean debug = "1".equals(getter.get(carrier, propagation.debugKey));
       String traceIdString = getter.get(carrier, propagation.traceIdKey);
-      TraceContext.Builder result = TraceContext.newBuilder().sampled(sampled).debug(debug);
-      if (traceIdString != null) {
-        result.traceIdHigh(
-            traceIdString.length() == 32 ? lowerHexToUnsignedLong(traceIdString, 0) : 0);
-        result.traceId(lowerHexToUnsignedLong(traceIdString));
-      }
       String spanIdString = getter.get(carrier, propagation.spanIdKey);
-      if (spanIdString != null) {
-        result.spanId(lowerHexToUnsignedLong(spanIdString));
+      if (traceIdString == null || spanIdString == null) { // only sampling flags were sent
+        return TraceContextOrSamplingFlags.create(debug ? SamplingFlags.DEBUG
+            : sampled == null ? SamplingFlags.EMPTY
+                : sampled ? SamplingFlags.SAMPLED : SamplingFlags.NOT_SAMPLED);
       }
+      TraceContext.Builder result = TraceContext.newBuilder().sampled(sampled).debug(debug);
+      result.traceIdHigh(
+          traceIdString.length() == 32 ? lowerHexToUnsignedLong(traceIdString, 0) : 0);
+      result.traceId(lowerHexToUnsignedLong(traceIdString));
+      result.spanId(lowerHexToUnsignedLong(spanIdString));
       String parentSpanIdString = getter.get(carrier, propagation.parentSpanIdKey);
       if (parentSpanIdString != null) {
         result.parentId(lowerHexToUnsignedLong(parentSpanIdString));
@@ -130,4 +258,137 @@ public final class B3Propagation<K> implements Propagation<K> {
       return TraceContextOrSamplingFlags.create(result);
     }
   }
+
+  /** Like {@link Getter}, except values can be any character sequence, such as Netty's. */
+  public interface CharSequenceGetter<C, K> {
+    @Nullable CharSequence get(C carrier, K key);
+  }
+
+  /** Like {@link Getter}, except values are US-ASCII bytes, such as gRPC's. */
+  public interface AsciiGetter<C, K> {
+    @Nullable byte[] get(C carrier, K key);
+  }
+
+  /**
+   * Like {@link #extractor(Getter)}, except values are parsed in place instead of as strings. Only
+   * the result is allocated, and nothing when only sampling flags were sent.
+   *
+   * <p>Unlike {@link #extractor(Getter)}, malformed IDs are ignored instead of raising an
+   * exception: they are treated as absent.
+   */
+  public <C> TraceContext.Extractor<C> charSequenceExtractor(CharSequenceGetter<C, K> getter) {
+    if (getter == null) throw new NullPointerException("getter == null");
+    return new CharSequenceExtractor<>(this, getter);
+  }
+
+  /** Like {@link #charSequenceExtractor(CharSequenceGetter)}, except for US-ASCII values. */
+  public <C> TraceContext.Extractor<C> asciiExtractor(AsciiGetter<C, K> getter) {
+    if (getter == null) throw new NullPointerException("getter == null");
+    return new AsciiExtractor<>(this, getter);
+  }
+
+  static final class CharSequenceExtractor<C, K> implements TraceContext.Extractor<C> {
+    final B3Propagation<K> propagation;
+    final CharSequenceGetter<C, K> getter;
+
+    CharSequenceExtractor(B3Propagation<K> propagation, CharSequenceGetter<C, K> getter) {
+      this.propagation = propagation;
+      this.getter = getter;
+    }
+
+    @Override public TraceContextOrSamplingFlags extract(C carrier) {
+      if (carrier == null) throw new NullPointerException("carrier == null");
+
+      int flags = sampledFlags(getter.get(carrier, propagation.sampledKey));
+      CharSequence debug = getter.get(carrier, propagation.debugKey);
+      if (debug != null && debug.length() == 1 && debug.charAt(0) == '1') flags |= FLAG_DEBUG;
+      CharSequence traceId = getter.get(carrier, propagation.traceIdKey);
+      CharSequence spanId = getter.get(carrier, propagation.spanIdKey);
+      if (traceId == null || spanId == null) return samplingFlags(flags);
+
+      int traceIdLength = traceId.length();
+      long traceIdLow = lenientLowerHexToUnsignedLong(traceId, 0, traceIdLength);
+      long spanIdLong = lenientLowerHexToUnsignedLong(spanId, 0, spanId.length());
+      if (traceIdLow == 0 || spanIdLong == 0) return samplingFlags(flags); // malformed
+      long traceIdHigh = 0;
+      if (traceIdLength == 32) {
+        traceIdHigh = lenientLowerHexToUnsignedLong(traceId, 0, 16);
+        // zero pads a 64-bit ID, so it is only malformed when the characters aren't hex
+        if (traceIdHigh == 0 && !isLowerHex(traceId, 0, 16)) return samplingFlags(flags);
+      }
+      CharSequence parentId = getter.get(carrier, propagation.parentSpanIdKey);
+      long parentIdLong =
+          parentId != null ? lenientLowerHexToUnsignedLong(parentId, 0, parentId.length()) : 0;
+      return TraceContextOrSamplingFlags.create(
+          new TraceContext(traceIdHigh, traceIdLow, parentIdLong, spanIdLong, flags));
+    }
+
+    /** Official sampled value is 1, though some old instrumentation send true */
+    static int sampledFlags(@Nullable CharSequence sampled) {
+      if (sampled == null) return 0;
+      int length = sampled.length();
+      boolean result = length == 1
+          ? sampled.charAt(0) == '1'
+          : length == 4
+              && (sampled.charAt(0) | 0x20) == 't' && (sampled.charAt(1) | 0x20) == 'r'
+              && (sampled.charAt(2) | 0x20) == 'u' && (sampled.charAt(3) | 0x20) == 'e';
+      return result ? FLAG_SAMPLED_SET | FLAG_SAMPLED : FLAG_SAMPLED_SET;
+    }
+  }
+
+  static final class AsciiExtractor<C, K> implements TraceContext.Extractor<C> {
+    final B3Propagation<K> propagation;
+    final AsciiGetter<C, K> getter;
+
+    AsciiExtractor(B3Propagation<K> propagation, AsciiGetter<C, K> getter) {
+      this.propagation = propagation;
+      this.getter = getter;
+    }
+
+    @Override public TraceContextOrSamplingFlags extract(C carrier) {
+      if (carrier == null) throw new NullPointerException("carrier == null");
+
+      int flags = sampledFlags(getter.get(carrier, propagation.sampledKey));
+      byte[] debug = getter.get(carrier, propagation.debugKey);
+      if (debug != null && debug.length == 1 && debug[0] == '1') flags |= FLAG_DEBUG;
+      byte[] traceId = getter.get(carrier, propagation.traceIdKey);
+      byte[] spanId = getter.get(carrier, propagation.spanIdKey);
+      if (traceId == null || spanId == null) return samplingFlags(flags);
+
+      long traceIdLow = lenientLowerHexToUnsignedLong(traceId, 0, traceId.length);
+      long spanIdLong = lenientLowerHexToUnsignedLong(spanId, 0, spanId.length);
+      if (traceIdLow == 0 || spanIdLong == 0) return samplingFlags(flags); // malformed
+      long traceIdHigh = 0;
+      if (traceId.length == 32) {
+        traceIdHigh = lenientLowerHexToUnsignedLong(traceId, 0, 16);
+        // zero pads a 64-bit ID, so it is only malformed when the characters aren't hex
+        if (traceIdHigh == 0 && !isLowerHex(traceId, 0, 16)) return samplingFlags(flags);
+      }
+      byte[] parentId = getter.get(carrier, propagation.parentSpanIdKey);
+      long parentIdLong =
+          parentId != null ? lenientLowerHexToUnsignedLong(parentId, 0, parentId.length) : 0;
+      return TraceContextOrSamplingFlags.create(
+          new TraceContext(traceIdHigh, traceIdLow, parentIdLong, spanIdLong, flags));
+    }
+
+    /** Official sampled value is 1, though some old instrumentation send true */
+    static int sampledFlags(@Nullable byte[] sampled) {
+      if (sampled == null) return 0;
+      boolean result = sampled.length == 1
+          ? sampled[0] == '1'
+          : sampled.length == 4
+              && (sampled[0] | 0x20) == 't' && (sampled[1] | 0x20) == 'r'
+              && (sampled[2] | 0x20) == 'u' && (sampled[3] | 0x20) == 'e';
+      return result ? FLAG_SAMPLED_SET | FLAG_SAMPLED : FLAG_SAMPLED_SET;
+    }
+  }
+
+  /** Returns a constant for the sampling flags parsed when there are no IDs */
+  static TraceContextOrSamplingFlags samplingFlags(int flags) {
+    if ((flags & FLAG_DEBUG) != 0) return TraceContextOrSamplingFlags.DEBUG;
+    if ((flags & FLAG_SAMPLED_SET) == 0) return TraceContextOrSamplingFlags.EMPTY;
+    return (flags & FLAG_SAMPLED) != 0
+        ? TraceContextOrSamplingFlags.SAMPLED
+        : TraceContextOrSamplingFlags.NOT_SAMPLED;
+  }
 }
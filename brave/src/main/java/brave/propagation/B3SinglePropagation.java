@@ -0,0 +1,195 @@
+package brave.propagation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static brave.internal.HexCodec.isLowerHex;
+import static brave.internal.HexCodec.lenientLowerHexToUnsignedLong;
+import static brave.internal.HexCodec.writeHexLong;
+import static brave.propagation.TraceContext.FLAG_DEBUG;
+import static brave.propagation.TraceContext.FLAG_SAMPLED;
+import static brave.propagation.TraceContext.FLAG_SAMPLED_SET;
+
+/**
+ * Implements the single header form of <a href="https://github.com/openzipkin/b3-propagation">B3
+ * Propagation</a>: {@code b3: {traceId}-{spanId}-{sampled}-{parentId}}, where the last two fields
+ * are optional. The sampling state is "1", "0" or "d" for debug. A context that only carries a
+ * sampling decision is written as that one character.
+ *
+ * <p>This writes one header instead of up to five, so there's one {@link Setter#put} and one
+ * value allocated per hop. When the "b3" header is absent or malformed, the multi-header form is
+ * read instead, so receivers can be upgraded before senders.
+ */
+public final class B3SinglePropagation<K> implements Propagation<K> {
+
+  public static <K> B3SinglePropagation<K> create(KeyFactory<K> keyFactory) {
+    return new B3SinglePropagation<>(keyFactory);
+  }
+
+  static final String B3_NAME = "b3";
+
+  final K b3Key;
+  final B3Propagation<K> multiHeader;
+  final List<K> fields;
+
+  B3SinglePropagation(KeyFactory<K> keyFactory) {
+    this.b3Key = keyFactory.create(B3_NAME);
+    this.multiHeader = B3Propagation.create(keyFactory);
+    List<K> fields = new ArrayList<>();
+    fields.add(b3Key);
+    fields.addAll(multiHeader.keys());
+    this.fields = Collections.unmodifiableList(fields);
+  }
+
+  /** Includes the multi-header keys, as they are read when the "b3" header is absent. */
+  @Override public List<K> keys() {
+    return fields;
+  }
+
+  @Override public <C> TraceContext.Injector<C> injector(Setter<C, K> setter) {
+    if (setter == null) throw new NullPointerException("setter == null");
+    return new B3SingleInjector<>(this, setter);
+  }
+
+  static final class B3SingleInjector<C, K> implements TraceContext.Injector<C> {
+    final B3SinglePropagation<K> propagation;
+    final Setter<C, K> setter;
+
+    B3SingleInjector(B3SinglePropagation<K> propagation, Setter<C, K> setter) {
+      this.propagation = propagation;
+      this.setter = setter;
+    }
+
+    @Override public void inject(TraceContext traceContext, C carrier) {
+      String value = writeB3SingleFormat(traceContext);
+      if (value != null) setter.put(carrier, propagation.b3Key, value);
+    }
+  }
+
+  /** Returns null if the context has neither IDs nor a sampling decision. */
+  static String writeB3SingleFormat(TraceContext context) {
+    char sampled = context.debug() ? 'd'
+        : context.sampled() == null ? 0 : context.sampled() ? '1' : '0';
+    // Zero is not a valid ID. It is used by contexts that only carry a sampling decision.
+    if (context.traceIdHigh() == 0 && context.traceId() == 0) {
+      return sampled != 0 ? String.valueOf(sampled) : null;
+    }
+
+    long parentId = context.parentIdAsLong();
+    int traceIdLength = context.traceIdHigh() != 0 ? 32 : 16;
+    char[] result =
+        new char[traceIdLength + 17 + (sampled != 0 ? 2 : 0) + (parentId != 0 ? 17 : 0)];
+    int pos = 0;
+    if (traceIdLength == 32) {
+      writeHexLong(result, pos, context.traceIdHigh());
+      pos += 16;
+    }
+    writeHexLong(result, pos, context.traceId());
+    pos += 16;
+    result[pos++] = '-';
+    writeHexLong(result, pos, context.spanId());
+    pos += 16;
+    if (sampled != 0) {
+      result[pos++] = '-';
+      result[pos++] = sampled;
+    }
+    if (parentId != 0) {
+      result[pos++] = '-';
+      writeHexLong(result, pos, parentId);
+    }
+    return new String(result);
+  }
+
+  @Override public <C> TraceContext.Extractor<C> extractor(Getter<C, K> getter) {
+    if (getter == null) throw new NullPointerException("getter == null");
+    return new B3SingleExtractor<>(this, getter);
+  }
+
+  static final class B3SingleExtractor<C, K> implements TraceContext.Extractor<C> {
+    final B3SinglePropagation<K> propagation;
+    final Getter<C, K> getter;
+    final TraceContext.Extractor<C> multiHeader;
+
+    B3SingleExtractor(B3SinglePropagation<K> propagation, Getter<C, K> getter) {
+      this.propagation = propagation;
+      this.getter = getter;
+      this.multiHeader = propagation.multiHeader.extractor(getter);
+    }
+
+    @Override public TraceContextOrSamplingFlags extract(C carrier) {
+      if (carrier == null) throw new NullPointerException("carrier == null");
+
+      String b3 = getter.get(carrier, propagation.b3Key);
+      TraceContextOrSamplingFlags result = b3 != null ? parseB3SingleFormat(b3) : null;
+      return result != null ? result : multiHeader.extract(carrier);
+    }
+  }
+
+  /** Parses the value in one pass, returning null if it is malformed. */
+  static TraceContextOrSamplingFlags parseB3SingleFormat(String b3) {
+    int length = b3.length();
+    if (length == 1) { // only sampling flags were sent
+      SamplingFlags flags = parseSampled(b3.charAt(0));
+      return flags != null ? TraceContextOrSamplingFlags.create(flags) : null;
+    }
+
+    int traceIdLength;
+    if (length > 16 && b3.charAt(16) == '-') {
+      traceIdLength = 16;
+    } else if (length > 32 && b3.charAt(32) == '-') {
+      traceIdLength = 32;
+    } else {
+      return null;
+    }
+    int pos = traceIdLength + 1;
+    if (length < pos + 16) return null;
+
+    long traceIdHigh = 0;
+    if (traceIdLength == 32) {
+      traceIdHigh = lenientLowerHexToUnsignedLong(b3, 0, 16);
+      // zero pads a 64-bit ID, so it is only malformed when the characters aren't hex
+      if (traceIdHigh == 0 && !isLowerHex(b3, 0, 16)) return null;
+    }
+    long traceId = lenientLowerHexToUnsignedLong(b3, traceIdLength - 16, traceIdLength);
+    long spanId = lenientLowerHexToUnsignedLong(b3, pos, pos + 16);
+    if (traceId == 0 || spanId == 0) return null; // zero isn't a valid ID, so it's malformed
+    pos += 16;
+
+    int flags = 0;
+    int remaining = length - pos;
+    if (remaining == 2 || remaining == 19) { // -{sampled}
+      if (b3.charAt(pos) != '-') return null;
+      SamplingFlags sampled = parseSampled(b3.charAt(pos + 1));
+      if (sampled == null) return null;
+      // debug implies sampled, as it does for the single character form
+      flags = FLAG_SAMPLED_SET | (sampled.sampled() ? FLAG_SAMPLED : 0);
+      if (sampled.debug()) flags |= FLAG_DEBUG;
+      pos += 2;
+    }
+
+    long parentId = 0;
+    if (length - pos == 17) { // -{parentId}
+      if (b3.charAt(pos) != '-') return null;
+      parentId = lenientLowerHexToUnsignedLong(b3, pos + 1, pos + 17);
+      if (parentId == 0) return null;
+      pos += 17;
+    }
+    if (pos != length) return null;
+    return TraceContextOrSamplingFlags.create(
+        new TraceContext(traceIdHigh, traceId, parentId, spanId, flags));
+  }
+
+  static SamplingFlags parseSampled(char sampled) {
+    switch (sampled) {
+      case '1':
+        return SamplingFlags.SAMPLED;
+      case '0':
+        return SamplingFlags.NOT_SAMPLED;
+      case 'd':
+        return SamplingFlags.DEBUG;
+      default:
+        return null;
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package brave.propagation;
 
 import brave.internal.Nullable;
+import brave.internal.ReusableScope;
 import java.io.Closeable;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
@@ -30,6 +31,10 @@ public abstract class CurrentTraceContext {
 
   /** A span remains in the scope it was bound to until close is called. */
   public interface Scope extends Closeable {
+    /** Returned when the context in scope didn't change, so there's nothing to revert. */
+    Scope NOOP = () -> {
+    };
+
     /** No exceptions are thrown when unbinding a span scope. */
     @Override void close();
   }
@@ -45,9 +50,22 @@ public abstract class CurrentTraceContext {
       return local.get();
     }
 
+    /**
+     * Returned by {@link #newScope} when nothing was in scope before. This is reusable, so that
+     * callers such as {@link brave.Tracer} can avoid wrapping it each time.
+     */
+    static final Scope CLEAR = new ReusableScope() {
+      @Override public void close() {
+        local.set(null);
+      }
+    };
+
     @Override public Scope newScope(TraceContext currentSpan) {
       final TraceContext previous = local.get();
+      if (previous != null && previous.equals(currentSpan)) return Scope.NOOP;
       local.set(currentSpan);
+      // Scopes opened on an idle thread are common, and all revert the same way
+      if (previous == null) return CLEAR;
       return () -> local.set(previous);
     }
   }
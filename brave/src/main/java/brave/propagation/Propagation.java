@@ -23,6 +23,9 @@ public interface Propagation<K> {
   interface Factory {
     Factory B3 = B3Propagation::create;
 
+    /** Writes a single "b3" header, and reads either form. */
+    Factory B3_SINGLE = B3SinglePropagation::create;
+
     <K> Propagation<K> create(KeyFactory<K> keyFactory);
   }
 
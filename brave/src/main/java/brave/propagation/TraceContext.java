@@ -1,7 +1,7 @@
 package brave.propagation;
 
+import brave.internal.HexCodec;
 import brave.internal.Nullable;
-import com.google.auto.value.AutoValue;
 
 import static brave.internal.HexCodec.writeHexLong;
 
@@ -13,9 +13,16 @@ import static brave.internal.HexCodec.writeHexLong;
  * <p>The implementation was originally {@code com.github.kristofa.brave.SpanId}, which was a
  * port of {@code com.twitter.finagle.tracing.TraceId}. Unlike these mentioned, this type does not
  * expose a single binary representation. That's because propagation forms can now vary.
+ *
+ * <p>Fields are stored as primitives: a zero parent ID means there's none, and the sampling state
+ * is a bit field. Nullable accessors such as {@link #parentId()} are views over these, and the hash
+ * code is computed once, as contexts are created and compared on every span operation.
  */
-@AutoValue
-public abstract class TraceContext extends SamplingFlags {
+public final class TraceContext extends SamplingFlags {
+  static final int FLAG_SAMPLED = 1 << 0;
+  static final int FLAG_SAMPLED_SET = 1 << 1;
+  static final int FLAG_DEBUG = 1 << 2;
+  static final int FLAG_SHARED = 1 << 3;
 
   /**
    * Used to send the trace context downstream. For example, as http headers.
@@ -47,27 +54,75 @@ public abstract class TraceContext extends SamplingFlags {
   }
 
   public static Builder newBuilder() {
-    return new AutoValue_TraceContext.Builder().traceIdHigh(0L).debug(false).shared(false);
+    return new Builder();
+  }
+
+  // Primitive fields, so that creating or reading a context doesn't box
+  final long traceIdHigh, traceId, parentId, spanId;
+  final int flags; // bit field for sampled, debug and shared
+  final int hashCode; // cached, as contexts are often used as keys
+  // Lazily encoded, as one context is often injected into many requests. Like String.hashCode,
+  // racing threads at worst encode the same value twice, and Strings are safely published.
+  String traceIdString, spanIdString, parentIdString;
+
+  TraceContext(Builder builder) {
+    this(builder.traceIdHigh, builder.traceId, builder.parentId, builder.spanId, builder.flags);
+  }
+
+  /** For parsers that read fields directly, to avoid allocating a {@link Builder}. */
+  TraceContext(long traceIdHigh, long traceId, long parentId, long spanId, int flags) {
+    this.traceIdHigh = traceIdHigh;
+    this.traceId = traceId;
+    this.parentId = parentId;
+    this.spanId = spanId;
+    this.flags = flags;
+    this.hashCode = computeHashCode();
   }
 
   /** When non-zero, the trace containing this span uses 128-bit trace identifiers. */
-  public abstract long traceIdHigh();
+  public long traceIdHigh() {
+    return traceIdHigh;
+  }
 
   /** Unique 8-byte identifier for a trace, set on all spans within it. */
-  public abstract long traceId();
+  public long traceId() {
+    return traceId;
+  }
+
+  /**
+   * The parent's {@link #spanId} or null if this the root span in a trace.
+   *
+   * @see #parentIdAsLong()
+   */
+  @Nullable public Long parentId() {
+    return parentId != 0 ? parentId : null;
+  }
+
+  /**
+   * Like {@link #parentId()}, except returns zero instead of null when this is a root span. This
+   * avoids boxing the ID.
+   */
+  public long parentIdAsLong() {
+    return parentId;
+  }
 
-  /** The parent's {@link #spanId} or null if this the root span in a trace. */
-  @Nullable public abstract Long parentId();
+  @Override @Nullable public Boolean sampled() {
+    if ((flags & FLAG_SAMPLED_SET) == 0) return null;
+    return (flags & FLAG_SAMPLED) != 0 ? Boolean.TRUE : Boolean.FALSE;
+  }
 
-  // override as auto-value can't currently read the super-class's nullable annotation.
-  @Override @Nullable public abstract Boolean sampled();
+  @Override public boolean debug() {
+    return (flags & FLAG_DEBUG) != 0;
+  }
 
   /**
    * Unique 8-byte identifier of this span within a trace.
    *
    * <p>A span is uniquely identified in storage by ({@linkplain #traceId}, {@linkplain #spanId}).
    */
-  public abstract long spanId();
+  public long spanId() {
+    return spanId;
+  }
 
   /**
    * True if we are contributing to a span started by another tracer (ex on a different host).
@@ -77,21 +132,34 @@ public abstract class TraceContext extends SamplingFlags {
    * the server side. However, the server shouldn't set span.timestamp or duration since it didn't
    * start the span.
    */
-  public abstract boolean shared();
+  public boolean shared() {
+    return (flags & FLAG_SHARED) != 0;
+  }
 
-  public abstract Builder toBuilder();
+  public Builder toBuilder() {
+    return new Builder(this);
+  }
 
   /** Returns the hex representation of the span's trace ID */
   public String traceIdString() {
-    if (traceIdHigh() != 0) {
-      char[] result = new char[32];
-      writeHexLong(result, 0, traceIdHigh());
-      writeHexLong(result, 16, traceId());
-      return new String(result);
-    }
-    char[] result = new char[16];
-    writeHexLong(result, 0, traceId());
-    return new String(result);
+    String result = traceIdString;
+    if (result == null) traceIdString = result = HexCodec.toLowerHex(traceIdHigh, traceId);
+    return result;
+  }
+
+  /** Returns the hex representation of {@link #spanId()} */
+  public String spanIdString() {
+    String result = spanIdString;
+    if (result == null) spanIdString = result = HexCodec.toLowerHex(spanId);
+    return result;
+  }
+
+  /** Returns the hex representation of {@link #parentId()} or null if this is a root span. */
+  @Nullable public String parentIdString() {
+    if (parentId == 0) return null;
+    String result = parentIdString;
+    if (result == null) parentIdString = result = HexCodec.toLowerHex(parentId);
+    return result;
   }
 
   /** Returns {@code $traceId/$spanId} */
@@ -111,39 +179,149 @@ public abstract class TraceContext extends SamplingFlags {
     return new String(result);
   }
 
-  @AutoValue.Builder
-  public static abstract class Builder {
+  @Override public boolean equals(Object o) {
+    if (o == this) return true;
+    if (!(o instanceof TraceContext)) return false;
+    TraceContext that = (TraceContext) o;
+    return hashCode == that.hashCode
+        && spanId == that.spanId
+        && traceId == that.traceId
+        && traceIdHigh == that.traceIdHigh
+        && parentId == that.parentId
+        && flags == that.flags;
+  }
+
+  @Override public int hashCode() {
+    return hashCode;
+  }
+
+  int computeHashCode() {
+    int h = 1;
+    h *= 1000003;
+    h ^= debug() ? 1231 : 1237;
+    h *= 1000003;
+    h ^= (int) ((traceIdHigh >>> 32) ^ traceIdHigh);
+    h *= 1000003;
+    h ^= (int) ((traceId >>> 32) ^ traceId);
+    h *= 1000003;
+    h ^= (int) ((parentId >>> 32) ^ parentId);
+    h *= 1000003;
+    h ^= (flags & FLAG_SAMPLED_SET) == 0 ? 0 : (flags & FLAG_SAMPLED) != 0 ? 1231 : 1237;
+    h *= 1000003;
+    h ^= (int) ((spanId >>> 32) ^ spanId);
+    h *= 1000003;
+    h ^= shared() ? 1231 : 1237;
+    return h;
+  }
+
+  public static final class Builder {
+    static final int MISSING_TRACE_ID = 1, MISSING_SPAN_ID = 2;
+
+    long traceIdHigh, traceId, parentId, spanId;
+    int flags;
+    int missing = MISSING_TRACE_ID | MISSING_SPAN_ID;
+
     /** @see TraceContext#traceIdHigh() */
-    public abstract Builder traceIdHigh(long traceIdHigh);
+    public Builder traceIdHigh(long traceIdHigh) {
+      this.traceIdHigh = traceIdHigh;
+      return this;
+    }
 
     /** @see TraceContext#traceId() */
-    public abstract Builder traceId(long traceId);
+    public Builder traceId(long traceId) {
+      this.traceId = traceId;
+      missing &= ~MISSING_TRACE_ID;
+      return this;
+    }
 
     /** @see TraceContext#parentId */
-    public abstract Builder parentId(@Nullable Long parentId);
+    public Builder parentId(@Nullable Long parentId) {
+      this.parentId = parentId != null ? parentId : 0L;
+      return this;
+    }
+
+    /** Like {@link #parentId(Long)}, except zero means this is a root span. */
+    public Builder parentId(long parentId) {
+      this.parentId = parentId;
+      return this;
+    }
 
     /** @see TraceContext#spanId */
-    public abstract Builder spanId(long spanId);
+    public Builder spanId(long spanId) {
+      this.spanId = spanId;
+      missing &= ~MISSING_SPAN_ID;
+      return this;
+    }
 
     /** @see TraceContext#sampled */
-    public abstract Builder sampled(Boolean nullableSampled);
+    public Builder sampled(@Nullable Boolean nullableSampled) {
+      if (nullableSampled == null) {
+        flags &= ~(FLAG_SAMPLED_SET | FLAG_SAMPLED);
+      } else {
+        sampled(nullableSampled.booleanValue());
+      }
+      return this;
+    }
+
+    /** Like {@link #sampled(Boolean)}, except doesn't box. */
+    public Builder sampled(boolean sampled) {
+      flags |= FLAG_SAMPLED_SET;
+      if (sampled) {
+        flags |= FLAG_SAMPLED;
+      } else {
+        flags &= ~FLAG_SAMPLED;
+      }
+      return this;
+    }
 
     /** @see TraceContext#debug() */
-    public abstract Builder debug(boolean debug);
+    public Builder debug(boolean debug) {
+      return setFlag(FLAG_DEBUG, debug);
+    }
 
     /** @see TraceContext#shared() */
-    public abstract Builder shared(boolean shared);
+    public Builder shared(boolean shared) {
+      return setFlag(FLAG_SHARED, shared);
+    }
 
-    public abstract TraceContext build();
+    Builder setFlag(int flag, boolean value) {
+      if (value) {
+        flags |= flag;
+      } else {
+        flags &= ~flag;
+      }
+      return this;
+    }
 
-    abstract Boolean sampled();
+    /** @throws IllegalStateException if the trace or span ID weren't set */
+    public TraceContext build() {
+      if (missing != 0) {
+        throw new IllegalStateException("Missing required properties:"
+            + ((missing & MISSING_TRACE_ID) != 0 ? " traceId" : "")
+            + ((missing & MISSING_SPAN_ID) != 0 ? " spanId" : ""));
+      }
+      return new TraceContext(this);
+    }
 
-    abstract boolean debug();
+    @Nullable Boolean sampled() {
+      if ((flags & FLAG_SAMPLED_SET) == 0) return null;
+      return (flags & FLAG_SAMPLED) != 0 ? Boolean.TRUE : Boolean.FALSE;
+    }
 
-    Builder() { // no external implementations
+    boolean debug() {
+      return (flags & FLAG_DEBUG) != 0;
+    }
+
+    Builder(TraceContext context) {
+      traceIdHigh = context.traceIdHigh;
+      traceId = context.traceId;
+      parentId = context.parentId;
+      spanId = context.spanId;
+      flags = context.flags;
+      missing = 0;
     }
-  }
 
-  TraceContext() { // no external implementations
+    Builder() { // no external implementations
+    }
   }
 }
@@ -19,18 +19,37 @@ public abstract class TraceContextOrSamplingFlags {
   /** When present, create the span via {@link brave.Tracer#newTrace(SamplingFlags)} */
   @Nullable public abstract SamplingFlags samplingFlags();
 
+  static final TraceContextOrSamplingFlags
+      EMPTY = new AutoValue_TraceContextOrSamplingFlags(null, SamplingFlags.EMPTY),
+      NOT_SAMPLED = new AutoValue_TraceContextOrSamplingFlags(null, SamplingFlags.NOT_SAMPLED),
+      SAMPLED = new AutoValue_TraceContextOrSamplingFlags(null, SamplingFlags.SAMPLED),
+      DEBUG = new AutoValue_TraceContextOrSamplingFlags(null, SamplingFlags.DEBUG);
+
+  /** Returns a constant for the predefined flags, such as {@link SamplingFlags#NOT_SAMPLED}. */
+  public static TraceContextOrSamplingFlags create(SamplingFlags flags) {
+    if (flags == null) throw new NullPointerException("flags == null");
+    if (flags == SamplingFlags.EMPTY) return EMPTY;
+    if (flags == SamplingFlags.NOT_SAMPLED) return NOT_SAMPLED;
+    if (flags == SamplingFlags.SAMPLED) return SAMPLED;
+    if (flags == SamplingFlags.DEBUG) return DEBUG;
+    return new AutoValue_TraceContextOrSamplingFlags(null, flags);
+  }
+
   public static TraceContextOrSamplingFlags create(TraceContext.Builder builder) {
     if (builder == null) throw new NullPointerException("builder == null");
     try {
       return new AutoValue_TraceContextOrSamplingFlags(builder.build(), null);
     } catch (IllegalStateException e) { // no trace IDs, but it might have sampling flags
-      SamplingFlags flags = new SamplingFlags.Builder()
+      return create(new SamplingFlags.Builder()
           .sampled(builder.sampled())
-          .debug(builder.debug()).build();
-      return new AutoValue_TraceContextOrSamplingFlags(null, flags);
+          .debug(builder.debug()).build());
     }
   }
 
+  static TraceContextOrSamplingFlags create(TraceContext context) {
+    return new AutoValue_TraceContextOrSamplingFlags(context, null);
+  }
+
   TraceContextOrSamplingFlags() { // no external implementations
   }
 }
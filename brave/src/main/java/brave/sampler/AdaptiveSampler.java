@@ -0,0 +1,172 @@
+package brave.sampler;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import zipkin.reporter.AsyncReporter;
+import zipkin.reporter.ReporterMetrics;
+
+import static zipkin.internal.Util.checkArgument;
+
+/**
+ * This sampler lowers its rate when the reporter drops spans, and slowly raises it back when spans
+ * are reported without drops. When the reporter can't keep up, spans that are recorded and encoded
+ * only to be dropped are wasted work. Adapting the rate keeps that work close to what the reporter
+ * can actually send.
+ *
+ * <p>The sampler learns about the reporter via {@link #reporterMetrics(ReporterMetrics)}:
+ * <pre>{@code
+ * sampler = AdaptiveSampler.create(1.0f);
+ * reporter = AsyncReporter.builder(sender)
+ *                         .metrics(sampler.reporterMetrics(metrics))
+ *                         .build();
+ * tracingBuilder.sampler(sampler).reporter(reporter);
+ * }</pre>
+ *
+ * <p>Brave 3 users can do the same from a {@code SpanCollectorMetricsHandler}, by forwarding its
+ * dropped spans to {@link ReporterMetrics#incrementSpansDropped(int)}.
+ *
+ * <h3>Implementation</h3>
+ *
+ * <p>Decisions are made like {@link ThresholdSampler}, against a threshold that's replaced when the
+ * rate changes. Rate changes happen at most once a second: the rate is halved when spans or
+ * messages are dropped, or raised by a twentieth of the maximum rate when the reporter's queue
+ * isn't growing. There's no background thread: changes are made by whichever thread updates the
+ * metrics, usually the reporter's flush thread.
+ */
+public final class AdaptiveSampler extends Sampler {
+  static final long ADJUST_INTERVAL_NANOS = 1000000000L;
+
+  /**
+   * @param maxRate the rate used when the reporter keeps up. Must be greater than 0 and at most 1.
+   */
+  public static AdaptiveSampler create(float maxRate) {
+    checkArgument(maxRate > 0 && maxRate <= 1, "maxRate should be between 0 and 1: was %s",
+        maxRate);
+    return new AdaptiveSampler(maxRate, ThresholdSampler.SALT, System.nanoTime());
+  }
+
+  static final AtomicLongFieldUpdater<AdaptiveSampler> LAST_ADJUSTMENT =
+      AtomicLongFieldUpdater.newUpdater(AdaptiveSampler.class, "lastAdjustment");
+
+  final float maxRate, minRate, step;
+  final long flippedSalt;
+
+  volatile float rate;
+  /** Like {@link ThresholdSampler#flippedThreshold}, replaced when the rate changes. */
+  volatile long flippedThreshold;
+  /** The value of {@link System#nanoTime()} when the rate last changed. Guarded by CAS. */
+  volatile long lastAdjustment;
+  /** The last value passed to {@link ReporterMetrics#updateQueuedSpans(int)}. */
+  volatile int queuedSpans;
+
+  AdaptiveSampler(float maxRate, long salt, long now) {
+    this.maxRate = maxRate;
+    this.minRate = Math.max(maxRate / 10000, 0.0000001f);
+    this.step = maxRate / 20;
+    this.flippedSalt = salt ^ Long.MIN_VALUE;
+    this.lastAdjustment = now - ADJUST_INTERVAL_NANOS; // so the first drop is acted on
+    setRate(maxRate);
+  }
+
+  @Override
+  public boolean isSampled(long traceId) {
+    return (traceId ^ flippedSalt) < flippedThreshold;
+  }
+
+  /** Returns the current sample rate, which is between a ten-thousandth of the max rate and it. */
+  public float rate() {
+    return rate;
+  }
+
+  /** Like {@link #reporterMetrics(ReporterMetrics)}, except nothing else is notified. */
+  public ReporterMetrics reporterMetrics() {
+    return reporterMetrics(ReporterMetrics.NOOP_METRICS);
+  }
+
+  /**
+   * Returns metrics to pass to a reporter such as {@link AsyncReporter}, which adapt this sampler
+   * to dropped spans and queue depth before forwarding to the given metrics.
+   */
+  public ReporterMetrics reporterMetrics(ReporterMetrics delegate) {
+    if (delegate == null) throw new NullPointerException("delegate == null");
+    return new AdaptingReporterMetrics(this, delegate);
+  }
+
+  /** Halves the rate, as the reporter couldn't keep up with it. */
+  void onSpansDropped(long now) {
+    if (rate > minRate && tryAdjust(now)) setRate(Math.max(minRate, rate / 2));
+  }
+
+  /** Raises the rate, unless the reporter is falling behind, evidenced by queue growth. */
+  void onQueuedSpans(int queuedSpans, long now) {
+    boolean growing = queuedSpans > this.queuedSpans;
+    this.queuedSpans = queuedSpans;
+    if (!growing && rate < maxRate && tryAdjust(now)) setRate(Math.min(maxRate, rate + step));
+  }
+
+  /** Returns true if this thread won the right to change the rate in the current interval. */
+  boolean tryAdjust(long now) {
+    long lastAdjustment = this.lastAdjustment;
+    if (now - lastAdjustment < ADJUST_INTERVAL_NANOS) return false;
+    return LAST_ADJUSTMENT.compareAndSet(this, lastAdjustment, now);
+  }
+
+  void setRate(float rate) {
+    this.flippedThreshold = ThresholdSampler.threshold(rate) ^ Long.MIN_VALUE;
+    this.rate = rate;
+  }
+
+  @Override
+  public String toString() {
+    return "AdaptiveSampler(" + rate + ")";
+  }
+
+  static final class AdaptingReporterMetrics implements ReporterMetrics {
+    final AdaptiveSampler sampler;
+    final ReporterMetrics delegate;
+
+    AdaptingReporterMetrics(AdaptiveSampler sampler, ReporterMetrics delegate) {
+      this.sampler = sampler;
+      this.delegate = delegate;
+    }
+
+    @Override public void incrementSpansDropped(int quantity) {
+      sampler.onSpansDropped(System.nanoTime());
+      delegate.incrementSpansDropped(quantity);
+    }
+
+    @Override public void updateQueuedSpans(int update) {
+      sampler.onQueuedSpans(update, System.nanoTime());
+      delegate.updateQueuedSpans(update);
+    }
+
+    @Override public void incrementMessages() {
+      delegate.incrementMessages();
+    }
+
+    /** Spans in a message that failed to send were also dropped */
+    @Override public void incrementMessagesDropped(Throwable cause) {
+      sampler.onSpansDropped(System.nanoTime());
+      delegate.incrementMessagesDropped(cause);
+    }
+
+    @Override public void incrementSpans(int quantity) {
+      delegate.incrementSpans(quantity);
+    }
+
+    @Override public void incrementSpanBytes(int quantity) {
+      delegate.incrementSpanBytes(quantity);
+    }
+
+    @Override public void incrementMessageBytes(int quantity) {
+      delegate.incrementMessageBytes(quantity);
+    }
+
+    @Override public void updateQueuedBytes(int update) {
+      delegate.updateQueuedBytes(update);
+    }
+
+    @Override public String toString() {
+      return "AdaptingReporterMetrics(" + delegate + ")";
+    }
+  }
+}
@@ -1,6 +1,5 @@
 package brave.sampler;
 
-import java.util.BitSet;
 import java.util.Random;
 
 import static zipkin.internal.Util.checkArgument;
@@ -12,66 +11,71 @@ import static zipkin.internal.Util.checkArgument;
  *
  * <h3>Implementation</h3>
  *
- * <p>This initializes a random bitset of size 100 (corresponding to 1% granularity). This means
- * that it is accurate in units of 100 traces. At runtime, this loops through the bitset, returning
- * the value according to a counter.
+ * <p>The rate is converted to a number of traces out of 10000 (corresponding to 0.01% granularity).
+ * Each thread adds this to its own counter on every decision, sampling when the counter passes
+ * 10000, and carrying the remainder into the next decision. This means any run of decisions made by
+ * one thread is within one trace of the rate, and threads never contend with each other.
+ *
+ * <p>Counters start at a random value, so threads that only make a few decisions still sample at
+ * the rate on average. Across all threads, the number of sampled traces is within one per thread of
+ * the rate.
  */
 public final class CountingSampler extends Sampler {
+  static final int PRECISION = 10000;
 
   /**
-   * @param rate 0 means never sample, 1 means always sample. Otherwise minimum sample rate is 0.01,
-   * or 1% of traces
+   * @param rate 0 means never sample, 1 means always sample. Otherwise minimum sample rate is
+   * 0.0001, or 0.01% of traces
    */
   public static Sampler create(final float rate) {
     if (rate == 0) return NEVER_SAMPLE;
     if (rate == 1.0) return ALWAYS_SAMPLE;
-    checkArgument(rate >= 0.01f && rate < 1, "rate should be between 0.01 and 1: was %s", rate);
+    checkArgument(rate >= 0.0001f && rate < 1, "rate should be between 0.0001 and 1: was %s",
+        rate);
     return new CountingSampler(rate);
   }
 
-  private int i; // guarded by this
-  private final BitSet sampleDecisions;
+  final int outOf10000;
+  // intentionally not static, as counters are relative to this sampler's rate
+  final ThreadLocal<Counter> counters;
 
-  /** Fills a bitset with decisions according to the supplied rate. */
   CountingSampler(float rate) {
-    int outOf100 = (int) (rate * 100.0f);
-    this.sampleDecisions = randomBitSet(100, outOf100, new Random());
+    this(rate, new Random());
   }
 
-  /** loops over the pre-canned decisions, resetting to zero when it gets to the end. */
+  CountingSampler(float rate, final Random random) {
+    this.outOf10000 = Math.round(rate * PRECISION);
+    this.counters = new ThreadLocal<Counter>() {
+      @Override protected Counter initialValue() {
+        return new Counter(random.nextInt(PRECISION));
+      }
+    };
+  }
+
+  /** Adds the rate to this thread's counter, sampling each time it overflows. */
   @Override
-  public synchronized boolean isSampled(long traceIdIgnored) {
-    boolean result = sampleDecisions.get(i++);
-    if (i == 100) i = 0;
-    return result;
+  public boolean isSampled(long traceIdIgnored) {
+    Counter counter = counters.get();
+    int value = counter.value + outOf10000;
+    if (value >= PRECISION) {
+      counter.value = value - PRECISION;
+      return true;
+    }
+    counter.value = value;
+    return false;
   }
 
   @Override
   public String toString() {
-    return "CountingSampler()";
+    return "CountingSampler(" + outOf10000 + "/" + PRECISION + ")";
   }
 
-  /**
-   * Reservoir sampling algorithm borrowed from Stack Overflow.
-   *
-   * http://stackoverflow.com/questions/12817946/generate-a-random-bitset-with-n-1s
-   */
-  static BitSet randomBitSet(int size, int cardinality, Random rnd) {
-    BitSet result = new BitSet(size);
-    int[] chosen = new int[cardinality];
-    int i;
-    for (i = 0; i < cardinality; ++i) {
-      chosen[i] = i;
-      result.set(i);
-    }
-    for (; i < size; ++i) {
-      int j = rnd.nextInt(i + 1);
-      if (j < cardinality) {
-        result.clear(chosen[j]);
-        result.set(i);
-        chosen[j] = i;
-      }
+  /** Only accessed by its thread, so it needs no synchronization. */
+  static final class Counter {
+    int value;
+
+    Counter(int value) {
+      this.value = value;
     }
-    return result;
   }
 }
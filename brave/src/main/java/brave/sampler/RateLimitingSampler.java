@@ -0,0 +1,95 @@
+package brave.sampler;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import static zipkin.internal.Util.checkArgument;
+
+/**
+ * This sampler admits at most a fixed number of new traces per second, regardless of traffic. This
+ * protects the collection tier during traffic spikes, when probabilistic samplers would report more
+ * spans at the same rate traffic increases.
+ *
+ * <p>For example, to sample 10% of traces, but never more than 500 per second:
+ * <pre>{@code
+ * tracingBuilder.sampler(RateLimitingSampler.create(500, CountingSampler.create(0.1f)));
+ * }</pre>
+ *
+ * <h3>Implementation</h3>
+ *
+ * <p>This is a token bucket refilled continuously based on {@link System#nanoTime()}. It holds a
+ * tenth of a second's worth of traces (at least one), so a burst after an idle period can't exceed
+ * the rate by more than that. There's no background thread: the bucket is represented by the time
+ * at which it will next be full, which each decision reads and advances with a compare-and-set.
+ * When advancing it would exceed the bucket's capacity, the bucket is empty.
+ */
+public final class RateLimitingSampler extends Sampler {
+  static final long NANOS_PER_SECOND = 1000000000L;
+
+  /**
+   * @param tracesPerSecond 0 means never sample. Otherwise, the sustained number of traces
+   * sampled per second, up to one per nanosecond. Any second samples no more than 10% above this.
+   */
+  public static Sampler create(int tracesPerSecond) {
+    return create(tracesPerSecond, ALWAYS_SAMPLE);
+  }
+
+  /**
+   * Like {@link #create(int)}, except traces are only sampled when the given sampler also samples
+   * them. This limits the volume of a probabilistic sampler.
+   *
+   * @param tracesPerSecond 0 means never sample. Otherwise, the sustained number of traces
+   * sampled per second, up to one per nanosecond. Any second samples no more than 10% above this.
+   * @param sampler decides first, so that traces it drops don't consume the rate limit.
+   */
+  public static Sampler create(int tracesPerSecond, Sampler sampler) {
+    checkArgument(tracesPerSecond >= 0, "tracesPerSecond < 0: %s", tracesPerSecond);
+    // a faster rate would refill the bucket in zero nanoseconds, which never limits
+    checkArgument(tracesPerSecond <= NANOS_PER_SECOND, "tracesPerSecond > %s: %s",
+        NANOS_PER_SECOND, tracesPerSecond);
+    if (sampler == null) throw new NullPointerException("sampler == null");
+    if (tracesPerSecond == 0 || sampler == NEVER_SAMPLE) return NEVER_SAMPLE;
+    return new RateLimitingSampler(tracesPerSecond, sampler, System.nanoTime());
+  }
+
+  static final AtomicLongFieldUpdater<RateLimitingSampler> FULL_AT =
+      AtomicLongFieldUpdater.newUpdater(RateLimitingSampler.class, "fullAt");
+
+  final int tracesPerSecond;
+  final Sampler sampler;
+  /** How long it takes to refill the bucket by one trace. */
+  final long nanosPerTrace;
+  /** How long it takes to refill an empty bucket. */
+  final long capacityNanos;
+  /** The value of {@link System#nanoTime()} when the bucket will be full. Guarded by CAS. */
+  volatile long fullAt;
+
+  RateLimitingSampler(int tracesPerSecond, Sampler sampler, long now) {
+    this.tracesPerSecond = tracesPerSecond;
+    this.sampler = sampler;
+    this.nanosPerTrace = NANOS_PER_SECOND / tracesPerSecond;
+    this.capacityNanos = Math.max(nanosPerTrace, NANOS_PER_SECOND / 10);
+    this.fullAt = now;
+  }
+
+  @Override
+  public boolean isSampled(long traceId) {
+    return sampler.isSampled(traceId) && tryAcquire(System.nanoTime());
+  }
+
+  /** Takes a trace from the bucket, returning false if it is empty. */
+  boolean tryAcquire(long now) {
+    while (true) {
+      long fullAt = this.fullAt;
+      // A bucket full in the past is only full: it holds no more than its capacity
+      long from = fullAt - now > 0 ? fullAt : now;
+      long nextFullAt = from + nanosPerTrace;
+      if (nextFullAt - now > capacityNanos) return false;
+      if (FULL_AT.compareAndSet(this, fullAt, nextFullAt)) return true;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "RateLimitingSampler(" + tracesPerSecond + "/s, " + sampler + ")";
+  }
+}
@@ -41,9 +41,10 @@ public abstract class Sampler {
    * Returns a sampler, given a rate expressed as a percentage.
    *
    * <p>The sampler returned is good for low volumes of traffic (<100K requests), as it is precise.
-   * If you have high volumes of traffic, consider {@link BoundarySampler}.
+   * If you have high volumes of traffic, consider {@link BoundarySampler}, or {@link
+   * ThresholdSampler} for rates below 0.01%.
    *
-   * @param rate minimum sample rate is 0.01, or 1% of traces
+   * @param rate minimum sample rate is 0.0001, or 0.01% of traces
    */
   public static Sampler create(float rate) {
     return CountingSampler.create(rate);
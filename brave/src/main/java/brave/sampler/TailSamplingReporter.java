@@ -0,0 +1,279 @@
+package brave.sampler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import zipkin.Annotation;
+import zipkin.BinaryAnnotation;
+import zipkin.Constants;
+import zipkin.Span;
+import zipkin.reporter.Reporter;
+
+/**
+ * This reporter holds finished spans until the local root of their trace finishes, then reports or
+ * discards them together. Unlike {@link Sampler}, which decides before anything is known about the
+ * request, this can keep the traces that turned out to be slow or to fail.
+ *
+ * <p>To use this, sample every trace in the tracer and let this reporter decide what leaves the
+ * process. For example, to report traces that failed or took over a second, and 1% of the rest:
+ * <pre>{@code
+ * tailSampler = TailSamplingReporter.newBuilder(asyncReporter)
+ *                                   .latencyThreshold(1, TimeUnit.SECONDS)
+ *                                   .baseline(CountingSampler.create(0.01f))
+ *                                   .build();
+ * tracingBuilder.sampler(Sampler.ALWAYS_SAMPLE).reporter(tailSampler);
+ * }</pre>
+ *
+ * <p>A local root is a span without a parent, or a server span. The first local root of a trace to
+ * finish decides for the whole trace in this process. Spans of that trace which finish later
+ * follow the same decision. A trace is kept when any of its spans is debug or has an "error" tag,
+ * when its local root took at least the {@link Builder#latencyThreshold(long, TimeUnit) latency
+ * threshold}, or when the {@link Builder#baseline(Sampler) baseline sampler} samples its trace ID.
+ *
+ * <h3>Memory</h3>
+ *
+ * <p>At most {@link Builder#maxSpans(int) max spans} are held. When that's exceeded, or when a
+ * trace is older than the {@link Builder#maxTraceAge(long, TimeUnit) max trace age}, the oldest
+ * traces are evicted. Spans of an evicted trace are discarded, and it is counted by {@link
+ * #tracesEvicted()}. A decided trace costs one span of this budget, so late spans can still be
+ * routed until it's evicted.
+ *
+ * <p>There's no background thread: eviction is done by whichever thread reports a span. Spans are
+ * passed to the delegate outside the lock guarding the buffer.
+ */
+public final class TailSamplingReporter implements Reporter<Span> {
+
+  public static Builder newBuilder(Reporter<Span> delegate) {
+    return new Builder(delegate);
+  }
+
+  public static final class Builder {
+    final Reporter<Span> delegate;
+    long latencyThresholdMicros = 0;
+    boolean keepErrors = true;
+    Sampler baseline = Sampler.NEVER_SAMPLE;
+    int maxSpans = 10000;
+    long maxTraceAgeNanos = TimeUnit.MINUTES.toNanos(1);
+
+    Builder(Reporter<Span> delegate) {
+      if (delegate == null) throw new NullPointerException("delegate == null");
+      this.delegate = delegate;
+    }
+
+    /**
+     * Keeps traces whose local root took at least this long. Defaults to zero, which means latency
+     * isn't considered.
+     */
+    public Builder latencyThreshold(long latencyThreshold, TimeUnit unit) {
+      if (latencyThreshold < 0) throw new IllegalArgumentException("latencyThreshold < 0");
+      if (unit == null) throw new NullPointerException("unit == null");
+      this.latencyThresholdMicros = unit.toMicros(latencyThreshold);
+      return this;
+    }
+
+    /** When true, traces with any span tagged "error" are kept. Defaults to true. */
+    public Builder keepErrors(boolean keepErrors) {
+      this.keepErrors = keepErrors;
+      return this;
+    }
+
+    /**
+     * Decides by trace ID whether to keep traces that are neither slow nor failed. Defaults to
+     * {@link Sampler#NEVER_SAMPLE}.
+     */
+    public Builder baseline(Sampler baseline) {
+      if (baseline == null) throw new NullPointerException("baseline == null");
+      this.baseline = baseline;
+      return this;
+    }
+
+    /** Caps the spans held while waiting for local roots to finish. Defaults to 10000. */
+    public Builder maxSpans(int maxSpans) {
+      if (maxSpans <= 0) throw new IllegalArgumentException("maxSpans <= 0");
+      this.maxSpans = maxSpans;
+      return this;
+    }
+
+    /**
+     * Traces whose local root hasn't finished this long after their first span are evicted.
+     * Defaults to one minute.
+     */
+    public Builder maxTraceAge(long maxTraceAge, TimeUnit unit) {
+      if (maxTraceAge <= 0) throw new IllegalArgumentException("maxTraceAge <= 0");
+      if (unit == null) throw new NullPointerException("unit == null");
+      this.maxTraceAgeNanos = unit.toNanos(maxTraceAge);
+      return this;
+    }
+
+    public TailSamplingReporter build() {
+      return new TailSamplingReporter(this);
+    }
+  }
+
+  final Reporter<Span> delegate;
+  final long latencyThresholdMicros;
+  final boolean keepErrors;
+  final Sampler baseline;
+  final int maxSpans;
+  final long maxTraceAgeNanos;
+
+  /** Traces by the low 64 bits of their ID, in the order they were first seen. Guarded by this. */
+  final LinkedHashMap<Long, Trace> traces = new LinkedHashMap<Long, Trace>();
+  /** The spans held in {@link #traces}, where a decided trace counts as one. Guarded by this. */
+  int bufferedSpans;
+
+  final AtomicLong tracesKept = new AtomicLong();
+  final AtomicLong tracesDropped = new AtomicLong();
+  final AtomicLong tracesEvicted = new AtomicLong();
+
+  TailSamplingReporter(Builder builder) {
+    this.delegate = builder.delegate;
+    this.latencyThresholdMicros = builder.latencyThresholdMicros;
+    this.keepErrors = builder.keepErrors;
+    this.baseline = builder.baseline;
+    this.maxSpans = builder.maxSpans;
+    this.maxTraceAgeNanos = builder.maxTraceAgeNanos;
+  }
+
+  @Override public void report(Span span) {
+    report(span, System.nanoTime());
+  }
+
+  void report(Span span, long now) {
+    if (span == null) throw new NullPointerException("span == null");
+    List<Span> toReport;
+    synchronized (this) {
+      evict(now);
+      Long key = span.traceId;
+      Trace trace = traces.get(key);
+      if (trace == null) {
+        traces.put(key, trace = new Trace(now));
+        bufferedSpans++;
+      } else if (trace.spans != null) {
+        bufferedSpans++;
+      }
+
+      if (trace.spans == null) { // already decided
+        toReport = trace.keep ? Collections.singletonList(span) : null;
+      } else {
+        trace.add(span, keepErrors);
+        if (!isLocalRoot(span)) {
+          toReport = null;
+        } else {
+          trace.keep = trace.keep || isSlow(span) || baseline.isSampled(span.traceId);
+          (trace.keep ? tracesKept : tracesDropped).incrementAndGet();
+          toReport = trace.keep ? trace.spans : null;
+          bufferedSpans -= trace.spans.size() - 1;
+          trace.spans = null;
+        }
+      }
+      while (bufferedSpans > maxSpans) evictEldest();
+    }
+    if (toReport == null) return;
+    for (int i = 0, length = toReport.size(); i < length; i++) {
+      delegate.report(toReport.get(i));
+    }
+  }
+
+  /** Evicts traces older than the max age. Guarded by this. */
+  void evict(long now) {
+    Iterator<Trace> i = traces.values().iterator();
+    while (i.hasNext()) {
+      Trace eldest = i.next();
+      if (now - eldest.firstSeen < maxTraceAgeNanos) return;
+      i.remove();
+      remove(eldest);
+    }
+  }
+
+  /** Guarded by this. */
+  void evictEldest() {
+    Iterator<Trace> i = traces.values().iterator();
+    Trace eldest = i.next();
+    i.remove();
+    remove(eldest);
+  }
+
+  /** Guarded by this. */
+  void remove(Trace trace) {
+    if (trace.spans == null) {
+      bufferedSpans--;
+    } else {
+      bufferedSpans -= trace.spans.size();
+      tracesEvicted.incrementAndGet();
+    }
+  }
+
+  boolean isSlow(Span localRoot) {
+    return latencyThresholdMicros > 0
+        && localRoot.duration != null
+        && localRoot.duration >= latencyThresholdMicros;
+  }
+
+  static boolean isLocalRoot(Span span) {
+    if (span.parentId == null) return true;
+    for (int i = 0, length = span.annotations.size(); i < length; i++) {
+      Annotation a = span.annotations.get(i);
+      if (a.value.equals(Constants.SERVER_RECV)) return true;
+    }
+    return false;
+  }
+
+  /** Returns the count of traces reported, because their local root finished and they were kept. */
+  public long tracesKept() {
+    return tracesKept.get();
+  }
+
+  /** Returns the count of traces discarded, because their local root finished and wasn't kept. */
+  public long tracesDropped() {
+    return tracesDropped.get();
+  }
+
+  /**
+   * Returns the count of traces discarded before their local root finished, because they were
+   * older than the max trace age, or to make room for other spans.
+   */
+  public long tracesEvicted() {
+    return tracesEvicted.get();
+  }
+
+  /** Returns the count of spans held while waiting for local roots to finish. */
+  public synchronized int bufferedSpans() {
+    return bufferedSpans;
+  }
+
+  @Override public String toString() {
+    return "TailSamplingReporter(" + delegate + ")";
+  }
+
+  static final class Trace {
+    final long firstSeen;
+    /** Spans waiting for the local root to finish, or null once decided. */
+    List<Span> spans = new ArrayList<Span>();
+    boolean keep;
+
+    Trace(long firstSeen) {
+      this.firstSeen = firstSeen;
+    }
+
+    void add(Span span, boolean keepErrors) {
+      spans.add(span);
+      if (keep) return;
+      if (Boolean.TRUE.equals(span.debug)) {
+        keep = true;
+      } else if (keepErrors) {
+        for (int i = 0, length = span.binaryAnnotations.size(); i < length; i++) {
+          BinaryAnnotation b = span.binaryAnnotations.get(i);
+          if (b.key.equals(Constants.ERROR)) {
+            keep = true;
+            return;
+          }
+        }
+      }
+    }
+  }
+}
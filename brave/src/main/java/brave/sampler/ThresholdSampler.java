@@ -0,0 +1,79 @@
+package brave.sampler;
+
+import java.util.Random;
+
+import static zipkin.internal.Util.checkArgument;
+
+/**
+ * Like {@link BoundarySampler}, this is appropriate for high-traffic instrumentation who provision
+ * random trace ids. However, it supports rates as low as 0.00001%, or one in ten million traces.
+ *
+ * <p>Decisions are idempotent: the same trace ID is always sampled or not. When hosts are created
+ * with the same salt, they make the same decision for the same trace ID, so a trace sampled by one
+ * is sampled by all.
+ *
+ * <h3>Implementation</h3>
+ *
+ * <p>The rate is converted once into an unsigned 64-bit threshold, a fraction of 2^64. A trace is
+ * sampled when its salted ID is below that threshold. As trace IDs are random, this happens at the
+ * given rate. Unlike {@link BoundarySampler}, there's no division on the hot path: the unsigned
+ * comparison is a signed one with the sign bits flipped, which was done in advance for the
+ * threshold.
+ */
+public final class ThresholdSampler extends Sampler {
+  static final long SALT = new Random().nextLong();
+
+  /**
+   * Creates a sampler whose salt is random, so that hosts don't all sample the same trace IDs.
+   *
+   * @param rate 0 means never sample, 1 means always sample. Otherwise minimum sample rate is
+   * 0.0000001, or 0.00001% of traces
+   */
+  public static Sampler create(float rate) {
+    return create(rate, SALT);
+  }
+
+  /**
+   * Creates a sampler which makes the same decisions as others created with the same arguments.
+   *
+   * @param rate 0 means never sample, 1 means always sample. Otherwise minimum sample rate is
+   * 0.0000001, or 0.00001% of traces
+   * @param salt mixed with trace IDs before comparing them against the threshold. Share this value
+   * between hosts to sample consistently.
+   */
+  public static Sampler create(float rate, long salt) {
+    if (rate == 0) return NEVER_SAMPLE;
+    if (rate == 1.0) return ALWAYS_SAMPLE;
+    checkArgument(rate >= 0.0000001f && rate < 1,
+        "rate should be between 0.0000001 and 1: was %s", rate);
+    return new ThresholdSampler(threshold(rate), salt);
+  }
+
+  /** Returns {@code rate * 2^64} as an unsigned long. */
+  static long threshold(double rate) {
+    double threshold = rate * 0x1p64;
+    if (threshold < 0x1p63) return (long) threshold;
+    return (long) (threshold - 0x1p63) | Long.MIN_VALUE; // set the unsigned high bit
+  }
+
+  final long threshold;
+  // Sign bits are flipped, so that a signed comparison of the salted trace ID is unsigned
+  final long flippedSalt, flippedThreshold;
+
+  ThresholdSampler(long threshold, long salt) {
+    this.threshold = threshold;
+    this.flippedSalt = salt ^ Long.MIN_VALUE;
+    this.flippedThreshold = threshold ^ Long.MIN_VALUE;
+  }
+
+  /** Returns true when the unsigned value of {@code traceId ^ salt} is less than the threshold */
+  @Override
+  public boolean isSampled(long traceId) {
+    return (traceId ^ flippedSalt) < flippedThreshold;
+  }
+
+  @Override
+  public String toString() {
+    return "ThresholdSampler(" + Long.toHexString(threshold) + ")";
+  }
+}
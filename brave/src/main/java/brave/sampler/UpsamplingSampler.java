@@ -0,0 +1,285 @@
+package brave.sampler;
+
+import brave.internal.Nullable;
+import brave.internal.Platform;
+import brave.propagation.SamplingFlags;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import zipkin.BinaryAnnotation;
+import zipkin.Constants;
+import zipkin.Span;
+import zipkin.reporter.Reporter;
+
+import static zipkin.internal.Util.checkArgument;
+
+/**
+ * This sampler raises the rate of a span name while its latency or error rate is unusual, then
+ * decays it back to the base rate. This collects more traces during an incident, without running a
+ * high base rate all the time.
+ *
+ * <p>Statistics come from spans as they are reported, via {@link #reporter(Reporter)}. Decisions
+ * are made per span name, which is known before a trace starts:
+ * <pre>{@code
+ * sampler = UpsamplingSampler.create(0.01f, 0.5f);
+ * tracing = Tracing.newBuilder().sampler(sampler).reporter(sampler.reporter(reporter)).build();
+ *
+ * Span span = tracer.newTrace(sampler.samplingFlags("get /users")).name("get /users").start();
+ * }</pre>
+ *
+ * <p>Traces started without a name, for example by {@link #isSampled(long)}, use the base rate.
+ *
+ * <h3>Anomalies</h3>
+ *
+ * <p>Each name's spans are summarized in ten second windows. A window is unusual when its 99th
+ * percentile duration is more than double the moving average of previous windows, or when its
+ * error rate is more than double the moving average plus a percentage point. An unusual window
+ * raises the name's rate to the boosted rate. The rate halves for each window that follows without
+ * an anomaly, until it is back to the base rate. Windows with fewer than 20 spans don't change the
+ * rate, except to decay it.
+ *
+ * <h3>Implementation</h3>
+ *
+ * <p>Names are held in a fixed-size open-addressed table, so at most 256 names are tracked. Further
+ * names use the base rate. Each name counts durations in a histogram of half-powers of two, which
+ * bounds the error of the percentile to about 50%, under the factor of two that's considered
+ * unusual. Updates are atomic increments, and the window is rolled by
+ * whichever thread wins a compare-and-set. Counts that race with a roll may land in either window.
+ * Decisions are made like {@link ThresholdSampler}, against a threshold per name.
+ */
+public final class UpsamplingSampler extends Sampler {
+  static final int MAX_NAMES = 256;
+  static final int MIN_SPANS = 20;
+  static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  /**
+   * @param baseRate the rate used for names behaving normally, between 0.0000001 and 1
+   * @param boostedRate the rate used for names behaving unusually, between the base rate and 1
+   */
+  public static UpsamplingSampler create(float baseRate, float boostedRate) {
+    checkArgument(baseRate >= 0.0000001f && baseRate <= 1,
+        "baseRate should be between 0.0000001 and 1: was %s", baseRate);
+    checkArgument(boostedRate >= baseRate && boostedRate <= 1,
+        "boostedRate should be between baseRate and 1: was %s", boostedRate);
+    return new UpsamplingSampler(baseRate, boostedRate, ThresholdSampler.SALT);
+  }
+
+  final float baseRate, boostedRate;
+  final long flippedSalt, baseFlippedThreshold;
+  final AtomicReferenceArray<NameStats> table = new AtomicReferenceArray<>(MAX_NAMES * 2);
+  final AtomicInteger names = new AtomicInteger();
+
+  UpsamplingSampler(float baseRate, float boostedRate, long salt) {
+    this.baseRate = baseRate;
+    this.boostedRate = boostedRate;
+    this.flippedSalt = salt ^ Long.MIN_VALUE;
+    this.baseFlippedThreshold = ThresholdSampler.threshold(baseRate) ^ Long.MIN_VALUE;
+  }
+
+  /** Decides at the base rate. */
+  @Override
+  public boolean isSampled(long traceId) {
+    return (traceId ^ flippedSalt) < baseFlippedThreshold;
+  }
+
+  /** Decides at the current rate of the span name. */
+  public boolean isSampled(String spanName, long traceId) {
+    if (spanName == null) throw new NullPointerException("spanName == null");
+    NameStats stats = get(spanName);
+    long flippedThreshold = stats != null ? stats.flippedThreshold : baseFlippedThreshold;
+    return (traceId ^ flippedSalt) < flippedThreshold;
+  }
+
+  /** Returns flags to pass to {@link brave.Tracer#newTrace(SamplingFlags)} for the span name. */
+  public SamplingFlags samplingFlags(String spanName) {
+    return isSampled(spanName, Platform.get().randomLong())
+        ? SamplingFlags.SAMPLED
+        : SamplingFlags.NOT_SAMPLED;
+  }
+
+  /** Returns the current rate of the span name. */
+  public float rate(String spanName) {
+    if (spanName == null) throw new NullPointerException("spanName == null");
+    NameStats stats = get(spanName);
+    return stats != null ? stats.rate : baseRate;
+  }
+
+  /**
+   * Returns a reporter that updates statistics of each span's name before forwarding it to the
+   * delegate.
+   */
+  public Reporter<Span> reporter(Reporter<Span> delegate) {
+    if (delegate == null) throw new NullPointerException("delegate == null");
+    return new RecordingReporter(this, delegate);
+  }
+
+  void record(Span span, long now) {
+    if (span.duration == null) return; // not finished in this process, or flushed
+    NameStats stats = getOrCreate(span.name);
+    if (stats == null) return; // too many names
+    boolean error = false;
+    for (int i = 0, length = span.binaryAnnotations.size(); i < length; i++) {
+      BinaryAnnotation b = span.binaryAnnotations.get(i);
+      if (b.key.equals(Constants.ERROR)) {
+        error = true;
+        break;
+      }
+    }
+    stats.record(span.duration, error, now);
+  }
+
+  @Nullable NameStats get(String name) {
+    int mask = table.length() - 1;
+    for (int i = name.hashCode() & mask; ; i = (i + 1) & mask) {
+      NameStats stats = table.get(i);
+      if (stats == null || stats.name.equals(name)) return stats;
+    }
+  }
+
+  /** Returns null when the table is full. */
+  @Nullable NameStats getOrCreate(String name) {
+    NameStats stats = get(name);
+    if (stats != null) return stats;
+    // reserve a name before inserting, so that the table never fills beyond half
+    for (int n = names.get(); ; n = names.get()) {
+      if (n >= MAX_NAMES) return get(name); // may have been added by another thread
+      if (names.compareAndSet(n, n + 1)) break;
+    }
+    NameStats created = new NameStats(this, name);
+    int mask = table.length() - 1;
+    for (int i = name.hashCode() & mask; ; i = (i + 1) & mask) {
+      if (table.compareAndSet(i, null, created)) return created;
+      NameStats existing = table.get(i);
+      if (existing.name.equals(name)) { // another thread added the same name
+        names.decrementAndGet();
+        return existing;
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "UpsamplingSampler(" + baseRate + ", " + boostedRate + ")";
+  }
+
+  static final class NameStats {
+    /** Buckets are half-powers of two, so the 126 buckets cover all positive long values. */
+    static final int BUCKETS = 126;
+    /** Weight of the latest window in the moving averages */
+    static final double ALPHA = 0.2;
+    static final AtomicLongFieldUpdater<NameStats> WINDOW_START =
+        AtomicLongFieldUpdater.newUpdater(NameStats.class, "windowStart");
+
+    final UpsamplingSampler sampler;
+    final String name;
+    final AtomicIntegerArray histogram = new AtomicIntegerArray(BUCKETS);
+    final AtomicInteger errors = new AtomicInteger();
+    volatile long windowStart;
+
+    // only written by the thread that rolls the window
+    double averageP99 = -1, averageErrorRate;
+    volatile float rate;
+    volatile long flippedThreshold;
+
+    NameStats(UpsamplingSampler sampler, String name) {
+      this.sampler = sampler;
+      this.name = name;
+      this.windowStart = Long.MIN_VALUE;
+      setRate(sampler.baseRate);
+    }
+
+    void record(long durationMicros, boolean error, long now) {
+      long windowStart = this.windowStart;
+      if (windowStart == Long.MIN_VALUE) {
+        WINDOW_START.compareAndSet(this, windowStart, now);
+      } else if (now - windowStart >= WINDOW_NANOS
+          && WINDOW_START.compareAndSet(this, windowStart, now)) {
+        roll((now - windowStart) / WINDOW_NANOS);
+      }
+      histogram.incrementAndGet(bucket(durationMicros));
+      if (error) errors.incrementAndGet();
+    }
+
+    /** Called by the thread that ended the window, which was {@code windows} long. */
+    void roll(long windows) {
+      int[] counts = new int[BUCKETS];
+      int count = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        count += counts[i] = histogram.getAndSet(i, 0);
+      }
+      int errors = this.errors.getAndSet(0);
+
+      float rate = this.rate;
+      if (count >= MIN_SPANS) {
+        long p99 = percentile(counts, count, 0.99);
+        double errorRate = (double) errors / count;
+        boolean unusual = averageP99 != -1
+            && (p99 > 2 * averageP99 || errorRate > 2 * averageErrorRate + 0.01);
+        if (averageP99 == -1) {
+          averageP99 = p99;
+          averageErrorRate = errorRate;
+        } else {
+          averageP99 += ALPHA * (p99 - averageP99);
+          averageErrorRate += ALPHA * (errorRate - averageErrorRate);
+        }
+        if (unusual) {
+          setRate(sampler.boostedRate);
+          return;
+        }
+      }
+      if (rate > sampler.baseRate) { // decay by half for each window that passed
+        setRate(Math.max(sampler.baseRate, (float) (rate / Math.pow(2, windows))));
+      }
+    }
+
+    void setRate(float rate) {
+      this.flippedThreshold = ThresholdSampler.threshold(rate) ^ Long.MIN_VALUE;
+      this.rate = rate;
+    }
+
+    /** Bucket 2n holds values in [2^n, 1.5 * 2^n), and bucket 2n+1 holds [1.5 * 2^n, 2^(n+1)). */
+    static int bucket(long value) {
+      if (value <= 1) return 0;
+      int log2 = 63 - Long.numberOfLeadingZeros(value);
+      return log2 * 2 + (int) ((value >>> (log2 - 1)) & 1);
+    }
+
+    /** Returns the exclusive upper bound of the bucket. */
+    static long upperBound(int bucket) {
+      int log2 = bucket / 2;
+      long lower = 1L << log2;
+      return bucket % 2 == 0 ? lower + (lower >>> 1) : lower << 1;
+    }
+
+    static long percentile(int[] counts, int count, double percentile) {
+      long rank = (long) Math.ceil(count * percentile);
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) return upperBound(i);
+      }
+      return upperBound(counts.length - 1);
+    }
+  }
+
+  static final class RecordingReporter implements Reporter<Span> {
+    final UpsamplingSampler sampler;
+    final Reporter<Span> delegate;
+
+    RecordingReporter(UpsamplingSampler sampler, Reporter<Span> delegate) {
+      this.sampler = sampler;
+      this.delegate = delegate;
+    }
+
+    @Override public void report(Span span) {
+      sampler.record(span, System.nanoTime());
+      delegate.report(span);
+    }
+
+    @Override public String toString() {
+      return "RecordingReporter(" + delegate + ")";
+    }
+  }
+}
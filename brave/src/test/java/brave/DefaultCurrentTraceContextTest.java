@@ -111,4 +111,29 @@ public class DefaultCurrentTraceContextTest {
           .isEqualTo(context0);
     }
   }
+
+  @Test public void newScope_sameContextIsNoop() {
+    try (CurrentTraceContext.Scope scope = currentTraceContext.newScope(context)) {
+      assertThat(currentTraceContext.newScope(context))
+          .isSameAs(CurrentTraceContext.Scope.NOOP);
+    }
+  }
+
+  @Test public void newScope_fromNothingIsConstant() {
+    CurrentTraceContext.Scope clear;
+    try (CurrentTraceContext.Scope scope = currentTraceContext.newScope(context)) {
+      clear = scope;
+
+      try (CurrentTraceContext.Scope scope2 = currentTraceContext.newScope(context2)) {
+        assertThat(scope2).isNotSameAs(clear);
+      }
+      assertThat(currentTraceContext.get()).isEqualTo(context);
+    }
+    assertThat(currentTraceContext.get()).isNull();
+
+    try (CurrentTraceContext.Scope scope = currentTraceContext.newScope(context2)) {
+      assertThat(scope).isSameAs(clear);
+    }
+    assertThat(currentTraceContext.get()).isNull();
+  }
 }
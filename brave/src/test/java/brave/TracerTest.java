@@ -1,10 +1,12 @@
 package brave;
 
 import brave.propagation.SamplingFlags;
+import brave.propagation.ThreadLocalCurrentTraceContext;
 import brave.propagation.TraceContext;
 import brave.sampler.Sampler;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Test;
 import zipkin.Endpoint;
 
@@ -193,4 +195,91 @@ public class TracerTest {
           .isEqualTo(parent);
     }
   }
+
+  @Test public void withSpanInScope_sameContextIsNoop() {
+    Span parent = tracer.newTrace();
+
+    try (Tracer.SpanInScope wsParent = tracer.withSpanInScope(parent)) {
+      try (Tracer.SpanInScope ws = tracer.withSpanInScope(parent)) {
+        assertThat(ws).isSameAs(Tracer.SpanInScope.NOOP);
+      }
+
+      assertThat(tracer.currentSpan())
+          .isEqualTo(parent);
+    }
+  }
+
+  /** Each thread reuses its own scopes, so each should reuse its own wrappers too. */
+  @Test public void withSpanInScope_reusesWrappersOfReusableScopes() throws Exception {
+    tracer = Tracing.newBuilder()
+        .currentTraceContext(new ThreadLocalCurrentTraceContext()).build().tracer();
+    Span span = tracer.newTrace();
+
+    Tracer.SpanInScope first;
+    try (Tracer.SpanInScope ws = tracer.withSpanInScope(span)) {
+      first = ws;
+    }
+
+    AtomicReference<Tracer.SpanInScope> otherThread = new AtomicReference<>();
+    Thread thread = new Thread(() -> {
+      try (Tracer.SpanInScope ws = tracer.withSpanInScope(span)) {
+        otherThread.set(ws);
+      }
+    });
+    thread.start();
+    thread.join();
+
+    try (Tracer.SpanInScope ws = tracer.withSpanInScope(span)) {
+      assertThat(ws).isSameAs(first).isNotSameAs(otherThread.get());
+    }
+  }
+
+  @Test public void unsampledTraceIds_default() {
+    tracer = Tracing.newBuilder().sampler(Sampler.NEVER_SAMPLE).build().tracer();
+
+    assertThat(tracer.newTrace().context())
+        .isNotSameAs(Tracer.NOT_SAMPLED_CONTEXT)
+        .extracting(TraceContext::traceId).isNotEqualTo(0L);
+  }
+
+  @Test public void unsampledTraceIds_false_sharesConstants() {
+    tracer = Tracing.newBuilder()
+        .sampler(Sampler.NEVER_SAMPLE)
+        .unsampledTraceIds(false).build().tracer();
+
+    Span span = tracer.newTrace();
+    assertThat(span).isSameAs(Tracer.NOT_SAMPLED_SPAN);
+    assertThat(tracer.newTrace(SamplingFlags.NOT_SAMPLED)).isSameAs(span);
+    assertThat(tracer.newChild(span.context())).isSameAs(span);
+    assertThat(tracer.toSpan(span.context())).isSameAs(span);
+
+    Tracer.SpanInScope clear;
+    try (Tracer.SpanInScope ws = tracer.withSpanInScope(span)) {
+      clear = ws;
+      assertThat(tracer.currentSpan()).isSameAs(span);
+      assertThat(tracer.nextSpan()).isSameAs(span);
+    }
+    assertThat(tracer.currentSpan()).isNull();
+
+    try (Tracer.SpanInScope ws = tracer.withSpanInScope(span)) {
+      assertThat(ws).isSameAs(clear);
+    }
+  }
+
+  @Test public void unsampledTraceIds_false_dropsIncomingIds() {
+    tracer = Tracing.newBuilder().unsampledTraceIds(false).build().tracer();
+    TraceContext unsampled =
+        tracer.newTrace().context().toBuilder().sampled(false).build();
+
+    assertThat(tracer.joinSpan(unsampled)).isSameAs(Tracer.NOT_SAMPLED_SPAN);
+    assertThat(tracer.newChild(unsampled)).isSameAs(Tracer.NOT_SAMPLED_SPAN);
+  }
+
+  @Test public void unsampledTraceIds_false_sampledSpansHaveIds() {
+    tracer = Tracing.newBuilder().unsampledTraceIds(false).build().tracer();
+
+    assertThat(tracer.newTrace())
+        .isInstanceOf(RealSpan.class)
+        .extracting(s -> s.context().traceId()).isNotEqualTo(0L);
+  }
 }
@@ -2,6 +2,7 @@ package brave.internal;
 
 import org.junit.Test;
 
+import static brave.internal.HexCodec.lenientLowerHexToUnsignedLong;
 import static brave.internal.HexCodec.lowerHexToUnsignedLong;
 import static brave.internal.HexCodec.toLowerHex;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -44,6 +45,59 @@ public class HexCodecTest {
     }
   }
 
+  @Test
+  public void lenientLowerHexToUnsignedLong_matchesStrict() {
+    for (String lowerHex : new String[] {
+        "1", "ffffffffffffffff", "463ac35c9f6413ad48485a3953bb6124", "00000000cafebabe"
+    }) {
+      long expected = lowerHexToUnsignedLong(lowerHex);
+      assertThat(lenientLowerHexToUnsignedLong(lowerHex, 0, lowerHex.length()))
+          .isEqualTo(expected);
+      assertThat(lenientLowerHexToUnsignedLong(ascii(lowerHex), 0, lowerHex.length()))
+          .isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void lenientLowerHexToUnsignedLong_range() {
+    String value = "0000000000000001-0000000000000002";
+
+    assertThat(lenientLowerHexToUnsignedLong(value, 17, 33)).isEqualTo(2L);
+    assertThat(lenientLowerHexToUnsignedLong(ascii(value), 17, 33)).isEqualTo(2L);
+  }
+
+  @Test
+  public void lenientLowerHexToUnsignedLong_zeroWhenMalformed() {
+    for (String malformed : new String[] {
+        "", "fffffffffffffffffffffffffffffffff", "rs", "FFFF", "12-4", "abcg", "ab\u00e9c"
+    }) {
+      assertThat(lenientLowerHexToUnsignedLong(malformed, 0, malformed.length()))
+          .describedAs(malformed).isZero();
+      assertThat(lenientLowerHexToUnsignedLong(ascii(malformed), 0, malformed.length()))
+          .describedAs(malformed).isZero();
+    }
+  }
+
+  @Test
+  public void isLowerHex() {
+    String value = "0000000000000000-zzzz";
+
+    assertThat(HexCodec.isLowerHex(value, 0, 16)).isTrue();
+    assertThat(HexCodec.isLowerHex(ascii(value), 0, 16)).isTrue();
+    for (String malformed : new String[] {"0000000000000000-zzzz", "FFFF", "ab\u00e9c"}) {
+      assertThat(HexCodec.isLowerHex(malformed, 0, malformed.length()))
+          .describedAs(malformed).isFalse();
+      assertThat(HexCodec.isLowerHex(ascii(malformed), 0, malformed.length()))
+          .describedAs(malformed).isFalse();
+    }
+  }
+
+  static byte[] ascii(String value) {
+    byte[] result = new byte[value.length()];
+    for (int i = 0; i < result.length; i++) result[i] = (byte) value.charAt(i);
+    return result;
+  }
+
   @Test
   public void toLowerHex_minValue() {
     assertThat(toLowerHex(Long.MAX_VALUE)).isEqualTo("7fffffffffffffff");
@@ -0,0 +1,68 @@
+package brave.internal.recorder;
+
+import java.util.stream.IntStream;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AnnotationListTest {
+  AnnotationList list = new AnnotationList();
+
+  @Test public void chunksDoubleInSize() {
+    assertThat(IntStream.range(0, 28).map(AppendOnlyArrays::chunkFor).toArray())
+        .containsExactly(0, 0, 0, 0,
+            1, 1, 1, 1, 1, 1, 1, 1,
+            2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2);
+    assertThat(AppendOnlyArrays.offsetFor(27, 2)).isEqualTo(15);
+  }
+
+  @Test public void add_retainsOrder() {
+    for (int i = 0; i < 100; i++) list.add(i, "v" + i);
+
+    assertThat(list.size()).isEqualTo(100);
+    for (int i = 0; i < 100; i++) {
+      assertThat(list.timestamp(i)).isEqualTo(i);
+      assertThat(list.value(i)).isEqualTo("v" + i);
+    }
+  }
+
+  @Test public void add_concurrent() throws Exception {
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 1; i <= 1000; i++) list.add(i, String.valueOf(i));
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) thread.join();
+
+    assertThat(list.size()).isEqualTo(4000);
+    for (int i = 0; i < 4000; i++) {
+      assertThat(list.value(i)).isEqualTo(String.valueOf(list.timestamp(i)));
+    }
+  }
+
+  @Test public void emptyListAllocatesNothing() {
+    assertThat(list.chunks).isNull();
+
+    list.clear();
+
+    assertThat(list.chunks).isNull();
+  }
+
+  @Test public void clear_retainsChunks() {
+    for (int i = 0; i < 10; i++) list.add(i, "v");
+    long[] firstTimestamps = (long[]) list.arrayForRead(0, AnnotationList.TIMESTAMPS);
+    String[] firstValues = (String[]) list.arrayForRead(0, AnnotationList.VALUES);
+
+    list.clear();
+
+    assertThat(list.size()).isZero();
+    assertThat((long[]) list.arrayForRead(0, AnnotationList.TIMESTAMPS)).isSameAs(firstTimestamps);
+    assertThat((String[]) list.arrayForRead(0, AnnotationList.VALUES))
+        .isSameAs(firstValues)
+        .containsOnly((String) null);
+    list.add(1L, "w");
+    assertThat(list.value(0)).isEqualTo("w");
+  }
+}
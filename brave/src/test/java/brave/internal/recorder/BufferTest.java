@@ -0,0 +1,54 @@
+package brave.internal.recorder;
+
+import java.nio.charset.Charset;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BufferTest {
+  static final Charset UTF_8 = Charset.forName("UTF-8");
+  Buffer buffer = new Buffer(2);
+
+  @Test public void writeUtf8_matchesGetBytes() {
+    String value = "aé中😀z";
+    buffer.writeUtf8(value);
+
+    assertThat(buffer.toByteArray()).isEqualTo(value.getBytes(UTF_8));
+  }
+
+  @Test public void writeUtf8_malformedSurrogate() {
+    buffer.writeUtf8("\ud83d");
+
+    assertThat(buffer.toByteArray()).isEqualTo("\ud83d".getBytes(UTF_8));
+  }
+
+  @Test public void writeDecimal() {
+    for (long v : new long[] {0L, 7L, 10L, 1472470996199000L, Long.MAX_VALUE, -1L}) {
+      buffer.pos = 0;
+      buffer.writeDecimal(v);
+
+      assertThat(new String(buffer.toByteArray(), UTF_8)).isEqualTo(Long.toString(v));
+    }
+  }
+
+  @Test public void writeLowerHex() {
+    buffer.writeLowerHex(0xa1b2c3d4e5f60718L);
+
+    assertThat(new String(buffer.toByteArray(), UTF_8)).isEqualTo("a1b2c3d4e5f60718");
+  }
+
+  @Test public void writeJsonEscaped() {
+    buffer.writeJsonEscaped("\"\\\t\u0001 ");
+
+    assertThat(new String(buffer.toByteArray(), UTF_8))
+        .isEqualTo("\\\"\\\\\\t\\u0001\\u2028");
+  }
+
+  @Test public void get_discardsLargeBuffers() {
+    Buffer large = Buffer.get();
+    large.require(Buffer.MAX_RETAINED_CAPACITY + 1);
+
+    assertThat(Buffer.get()).isNotSameAs(large);
+    assertThat(Buffer.get().pos).isZero();
+  }
+}
@@ -0,0 +1,23 @@
+package brave.internal.recorder;
+
+import org.junit.Test;
+import zipkin.Codec;
+import zipkin.reporter.Encoding;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JsonSpanEncoderTest extends SpanEncoderTest {
+  @Override Encoding encoding() {
+    return Encoding.JSON;
+  }
+
+  @Override Codec codec() {
+    return Codec.JSON;
+  }
+
+  @Test public void localEndpointIsPreEncoded() {
+    assertThat(new String(((JsonSpanEncoder) encoder).localEndpoint))
+        .isEqualTo("{\"serviceName\":\"frontend\",\"ipv4\":\"127.0.0.1\",\"port\":8080,"
+            + "\"ipv6\":\"::1\"}");
+  }
+}
@@ -1,5 +1,7 @@
 package brave.internal.recorder;
 
+import brave.InMemoryRecorderMetrics;
+import brave.RecorderMetrics;
 import brave.Tracing;
 import brave.propagation.TraceContext;
 import brave.internal.Platform;
@@ -49,7 +51,7 @@ public class MutableSpanMapTest {
     map.getOrCreate(context);
     map.remove(context);
 
-    assertThat(map.delegate).isEmpty();
+    assertThat(map.entries()).isEmpty();
     assertThat(map.poll()).isNull();
   }
 
@@ -82,7 +84,7 @@ public class MutableSpanMapTest {
 
     map.remove(context1);
 
-    assertThat(map.delegate.keySet()).extracting(o -> ((Reference) o).get())
+    assertThat(map.entries()).extracting(o -> ((Reference) o).get())
         .containsOnly(context2);
   }
 
@@ -93,7 +95,7 @@ public class MutableSpanMapTest {
     pretendGCHappened();
     map.remove(context);
 
-    assertThat(map.delegate.keySet()).extracting(o -> ((Reference) o).get())
+    assertThat(map.entries()).extracting(o -> ((Reference) o).get())
         .hasSize(1)
         .containsNull();
   }
@@ -105,7 +107,7 @@ public class MutableSpanMapTest {
     map.getOrCreate(context);
 
     // we'd expect two distinct entries.. the span would be reported twice, but merged zipkin-side
-    assertThat(map.delegate.keySet()).extracting(o -> ((Reference) o).get())
+    assertThat(map.entries()).extracting(o -> ((Reference) o).get())
         .containsExactlyInAnyOrder(null, context);
   }
 
@@ -130,13 +132,13 @@ public class MutableSpanMapTest {
     blockOnGC();
 
     // After GC, we expect that the weak references of context1 and context2 to be cleared
-    assertThat(map.delegate.keySet()).extracting(o -> ((Reference) o).get())
+    assertThat(map.entries()).extracting(o -> ((Reference) o).get())
         .containsExactlyInAnyOrder(null, null, context3, context4);
 
     map.reportOrphanedSpans();
 
     // After reporting, we expect no the weak references of null
-    assertThat(map.delegate.keySet()).extracting(o -> ((Reference) o).get())
+    assertThat(map.entries()).extracting(o -> ((Reference) o).get())
         .containsExactlyInAnyOrder(context3, context4);
 
     // We also expect the spans to have been reported
@@ -158,7 +160,7 @@ public class MutableSpanMapTest {
     blockOnGC();
 
     // Sanity check that the referent trace context cleared due to GC
-    assertThat(map.delegate.keySet()).extracting(o -> ((Reference) o).get())
+    assertThat(map.entries()).extracting(o -> ((Reference) o).get())
         .hasSize(1)
         .containsNull();
 
@@ -166,10 +168,43 @@ public class MutableSpanMapTest {
     map.remove(context);
 
     // However, the reference queue has been cleared.
-    assertThat(map.delegate.keySet())
+    assertThat(map.entries())
         .isEmpty();
   }
 
+  @Test
+  public void reportOrphanedSpans_capsAndCounts() throws Exception {
+    InMemoryRecorderMetrics metrics = new InMemoryRecorderMetrics();
+    map = new MutableSpanMap(localEndpoint, () -> 0L, spans::add, null, true, false, metrics);
+    for (int i = 1; i <= 3; i++) map.getOrCreate(context.toBuilder().spanId(i).build());
+
+    blockOnGC();
+
+    assertThat(map.reportOrphanedSpans(2)).isEqualTo(2);
+    assertThat(spans).hasSize(2);
+    assertThat(metrics.orphanedSpans()).isEqualTo(2);
+
+    assertThat(map.reportOrphanedSpans(2)).isEqualTo(1);
+    assertThat(metrics.orphanedSpans()).isEqualTo(3);
+    assertThat(map.entries()).isEmpty();
+  }
+
+  /** When orphans are reported in the background, callers shouldn't do that work */
+  @Test
+  public void reportOrphansInlineDisabled_callersDontReport() throws Exception {
+    map = new MutableSpanMap(localEndpoint, () -> 0L, spans::add, null, true, false,
+        RecorderMetrics.NOOP_METRICS);
+    map.getOrCreate(context.toBuilder().spanId(1).build());
+
+    blockOnGC();
+
+    map.getOrCreate(context);
+    map.remove(context);
+
+    assertThat(spans).isEmpty();
+    assertThat(map.entries()).hasSize(1);
+  }
+
   /** Debugging should show what the spans are, as well any references pending clear. */
   @Test
   public void toString_saysWhatReferentsAre() throws Exception {
@@ -188,27 +223,64 @@ public class MutableSpanMapTest {
   }
 
   @Test
-  public void realKey_equalToItself(){
-    MutableSpanMap.RealKey key = new MutableSpanMap.RealKey(context, map);
-    assertThat(key).isEqualTo(key);
-    key.clear();
-    assertThat(key).isEqualTo(key);
+  public void entry_matchesEquivalent() {
+    int hash = MutableSpanMap.hash(context);
+    MutableSpanMap.Entry entry = new MutableSpanMap.Entry(context, hash, null, map);
+    assertThat(entry.matches(context.toBuilder().build(), hash)).isTrue();
+    entry.clear();
+    assertThat(entry.matches(context, hash)).isFalse();
+  }
+
+  @Test
+  public void entry_doesntMatchDifferentSharedFlag() {
+    TraceContext shared = context.toBuilder().shared(true).build();
+    MutableSpanMap.Entry entry =
+        new MutableSpanMap.Entry(context, MutableSpanMap.hash(context), null, map);
+
+    assertThat(entry.matches(shared, MutableSpanMap.hash(shared))).isFalse();
+    assertThat(map.getOrCreate(context)).isNotSameAs(map.getOrCreate(shared));
   }
 
   @Test
-  public void realKey_equalToEquivalent(){
-    MutableSpanMap.RealKey key = new MutableSpanMap.RealKey(context, map);
-    MutableSpanMap.RealKey key2 = new MutableSpanMap.RealKey(context, map);
-    assertThat(key).isEqualTo(key2);
-    key.clear();
-    assertThat(key).isNotEqualTo(key2);
-    key2.clear();
-    assertThat(key).isEqualTo(key2);
+  public void getOrCreate_growsAndPurgesTombstones() {
+    List<TraceContext> contexts = new ArrayList<>();
+    for (long i = 1; i <= 1000; i++) {
+      TraceContext next = context.toBuilder().spanId(i).build();
+      contexts.add(next);
+      map.getOrCreate(next);
+    }
+    assertThat(map.size()).isEqualTo(1000);
+
+    for (int i = 0; i < 500; i++) {
+      assertThat(map.remove(contexts.get(i))).isNotNull();
+    }
+    for (int i = 500; i < 1000; i++) { // probe sequences are intact after removals
+      assertThat(map.get(contexts.get(i))).isNotNull();
+    }
+    for (int i = 0; i < 500; i++) { // re-adding reuses tombstones
+      map.getOrCreate(contexts.get(i));
+    }
+    assertThat(map.size()).isEqualTo(1000);
+    assertThat(map.entries()).extracting(o -> ((Reference) o).get())
+        .containsOnlyElementsOf(contexts);
+  }
+
+  @Test
+  public void trackOrphansDisabled_doesntReferenceContext() {
+    map = new MutableSpanMap(localEndpoint, () -> 0L, spans::add, null, false, true,
+        RecorderMetrics.NOOP_METRICS);
+    map.getOrCreate(context);
+
+    assertThat(map.entries()).extracting(o -> ((Reference) o).get())
+        .containsExactly((TraceContext) null);
+    assertThat(map.get(context)).isNotNull();
+    assertThat(map.toString())
+        .isEqualTo("MutableSpanMap[Entry(" + context + ")]");
   }
 
   /** In reality, this clears a reference even if it is strongly held by the test! */
   void pretendGCHappened() {
-    ((MutableSpanMap.RealKey) map.delegate.keySet().iterator().next()).clear();
+    map.entries().iterator().next().clear();
   }
 
   static void blockOnGC() throws InterruptedException {
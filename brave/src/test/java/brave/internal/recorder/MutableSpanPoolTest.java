@@ -0,0 +1,67 @@
+package brave.internal.recorder;
+
+import brave.Tracing;
+import brave.internal.Platform;
+import brave.propagation.TraceContext;
+import org.junit.Test;
+import zipkin.Endpoint;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MutableSpanPoolTest {
+  Endpoint localEndpoint = Platform.get().localEndpoint();
+  TraceContext context = Tracing.newBuilder().build().tracer().newTrace().context();
+  MutableSpanPool pool = new MutableSpanPool(localEndpoint, 4);
+
+  @Test public void capacityIsRoundedUpToPowerOfTwo() {
+    assertThat(new MutableSpanPool(localEndpoint, 5).slots.length())
+        .isEqualTo(8);
+  }
+
+  @Test public void acquire_allocatesWhenEmpty() {
+    MutableSpan span = pool.acquire(context);
+
+    assertThat(span.localEndpoint).isSameAs(localEndpoint);
+    assertThat(span.isRecording(context)).isTrue();
+  }
+
+  @Test public void acquire_reusesReleased() {
+    MutableSpan span = pool.acquire(context);
+    span.finish(1L);
+    pool.release(span);
+
+    TraceContext nextContext = context.toBuilder().spanId(context.spanId() + 1).build();
+    assertThat(pool.acquire(nextContext))
+        .isSameAs(span);
+    assertThat(span.isRecording(context)).isFalse();
+    assertThat(span.isRecording(nextContext)).isTrue();
+  }
+
+  @Test public void release_dropsWhenFull() {
+    MutableSpan[] spans = new MutableSpan[MutableSpanPool.MAX_PROBES + 1];
+    for (int i = 0; i < spans.length; i++) {
+      spans[i] = new MutableSpan(context, localEndpoint);
+      pool.release(spans[i]);
+    }
+
+    assertThat(pool.slots.length()).isEqualTo(MutableSpanPool.MAX_PROBES);
+    for (int i = 0; i < pool.slots.length(); i++) {
+      assertThat(pool.slots.get(i)).isNotNull();
+    }
+  }
+
+  @Test public void reusedSpanHasNoPreviousState() {
+    MutableSpan span = pool.acquire(context);
+    span.name("foo").tag("error", "true");
+    span.annotate(1L, "cs");
+    span.finish(2L);
+    pool.release(span);
+
+    zipkin.Span reused = pool.acquire(context).start(3L).finish(4L).toSpan();
+    assertThat(reused.name).isEmpty();
+    assertThat(reused.annotations).isEmpty();
+    assertThat(reused.binaryAnnotations).extracting(b -> b.key)
+        .containsExactly("lc"); // default binary annotation
+    assertThat(reused.duration).isEqualTo(1L);
+  }
+}
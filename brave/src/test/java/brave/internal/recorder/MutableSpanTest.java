@@ -13,6 +13,7 @@ import static brave.Span.Kind.CLIENT;
 import static brave.Span.Kind.SERVER;
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static zipkin.Constants.CLIENT_ADDR;
 import static zipkin.Constants.CLIENT_RECV;
 import static zipkin.Constants.CLIENT_SEND;
@@ -69,6 +70,20 @@ public class MutableSpanTest {
     }
   }
 
+  /** Core annotations implied by the kind are flags until the span is converted */
+  @Test public void impliedAnnotationsArentStored() {
+    MutableSpan span = newSpan();
+
+    span.kind(SERVER);
+    span.start(1L);
+    span.finish(2L);
+
+    assertThat(span.annotations.size()).isZero();
+    assertThat(span.annotationCount()).isEqualTo(2);
+    assertThat(span.toSpan().annotations).extracting(a -> a.timestamp, a -> a.value)
+        .containsExactly(tuple(1L, "sr"), tuple(2L, "ss"));
+  }
+
   @Test public void whenKindIsClient_addsCsCr() {
     MutableSpan span = newSpan();
 
@@ -202,6 +217,61 @@ public class MutableSpanTest {
     });
   }
 
+  @Test public void isRecording_falseAfterFinish() {
+    MutableSpan span = newSpan();
+    assertThat(span.isRecording(context)).isTrue();
+
+    span.finish(null);
+
+    assertThat(span.isRecording(context)).isFalse();
+  }
+
+  @Test public void isRecording_falseForDifferentContext() {
+    MutableSpan span = newSpan();
+
+    assertThat(span.isRecording(context.toBuilder().spanId(context.spanId() + 1).build()))
+        .isFalse();
+    assertThat(span.isRecording(context.toBuilder().shared(true).build()))
+        .isFalse();
+  }
+
+  @Test public void beginWrite_rejectedWhenSealed() {
+    MutableSpan span = newSpan();
+    assertThat(span.beginWrite(context)).isTrue();
+    span.endWrite();
+
+    assertThat(span.seal()).isTrue();
+
+    assertThat(span.beginWrite(context)).isFalse();
+    assertThat(span.seal()).isFalse(); // only one thread can own a sealed span
+  }
+
+  @Test public void seal_waitsForWritesInProgress() throws Exception {
+    MutableSpan span = newSpan();
+    assertThat(span.beginWrite(context)).isTrue();
+
+    Thread sealer = new Thread(span::seal);
+    sealer.start();
+    sealer.join(100L);
+    assertThat(sealer.isAlive()).isTrue();
+
+    span.tag("foo", "bar");
+    span.endWrite();
+    sealer.join();
+
+    assertThat(span.toSpan().binaryAnnotations).extracting(b -> b.key)
+        .containsExactly("foo");
+  }
+
+  @Test public void reset_clearsState() {
+    MutableSpan span = newSpan().name("foo").kind(CLIENT).start(1L);
+    span.remoteEndpoint(Endpoint.create("server", 127 | 1));
+    span.finish(2L);
+
+    assertThat(span.reset(context).finish(null).toSpan())
+        .isEqualTo(newSpan().finish(null).toSpan());
+  }
+
   MutableSpan newSpan() {
     return new MutableSpan(context, localEndpoint);
   }
@@ -0,0 +1,64 @@
+package brave.internal.recorder;
+
+import brave.InMemoryRecorderMetrics;
+import brave.Tracing;
+import brave.internal.Platform;
+import brave.propagation.TraceContext;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import zipkin.Endpoint;
+
+import static brave.internal.recorder.MutableSpanMapTest.blockOnGC;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OrphanFlusherTest {
+  Endpoint localEndpoint = Platform.get().localEndpoint();
+  List<zipkin.Span> spans = new CopyOnWriteArrayList<>();
+  TraceContext context = Tracing.newBuilder().build().tracer().newTrace().context();
+  InMemoryRecorderMetrics metrics = new InMemoryRecorderMetrics();
+  MutableSpanMap map =
+      new MutableSpanMap(localEndpoint, () -> 0L, spans::add, null, true, false, metrics);
+  OrphanFlusher flusher = new OrphanFlusher(map, 10, TimeUnit.MILLISECONDS, 1000);
+
+  @After public void close() {
+    flusher.close();
+  }
+
+  @Test public void reportsOrphansInBackground() throws Exception {
+    flusher.start();
+    map.getOrCreate(context.toBuilder().spanId(1).build());
+
+    blockOnGC();
+
+    assertThat(spans).flatExtracting(s -> s.annotations).extracting(a -> a.value)
+        .containsExactly("brave.flush");
+    assertThat(metrics.orphanedSpans()).isEqualTo(1);
+    assertThat(map.entries()).isEmpty();
+  }
+
+  @Test public void updatesInFlightSpans() throws Exception {
+    map.getOrCreate(context);
+    map.getOrCreate(context.toBuilder().spanId(2).build());
+    flusher.start();
+
+    for (int i = 0; i < 100 && metrics.inFlightSpans() == 0; i++) Thread.sleep(10L);
+
+    assertThat(metrics.inFlightSpans()).isEqualTo(2);
+  }
+
+  @Test public void close_stopsThread() throws Exception {
+    flusher.start();
+    flusher.close();
+    flusher.thread.join(1000L);
+
+    assertThat(flusher.thread.isAlive()).isFalse();
+  }
+
+  @Test public void isDaemon() {
+    assertThat(flusher.thread.isDaemon()).isTrue();
+    assertThat(flusher.thread.getPriority()).isEqualTo(Thread.MIN_PRIORITY);
+  }
+}
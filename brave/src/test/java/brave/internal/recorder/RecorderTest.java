@@ -0,0 +1,168 @@
+package brave.internal.recorder;
+
+import brave.InMemoryRecorderMetrics;
+import brave.Tracing;
+import brave.internal.Platform;
+import brave.propagation.TraceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import zipkin.Codec;
+import zipkin.reporter.Encoding;
+import org.junit.Test;
+import zipkin.Endpoint;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RecorderTest {
+  Endpoint localEndpoint = Platform.get().localEndpoint();
+  List<zipkin.Span> spans = new ArrayList<>();
+  TraceContext context = Tracing.newBuilder().build().tracer().newTrace().context();
+  Recorder recorder = Recorder.newBuilder(localEndpoint, () -> 0L, spans::add)
+      .recycleSpans(true)
+      .build();
+
+  @Test public void recycleSpans_reusesAfterReport() {
+    recorder.start(context, 1L);
+    MutableSpan span = recorder.spanMap.get(context);
+    recorder.finish(context, 2L);
+
+    TraceContext nextContext = context.toBuilder().spanId(context.spanId() + 1).build();
+    recorder.start(nextContext, 3L);
+
+    assertThat(recorder.spanMap.get(nextContext)).isSameAs(span);
+  }
+
+  @Test public void recycleSpans_reportedSpanIsntAffectedByReuse() {
+    recorder.name(context, "foo");
+    recorder.finish(context, 2L);
+
+    TraceContext nextContext = context.toBuilder().spanId(context.spanId() + 1).build();
+    recorder.name(nextContext, "bar");
+    recorder.finish(nextContext, 2L);
+
+    assertThat(spans).extracting(s -> s.name)
+        .containsExactly("foo", "bar");
+  }
+
+  @Test public void concurrentWritesAreAllReported() throws Exception {
+    recorder = Recorder.newBuilder(localEndpoint, () -> 0L, spans::add).build();
+    int threadCount = 4, tagsPerThread = 1000;
+    Thread[] threads = new Thread[threadCount];
+    for (int t = 0; t < threadCount; t++) {
+      String prefix = "thread" + t + ".";
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < tagsPerThread; i++) recorder.tag(context, prefix + i, "");
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) thread.join();
+    recorder.finish(context, 1L);
+
+    assertThat(spans.get(0).binaryAnnotations)
+        .hasSize(threadCount * tagsPerThread);
+  }
+
+  @Test public void finish_ignoresLateWrites() {
+    recorder.start(context, 1L);
+    MutableSpan stale = recorder.spanMap.get(context);
+    recorder.finish(context, 2L);
+
+    assertThat(stale.beginWrite(context)).isFalse();
+  }
+
+  /** The finished span is no longer in the map, so a late tag records another span. */
+  @Test public void finish_lateTagStartsNewSpan() {
+    recorder.name(context, "foo");
+    recorder.finish(context, 2L);
+
+    recorder.tag(context, "late", "");
+    assertThat(recorder.spanMap.get(context)).isNotNull();
+    recorder.finish(context, 3L);
+
+    assertThat(spans).hasSize(2);
+    assertThat(spans.get(1).id).isEqualTo(spans.get(0).id);
+    assertThat(spans.get(1).name).isEmpty();
+    assertThat(spans.get(1).binaryAnnotations).extracting(b -> b.key)
+        .containsExactly("late");
+  }
+
+  /** Simulates a caller who looked up a span before it was finished and recycled */
+  @Test public void recycleSpans_ignoresLateMutationOnRecycledSpan() {
+    recorder.name(context, "foo");
+    MutableSpan stale = recorder.spanMap.get(context);
+    recorder.finish(context, 2L);
+
+    TraceContext nextContext = context.toBuilder().spanId(context.spanId() + 1).build();
+    recorder.name(nextContext, "bar");
+    assertThat(recorder.spanMap.get(nextContext)).isSameAs(stale);
+
+    if (stale.beginWrite(context)) {
+      stale.name("late");
+      stale.endWrite();
+    }
+    recorder.finish(nextContext, 2L);
+
+    assertThat(spans).extracting(s -> s.name)
+        .containsExactly("foo", "bar");
+  }
+
+  @Test public void maxSpanLifetime_reportsExpiredSpans() throws Exception {
+    List<zipkin.Span> spans = new CopyOnWriteArrayList<>();
+    InMemoryRecorderMetrics metrics = new InMemoryRecorderMetrics();
+    try (Recorder recorder = Recorder.newBuilder(localEndpoint, () -> 0L, spans::add)
+        .trackOrphans(false)
+        .maxSpanLifetime(50, TimeUnit.MILLISECONDS)
+        .metrics(metrics)
+        .build()) {
+      recorder.start(context, 1L);
+      assertThat(recorder.orphanFlusher).isNotNull();
+
+      for (int i = 0; i < 100 && spans.isEmpty(); i++) Thread.sleep(10L);
+
+      assertThat(spans).flatExtracting(s -> s.annotations).extracting(a -> a.value)
+          .containsExactly("brave.expired");
+      assertThat(metrics.expiredSpans()).isEqualTo(1);
+
+      recorder.finish(context, 2L); // late finish is ignored
+      assertThat(spans).hasSize(1);
+    }
+  }
+
+  @Test public void maxSpanLifetime_lateTagStartsNewSpan() throws Exception {
+    List<zipkin.Span> spans = new CopyOnWriteArrayList<>();
+    try (Recorder recorder = Recorder.newBuilder(localEndpoint, () -> 0L, spans::add)
+        .trackOrphans(false)
+        .maxSpanLifetime(50, TimeUnit.MILLISECONDS)
+        .build()) {
+      recorder.start(context, 1L);
+      for (int i = 0; i < 100 && spans.isEmpty(); i++) Thread.sleep(10L);
+      assertThat(spans).hasSize(1);
+
+      recorder.tag(context, "late", "");
+      recorder.finish(context, 2L);
+
+      assertThat(spans).hasSize(2);
+      assertThat(spans.get(1).id).isEqualTo(spans.get(0).id);
+      assertThat(spans.get(1).annotations).isEmpty();
+      assertThat(spans.get(1).binaryAnnotations).extracting(b -> b.key)
+          .containsExactly("late");
+    }
+  }
+
+  @Test public void reportsEncodedSpans() {
+    List<byte[]> encoded = new ArrayList<>();
+    recorder = Recorder.newBuilder(localEndpoint, () -> 0L, spans::add)
+        .reporter(Encoding.THRIFT, encoded::add)
+        .build();
+
+    recorder.name(context, "encode");
+    recorder.start(context, 1L);
+    recorder.finish(context, 2L);
+
+    assertThat(spans).isEmpty();
+    assertThat(encoded).extracting(b -> Codec.THRIFT.readSpan(b).name)
+        .containsExactly("encode");
+  }
+}
@@ -0,0 +1,153 @@
+package brave.internal.recorder;
+
+import brave.Span;
+import brave.Tracing;
+import brave.propagation.TraceContext;
+import org.junit.Test;
+import zipkin.Codec;
+import zipkin.Endpoint;
+import zipkin.reporter.Encoding;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Encoding a span directly must write the same bytes as encoding {@link MutableSpan#toSpan()} */
+public abstract class SpanEncoderTest {
+  Endpoint localEndpoint = Endpoint.builder()
+      .serviceName("FrontEnd") // zipkin.Endpoint lowercases service names
+      .ipv4(127 << 24 | 1)
+      .ipv6(new byte[] {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1})
+      .port(8080).build();
+  Endpoint remoteEndpoint = Endpoint.builder().serviceName("BackEnd").ipv4(192 << 24 | 1).build();
+  TraceContext context = Tracing.newBuilder().build().tracer().newTrace().context();
+  SpanEncoder encoder = SpanEncoder.create(encoding(), localEndpoint);
+
+  abstract Encoding encoding();
+
+  abstract Codec codec();
+
+  @Test public void localSpan() {
+    MutableSpan span = newSpan(context);
+    span.name("encode");
+    span.start(1L);
+    span.finish(2L);
+
+    assertEncodesLikeCodec(span);
+  }
+
+  @Test public void unfinishedSpan() {
+    MutableSpan span = newSpan(context);
+    span.seal();
+    span.complete(null);
+
+    assertEncodesLikeCodec(span);
+  }
+
+  @Test public void clientSpan() {
+    MutableSpan span = newSpan(context.toBuilder().parentId(1L).build());
+    span.name("get");
+    span.kind(Span.Kind.CLIENT);
+    span.remoteEndpoint(remoteEndpoint);
+    span.start(1L);
+    span.annotate(2L, "ws");
+    span.tag("http.path", "/api");
+    span.finish(3L);
+
+    assertEncodesLikeCodec(span);
+  }
+
+  @Test public void sharedServerSpan() {
+    MutableSpan span = newSpan(context.toBuilder().shared(true).build());
+    span.kind(Span.Kind.SERVER);
+    span.start(1L);
+    span.finish(3L);
+
+    assertEncodesLikeCodec(span);
+  }
+
+  @Test public void traceId128Bit_debug() {
+    MutableSpan span = newSpan(context.toBuilder().traceIdHigh(3L).debug(true).build());
+    span.start(1L);
+    span.finish(2L);
+
+    assertEncodesLikeCodec(span);
+  }
+
+  @Test public void escapesAndUnicode() {
+    MutableSpan span = newSpan(context);
+    span.name("\"quoted\"\n ");
+    span.annotate(1L, "\\\u0001 é中😀");
+    span.tag("error", "\ttab é中😀");
+    span.finish(null);
+
+    assertEncodesLikeCodec(span);
+  }
+
+  @Test public void lowercasesName() {
+    MutableSpan span = newSpan(context);
+    span.name("GET /Users");
+    span.finish(null);
+
+    assertEncodesLikeCodec(span);
+    assertThat(codec().readSpan(encoder.encode(span)).name).isEqualTo("get /users");
+  }
+
+  @Test public void sortsAnnotations() {
+    MutableSpan span = newSpan(context);
+    span.kind(Span.Kind.SERVER);
+    span.start(3L);
+    span.annotate(5L, "b");
+    span.annotate(2L, "z");
+    span.annotate(5L, "a");
+    span.finish(4L);
+
+    assertEncodesLikeCodec(span);
+    assertThat(codec().readSpan(encoder.encode(span)).annotations).extracting(a -> a.value)
+        .containsExactly("z", "sr", "ss", "a", "b");
+  }
+
+  @Test public void dropsDuplicateAnnotations() {
+    MutableSpan span = newSpan(context);
+    span.annotate(2L, "retry");
+    span.annotate(1L, "foo");
+    span.annotate(2L, "retry");
+    span.finish(null);
+
+    assertEncodesLikeCodec(span);
+    assertThat(codec().readSpan(encoder.encode(span)).annotations).hasSize(2);
+  }
+
+  @Test public void sortsBinaryAnnotations() {
+    MutableSpan span = newSpan(context);
+    span.kind(Span.Kind.CLIENT);
+    span.remoteEndpoint(remoteEndpoint);
+    span.tag("z", "");
+    span.tag("error", "timeout");
+    span.tag("http.path", "/api");
+    span.finish(null);
+
+    assertEncodesLikeCodec(span);
+    assertThat(codec().readSpan(encoder.encode(span)).binaryAnnotations).extracting(b -> b.key)
+        .containsExactly("error", "http.path", "sa", "z");
+  }
+
+  @Test public void dropsDuplicateTags() {
+    MutableSpan span = newSpan(context);
+    span.tag("http.path", "/api");
+    span.tag("error", "");
+    span.tag("http.path", "/api");
+    span.finish(null);
+
+    assertEncodesLikeCodec(span);
+    assertThat(codec().readSpan(encoder.encode(span)).binaryAnnotations).hasSize(2);
+  }
+
+  void assertEncodesLikeCodec(MutableSpan span) {
+    byte[] encoded = encoder.encode(span);
+
+    assertThat(encoded).containsExactly(codec().writeSpan(span.toSpan()));
+  }
+
+  MutableSpan newSpan(TraceContext context) {
+    return new MutableSpan(context, localEndpoint);
+  }
+}
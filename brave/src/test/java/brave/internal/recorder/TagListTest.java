@@ -0,0 +1,48 @@
+package brave.internal.recorder;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TagListTest {
+  TagList list = new TagList();
+
+  @Test public void add_retainsOrder() {
+    for (int i = 0; i < 100; i++) list.add("k" + i, "v" + i);
+
+    assertThat(list.size()).isEqualTo(100);
+    for (int i = 0; i < 100; i++) {
+      assertThat(list.key(i)).isEqualTo("k" + i);
+      assertThat(list.value(i)).isEqualTo("v" + i);
+    }
+  }
+
+  /** Keys and values are claimed together, so they can't be interleaved by concurrent writes */
+  @Test public void add_concurrent() throws Exception {
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 1000; i++) list.add("k" + i, "v" + i);
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) thread.join();
+
+    assertThat(list.size()).isEqualTo(4000);
+    for (int i = 0; i < 4000; i++) {
+      assertThat(list.value(i)).isEqualTo("v" + list.key(i).substring(1));
+    }
+  }
+
+  @Test public void clear_retainsChunks() {
+    for (int i = 0; i < 10; i++) list.add("k", "v");
+    String[] firstChunk = (String[]) list.arrayForRead(0, 0);
+
+    list.clear();
+
+    assertThat(list.size()).isZero();
+    assertThat((String[]) list.arrayForRead(0, 0)).isSameAs(firstChunk).containsOnly((String) null);
+    list.add("a", "b");
+    assertThat(list.key(0)).isEqualTo("a");
+  }
+}
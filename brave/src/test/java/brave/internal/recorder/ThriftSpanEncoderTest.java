@@ -0,0 +1,14 @@
+package brave.internal.recorder;
+
+import zipkin.Codec;
+import zipkin.reporter.Encoding;
+
+public class ThriftSpanEncoderTest extends SpanEncoderTest {
+  @Override Encoding encoding() {
+    return Encoding.THRIFT;
+  }
+
+  @Override Codec codec() {
+    return Codec.THRIFT;
+  }
+}
@@ -0,0 +1,115 @@
+package brave.internal.recorder;
+
+import brave.Tracing;
+import brave.propagation.TraceContext;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimingWheelTest {
+  static final long LIFETIME = 32_000L; // 1000ns ticks
+
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  TraceContext context = Tracing.newBuilder().build().tracer().newTrace().context();
+  TimingWheel wheel = new TimingWheel(LIFETIME, 0L);
+
+  @Test public void pollExpired_emptyUntilDeadline() {
+    MutableSpanMap.Entry entry = newEntry(1L);
+    wheel.add(entry, 0L);
+
+    assertThat(wheel.pollExpired(0L)).isNull();
+    assertThat(wheel.pollExpired(LIFETIME - 1)).isNull();
+    assertThat(wheel.pollExpired(LIFETIME)).isSameAs(entry);
+    assertThat(wheel.pollExpired(LIFETIME)).isNull();
+  }
+
+  @Test public void pollExpired_inDeadlineOrder() {
+    MutableSpanMap.Entry first = newEntry(1L), second = newEntry(2L), third = newEntry(3L);
+    wheel.add(third, 3000L);
+    wheel.add(first, 1000L);
+    wheel.add(second, 2000L);
+    wheel.pollExpired(3000L); // schedules the pending entries
+
+    assertThat(pollAll(LIFETIME * 2)).containsExactly(first, second, third);
+  }
+
+  @Test public void cancel_beforeScheduled() {
+    MutableSpanMap.Entry entry = newEntry(1L);
+    wheel.add(entry, 0L);
+    wheel.cancel(entry);
+
+    assertThat(wheel.pollExpired(LIFETIME * 2)).isNull();
+    assertThat(wheel.pollExpired(LIFETIME * 3)).isNull();
+  }
+
+  @Test public void cancel_afterScheduled() {
+    MutableSpanMap.Entry entry = newEntry(1L), other = newEntry(2L);
+    wheel.add(entry, 0L);
+    wheel.add(other, 0L);
+    wheel.pollExpired(0L);
+    wheel.cancel(entry);
+
+    assertThat(pollAll(LIFETIME)).containsExactly(other);
+    assertThat(entry.wheelBucket).isEqualTo(-1);
+    assertThat(entry.wheelNext).isNull();
+  }
+
+  @Test public void cancel_ignoredAfterExpiry() {
+    MutableSpanMap.Entry entry = newEntry(1L);
+    wheel.add(entry, 0L);
+    wheel.pollExpired(0L);
+    assertThat(wheel.pollExpired(LIFETIME)).isSameAs(entry);
+
+    wheel.cancel(entry);
+
+    assertThat(wheel.cancelled.get()).isNull();
+  }
+
+  /** Deadlines are never reported early, even after many turns of the wheel */
+  @Test public void manyTurns() {
+    List<MutableSpanMap.Entry> expired = new ArrayList<>();
+    for (long now = 0; now < LIFETIME * 10; now += 700L) {
+      wheel.add(newEntry(now), now);
+      for (MutableSpanMap.Entry e : pollAll(now)) {
+        assertThat(e.deadlineNanos).isLessThanOrEqualTo(now);
+        expired.add(e);
+      }
+    }
+    assertThat(expired).isNotEmpty();
+  }
+
+  /** Entries added after the poller read the time are deferred, instead of wrapping around */
+  @Test public void pollExpired_defersEntriesAddedAfterNow() {
+    MutableSpanMap.Entry entry = newEntry(1L);
+    wheel.add(entry, LIFETIME * 2);
+
+    assertThat(wheel.pollExpired(0L)).isNull();
+    assertThat(wheel.pending.get()).isSameAs(entry);
+    assertThat(wheel.pollExpired(LIFETIME * 3 - 1)).isNull();
+    assertThat(wheel.pollExpired(LIFETIME * 3)).isSameAs(entry);
+  }
+
+  @Test public void lifetimeTooShort() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("lifetimeNanos < 32");
+
+    new TimingWheel(1L, 0L);
+  }
+
+  MutableSpanMap.Entry newEntry(long spanId) {
+    TraceContext context = this.context.toBuilder().spanId(spanId).build();
+    return new MutableSpanMap.Entry(context, MutableSpanMap.hash(context), null, null);
+  }
+
+  List<MutableSpanMap.Entry> pollAll(long nowNanos) {
+    List<MutableSpanMap.Entry> result = new ArrayList<>();
+    MutableSpanMap.Entry entry;
+    while ((entry = wheel.pollExpired(nowNanos)) != null) result.add(entry);
+    return result;
+  }
+}
@@ -1,6 +1,7 @@
 package brave.propagation;
 
 import brave.internal.HexCodec;
+import java.nio.charset.Charset;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import org.junit.Test;
@@ -9,6 +10,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.data.MapEntry.entry;
 
 public class B3PropagationTest {
+  static final Charset US_ASCII = Charset.forName("US-ASCII");
 
   Propagation<String> propagation = Propagation.B3_STRING;
   Map<String, String> map = new LinkedHashMap<>();
@@ -209,6 +211,138 @@ public class B3PropagationTest {
     );
   }
 
+  @Test
+  public void extractTraceContext_notSampled_noIdsIsConstant() {
+    map.put("X-B3-Sampled", "0");
+
+    assertThat(propagation.extractor(mapEntry).extract(map))
+        .isSameAs(TraceContextOrSamplingFlags.NOT_SAMPLED);
+  }
+
+  @Test
+  public void injectTraceContext_noIds() {
+    TraceContext noIds = TraceContext.newBuilder().traceId(0L).spanId(0L).sampled(false).build();
+    propagation.injector(mapEntry).inject(noIds, map);
+
+    assertThat(map).containsExactly(
+        entry("X-B3-Sampled", "0")
+    );
+  }
+
+  /** The in-place extractors should agree with the string one on valid input. */
+  @Test
+  public void charSequenceAndAsciiExtractors_matchExtractor() {
+    B3Propagation<String> b3 = (B3Propagation<String>) propagation;
+    String[][] cases = {
+        {},
+        {"X-B3-Sampled", "0"},
+        {"X-B3-Sampled", "1"},
+        {"X-B3-Sampled", "TRUE"},
+        {"X-B3-Sampled", "false"},
+        {"X-B3-Flags", "1"},
+        {"X-B3-TraceId", "1", "X-B3-SpanId", "1"},
+        {"X-B3-TraceId", "0000000000000001", "X-B3-SpanId", "0000000000000002",
+            "X-B3-ParentSpanId", "0000000000000001", "X-B3-Sampled", "1"},
+        {"X-B3-TraceId", "463ac35c9f6413ad48485a3953bb6124", "X-B3-SpanId", "48485a3953bb6124",
+            "X-B3-Sampled", "true", "X-B3-Flags", "1"},
+        {"X-B3-TraceId", "0000000000000001", "X-B3-SpanId", "0000000000000002",
+            "X-B3-Sampled", "0"}
+    };
+    for (String[] headers : cases) {
+      map.clear();
+      for (int i = 0; i < headers.length; i += 2) map.put(headers[i], headers[i + 1]);
+
+      TraceContextOrSamplingFlags expected = propagation.extractor(mapEntry).extract(map);
+      assertThat(b3.charSequenceExtractor(Map<String, String>::get).extract(map))
+          .describedAs(map.toString())
+          .isEqualTo(expected);
+      assertThat(b3.asciiExtractor(B3PropagationTest::getAscii).extract(map))
+          .describedAs(map.toString())
+          .isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void charSequenceExtractor_samplingFlagsAreConstant() {
+    B3Propagation<String> b3 = (B3Propagation<String>) propagation;
+    map.put("X-B3-Sampled", "0");
+
+    assertThat(b3.charSequenceExtractor(Map<String, String>::get).extract(map))
+        .isSameAs(TraceContextOrSamplingFlags.NOT_SAMPLED);
+    assertThat(b3.asciiExtractor(B3PropagationTest::getAscii).extract(map))
+        .isSameAs(TraceContextOrSamplingFlags.NOT_SAMPLED);
+  }
+
+  /** Unlike the string extractor, malformed IDs are ignored instead of raising an exception. */
+  @Test
+  public void charSequenceExtractor_malformedIdsAreIgnored() {
+    B3Propagation<String> b3 = (B3Propagation<String>) propagation;
+    map.put("X-B3-TraceId", "463ac35c9f6413ad48485a3953bb612g");
+    map.put("X-B3-SpanId", "0000000000000001");
+    map.put("X-B3-Sampled", "1");
+
+    assertThat(b3.charSequenceExtractor(Map<String, String>::get).extract(map))
+        .isSameAs(TraceContextOrSamplingFlags.SAMPLED);
+    assertThat(b3.asciiExtractor(B3PropagationTest::getAscii).extract(map))
+        .isSameAs(TraceContextOrSamplingFlags.SAMPLED);
+  }
+
+  /** A malformed high half shouldn't truncate the trace ID to its low 64 bits. */
+  @Test
+  public void charSequenceExtractor_malformedTraceIdHighIsIgnored() {
+    B3Propagation<String> b3 = (B3Propagation<String>) propagation;
+    map.put("X-B3-TraceId", "zzzzzzzzzzzzzzzz0000000000000001");
+    map.put("X-B3-SpanId", "0000000000000001");
+    map.put("X-B3-Sampled", "1");
+
+    assertThat(b3.charSequenceExtractor(Map<String, String>::get).extract(map))
+        .isSameAs(TraceContextOrSamplingFlags.SAMPLED);
+    assertThat(b3.asciiExtractor(B3PropagationTest::getAscii).extract(map))
+        .isSameAs(TraceContextOrSamplingFlags.SAMPLED);
+  }
+
+  @Test
+  public void charSequenceExtractor_zeroTraceIdHigh() {
+    B3Propagation<String> b3 = (B3Propagation<String>) propagation;
+    map.put("X-B3-TraceId", "00000000000000000000000000000001");
+    map.put("X-B3-SpanId", "0000000000000001");
+
+    assertThat(b3.charSequenceExtractor(Map<String, String>::get).extract(map).context())
+        .isEqualTo(rootSpan.toBuilder().sampled(null).build());
+    assertThat(b3.asciiExtractor(B3PropagationTest::getAscii).extract(map).context())
+        .isEqualTo(rootSpan.toBuilder().sampled(null).build());
+  }
+
+  /** The buffer injectors should write the same values as the string one. */
+  @Test
+  public void charBufferAndAsciiInjectors_matchInjector() {
+    B3Propagation<String> b3 = (B3Propagation<String>) propagation;
+    for (TraceContext context : new TraceContext[] {
+        rootSpan,
+        childSpan,
+        childSpan.toBuilder().traceIdHigh(3L).sampled(null).debug(true).build(),
+        TraceContext.newBuilder().traceId(0L).spanId(0L).sampled(false).build()
+    }) {
+      Map<String, String> expected = new LinkedHashMap<>();
+      propagation.injector(mapEntry).inject(context, expected);
+
+      map.clear();
+      b3.charBufferInjector((Map<String, String> carrier, String key, char[] buffer, int length)
+          -> carrier.put(key, new String(buffer, 0, length))).inject(context, map);
+      assertThat(map).describedAs(context.toString()).isEqualTo(expected);
+
+      map.clear();
+      b3.asciiInjector((Map<String, String> carrier, String key, byte[] buffer, int length)
+          -> carrier.put(key, new String(buffer, 0, length, US_ASCII))).inject(context, map);
+      assertThat(map).describedAs(context.toString()).isEqualTo(expected);
+    }
+  }
+
+  static byte[] getAscii(Map<String, String> carrier, String key) {
+    String value = carrier.get(key);
+    return value != null ? value.getBytes(US_ASCII) : null;
+  }
+
   static class MapEntry implements
       Propagation.Getter<Map<String, String>, String>,
       Propagation.Setter<Map<String, String>, String> {
@@ -0,0 +1,144 @@
+package brave.propagation;
+
+import brave.propagation.B3PropagationTest.MapEntry;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class B3SinglePropagationTest {
+  Map<String, String> map = new LinkedHashMap<>();
+  MapEntry mapEntry = new MapEntry();
+  Propagation<String> propagation =
+      Propagation.Factory.B3_SINGLE.create(Propagation.KeyFactory.STRING);
+
+  TraceContext rootSpan = TraceContext.newBuilder().traceId(1L).spanId(1L).sampled(true).build();
+  TraceContext childSpan = rootSpan.toBuilder().parentId(1L).spanId(2L).build();
+
+  @Test public void keys() {
+    assertThat(propagation.keys()).containsExactly(
+        "b3", "X-B3-TraceId", "X-B3-SpanId", "X-B3-ParentSpanId", "X-B3-Sampled", "X-B3-Flags"
+    );
+  }
+
+  @Test public void injectTraceContext_rootSpan() {
+    propagation.injector(mapEntry).inject(rootSpan, map);
+
+    assertThat(map).containsExactly(
+        entry("b3", "0000000000000001-0000000000000001-1")
+    );
+  }
+
+  @Test public void injectTraceContext_childSpan() {
+    propagation.injector(mapEntry).inject(childSpan, map);
+
+    assertThat(map).containsExactly(
+        entry("b3", "0000000000000001-0000000000000002-1-0000000000000001")
+    );
+  }
+
+  @Test public void injectTraceContext_rootSpan128bit() {
+    propagation.injector(mapEntry)
+        .inject(rootSpan.toBuilder().traceIdHigh(3).traceId(1).build(), map);
+
+    assertThat(map).containsExactly(
+        entry("b3", "00000000000000030000000000000001-0000000000000001-1")
+    );
+  }
+
+  @Test public void injectTraceContext_debug() {
+    propagation.injector(mapEntry).inject(rootSpan.toBuilder().debug(true).build(), map);
+
+    assertThat(map).containsExactly(
+        entry("b3", "0000000000000001-0000000000000001-d")
+    );
+  }
+
+  @Test public void injectTraceContext_deferred() {
+    propagation.injector(mapEntry).inject(childSpan.toBuilder().sampled(null).build(), map);
+
+    assertThat(map).containsExactly(
+        entry("b3", "0000000000000001-0000000000000002-0000000000000001")
+    );
+  }
+
+  @Test public void injectTraceContext_noIds() {
+    TraceContext noIds = TraceContext.newBuilder().traceId(0L).spanId(0L).sampled(false).build();
+    propagation.injector(mapEntry).inject(noIds, map);
+
+    assertThat(map).containsExactly(
+        entry("b3", "0")
+    );
+  }
+
+  @Test public void roundTrip() {
+    for (TraceContext context : new TraceContext[] {
+        rootSpan,
+        childSpan,
+        childSpan.toBuilder().sampled(false).build(),
+        childSpan.toBuilder().sampled(null).build(),
+        childSpan.toBuilder().traceIdHigh(-1L).traceId(-2L).build()
+    }) {
+      map.clear();
+      propagation.injector(mapEntry).inject(context, map);
+
+      assertThat(propagation.extractor(mapEntry).extract(map).context())
+          .isEqualTo(context);
+    }
+  }
+
+  @Test public void extractTraceContext_debug() {
+    map.put("b3", "0000000000000001-0000000000000001-d");
+
+    TraceContext result = propagation.extractor(mapEntry).extract(map).context();
+
+    assertThat(result.debug()).isTrue();
+    assertThat(result.sampled()).isTrue();
+    assertThat(result.traceId()).isEqualTo(1L);
+  }
+
+  @Test public void extractTraceContext_samplingFlagsOnly() {
+    map.put("b3", "0");
+
+    assertThat(propagation.extractor(mapEntry).extract(map))
+        .isSameAs(TraceContextOrSamplingFlags.NOT_SAMPLED);
+  }
+
+  @Test public void extractTraceContext_fallsBackToMultiHeader() {
+    map.put("X-B3-TraceId", "0000000000000001");
+    map.put("X-B3-SpanId", "0000000000000002");
+    map.put("X-B3-ParentSpanId", "0000000000000001");
+    map.put("X-B3-Sampled", "1");
+
+    assertThat(propagation.extractor(mapEntry).extract(map).context())
+        .isEqualTo(childSpan);
+  }
+
+  @Test public void extractTraceContext_malformed_fallsBackToMultiHeader() {
+    map.put("X-B3-Sampled", "1");
+    for (String malformed : new String[] {
+        "",
+        "x",
+        "0000000000000001",
+        "0000000000000001-",
+        "0000000000000001-000000000000000",
+        "0000000000000001-0000000000000001-",
+        "0000000000000001-0000000000000001-x",
+        "0000000000000001-0000000000000001-11",
+        "0000000000000001-0000000000000001-1-000000000000000",
+        "0000000000000001-0000000000000001-1-0000000000000001-",
+        "0000000000000001-0000000000000001-1+0000000000000001",
+        "000000000000000g-0000000000000001",
+        "zzzzzzzzzzzzzzzz0000000000000001-0000000000000001",
+        "0000000000000001-000000000000000G-1"
+    }) {
+      map.put("b3", malformed);
+
+      assertThat(propagation.extractor(mapEntry).extract(map))
+          .describedAs(malformed)
+          .isSameAs(TraceContextOrSamplingFlags.SAMPLED);
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package brave.propagation;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ThreadLocalCurrentTraceContextTest {
+  CurrentTraceContext currentTraceContext = new ThreadLocalCurrentTraceContext();
+  TraceContext context = TraceContext.newBuilder().traceId(1L).spanId(1L).build();
+  TraceContext context2 = TraceContext.newBuilder().traceId(2L).spanId(2L).build();
+
+  ExecutorService executor =
+      Executors.newSingleThreadExecutor(ThreadLocalCurrentTraceContext.threadFactory());
+
+  @After public void after() throws InterruptedException {
+    executor.shutdownNow();
+    executor.awaitTermination(1, TimeUnit.SECONDS);
+  }
+
+  @Test public void currentSpan_defaultsToNull() {
+    assertThat(currentTraceContext.get()).isNull();
+  }
+
+  @Test public void scope_retainsContext() {
+    try (CurrentTraceContext.Scope scope = currentTraceContext.newScope(context)) {
+      assertThat(currentTraceContext.get())
+          .isEqualTo(context);
+    }
+    assertThat(currentTraceContext.get()).isNull();
+  }
+
+  @Test public void scope_nestedRevertsToParent() {
+    try (CurrentTraceContext.Scope scope = currentTraceContext.newScope(context)) {
+      try (CurrentTraceContext.Scope scope2 = currentTraceContext.newScope(context2)) {
+        assertThat(currentTraceContext.get()).isEqualTo(context2);
+      }
+      assertThat(currentTraceContext.get()).isEqualTo(context);
+    }
+  }
+
+  @Test public void scope_canClearContext() {
+    try (CurrentTraceContext.Scope scope = currentTraceContext.newScope(context)) {
+      try (CurrentTraceContext.Scope scope2 = currentTraceContext.newScope(null)) {
+        assertThat(currentTraceContext.get()).isNull();
+      }
+      assertThat(currentTraceContext.get()).isEqualTo(context);
+    }
+  }
+
+  @Test public void scope_closingParentClosesLeakedChildren() {
+    CurrentTraceContext.Scope scope = currentTraceContext.newScope(context);
+    currentTraceContext.newScope(context2); // leaked
+
+    scope.close();
+
+    assertThat(currentTraceContext.get()).isNull();
+    for (ThreadLocalCurrentTraceContext.ScopeFrame frame : ThreadLocalCurrentTraceContext.stack().frames) {
+      if (frame != null) assertThat(frame.context).isNull();
+    }
+  }
+
+  @Test public void scope_objectsAreReused() {
+    CurrentTraceContext.Scope first;
+    try (CurrentTraceContext.Scope scope = currentTraceContext.newScope(context)) {
+      first = scope;
+    }
+    try (CurrentTraceContext.Scope scope = currentTraceContext.newScope(context2)) {
+      assertThat(scope).isSameAs(first);
+    }
+  }
+
+  @Test public void scope_stackGrows() {
+    CurrentTraceContext.Scope[] scopes = new CurrentTraceContext.Scope[10];
+    for (int i = 0; i < scopes.length; i++) {
+      scopes[i] = currentTraceContext.newScope(
+          TraceContext.newBuilder().traceId(1L).spanId(i + 1).build());
+    }
+    assertThat(currentTraceContext.get().spanId()).isEqualTo(10L);
+
+    scopes[5].close();
+    assertThat(currentTraceContext.get().spanId()).isEqualTo(5L);
+    scopes[0].close();
+    assertThat(currentTraceContext.get()).isNull();
+  }
+
+  @Test public void scope_isNotInheritable() throws InterruptedException {
+    final TraceContext[] threadValue = new TraceContext[1];
+
+    try (CurrentTraceContext.Scope scope = currentTraceContext.newScope(context)) {
+      Thread t = new Thread(() -> { // should not inherit scope!
+        threadValue[0] = currentTraceContext.get();
+      });
+
+      t.start();
+      t.join();
+      assertThat(threadValue[0]).isNull();
+    }
+  }
+
+  @Test public void threadFactory_threadsHoldTheirStack() throws Exception {
+    Thread thread = executor.submit(Thread::currentThread).get();
+
+    assertThat(thread)
+        .isInstanceOf(ThreadLocalCurrentTraceContext.ScopeThread.class)
+        .matches(t -> !t.isDaemon())
+        .matches(t -> t.getName().startsWith("brave-pool-"));
+
+    ThreadLocalCurrentTraceContext.ScopeStack stack =
+        executor.submit(ThreadLocalCurrentTraceContext::stack).get();
+    assertThat(stack)
+        .isSameAs(((ThreadLocalCurrentTraceContext.ScopeThread) thread).stack);
+  }
+
+  @Test public void threadFactory_wrapPropagatesContext() throws Exception {
+    TraceContext[] threadValue = new TraceContext[2];
+
+    try (CurrentTraceContext.Scope scope = currentTraceContext.newScope(context)) {
+      executor.submit(currentTraceContext.wrap(() -> {
+        threadValue[0] = currentTraceContext.get();
+      })).get();
+    }
+    executor.submit(() -> {
+      threadValue[1] = currentTraceContext.get();
+    }).get();
+
+    assertThat(threadValue).containsExactly(context, null);
+  }
+}
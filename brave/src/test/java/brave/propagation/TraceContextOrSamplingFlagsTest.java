@@ -55,4 +55,14 @@ public class TraceContextOrSamplingFlagsTest {
     assertThat(contextOrFlags.samplingFlags())
         .isSameAs(SamplingFlags.SAMPLED);
   }
+
+  @Test public void create_flagsAreConstants() {
+    for (SamplingFlags flags : new SamplingFlags[] {
+        SamplingFlags.EMPTY, SamplingFlags.NOT_SAMPLED, SamplingFlags.SAMPLED, SamplingFlags.DEBUG
+    }) {
+      assertThat(TraceContextOrSamplingFlags.create(flags))
+          .isSameAs(TraceContextOrSamplingFlags.create(flags))
+          .extracting(TraceContextOrSamplingFlags::samplingFlags).containsExactly(flags);
+    }
+  }
 }
@@ -1,10 +1,13 @@
 package brave.propagation;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class TraceContextTest {
+  @Rule public ExpectedException thrown = ExpectedException.none();
 
   @Test public void compareUnequalIds() {
     TraceContext context = TraceContext.newBuilder().traceId(333L).spanId(0L).build();
@@ -36,4 +39,76 @@ public class TraceContextTest {
     assertThat(context.toString())
         .isEqualTo("000000000000014d00000000000001bc/0000000000000003");
   }
+
+  @Test public void idStrings() {
+    TraceContext context =
+        TraceContext.newBuilder().traceIdHigh(1L).traceId(2L).parentId(3L).spanId(4L).build();
+
+    assertThat(context.traceIdString()).isEqualTo("00000000000000010000000000000002");
+    assertThat(context.spanIdString()).isEqualTo("0000000000000004");
+    assertThat(context.parentIdString()).isEqualTo("0000000000000003");
+  }
+
+  @Test public void idStrings_areMemoized() {
+    TraceContext context = TraceContext.newBuilder().traceId(2L).parentId(3L).spanId(4L).build();
+
+    assertThat(context.traceIdString()).isSameAs(context.traceIdString());
+    assertThat(context.spanIdString()).isSameAs(context.spanIdString());
+    assertThat(context.parentIdString()).isSameAs(context.parentIdString());
+  }
+
+  @Test public void parentIdString_nullWhenRoot() {
+    TraceContext context = TraceContext.newBuilder().traceId(2L).spanId(2L).build();
+
+    assertThat(context.parentIdString()).isNull();
+  }
+
+  @Test public void parentId_zeroIsNull() {
+    TraceContext context = TraceContext.newBuilder().traceId(333L).spanId(3).build();
+
+    assertThat(context.parentId()).isNull();
+    assertThat(context.parentIdAsLong()).isZero();
+    assertThat(context.toBuilder().parentId(2L).build())
+        .extracting(TraceContext::parentId, TraceContext::parentIdAsLong)
+        .containsExactly(2L, 2L);
+  }
+
+  @Test public void sampled_isTriState() {
+    TraceContext.Builder builder = TraceContext.newBuilder().traceId(333L).spanId(3);
+
+    assertThat(builder.build().sampled()).isNull();
+    assertThat(builder.sampled(true).build().sampled()).isTrue();
+    assertThat(builder.sampled(false).build().sampled()).isFalse();
+    assertThat(builder.sampled(null).build().sampled()).isNull();
+  }
+
+  @Test public void flagsAreIndependent() {
+    TraceContext context = TraceContext.newBuilder().traceId(333L).spanId(3)
+        .sampled(false).debug(true).shared(true).build();
+
+    assertThat(context.sampled()).isFalse();
+    assertThat(context.debug()).isTrue();
+    assertThat(context.shared()).isTrue();
+    assertThat(context.toBuilder().debug(false).build())
+        .extracting(TraceContext::sampled, TraceContext::debug, TraceContext::shared)
+        .containsExactly(false, false, true);
+  }
+
+  @Test public void equalsAndHashCode_includeFlags() {
+    TraceContext context = TraceContext.newBuilder().traceId(333L).spanId(444L).build();
+    TraceContext shared = context.toBuilder().shared(true).build();
+
+    assertThat(context).isNotEqualTo(shared);
+    assertThat(context.hashCode()).isNotEqualTo(shared.hashCode());
+    TraceContext unshared = shared.toBuilder().shared(false).build();
+    assertThat(unshared).isEqualTo(context);
+    assertThat(unshared.hashCode()).isEqualTo(context.hashCode());
+  }
+
+  @Test public void build_requiresIds() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Missing required properties: traceId spanId");
+
+    TraceContext.newBuilder().build();
+  }
 }
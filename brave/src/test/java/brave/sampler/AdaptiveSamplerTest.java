@@ -0,0 +1,148 @@
+package brave.sampler;
+
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import zipkin.reporter.InMemoryReporterMetrics;
+import zipkin.reporter.ReporterMetrics;
+
+import static brave.sampler.AdaptiveSampler.ADJUST_INTERVAL_NANOS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.data.Offset.offset;
+
+public class AdaptiveSamplerTest {
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  long now = System.nanoTime();
+  AdaptiveSampler sampler = new AdaptiveSampler(1.0f, 0L, now);
+
+  @Test public void startsAtMaxRate() {
+    assertThat(sampler.rate()).isEqualTo(1.0f);
+    assertThat(new Random().longs(100000).filter(sampler::isSampled).count())
+        .isEqualTo(100000);
+  }
+
+  @Test public void dropsHalveRate() {
+    sampler.onSpansDropped(now);
+    assertThat(sampler.rate()).isEqualTo(0.5f);
+
+    now += ADJUST_INTERVAL_NANOS;
+    sampler.onSpansDropped(now);
+    assertThat(sampler.rate()).isEqualTo(0.25f);
+  }
+
+  @Test public void dropsHalveRateOncePerInterval() {
+    sampler.onSpansDropped(now);
+    sampler.onSpansDropped(now + ADJUST_INTERVAL_NANOS - 1);
+
+    assertThat(sampler.rate()).isEqualTo(0.5f);
+  }
+
+  @Test public void rateHasAFloor() {
+    for (int i = 0; i < 100; i++) {
+      sampler.onSpansDropped(now += ADJUST_INTERVAL_NANOS);
+    }
+
+    assertThat(sampler.rate()).isEqualTo(0.0001f);
+  }
+
+  @Test public void rateIsRaisedSlowlyWithoutDrops() {
+    sampler.onSpansDropped(now);
+
+    sampler.onQueuedSpans(0, now += ADJUST_INTERVAL_NANOS);
+    assertThat(sampler.rate()).isCloseTo(0.55f, offset(0.0001f));
+
+    for (int i = 0; i < 20; i++) sampler.onQueuedSpans(0, now += ADJUST_INTERVAL_NANOS);
+    assertThat(sampler.rate()).isEqualTo(1.0f); // but not above the max
+  }
+
+  @Test public void rateIsRaisedOncePerInterval() {
+    sampler.onSpansDropped(now);
+
+    sampler.onQueuedSpans(0, now += ADJUST_INTERVAL_NANOS);
+    sampler.onQueuedSpans(0, now + 1);
+
+    assertThat(sampler.rate()).isCloseTo(0.55f, offset(0.0001f));
+  }
+
+  @Test public void rateIsntRaisedWhileQueueGrows() {
+    sampler.onSpansDropped(now);
+
+    sampler.onQueuedSpans(10, now += ADJUST_INTERVAL_NANOS);
+    sampler.onQueuedSpans(20, now += ADJUST_INTERVAL_NANOS);
+    assertThat(sampler.rate()).isEqualTo(0.5f);
+
+    sampler.onQueuedSpans(15, now += ADJUST_INTERVAL_NANOS);
+    assertThat(sampler.rate()).isCloseTo(0.55f, offset(0.0001f));
+  }
+
+  @Test public void isSampled_followsRate() {
+    sampler = new AdaptiveSampler(1.0f, new Random().nextLong(), now);
+    sampler.onSpansDropped(now);
+    sampler.onSpansDropped(now += ADJUST_INTERVAL_NANOS);
+    sampler.onSpansDropped(now += ADJUST_INTERVAL_NANOS); // 0.125
+
+    long passed = new Random().longs(1000000).filter(sampler::isSampled).count();
+    assertThat(passed).isCloseTo(125000L, offset(2000L));
+  }
+
+  /**
+   * Simulates a reporter that can only send 1000 spans a second, under 10000 requests a second. The
+   * sampler should settle such that most sampled spans are sent, as opposed to dropped.
+   */
+  @Test public void overload_reportedSpansStayNearCapacity() {
+    int capacity = 1000, requestsPerSecond = 10000;
+    long sent = 0, dropped = 0;
+    for (int second = 0; second < 600; second++) {
+      now += ADJUST_INTERVAL_NANOS;
+      long sampled = (long) (requestsPerSecond * sampler.rate());
+      if (sampled > capacity) {
+        sampler.onSpansDropped(now);
+        if (second >= 60) dropped += sampled - capacity;
+        sampled = capacity;
+      }
+      sampler.onQueuedSpans(0, now);
+      if (second >= 60) sent += sampled;
+    }
+
+    // After the first minute, at least 3/4 of the capacity is used, and few spans are wasted
+    assertThat(sent).isGreaterThan(540 * capacity * 3 / 4);
+    assertThat(dropped).isLessThan(sent / 10);
+  }
+
+  @Test public void reporterMetrics_adaptsAndForwards() {
+    InMemoryReporterMetrics delegate = new InMemoryReporterMetrics();
+    sampler = AdaptiveSampler.create(1.0f);
+    ReporterMetrics metrics = sampler.reporterMetrics(delegate);
+
+    metrics.incrementSpansDropped(3);
+    metrics.updateQueuedSpans(5);
+    metrics.incrementSpans(2);
+
+    assertThat(sampler.rate()).isEqualTo(0.5f);
+    assertThat(delegate.spansDropped()).isEqualTo(3);
+    assertThat(delegate.queuedSpans()).isEqualTo(5);
+    assertThat(delegate.spans()).isEqualTo(2);
+  }
+
+  @Test public void reporterMetrics_messagesDroppedLowerRate() {
+    sampler = AdaptiveSampler.create(1.0f);
+
+    sampler.reporterMetrics().incrementMessagesDropped(new RuntimeException());
+
+    assertThat(sampler.rate()).isEqualTo(0.5f);
+  }
+
+  @Test public void maxRateCantBeZero() {
+    thrown.expect(IllegalArgumentException.class);
+
+    AdaptiveSampler.create(0.0f);
+  }
+
+  @Test public void maxRateCantBeOverOne() {
+    thrown.expect(IllegalArgumentException.class);
+
+    AdaptiveSampler.create(1.1f);
+  }
+}
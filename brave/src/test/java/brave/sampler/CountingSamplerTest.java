@@ -1,8 +1,10 @@
 package brave.sampler;
 
+import java.util.Random;
 import org.assertj.core.data.Percentage;
 import org.junit.Test;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.data.Percentage.withPercentage;
 
 public class CountingSamplerTest extends SamplerTest {
@@ -10,13 +12,64 @@ public class CountingSamplerTest extends SamplerTest {
     return CountingSampler.create(rate);
   }
 
+  /** Each thread is within one trace of the rate, so the error is tiny even in parallel */
   @Override Percentage expectedErrorRate() {
-    return withPercentage(0);
+    return withPercentage(1);
   }
 
   @Test
-  public void sampleRateMinimumOnePercent() throws Exception {
+  public void acceptsOneInTenThousandSampleRate() {
+    Sampler sampler = newSampler(0.0001f);
+
+    assertThat(new Random().longs(10000).filter(sampler::isSampled).count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  public void sampleRateMinimumOneInTenThousand() {
     thrown.expect(IllegalArgumentException.class);
-    newSampler(0.0001f);
+    newSampler(0.00001f);
+  }
+
+  @Test
+  public void singleThread_withinOneTraceOfRate() {
+    for (float rate : new float[] {0.0001f, 0.0123f, 0.5f, 0.9999f}) {
+      Sampler sampler = newSampler(rate);
+      long passed = 0;
+      for (int i = 1; i <= INPUT_SIZE; i++) {
+        if (sampler.isSampled(0L)) passed++;
+        assertThat(passed)
+            .isBetween((long) Math.floor(i * rate) - 1, (long) Math.ceil(i * rate) + 1);
+      }
+    }
+  }
+
+  @Test
+  public void countersStartAtRandomOffset() {
+    CountingSampler sampler = new CountingSampler(0.5f, new Random(1L));
+
+    assertThat(sampler.counters.get().value)
+        .isEqualTo(new Random(1L).nextInt(CountingSampler.PRECISION));
+  }
+
+  @Test
+  public void threadsHaveTheirOwnCounter() throws InterruptedException {
+    Sampler sampler = newSampler(0.01f);
+    long[] passed = new long[2];
+
+    Thread thread = new Thread(() -> {
+      for (int i = 0; i < INPUT_SIZE; i++) if (sampler.isSampled(0L)) passed[0]++;
+    });
+    thread.start();
+    for (int i = 0; i < INPUT_SIZE; i++) if (sampler.isSampled(0L)) passed[1]++;
+    thread.join();
+
+    assertThat(passed).containsExactly(1000L, 1000L);
+  }
+
+  @Test
+  public void toStringIncludesRate() {
+    assertThat(newSampler(0.0123f))
+        .hasToString("CountingSampler(123/10000)");
   }
 }
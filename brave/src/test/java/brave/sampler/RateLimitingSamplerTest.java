@@ -0,0 +1,173 @@
+package brave.sampler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static brave.sampler.RateLimitingSampler.NANOS_PER_SECOND;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RateLimitingSamplerTest {
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  long now = System.nanoTime();
+  RateLimitingSampler sampler = new RateLimitingSampler(100, Sampler.ALWAYS_SAMPLE, now);
+
+  @Test public void admitsATenthOfASecondsWorthOfTraces() {
+    assertThat(acquire(100)).isEqualTo(10);
+  }
+
+  @Test public void refillsContinuously() {
+    acquire(10);
+
+    now += NANOS_PER_SECOND / 100;
+    assertThat(acquire(10)).isEqualTo(1);
+
+    now += NANOS_PER_SECOND / 20;
+    assertThat(acquire(10)).isEqualTo(5);
+  }
+
+  @Test public void doesntAccumulateMoreThanCapacityWhenIdle() {
+    now += 60 * NANOS_PER_SECOND;
+
+    assertThat(acquire(100)).isEqualTo(10);
+  }
+
+  @Test public void capacityIsAtLeastOneTrace() {
+    sampler = new RateLimitingSampler(1, Sampler.ALWAYS_SAMPLE, now);
+    assertThat(acquire(10)).isEqualTo(1);
+
+    now += NANOS_PER_SECOND - 1;
+    assertThat(acquire(10)).isZero();
+
+    now += 1;
+    assertThat(acquire(10)).isEqualTo(1);
+  }
+
+  @Test public void sustainsRate() {
+    int admitted = 0;
+    for (int tick = 0; tick < 1000; tick++) { // 10 seconds
+      admitted += acquire(50);
+      now += NANOS_PER_SECOND / 100;
+    }
+
+    assertThat(admitted).isEqualTo(100 * 10 + 10 - 1); // initial burst, less the last refill
+  }
+
+  @Test public void neverExceedsRateInAnySecondByMoreThanCapacity() {
+    int[] admittedPerTick = new int[1000];
+    for (int tick = 0; tick < admittedPerTick.length; tick++) {
+      admittedPerTick[tick] = acquire(tick % 200 < 100 ? 50 : 0); // spiky traffic
+      now += NANOS_PER_SECOND / 100; // 100 ticks per second
+    }
+
+    for (int tick = 0; tick + 100 <= admittedPerTick.length; tick++) {
+      int admitted = 0;
+      for (int i = tick; i < tick + 100; i++) admitted += admittedPerTick[i];
+      assertThat(admitted).isLessThanOrEqualTo(100 + 10);
+    }
+  }
+
+  @Test public void toleratesNanoTimeOverflow() {
+    now = Long.MAX_VALUE - NANOS_PER_SECOND / 20;
+    sampler = new RateLimitingSampler(100, Sampler.ALWAYS_SAMPLE, now);
+    acquire(10);
+
+    now += NANOS_PER_SECOND / 10; // overflows
+    assertThat(acquire(100)).isEqualTo(10);
+  }
+
+  @Test public void concurrentDecisionsDontExceedCapacity() throws Exception {
+    RateLimitingSampler sampler = new RateLimitingSampler(1000, Sampler.ALWAYS_SAMPLE, now);
+    AtomicInteger admitted = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        futures.add(executor.submit((Callable<Void>) () -> {
+          for (int j = 0; j < 1000; j++) if (sampler.tryAcquire(now)) admitted.incrementAndGet();
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) future.get();
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(admitted.get()).isEqualTo(100);
+  }
+
+  @Test public void onlyLimitsTracesTheSamplerKeeps() {
+    Sampler sampler = RateLimitingSampler.create(10000, CountingSampler.create(0.1f));
+
+    long passed = 0;
+    for (int i = 0; i < 5000; i++) if (sampler.isSampled(i)) passed++;
+
+    // The bucket holds 1000 traces, so the rate limit isn't reached
+    assertThat(passed).isEqualTo(500);
+  }
+
+  @Test public void limitsTracesTheSamplerKeeps() {
+    Sampler sampler = RateLimitingSampler.create(100, CountingSampler.create(0.5f));
+
+    long passed = 0;
+    for (int i = 0; i < 5000; i++) if (sampler.isSampled(i)) passed++;
+
+    // The bucket holds 10 traces, and the test shouldn't take long enough to refill many more
+    assertThat(passed).isBetween(10L, 20L);
+  }
+
+  @Test public void zeroMeansDropAllTraces() {
+    assertThat(RateLimitingSampler.create(0)).isSameAs(Sampler.NEVER_SAMPLE);
+  }
+
+  @Test public void neverSampleMeansDropAllTraces() {
+    assertThat(RateLimitingSampler.create(10, Sampler.NEVER_SAMPLE))
+        .isSameAs(Sampler.NEVER_SAMPLE);
+  }
+
+  @Test public void rateCantBeNegative() {
+    thrown.expect(IllegalArgumentException.class);
+
+    RateLimitingSampler.create(-1);
+  }
+
+  @Test public void rateCantExceedOnePerNanosecond() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("tracesPerSecond > 1000000000: 1000000001");
+
+    RateLimitingSampler.create(1000000001);
+  }
+
+  @Test public void onePerNanosecondLimits() {
+    sampler = new RateLimitingSampler(1000000000, Sampler.ALWAYS_SAMPLE, now);
+    assertThat(sampler.tryAcquire(now)).isTrue();
+
+    sampler.fullAt = now + sampler.capacityNanos; // as if a tenth of a second's worth was taken
+    assertThat(sampler.tryAcquire(now)).isFalse();
+  }
+
+  @Test public void samplerCantBeNull() {
+    thrown.expect(NullPointerException.class);
+
+    RateLimitingSampler.create(10, null);
+  }
+
+  @Test public void toStringIncludesRateAndSampler() {
+    assertThat(RateLimitingSampler.create(10))
+        .hasToString("RateLimitingSampler(10/s, AlwaysSample)");
+  }
+
+  int acquire(int attempts) {
+    int admitted = 0;
+    for (int i = 0; i < attempts; i++) if (sampler.tryAcquire(now)) admitted++;
+    return admitted;
+  }
+}
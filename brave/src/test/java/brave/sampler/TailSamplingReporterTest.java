@@ -0,0 +1,178 @@
+package brave.sampler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import zipkin.Annotation;
+import zipkin.BinaryAnnotation;
+import zipkin.Constants;
+import zipkin.Endpoint;
+import zipkin.Span;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TailSamplingReporterTest {
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  static final Endpoint LOCAL = Endpoint.create("frontend", 127 << 24 | 1);
+
+  List<Span> spans = new ArrayList<>();
+  long now = System.nanoTime();
+  TailSamplingReporter reporter = TailSamplingReporter.newBuilder(spans::add)
+      .latencyThreshold(1, TimeUnit.SECONDS)
+      .build();
+
+  @Test public void fastTraceIsDropped() {
+    reporter.report(child(1L, 2L, 1L), now);
+    reporter.report(root(1L, 1000L), now);
+
+    assertThat(spans).isEmpty();
+    assertThat(reporter.tracesDropped()).isEqualTo(1);
+    assertThat(reporter.bufferedSpans()).isEqualTo(1); // remembers the decision
+  }
+
+  @Test public void slowTraceIsKept() {
+    Span child = child(1L, 2L, 1L);
+    Span root = root(1L, TimeUnit.SECONDS.toMicros(2));
+    reporter.report(child, now);
+    reporter.report(root, now);
+
+    assertThat(spans).containsExactly(child, root);
+    assertThat(reporter.tracesKept()).isEqualTo(1);
+  }
+
+  @Test public void errorTraceIsKept() {
+    Span child = child(1L, 2L, 1L).toBuilder()
+        .addBinaryAnnotation(BinaryAnnotation.create(Constants.ERROR, "timeout", LOCAL))
+        .build();
+    Span root = root(1L, 1000L);
+    reporter.report(child, now);
+    reporter.report(root, now);
+
+    assertThat(spans).containsExactly(child, root);
+  }
+
+  @Test public void errorTraceIsDropped_whenNotKeepingErrors() {
+    reporter = TailSamplingReporter.newBuilder(spans::add).keepErrors(false).build();
+
+    reporter.report(root(1L, 1000L).toBuilder()
+        .addBinaryAnnotation(BinaryAnnotation.create(Constants.ERROR, "timeout", LOCAL))
+        .build(), now);
+
+    assertThat(spans).isEmpty();
+  }
+
+  @Test public void debugTraceIsKept() {
+    Span child = child(1L, 2L, 1L).toBuilder().debug(true).build();
+    reporter.report(child, now);
+    reporter.report(root(1L, 1000L), now);
+
+    assertThat(spans).hasSize(2);
+  }
+
+  @Test public void baselineKeepsTraces() {
+    reporter = TailSamplingReporter.newBuilder(spans::add).baseline(Sampler.ALWAYS_SAMPLE).build();
+
+    reporter.report(root(1L, 1000L), now);
+
+    assertThat(spans).hasSize(1);
+  }
+
+  @Test public void serverSpanIsLocalRoot() {
+    Span child = child(1L, 3L, 2L);
+    Span server = child(1L, 2L, 1L).toBuilder()
+        .timestamp(1L).duration(TimeUnit.SECONDS.toMicros(2))
+        .addAnnotation(Annotation.create(1L, Constants.SERVER_RECV, LOCAL))
+        .build();
+    reporter.report(child, now);
+    reporter.report(server, now);
+
+    assertThat(spans).containsExactly(child, server);
+  }
+
+  @Test public void lateSpansFollowDecision() {
+    reporter.report(root(1L, TimeUnit.SECONDS.toMicros(2)), now);
+    reporter.report(root(2L, 1000L), now);
+
+    Span lateKept = child(1L, 2L, 1L), lateDropped = child(2L, 2L, 1L);
+    reporter.report(lateKept, now);
+    reporter.report(lateDropped, now);
+
+    assertThat(spans).hasSize(2).contains(lateKept).doesNotContain(lateDropped);
+    assertThat(reporter.bufferedSpans()).isEqualTo(2);
+  }
+
+  @Test public void tracesAreBufferedSeparately() {
+    reporter.report(child(1L, 2L, 1L), now);
+    reporter.report(child(2L, 2L, 1L), now);
+    reporter.report(root(2L, TimeUnit.SECONDS.toMicros(2)), now);
+
+    assertThat(spans).extracting(s -> s.traceId).containsExactly(2L, 2L);
+    assertThat(reporter.bufferedSpans()).isEqualTo(2); // trace 1's span and trace 2's decision
+  }
+
+  @Test public void staleTracesAreEvicted() {
+    reporter.report(child(1L, 2L, 1L), now);
+    reporter.report(child(2L, 2L, 1L), now + TimeUnit.SECONDS.toNanos(30));
+
+    reporter.report(child(3L, 2L, 1L), now + TimeUnit.MINUTES.toNanos(1));
+
+    assertThat(reporter.tracesEvicted()).isEqualTo(1);
+    assertThat(reporter.bufferedSpans()).isEqualTo(2);
+
+    // the root arriving after eviction sees only itself
+    reporter.report(root(1L, TimeUnit.SECONDS.toMicros(2)), now + TimeUnit.MINUTES.toNanos(1));
+    assertThat(spans).hasSize(1);
+  }
+
+  @Test public void oldestTracesAreEvicted_whenOverMaxSpans() {
+    reporter = TailSamplingReporter.newBuilder(spans::add).maxSpans(3).build();
+
+    reporter.report(child(1L, 2L, 1L), now);
+    reporter.report(child(1L, 3L, 1L), now);
+    reporter.report(child(2L, 2L, 1L), now);
+    reporter.report(child(3L, 2L, 1L), now);
+
+    assertThat(reporter.tracesEvicted()).isEqualTo(1);
+    assertThat(reporter.bufferedSpans()).isEqualTo(2);
+  }
+
+  @Test public void bufferedSpansNeverExceedMax() {
+    reporter = TailSamplingReporter.newBuilder(spans::add).maxSpans(100).build();
+
+    for (long traceId = 1; traceId <= 1000; traceId++) {
+      for (long spanId = 2; spanId <= 5; spanId++) {
+        reporter.report(child(traceId, spanId, 1L), now);
+      }
+      if (traceId % 2 == 0) reporter.report(root(traceId, 1000L), now);
+      assertThat(reporter.bufferedSpans()).isLessThanOrEqualTo(100);
+    }
+  }
+
+  @Test public void maxSpansMustBePositive() {
+    thrown.expect(IllegalArgumentException.class);
+
+    TailSamplingReporter.newBuilder(spans::add).maxSpans(0);
+  }
+
+  @Test public void delegateCantBeNull() {
+    thrown.expect(NullPointerException.class);
+
+    TailSamplingReporter.newBuilder(null);
+  }
+
+  static Span root(long traceId, long durationMicros) {
+    return Span.builder().traceId(traceId).id(1L).name("get")
+        .timestamp(1L).duration(durationMicros)
+        .build();
+  }
+
+  static Span child(long traceId, long spanId, long parentId) {
+    return Span.builder().traceId(traceId).id(spanId).parentId(parentId).name("query")
+        .timestamp(1L).duration(1L)
+        .build();
+  }
+}
@@ -0,0 +1,105 @@
+package brave.sampler;
+
+import java.util.Random;
+import org.assertj.core.data.Percentage;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.data.Percentage.withPercentage;
+
+public class ThresholdSamplerTest extends SamplerTest {
+  @Override Sampler newSampler(float rate) {
+    return ThresholdSampler.create(rate);
+  }
+
+  @Override Percentage expectedErrorRate() {
+    return withPercentage(10);
+  }
+
+  @Test
+  public void acceptsOneInTenMillionSampleRate() {
+    newSampler(0.0000001f);
+  }
+
+  @Test
+  public void sampleRateMinimumOneInTenMillion() {
+    thrown.expect(IllegalArgumentException.class);
+    newSampler(0.00000001f);
+  }
+
+  @Test
+  public void threshold_isFractionOfUnsignedLongRange() {
+    assertThat(ThresholdSampler.threshold(0.5))
+        .isEqualTo(Long.MIN_VALUE); // 2^63 unsigned
+    assertThat(ThresholdSampler.threshold(0.25))
+        .isEqualTo(1L << 62);
+    assertThat(ThresholdSampler.threshold(0.75))
+        .isEqualTo(Long.MIN_VALUE | 1L << 62);
+    assertThat(ThresholdSampler.threshold(0.0000001))
+        .isEqualTo(1844674407370L); // floor(2^64 / 10^7)
+  }
+
+  @Test
+  public void isSampled_comparesUnsigned() {
+    Sampler sampler = new ThresholdSampler(ThresholdSampler.threshold(0.75), 0L);
+
+    assertThat(sampler.isSampled(0L)).isTrue();
+    assertThat(sampler.isSampled(Long.MAX_VALUE)).isTrue();
+    assertThat(sampler.isSampled(Long.MIN_VALUE)).isTrue();
+    assertThat(sampler.isSampled((Long.MIN_VALUE | 1L << 62) - 1)).isTrue();
+    assertThat(sampler.isSampled(Long.MIN_VALUE | 1L << 62)).isFalse();
+    assertThat(sampler.isSampled(-1L)).isFalse();
+  }
+
+  @Test
+  public void isSampled_boundaryAtOneInTenMillion() {
+    Sampler sampler = ThresholdSampler.create(0.0000001f, 0L);
+    long threshold = ((ThresholdSampler) sampler).threshold;
+
+    assertThat(sampler.isSampled(threshold - 1)).isTrue();
+    assertThat(sampler.isSampled(threshold)).isFalse();
+  }
+
+  @Test
+  public void isSampled_appliesSalt() {
+    long salt = new Random().nextLong();
+    Sampler sampler = ThresholdSampler.create(0.5f, salt);
+
+    assertThat(sampler.isSampled(salt)).isTrue(); // salted ID is zero
+    assertThat(sampler.isSampled(~salt)).isFalse(); // salted ID is all ones
+  }
+
+  @Test
+  public void isSampled_consistentGivenSameSalt() {
+    long salt = new Random().nextLong();
+    Sampler host1 = ThresholdSampler.create(0.01f, salt);
+    Sampler host2 = ThresholdSampler.create(0.01f, salt);
+
+    new Random().longs(INPUT_SIZE).forEach(traceId ->
+        assertThat(host1.isSampled(traceId)).isEqualTo(host2.isSampled(traceId))
+    );
+  }
+
+  /** Checks the rate is accurate over millions of IDs, for rates far below one percent. */
+  @Test
+  public void retainsPerSampleRate_millionsOfIds() {
+    Random random = new Random(1L);
+    long inputSize = 10_000_000L;
+    for (float rate : new float[] {0.001f, 0.0001f, 0.00001f}) {
+      Sampler sampler = ThresholdSampler.create(rate, random.nextLong());
+
+      long passed = random.longs(inputSize).filter(sampler::isSampled).count();
+
+      // within 4 standard deviations of the expected count: sqrt(n * p * (1 - p))
+      double expected = inputSize * (double) rate;
+      assertThat((double) passed)
+          .isBetween(expected - 4 * Math.sqrt(expected), expected + 4 * Math.sqrt(expected));
+    }
+  }
+
+  @Test
+  public void toStringIncludesThreshold() {
+    assertThat(new ThresholdSampler(ThresholdSampler.threshold(0.5), 0L))
+        .hasToString("ThresholdSampler(8000000000000000)");
+  }
+}
@@ -0,0 +1,189 @@
+package brave.sampler;
+
+import brave.sampler.UpsamplingSampler.NameStats;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import zipkin.BinaryAnnotation;
+import zipkin.Constants;
+import zipkin.Endpoint;
+import zipkin.Span;
+import zipkin.reporter.Reporter;
+
+import static brave.sampler.UpsamplingSampler.WINDOW_NANOS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.data.Offset.offset;
+
+public class UpsamplingSamplerTest {
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  static final Endpoint LOCAL = Endpoint.create("frontend", 127 << 24 | 1);
+
+  long now = System.nanoTime();
+  UpsamplingSampler sampler = new UpsamplingSampler(0.01f, 0.5f, 0L);
+
+  @Test public void unknownNameUsesBaseRate() {
+    assertThat(sampler.rate("get /users")).isEqualTo(0.01f);
+
+    long passed = new Random().longs(100000)
+        .filter(traceId -> sampler.isSampled("get /users", traceId)).count();
+    assertThat(passed).isCloseTo(1000L, offset(200L));
+  }
+
+  @Test public void steadyLatency_staysAtBaseRate() {
+    for (int window = 0; window < 10; window++) {
+      window(100, 1000L, 0);
+    }
+
+    assertThat(sampler.rate("get")).isEqualTo(0.01f);
+  }
+
+  @Test public void latencySpike_boostsRate() {
+    for (int window = 0; window < 5; window++) {
+      window(100, 1000L, 0);
+    }
+    window(100, 5000L, 0); // p99 five times the average
+    window(1, 1000L, 0); // rolls the spiking window
+
+    assertThat(sampler.rate("get")).isEqualTo(0.5f);
+
+    long passed = new Random().longs(100000)
+        .filter(traceId -> sampler.isSampled("get", traceId)).count();
+    assertThat(passed).isCloseTo(50000L, offset(1000L));
+  }
+
+  @Test public void errorRateSpike_boostsRate() {
+    for (int window = 0; window < 5; window++) {
+      window(100, 1000L, 0);
+    }
+    window(100, 1000L, 10);
+    window(1, 1000L, 0);
+
+    assertThat(sampler.rate("get")).isEqualTo(0.5f);
+  }
+
+  @Test public void boostDecaysByHalfPerWindow() {
+    for (int window = 0; window < 5; window++) {
+      window(100, 1000L, 0);
+    }
+    window(100, 5000L, 0);
+    window(100, 1000L, 0);
+    assertThat(sampler.rate("get")).isEqualTo(0.5f);
+
+    window(100, 1000L, 0);
+    assertThat(sampler.rate("get")).isEqualTo(0.25f);
+
+    for (int window = 0; window < 10; window++) {
+      window(100, 1000L, 0);
+    }
+    assertThat(sampler.rate("get")).isEqualTo(0.01f);
+  }
+
+  @Test public void boostDecaysForWindowsWithoutSpans() {
+    for (int window = 0; window < 5; window++) {
+      window(100, 1000L, 0);
+    }
+    window(100, 5000L, 0);
+    window(1, 1000L, 0);
+
+    now += 2 * WINDOW_NANOS; // two quiet windows
+    sampler.record(span("get", 1000L, false), now);
+
+    // halved for the window with one span, and for each quiet one
+    assertThat(sampler.rate("get")).isEqualTo(0.0625f);
+  }
+
+  @Test public void sparseWindowsDontBoost() {
+    window(100, 1000L, 0);
+    window(10, 5000L, 10);
+    window(1, 1000L, 0);
+
+    assertThat(sampler.rate("get")).isEqualTo(0.01f);
+  }
+
+  @Test public void namesAreIndependent() {
+    for (int window = 0; window < 5; window++) {
+      window(100, 1000L, 0);
+    }
+    window(100, 5000L, 0);
+    window(1, 1000L, 0);
+
+    assertThat(sampler.rate("get")).isEqualTo(0.5f);
+    assertThat(sampler.rate("post")).isEqualTo(0.01f);
+  }
+
+  @Test public void namesAreBounded() {
+    for (int i = 0; i < UpsamplingSampler.MAX_NAMES * 2; i++) {
+      sampler.record(span("name" + i, 1000L, false), now);
+    }
+
+    assertThat(sampler.names.get()).isEqualTo(UpsamplingSampler.MAX_NAMES);
+    assertThat(sampler.get("name0")).isNotNull();
+    assertThat(sampler.get("name" + UpsamplingSampler.MAX_NAMES)).isNull();
+    assertThat(sampler.rate("name" + UpsamplingSampler.MAX_NAMES)).isEqualTo(0.01f);
+  }
+
+  @Test public void unfinishedSpansAreIgnored() {
+    sampler.record(span("get", 1000L, false).toBuilder().duration(null).build(), now);
+
+    assertThat(sampler.get("get")).isNull();
+  }
+
+  @Test public void reporterRecordsAndForwards() {
+    List<Span> spans = new ArrayList<>();
+    Reporter<Span> reporter = sampler.reporter(spans::add);
+
+    Span span = span("get", 1000L, false);
+    reporter.report(span);
+
+    assertThat(spans).containsExactly(span);
+    assertThat(sampler.get("get")).isNotNull();
+  }
+
+  @Test public void bucket() {
+    assertThat(NameStats.bucket(1L)).isEqualTo(0);
+    assertThat(NameStats.bucket(2L)).isEqualTo(2);
+    assertThat(NameStats.bucket(3L)).isEqualTo(3);
+    assertThat(NameStats.bucket(1000L)).isEqualTo(19);
+    assertThat(NameStats.upperBound(19)).isEqualTo(1024L);
+    assertThat(NameStats.bucket(Long.MAX_VALUE)).isLessThan(NameStats.BUCKETS);
+  }
+
+  @Test public void percentile() {
+    int[] counts = new int[NameStats.BUCKETS];
+    for (int i = 1; i <= 1000; i++) counts[NameStats.bucket(i)]++;
+
+    assertThat(NameStats.percentile(counts, 1000, 0.99)).isEqualTo(1024L);
+    assertThat(NameStats.percentile(counts, 1000, 0.5)).isEqualTo(512L);
+  }
+
+  @Test public void boostedRateCantBeLessThanBaseRate() {
+    thrown.expect(IllegalArgumentException.class);
+
+    UpsamplingSampler.create(0.1f, 0.01f);
+  }
+
+  @Test public void baseRateCantBeZero() {
+    thrown.expect(IllegalArgumentException.class);
+
+    UpsamplingSampler.create(0.0f, 0.1f);
+  }
+
+  /** Records spans named "get" in the current window, then moves to the next. */
+  void window(int spans, long durationMicros, int errors) {
+    for (int i = 0; i < spans; i++) {
+      sampler.record(span("get", durationMicros, i < errors), now);
+    }
+    now += WINDOW_NANOS;
+  }
+
+  static Span span(String name, long durationMicros, boolean error) {
+    Span.Builder builder = Span.builder().traceId(1L).id(1L).name(name)
+        .timestamp(1L).duration(durationMicros);
+    if (error) builder.addBinaryAnnotation(BinaryAnnotation.create(Constants.ERROR, "", LOCAL));
+    return builder.build();
+  }
+}